@@ -2,6 +2,7 @@ package org.ops4j.pax.exam.quickbuild;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collection;
 
 /**
  * Snapshot is being used as a reference to calculate changes against.
@@ -18,6 +19,35 @@ public interface Snapshot extends Iterable<SnapshotElement>
 
     long timestamp();
 
+    /**
+     * Looks up an element by name.
+     *
+     * @param name element name
+     *
+     * @return element or null if there is no element with this name
+     */
+    SnapshotElement get( String name );
+
+    /**
+     * @param type element type
+     *
+     * @return all elements of a type (never null)
+     */
+    Collection<SnapshotElement> elements( QType type );
+
+    /**
+     * Writes the snapshot in the compact binary format, to be loaded by {@link SnapshotBuilder#load}.
+     *
+     * @param out where to write
+     */
     void write( OutputStream out )
         throws IOException;
+
+    /**
+     * Writes the snapshot in the human readable text format (one element per line). It can be loaded as well.
+     *
+     * @param out where to write
+     */
+    void export( OutputStream out )
+        throws IOException;
 }
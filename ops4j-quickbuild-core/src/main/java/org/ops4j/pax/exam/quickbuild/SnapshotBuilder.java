@@ -23,7 +23,7 @@ public interface SnapshotBuilder
     /**
      * load a previously stored snapshot from disk
      *
-     * @param load reference to what has been produced by {@link Snapshot#write}
+     * @param load reference to what has been produced by {@link Snapshot#write} or {@link Snapshot#export}
      *
      * @return loaded snapshot instance.
      */
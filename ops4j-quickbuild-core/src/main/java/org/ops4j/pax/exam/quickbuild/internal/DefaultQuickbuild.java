@@ -3,20 +3,21 @@ package org.ops4j.pax.exam.quickbuild.internal;
 import java.io.File;
 import java.io.IOException;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import com.google.inject.Inject;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.ops4j.io.StreamUtils;
 import org.ops4j.pax.exam.quickbuild.Quickbuild;
 import org.ops4j.pax.exam.quickbuild.QType;
 import org.ops4j.pax.exam.quickbuild.Snapshot;
@@ -32,6 +33,20 @@ public class DefaultQuickbuild implements Quickbuild
 
     public static final Log LOGGER = LogFactory.getLog( DefaultQuickbuild.class );
 
+    /**
+     * Packs jars in background. Threads are daemons so a jar that is never read does not keep the vm alive.
+     */
+    private static final ExecutorService PACKER = Executors.newCachedThreadPool( new ThreadFactory()
+    {
+        public Thread newThread( Runnable runnable )
+        {
+            final Thread thread = new Thread( runnable, "quickbuild-packer" );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+    );
+
     final private Store<InputStream> m_store;
 
     @Inject
@@ -43,27 +58,26 @@ public class DefaultQuickbuild implements Quickbuild
     public InputStream update( Snapshot referenceSnapshot, File changedContentFolder )
         throws IOException
     {
-        // keep it very simple for now
-        final Map<String, Handle> folderContent = new HashMap<String, Handle>();
-
-        deflateFolder( folderContent, changedContentFolder.getCanonicalPath(), changedContentFolder );
+        // only files changed since last update are read again
+        final Map<String, Handle> folderContent = new FolderIndex( m_store, changedContentFolder ).deflate();
 
-        // pack jar from work into anchor
-        final PipedInputStream pin = new PipedInputStream();
+        // pack jar from work into anchor, streaming it to the caller while it is packed
+        final PackingPipe pin = new PackingPipe();
         final PipedOutputStream pout = new PipedOutputStream( pin );
 
-        final Map<String, URI> contentMap = calculateNewJarContent( referenceSnapshot, folderContent );
-        new Thread()
+        final Map<String, URI> contentMap = calculateNewJarContent( referenceSnapshot, folderContent ).m_entries;
+        PACKER.execute( new Runnable()
         {
-            @Override
             public void run()
             {
                 try
                 {
-                    pack( contentMap, pout );
-                } catch( IOException e )
+                    // the pipe is closed only after an eventual failure was handed to the reader
+                    pack( contentMap, new KeepOpenOutputStream( pout ) );
+                } catch( Throwable e )
                 {
-                    e.printStackTrace();
+                    // reported to the reader at the end of the stream
+                    pin.fail( e );
                 } finally
                 {
                     try
@@ -75,36 +89,12 @@ public class DefaultQuickbuild implements Quickbuild
                     }
                 }
             }
-        }.start();
-
-        // TODO replace with IOPipes after this somehow works.
+        }
+        );
         return pin;
-        //return new FileInputStream( new File( changedContentFolder, "build_by_quickbuild.jar" ) );
 
     }
 
-    private void deflateFolder( Map<String, Handle> contentMap, String base, File folder )
-        throws IOException
-    {
-
-        for( File f : folder.listFiles() )
-        {
-            if( !f.isHidden() && f.isDirectory() )
-            {
-                deflateFolder( contentMap, base, f );
-
-            }
-            else if( !f.isHidden() && f.getName().endsWith( ".class" ) )
-            {
-
-                String p = f.getCanonicalPath().replaceAll( "\\\\", "/" );
-                // cut prefix
-                p = p.substring( base.length() + 1 );
-                contentMap.put( p, m_store.store( new FileInputStream( f ) ) );
-            }
-        }
-    }
-
     /**
      * Just pack fully resolved resources into an outputstream.
      *
@@ -120,12 +110,13 @@ public class DefaultQuickbuild implements Quickbuild
         try
         {
             // first set manifest if available:
+            final byte[] buffer = new byte[PackingPipe.BUFFER_SIZE];
             URI manifest = agg.get( "META-INF/MANIFEST.MF" );
             if( manifest != null )
             {
                 JarEntry entry = new JarEntry( "META-INF/MANIFEST.MF" );
                 jout.putNextEntry( entry );
-                StreamUtils.copyStream( manifest.toURL().openStream(), jout, false );
+                copy( manifest, jout, buffer );
                 jout.closeEntry();
             }
             for( String name : agg.keySet() )
@@ -137,7 +128,7 @@ public class DefaultQuickbuild implements Quickbuild
 
                 JarEntry entry = new JarEntry( name );
                 jout.putNextEntry( entry );
-                StreamUtils.copyStream( agg.get( name ).toURL().openStream(), jout, false );
+                copy( agg.get( name ), jout, buffer );
                 jout.closeEntry();
             }
         } finally
@@ -147,64 +138,125 @@ public class DefaultQuickbuild implements Quickbuild
 
     }
 
-    private Map<String, URI> calculateNewJarContent( Snapshot snapshot, Map<String, Handle> contentMap )
+    /**
+     * Copies the content of an entry to the jar. Content in files (as all content in store) is read directly instead
+     * of via an url connection.
+     *
+     * @param content location of the content
+     * @param out     where to copy
+     * @param buffer  copy buffer
+     */
+    private static void copy( URI content, OutputStream out, byte[] buffer )
         throws IOException
     {
-        Map<String, URI> agg = new HashMap<String, URI>();
-        int files_new = 0;
-        int files_changed = 0;
-        int files_removed = 0;
-
-        for( SnapshotElement snapshotElement : snapshot )
+        final InputStream in = "file".equals( content.getScheme() )
+                               ? new FileInputStream( new File( content ) )
+                               : content.toURL().openStream();
+        try
         {
-            if( !contentMap.containsKey( snapshotElement.name() ) )
+            int read;
+            while( ( read = in.read( buffer ) ) != -1 )
             {
-                if( snapshotElement.type() == QType.OWN )
-                {
-                    // removed !
-                    files_removed++;
+                out.write( buffer, 0, read );
+            }
+        } finally
+        {
+            in.close();
+        }
+    }
 
-                }
-                else
+    /**
+     * Output stream that flushes instead of closing the underlying stream.
+     */
+    private static class KeepOpenOutputStream extends FilterOutputStream
+    {
+
+        KeepOpenOutputStream( OutputStream out )
+        {
+            super( out );
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+            throws IOException
+        {
+            out.write( b, off, len );
+        }
+
+        @Override
+        public void close()
+            throws IOException
+        {
+            flush();
+        }
+    }
+
+    /**
+     * Calculates the content of the new jar: the folder content plus the external elements of the snapshot not
+     * replaced by folder content. Folder content excluded in the snapshot is left out.
+     *
+     * @param snapshot   reference snapshot
+     * @param contentMap folder content by name (not modified)
+     *
+     * @return jar content and the changes against the snapshot
+     *
+     * @throws IOException if the location of stored content cannot be determined
+     */
+    JarContent calculateNewJarContent( Snapshot snapshot, Map<String, Handle> contentMap )
+        throws IOException
+    {
+        final JarContent jar = new JarContent();
+        final Map<String, URI> agg = jar.m_entries;
+
+        // external, still include (unless replaced by folder content)
+        for( QType type : new QType[]{ QType.IMPORTED, QType.EXCLUDED } )
+        {
+            for( SnapshotElement snapshotElement : snapshot.elements( type ) )
+            {
+                if( !contentMap.containsKey( snapshotElement.name() ) )
                 {
-                    // external, still include
                     agg.put( snapshotElement.name(), snapshotElement.reference() );
                 }
             }
-            else
+        }
+        for( SnapshotElement snapshotElement : snapshot.elements( QType.OWN ) )
+        {
+            if( !contentMap.containsKey( snapshotElement.name() ) )
+            {
+                // removed !
+                jar.m_removed++;
+            }
+        }
+        // only the folder content is classified against the snapshot
+        for( Map.Entry<String, Handle> entry : contentMap.entrySet() )
+        {
+            final SnapshotElement snapshotElement = snapshot.get( entry.getKey() );
+            if( snapshotElement == null )
+            {
+                // just new stuff in here
+                agg.put( entry.getKey(), m_store.getLocation( entry.getValue() ) );
+                jar.m_added++;
+            }
+            else if( snapshotElement.type() != QType.EXCLUDED )
             {
                 // exlude the ones we do not had initially, too. Add the rest of cause.
-                if( snapshotElement.type() != QType.EXCLUDED )
+                if( snapshotElement.type() == QType.OWN && !checkSumsEquals( snapshotElement, entry.getValue() ) )
                 {
-                    // if wanted, add this
-                    if( snapshotElement.type() == QType.OWN && !checkSumsEquals( snapshotElement, contentMap.get( snapshotElement.name() ) ) )
-                    {
-                        files_changed++;
-                    }
-                    agg.put( snapshotElement.name(), m_store.getLocation( contentMap.get( snapshotElement.name() ) ) );
+                    jar.m_changed++;
                 }
-
-                // remove from content so we do not pick it up again
-                contentMap.remove( snapshotElement.name() );
-
+                agg.put( entry.getKey(), m_store.getLocation( entry.getValue() ) );
             }
         }
-        for( String name : contentMap.keySet() )
+        if( jar.m_changed + jar.m_added + jar.m_removed > 0 )
         {
-            // just new stuff in here
-            agg.put( name, m_store.getLocation( contentMap.get( name ) ) );
-            files_new++;
-        }
-        if( files_changed + files_new + files_removed > 0 )
-        {
-            LOGGER.info( "QUICKBUILD CHANGESET: " + files_new + " new, " + files_removed + " removed, " + files_changed + " changed." );
+            LOGGER.info( "QUICKBUILD CHANGESET: " + jar.m_added + " new, " + jar.m_removed + " removed, " + jar.m_changed + " changed." );
         }
         else
         {
             LOGGER.info( "QUICKBUILD CHANGESET: no changes detected." );
 
         }
-        return agg;
+        return jar;
     }
 
     private boolean checkSumsEquals( SnapshotElement snapshotElement, Handle handle )
@@ -212,4 +264,16 @@ public class DefaultQuickbuild implements Quickbuild
         return snapshotElement.checksum().equals( handle.getIdentification() );
     }
 
+    /**
+     * Content of a new jar with the number of files new, changed and removed against the reference snapshot.
+     */
+    static class JarContent
+    {
+
+        final Map<String, URI> m_entries = new HashMap<String, URI>();
+        int m_added;
+        int m_changed;
+        int m_removed;
+    }
+
 }
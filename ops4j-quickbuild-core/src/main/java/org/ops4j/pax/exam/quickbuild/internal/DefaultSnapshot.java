@@ -5,8 +5,15 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import org.ops4j.pax.exam.quickbuild.QType;
 import org.ops4j.pax.exam.quickbuild.Snapshot;
 import static org.ops4j.pax.exam.quickbuild.internal.DefaultSnapshotBuilder.LINE_DELIM;
 
@@ -22,10 +29,25 @@ public class DefaultSnapshot implements Snapshot
     final private List<SnapshotElement> m_elements;
     final private long m_timestamp;
 
+    /**
+     * Elements by name. Built on first lookup.
+     */
+    private Map<String, SnapshotElement> m_index;
+
+    /**
+     * Elements by type. Built on first lookup.
+     */
+    private Map<QType, List<SnapshotElement>> m_partitions;
+
     public DefaultSnapshot( List<SnapshotElement> elements )
+    {
+        this( elements, System.currentTimeMillis() );
+    }
+
+    public DefaultSnapshot( List<SnapshotElement> elements, long timestamp )
     {
         m_elements = elements;
-        m_timestamp = System.currentTimeMillis();
+        m_timestamp = timestamp;
     }
 
     public long timestamp()
@@ -33,8 +55,65 @@ public class DefaultSnapshot implements Snapshot
         return m_timestamp;
     }
 
+    public SnapshotElement get( String name )
+    {
+        return index().get( name );
+    }
+
+    public synchronized Collection<SnapshotElement> elements( QType type )
+    {
+        index();
+        final List<SnapshotElement> partition = m_partitions.get( type );
+        if( partition == null )
+        {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList( partition );
+    }
+
+    private synchronized Map<String, SnapshotElement> index()
+    {
+        if( m_index == null )
+        {
+            final Map<String, SnapshotElement> index =
+                new HashMap<String, SnapshotElement>( m_elements.size() * 4 / 3 + 1 );
+            final Map<QType, List<SnapshotElement>> partitions =
+                new EnumMap<QType, List<SnapshotElement>>( QType.class );
+            for( SnapshotElement element : m_elements )
+            {
+                index.put( element.name(), element );
+                List<SnapshotElement> partition = partitions.get( element.type() );
+                if( partition == null )
+                {
+                    partition = new ArrayList<SnapshotElement>();
+                    partitions.put( element.type(), partition );
+                }
+                partition.add( element );
+            }
+            m_index = index;
+            m_partitions = partitions;
+        }
+        return m_index;
+    }
+
     public void write( OutputStream out )
         throws IOException
+    {
+        final SnapshotWriter writer = new SnapshotWriter( out, m_timestamp );
+        try
+        {
+            for( SnapshotElement element : m_elements )
+            {
+                writer.write( element );
+            }
+        } finally
+        {
+            writer.close();
+        }
+    }
+
+    public void export( OutputStream out )
+        throws IOException
     {
         BufferedWriter writer = new BufferedWriter( new OutputStreamWriter( out ) );
         try
@@ -1,8 +1,11 @@
 package org.ops4j.pax.exam.quickbuild.internal;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -10,7 +13,6 @@ import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -47,7 +49,10 @@ public class DefaultSnapshotBuilder implements SnapshotBuilder
     {
         try
         {
-            return new DefaultSnapshot( merge( deflate( referenceBuild ), deflate( workFolders ) ) );
+            // both are stored in parallel; the work folder is walked while the jar entries are being stored
+            final ParallelStore reference = deflate( referenceBuild );
+            final Map<String, Handle> dynamic = deflate( workFolders );
+            return new DefaultSnapshot( merge( reference.await(), dynamic ) );
 
         } catch( IOException e )
         {
@@ -103,37 +108,16 @@ public class DefaultSnapshotBuilder implements SnapshotBuilder
     private Map<String, Handle> deflate( File folder )
         throws IOException
     {
-        Map<String, Handle> content = new HashMap<String, Handle>();
-        defl( content, folder.getCanonicalPath(), folder );
-        return content;
-    }
-
-    private void defl( Map<String, Handle> content, String basePath, File folder )
-        throws IOException
-    {
-        for( File f : folder.listFiles() )
-        {
-            if( !f.isHidden() && f.isDirectory() )
-            {
-                defl( content, basePath, f );
-
-            }
-            else if( !f.isHidden() && f.getName().endsWith( ".class" ) )
-            {
-
-                String p = f.getCanonicalPath().replaceAll( "\\\\", "/" );
-                // cut prefix
-                p = p.substring( basePath.length() + 1 );
-                content.put( p, m_store.store( new FileInputStream( f ) ) );
-            }
-        }
+        // only files changed since the folder was last deflated are read again
+        return new FolderIndex( m_store, folder ).deflate();
     }
 
     /**
      * Load Snapshot from disk.
-     * Using format produced by {@link org.ops4j.pax.exam.quickbuild.internal.DefaultSnapshot#write}
+     * Using binary format produced by {@link org.ops4j.pax.exam.quickbuild.internal.DefaultSnapshot#write} or text
+     * format produced by {@link org.ops4j.pax.exam.quickbuild.internal.DefaultSnapshot#export}.
      *
-     * @param load reference to what has been produced by {@link Snapshot#write}
+     * @param load reference to what has been produced by {@link Snapshot#write} or {@link Snapshot#export}
      *
      * @return a snapshot representation of argument load
      *
@@ -141,6 +125,45 @@ public class DefaultSnapshotBuilder implements SnapshotBuilder
      */
     public Snapshot load( InputStream load )
         throws IOException
+    {
+        final BufferedInputStream in = new BufferedInputStream( load );
+        // binary snapshots start with a magic number, anything else is taken as text export
+        final byte[] header = new byte[4];
+        in.mark( header.length );
+        int read = 0;
+        int count;
+        while( read < header.length && ( count = in.read( header, read, header.length - read ) ) != -1 )
+        {
+            read += count;
+        }
+        in.reset();
+        final boolean binary = read == header.length
+                               && new DataInputStream( new ByteArrayInputStream( header ) ).readInt()
+                                  == SnapshotWriter.MAGIC;
+        return binary ? loadBinary( in ) : loadText( in );
+    }
+
+    private Snapshot loadBinary( InputStream load )
+        throws IOException
+    {
+        final SnapshotReader reader = new SnapshotReader( load );
+        final List<SnapshotElement> elements = new ArrayList<SnapshotElement>();
+        try
+        {
+            SnapshotElement element = null;
+            while( ( element = reader.next() ) != null )
+            {
+                elements.add( element );
+            }
+        } finally
+        {
+            reader.close();
+        }
+        return new DefaultSnapshot( elements, reader.timestamp() );
+    }
+
+    private Snapshot loadText( InputStream load )
+        throws IOException
     {
         final BufferedReader reader = new BufferedReader( new InputStreamReader( load ) );
         final List<SnapshotElement> elements = new ArrayList<SnapshotElement>();
@@ -166,18 +189,34 @@ public class DefaultSnapshotBuilder implements SnapshotBuilder
         return new DefaultSnapshot( elements );
     }
 
-    public Map<String, Handle> deflate( InputStream anchor )
+    /**
+     * Reads the entries of a jar, handing them to a {@link ParallelStore}.
+     *
+     * @param anchor jar content
+     *
+     * @return parallel store, to be awaited for the handles of all entries
+     *
+     * @throws IOException problems reading the jar
+     */
+    private ParallelStore deflate( InputStream anchor )
         throws IOException
     {
-        Map<String, Handle> content = new HashMap<String, Handle>();
+        final ParallelStore content = new ParallelStore( m_store );
         ZipInputStream jin = new ZipInputStream( anchor );
-        //while ()
+        final byte[] buffer = new byte[8192];
 
         ZipEntry entry = null;
         while( ( entry = jin.getNextEntry() ) != null )
         {
-            Handle handle = m_store.store( jin );
-            content.put( entry.getName(), handle );
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                entry.getSize() > 0 ? (int) entry.getSize() : buffer.length
+            );
+            int read;
+            while( ( read = jin.read( buffer ) ) != -1 )
+            {
+                bytes.write( buffer, 0, read );
+            }
+            content.store( entry.getName(), bytes.toByteArray() );
         }
         return content;
     }
@@ -0,0 +1,363 @@
+package org.ops4j.pax.exam.quickbuild.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.store.Handle;
+import org.ops4j.store.Store;
+
+/**
+ * Stores the class files of a folder, remembering path, size, last modification time and store handle of each file
+ * in an index file. Files whose size and modification time did not change since the index was written are not read
+ * again, their handle is taken from the index.
+ * A file rewritten with the same size within the resolution of modification times keeps its modification time, so
+ * for files modified shortly before they were indexed the SHA-1 of the stored content is kept as well. Such files are
+ * read again and only reused if their content still has that hash.
+ *
+ * @author Toni Menzel
+ * @since 1.2.3
+ */
+class FolderIndex
+{
+
+    private static final Log LOG = LogFactory.getLog( FolderIndex.class );
+
+    private static final String CLASS_EXTENSION = ".class";
+
+    /**
+     * Coarsest resolution of file modification times (FAT), in millis.
+     */
+    private static final long MTIME_RESOLUTION = 2000;
+
+    final private Store<InputStream> m_store;
+    final private File m_folder;
+    final private File m_indexFile;
+
+    /**
+     * Creates an index kept in the folder of the store, one per folder.
+     *
+     * @param store  store where files are stored
+     * @param folder folder to be indexed
+     *
+     * @throws IOException if the folder of the store cannot be determined
+     */
+    FolderIndex( Store<InputStream> store, File folder )
+        throws IOException
+    {
+        this( store, folder, new File(
+            getStoreFolder( store ), "quickbuild-" + hash( folder.getAbsolutePath() ) + ".index"
+        )
+        );
+    }
+
+    /**
+     * @param store     store where files are stored
+     * @param folder    folder to be indexed
+     * @param indexFile file where the index is kept
+     */
+    FolderIndex( Store<InputStream> store, File folder, File indexFile )
+    {
+        m_store = store;
+        m_folder = folder;
+        m_indexFile = indexFile;
+    }
+
+    /**
+     * Stores all (not hidden) class files of the folder, reusing the stored content of unchanged files.
+     *
+     * @return store handles by path relative to folder (using "/" as separator)
+     *
+     * @throws IOException problems reading or storing files
+     */
+    Map<String, Handle> deflate()
+        throws IOException
+    {
+        final Properties previous = load();
+        final Properties current = new Properties();
+        final Map<String, Handle> content = new HashMap<String, Handle>();
+        // changed files are stored in parallel, with their metadata kept till their handle is known
+        final ParallelStore changed = new ParallelStore( m_store );
+        final Map<String, String> changedMetadata = new HashMap<String, String>();
+        // content hashes of changed files whose modification time may not change on a following rewrite
+        final Map<String, String> changedHashes = new HashMap<String, String>();
+        final long racyFrom = System.currentTimeMillis() - MTIME_RESOLUTION;
+
+        // walk the tree without recursion, keeping relative paths along with folders
+        final LinkedList<File> folders = new LinkedList<File>();
+        final LinkedList<String> prefixes = new LinkedList<String>();
+        folders.add( m_folder );
+        prefixes.add( "" );
+        while( !folders.isEmpty() )
+        {
+            final File folder = folders.removeFirst();
+            final String prefix = prefixes.removeFirst();
+            final File[] children = folder.listFiles();
+            if( children == null )
+            {
+                continue;
+            }
+            for( File f : children )
+            {
+                if( f.isHidden() )
+                {
+                    continue;
+                }
+                if( f.isDirectory() )
+                {
+                    folders.add( f );
+                    prefixes.add( prefix + f.getName() + "/" );
+                }
+                else if( f.getName().endsWith( CLASS_EXTENSION ) )
+                {
+                    final String path = prefix + f.getName();
+                    final long lastModified = f.lastModified();
+                    final String metadata = f.length() + "," + lastModified + ",";
+                    final String entry = previous.getProperty( path );
+                    final Handle handle = reuse( entry, metadata, f );
+                    if( handle == null )
+                    {
+                        if( lastModified >= racyFrom )
+                        {
+                            // hash exactly the content that is stored
+                            final byte[] bytes = read( f );
+                            changed.store( path, bytes );
+                            changedHashes.put( path, sha1( bytes ) );
+                        }
+                        else
+                        {
+                            changed.store( path, f );
+                        }
+                        changedMetadata.put( path, metadata );
+                    }
+                    else
+                    {
+                        content.put( path, handle );
+                        current.setProperty( path, entry );
+                    }
+                }
+            }
+        }
+        for( Map.Entry<String, Handle> entry : changed.await().entrySet() )
+        {
+            content.put( entry.getKey(), entry.getValue() );
+            final String hash = changedHashes.get( entry.getKey() );
+            current.setProperty(
+                entry.getKey(), changedMetadata.get( entry.getKey() ) + entry.getValue().getIdentification()
+                                + ( hash != null ? "," + hash : "" )
+            );
+        }
+        if( !changedMetadata.isEmpty() || !current.equals( previous ) )
+        {
+            save( current );
+        }
+        LOG.debug(
+            "Indexed " + content.size() + " class files of " + m_folder + ", " + changedMetadata.size()
+            + " of them changed"
+        );
+        return content;
+    }
+
+    /**
+     * Creates a handle out of an index entry if the file metadata did not change and content is still in store.
+     * If the entry keeps a content hash the file content must have that hash as well.
+     *
+     * @param entry    index entry (size,lastModified,identification[,hash]) or null if file was not indexed
+     * @param metadata current file metadata (size,lastModified,)
+     * @param file     indexed file
+     *
+     * @return handle of stored content or null if file has to be stored again
+     *
+     * @throws IOException problems reading the file
+     */
+    private Handle reuse( String entry, String metadata, File file )
+        throws IOException
+    {
+        if( entry == null || !entry.startsWith( metadata ) )
+        {
+            return null;
+        }
+        String identification = entry.substring( metadata.length() );
+        final int hashStart = identification.indexOf( ',' );
+        if( hashStart >= 0 )
+        {
+            if( !identification.substring( hashStart + 1 ).equals( sha1( read( file ) ) ) )
+            {
+                LOG.debug( "Content of " + file + " changed without changing size and modification time" );
+                return null;
+            }
+            identification = identification.substring( 0, hashStart );
+        }
+        final Handle handle = new IndexedHandle( identification );
+        try
+        {
+            if( new File( m_store.getLocation( handle ) ).exists() )
+            {
+                return handle;
+            }
+        } catch( Exception e )
+        {
+            LOG.debug( "Indexed content cannot be located: " + e.getMessage() );
+        }
+        return null;
+    }
+
+    private Properties load()
+    {
+        final Properties index = new Properties();
+        if( m_indexFile.exists() )
+        {
+            try
+            {
+                final InputStream in = new FileInputStream( m_indexFile );
+                try
+                {
+                    index.load( in );
+                } finally
+                {
+                    in.close();
+                }
+            } catch( IOException e )
+            {
+                LOG.warn( "Cannot read quickbuild index " + m_indexFile + ": " + e.getMessage() );
+                index.clear();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Writes the index to a temporary file that is then renamed, so a partially written index is never read.
+     *
+     * @param index index to be written
+     */
+    private void save( Properties index )
+    {
+        try
+        {
+            m_indexFile.getParentFile().mkdirs();
+            final File temp = File.createTempFile( "quickbuild", ".tmp", m_indexFile.getParentFile() );
+            final OutputStream out = new FileOutputStream( temp );
+            try
+            {
+                index.store( out, "Quickbuild index of " + m_folder.getAbsolutePath() );
+            } finally
+            {
+                out.close();
+            }
+            if( !temp.renameTo( m_indexFile ) )
+            {
+                m_indexFile.delete();
+                if( !temp.renameTo( m_indexFile ) )
+                {
+                    temp.delete();
+                    LOG.warn( "Cannot write quickbuild index " + m_indexFile );
+                }
+            }
+        } catch( IOException e )
+        {
+            LOG.warn( "Cannot write quickbuild index " + m_indexFile + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Determines the folder a store keeps its content in, from the location of an (empty) stored entry, so the index
+     * follows the store wherever it is.
+     */
+    private static File getStoreFolder( Store<InputStream> store )
+        throws IOException
+    {
+        final Handle handle = store.store( new ByteArrayInputStream( new byte[0] ) );
+        return new File( store.getLocation( handle ) ).getParentFile();
+    }
+
+    private static byte[] read( File file )
+        throws IOException
+    {
+        final InputStream in = new FileInputStream( file );
+        try
+        {
+            final byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while( read < bytes.length )
+            {
+                final int count = in.read( bytes, read, bytes.length - read );
+                if( count < 0 )
+                {
+                    throw new IOException( "Unexpected end of " + file );
+                }
+                read += count;
+            }
+            return bytes;
+        } finally
+        {
+            in.close();
+        }
+    }
+
+    private static String hash( String value )
+    {
+        try
+        {
+            return sha1( value.getBytes( "UTF-8" ) );
+        } catch( IOException e )
+        {
+            return Integer.toHexString( value.hashCode() );
+        }
+    }
+
+    /**
+     * @return SHA-1 of bytes as lower case hex string
+     *
+     * @throws IOException if SHA-1 is not available
+     */
+    private static String sha1( byte[] bytes )
+        throws IOException
+    {
+        try
+        {
+            final byte[] digest = MessageDigest.getInstance( "SHA-1" ).digest( bytes );
+            final StringBuilder hex = new StringBuilder();
+            for( byte b : digest )
+            {
+                hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+            }
+            return hex.toString();
+        } catch( NoSuchAlgorithmException e )
+        {
+            final IOException failure = new IOException( "SHA-1 not available" );
+            failure.initCause( e );
+            throw failure;
+        }
+    }
+
+    /**
+     * Handle of content already in store, re-created out of its identification.
+     */
+    private static class IndexedHandle implements Handle
+    {
+
+        final private String m_identification;
+
+        IndexedHandle( String identification )
+        {
+            m_identification = identification;
+        }
+
+        public String getIdentification()
+        {
+            return m_identification;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.ops4j.pax.exam.quickbuild.internal;
+
+import java.net.URI;
+import org.ops4j.pax.exam.quickbuild.QType;
+import org.ops4j.pax.exam.quickbuild.SnapshotElement;
+
+/**
+ * Snapshot element as read by {@link SnapshotReader}, keeping the checksum as digest and the reference as shared
+ * folder plus tail until they are asked for.
+ *
+ * @since 1.2.3
+ */
+class PackedSnapshotElement implements SnapshotElement
+{
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    final private String m_name;
+    final private QType m_type;
+    final private byte[] m_digest;
+    final private String m_referenceFolder;
+    final private String m_referenceTail;
+    final private String m_referenceSuffix;
+    private String m_checksum;
+    private URI m_reference;
+
+    /**
+     * @param name            element name
+     * @param type            element type
+     * @param digest          checksum as digest or null if checksum is given as text
+     * @param checksum        checksum as text or null if given as digest
+     * @param referenceFolder folder part of reference
+     * @param referenceTail   rest of reference or, if the rest contains the checksum, the part before the checksum
+     * @param referenceSuffix part of reference after the checksum or null if reference does not contain the checksum
+     */
+    PackedSnapshotElement( String name, QType type, byte[] digest, String checksum, String referenceFolder,
+                           String referenceTail, String referenceSuffix )
+    {
+        m_name = name;
+        m_type = type;
+        m_digest = digest;
+        m_checksum = checksum;
+        m_referenceFolder = referenceFolder;
+        m_referenceTail = referenceTail;
+        m_referenceSuffix = referenceSuffix;
+    }
+
+    public String name()
+    {
+        return m_name;
+    }
+
+    public URI reference()
+    {
+        if( m_reference == null )
+        {
+            m_reference = URI.create(
+                m_referenceFolder + m_referenceTail + ( m_referenceSuffix != null ? checksum() + m_referenceSuffix : "" )
+            );
+        }
+        return m_reference;
+    }
+
+    public String checksum()
+    {
+        if( m_checksum == null )
+        {
+            final char[] hex = new char[m_digest.length * 2];
+            for( int i = 0; i < m_digest.length; i++ )
+            {
+                hex[ i * 2 ] = HEX[ ( m_digest[ i ] >> 4 ) & 0x0F ];
+                hex[ i * 2 + 1 ] = HEX[ m_digest[ i ] & 0x0F ];
+            }
+            m_checksum = new String( hex );
+        }
+        return m_checksum;
+    }
+
+    public QType type()
+    {
+        return m_type;
+    }
+}
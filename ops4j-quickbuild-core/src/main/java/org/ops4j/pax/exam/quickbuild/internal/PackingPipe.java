@@ -0,0 +1,77 @@
+package org.ops4j.pax.exam.quickbuild.internal;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+
+/**
+ * Pipe the packed jar is read from while it is being written by another thread.
+ * Uses a bigger buffer than the default 1 KB one and reports failures of the writing side to the reader, at the end
+ * of the stream, instead of a silently truncated jar.
+ *
+ * @since 1.2.3
+ */
+class PackingPipe extends PipedInputStream
+{
+
+    /**
+     * Pipe buffer size.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Failure of the writing side. Null while successful.
+     */
+    private volatile Throwable m_failure;
+
+    PackingPipe()
+    {
+        // the buffer size cannot be set via constructor before java 6
+        buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Marks the content as failed. Has to be called before the writing side closes the pipe.
+     *
+     * @param failure failure of the writing side
+     */
+    void fail( Throwable failure )
+    {
+        m_failure = failure;
+    }
+
+    @Override
+    public synchronized int read()
+        throws IOException
+    {
+        final int read = super.read();
+        if( read == -1 )
+        {
+            checkFailure();
+        }
+        return read;
+    }
+
+    @Override
+    public synchronized int read( byte[] b, int off, int len )
+        throws IOException
+    {
+        final int read = super.read( b, off, len );
+        if( read == -1 )
+        {
+            checkFailure();
+        }
+        return read;
+    }
+
+    private void checkFailure()
+        throws IOException
+    {
+        final Throwable failure = m_failure;
+        if( failure != null )
+        {
+            final IOException e = new IOException( "Packing the jar failed: " + failure.getMessage() );
+            e.initCause( failure );
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.ops4j.pax.exam.quickbuild.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import org.ops4j.store.Handle;
+import org.ops4j.store.Store;
+
+/**
+ * Stores content into a {@link Store} using one thread per processor, as hashing and writing content is what takes
+ * time when deflating big jars and folders. Content is collected by name into a concurrent map.
+ * The number of pending contents is bounded, so the producer cannot read a whole jar in memory ahead of the threads.
+ *
+ * Must not be used from within its own threads.
+ *
+ * @since 1.2.3
+ */
+class ParallelStore
+{
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Max number of contents waiting to be stored.
+     */
+    static final int MAX_PENDING = THREADS * 4;
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool( THREADS, new ThreadFactory()
+    {
+        public Thread newThread( Runnable runnable )
+        {
+            final Thread thread = new Thread( runnable, "quickbuild-store" );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+    );
+
+    final private Store<InputStream> m_store;
+    final private Map<String, Handle> m_content;
+    final private List<Future<?>> m_tasks;
+    final private Semaphore m_pending;
+
+    ParallelStore( Store<InputStream> store )
+    {
+        m_store = store;
+        m_content = new ConcurrentHashMap<String, Handle>();
+        m_tasks = new ArrayList<Future<?>>();
+        m_pending = new Semaphore( MAX_PENDING );
+    }
+
+    /**
+     * Stores in-memory content in background.
+     *
+     * @param name    content name
+     * @param content content
+     *
+     * @throws IOException if interrupted while waiting for pending contents to be stored
+     */
+    void store( String name, final byte[] content )
+        throws IOException
+    {
+        submit( name, new Callable<Handle>()
+        {
+            public Handle call()
+                throws IOException
+            {
+                return m_store.store( new ByteArrayInputStream( content ) );
+            }
+        }
+        );
+    }
+
+    /**
+     * Stores the content of a file in background.
+     *
+     * @param name content name
+     * @param file file to be stored
+     *
+     * @throws IOException if interrupted while waiting for pending contents to be stored
+     */
+    void store( String name, final File file )
+        throws IOException
+    {
+        submit( name, new Callable<Handle>()
+        {
+            public Handle call()
+                throws IOException
+            {
+                final InputStream in = new FileInputStream( file );
+                try
+                {
+                    return m_store.store( in );
+                } finally
+                {
+                    in.close();
+                }
+            }
+        }
+        );
+    }
+
+    private void submit( final String name, final Callable<Handle> task )
+        throws IOException
+    {
+        try
+        {
+            m_pending.acquire();
+        } catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while storing " + name );
+        }
+        m_tasks.add( POOL.submit( new Callable<Object>()
+        {
+            public Object call()
+                throws Exception
+            {
+                try
+                {
+                    m_content.put( name, task.call() );
+                    return null;
+                } finally
+                {
+                    m_pending.release();
+                }
+            }
+        }
+        )
+        );
+    }
+
+    /**
+     * Waits for all contents to be stored.
+     *
+     * @return handles by content name
+     *
+     * @throws IOException if any content could not be stored
+     */
+    Map<String, Handle> await()
+        throws IOException
+    {
+        try
+        {
+            for( Future<?> task : m_tasks )
+            {
+                task.get();
+            }
+        } catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for contents to be stored" );
+        } catch( ExecutionException e )
+        {
+            if( e.getCause() instanceof IOException )
+            {
+                throw (IOException) e.getCause();
+            }
+            final IOException failure = new IOException( "Content cannot be stored: " + e.getCause().getMessage() );
+            failure.initCause( e.getCause() );
+            throw failure;
+        } finally
+        {
+            m_tasks.clear();
+        }
+        return m_content;
+    }
+}
@@ -0,0 +1,127 @@
+package org.ops4j.pax.exam.quickbuild.internal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.ops4j.pax.exam.quickbuild.QType;
+import org.ops4j.pax.exam.quickbuild.SnapshotElement;
+
+import static org.ops4j.pax.exam.quickbuild.internal.SnapshotWriter.*;
+
+/**
+ * Reads snapshot elements one by one, as written by {@link SnapshotWriter}.
+ * Folders of names and references are shared between elements; checksums and references are only turned into
+ * strings and uris when asked for.
+ *
+ * @since 1.2.3
+ */
+class SnapshotReader
+{
+
+    private static final QType[] TYPES = QType.values();
+
+    final private DataInputStream m_in;
+    final private List<String> m_folders;
+    final private long m_timestamp;
+
+    /**
+     * Reads the header.
+     *
+     * @param in where to read from
+     *
+     * @throws IOException if not a snapshot in a supported version or problems reading
+     */
+    SnapshotReader( InputStream in )
+        throws IOException
+    {
+        m_in = new DataInputStream( new BufferedInputStream( in, 64 * 1024 ) );
+        m_folders = new ArrayList<String>();
+        if( m_in.readInt() != MAGIC )
+        {
+            throw new IOException( "Not a binary quickbuild snapshot" );
+        }
+        final byte version = m_in.readByte();
+        if( version != VERSION )
+        {
+            throw new IOException( "Unsupported quickbuild snapshot version " + version );
+        }
+        m_timestamp = m_in.readLong();
+    }
+
+    long timestamp()
+    {
+        return m_timestamp;
+    }
+
+    /**
+     * @return next element or null if all elements have been read
+     *
+     * @throws IOException problems reading or corrupt snapshot
+     */
+    SnapshotElement next()
+        throws IOException
+    {
+        final byte flags = m_in.readByte();
+        if( flags == END )
+        {
+            return null;
+        }
+        final int type = flags & TYPE_MASK;
+        if( type >= TYPES.length )
+        {
+            throw new IOException( "Corrupt quickbuild snapshot: unknown type " + type );
+        }
+        final String name = readFolder() + m_in.readUTF();
+        byte[] digest = null;
+        String checksum = null;
+        if( ( flags & TEXT_CHECKSUM ) != 0 )
+        {
+            checksum = m_in.readUTF();
+        }
+        else
+        {
+            digest = new byte[DIGEST_LENGTH];
+            m_in.readFully( digest );
+        }
+        final String referenceFolder = readFolder();
+        final String referenceTail;
+        final String referenceSuffix;
+        if( ( flags & TAIL_HAS_CHECKSUM ) != 0 )
+        {
+            referenceTail = readFolder();
+            referenceSuffix = readFolder();
+        }
+        else
+        {
+            referenceTail = m_in.readUTF();
+            referenceSuffix = null;
+        }
+        return new PackedSnapshotElement(
+            name, TYPES[ type ], digest, checksum, referenceFolder, referenceTail, referenceSuffix
+        );
+    }
+
+    void close()
+        throws IOException
+    {
+        m_in.close();
+    }
+
+    private String readFolder()
+        throws IOException
+    {
+        final int index = m_in.readInt();
+        if( index == m_folders.size() )
+        {
+            m_folders.add( m_in.readUTF() );
+        }
+        else if( index < 0 || index > m_folders.size() )
+        {
+            throw new IOException( "Corrupt quickbuild snapshot: unknown folder " + index );
+        }
+        return m_folders.get( index );
+    }
+}
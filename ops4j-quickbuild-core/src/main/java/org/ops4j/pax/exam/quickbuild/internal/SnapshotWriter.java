@@ -0,0 +1,165 @@
+package org.ops4j.pax.exam.quickbuild.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import org.ops4j.pax.exam.quickbuild.SnapshotElement;
+
+/**
+ * Writes snapshot elements one by one in the binary snapshot format read by {@link SnapshotReader}.
+ *
+ * The format starts with a magic number, a version byte and the snapshot timestamp, followed by the elements and an
+ * end marker. Each element is a flags byte (type ordinal and how checksum and reference are stored), its name, its
+ * checksum as fixed-width 20 bytes SHA-1 digest (or as text if not a SHA-1 hex string) and its reference.
+ * Names and references are split at their last "/"; the folder part is written once, the first time it is used, and
+ * referred to by index afterwards. If the tail of a reference contains the checksum, as store locations of the form
+ * tinybundles_&lt;checksum&gt;.bin do, only the parts before and after the checksum are written, the same way as
+ * folders.
+ *
+ * @since 1.2.3
+ */
+class SnapshotWriter
+{
+
+    static final int MAGIC = 0x51425353;
+    static final byte VERSION = 1;
+
+    static final int TYPE_MASK = 0x0F;
+    static final int TEXT_CHECKSUM = 0x10;
+    static final int TAIL_HAS_CHECKSUM = 0x20;
+    static final byte END = (byte) 0xFF;
+
+    static final int DIGEST_LENGTH = 20;
+
+    final private DataOutputStream m_out;
+    final private Map<String, Integer> m_folders;
+
+    /**
+     * Writes the header.
+     *
+     * @param out       where to write
+     * @param timestamp snapshot timestamp
+     *
+     * @throws IOException problems writing
+     */
+    SnapshotWriter( OutputStream out, long timestamp )
+        throws IOException
+    {
+        m_out = new DataOutputStream( new BufferedOutputStream( out, 64 * 1024 ) );
+        m_folders = new HashMap<String, Integer>();
+        m_out.writeInt( MAGIC );
+        m_out.writeByte( VERSION );
+        m_out.writeLong( timestamp );
+    }
+
+    void write( SnapshotElement element )
+        throws IOException
+    {
+        final String checksum = element.checksum();
+        final String reference = element.reference().toString();
+        final int split = reference.lastIndexOf( '/' ) + 1;
+        final boolean digest = isDigest( checksum );
+        final int checksumStart = checksum.length() > 0 ? reference.indexOf( checksum, split ) : -1;
+
+        int flags = element.type().ordinal();
+        if( !digest )
+        {
+            flags |= TEXT_CHECKSUM;
+        }
+        if( checksumStart >= 0 )
+        {
+            flags |= TAIL_HAS_CHECKSUM;
+        }
+        m_out.writeByte( flags );
+        writeSplit( element.name(), element.name().lastIndexOf( '/' ) + 1 );
+        if( digest )
+        {
+            for( int i = 0; i < checksum.length(); i += 2 )
+            {
+                m_out.writeByte( Character.digit( checksum.charAt( i ), 16 ) << 4
+                                 | Character.digit( checksum.charAt( i + 1 ), 16 )
+                );
+            }
+        }
+        else
+        {
+            m_out.writeUTF( checksum );
+        }
+        if( checksumStart >= 0 )
+        {
+            writeFolder( reference.substring( 0, split ) );
+            writeFolder( reference.substring( split, checksumStart ) );
+            writeFolder( reference.substring( checksumStart + checksum.length() ) );
+        }
+        else
+        {
+            writeSplit( reference, split );
+        }
+    }
+
+    /**
+     * Writes the end marker and closes the underlying stream.
+     *
+     * @throws IOException problems writing
+     */
+    void close()
+        throws IOException
+    {
+        try
+        {
+            m_out.writeByte( END );
+        } finally
+        {
+            m_out.close();
+        }
+    }
+
+    private void writeSplit( String value, int split )
+        throws IOException
+    {
+        writeFolder( value.substring( 0, split ) );
+        m_out.writeUTF( value.substring( split ) );
+    }
+
+    /**
+     * Writes the index of a folder, followed by the folder itself if it is written for the first time.
+     */
+    private void writeFolder( String folder )
+        throws IOException
+    {
+        final Integer index = m_folders.get( folder );
+        if( index != null )
+        {
+            m_out.writeInt( index );
+        }
+        else
+        {
+            m_out.writeInt( m_folders.size() );
+            m_out.writeUTF( folder );
+            m_folders.put( folder, m_folders.size() );
+        }
+    }
+
+    /**
+     * @return true if checksum is a lower case SHA-1 hex string
+     */
+    private static boolean isDigest( String checksum )
+    {
+        if( checksum.length() != DIGEST_LENGTH * 2 )
+        {
+            return false;
+        }
+        for( int i = 0; i < checksum.length(); i++ )
+        {
+            final char c = checksum.charAt( i );
+            if( ( c < '0' || c > '9' ) && ( c < 'a' || c > 'f' ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,217 @@
+package org.ops4j.pax.exam.quickbuild.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.exam.quickbuild.QType;
+import org.ops4j.pax.exam.quickbuild.Snapshot;
+import org.ops4j.pax.exam.quickbuild.SnapshotElement;
+import org.ops4j.store.Handle;
+import org.ops4j.store.Store;
+import org.ops4j.store.StoreFactory;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for the calculation of the new jar content by {@link DefaultQuickbuild}.
+ *
+ * @since 1.2.3
+ */
+public class DefaultQuickbuildTest
+{
+
+    private File m_external;
+    private Store<InputStream> m_store;
+    private DefaultQuickbuild m_quickbuild;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_external = File.createTempFile( "quickbuild", "" );
+        m_external.delete();
+        m_external.mkdirs();
+        m_store = StoreFactory.anonymousStore();
+        m_quickbuild = new DefaultQuickbuild( m_store );
+    }
+
+    @After
+    public void tearDown()
+    {
+        final File[] files = m_external.listFiles();
+        if( files != null )
+        {
+            for( File file : files )
+            {
+                file.delete();
+            }
+        }
+        m_external.delete();
+    }
+
+    /**
+     * Test new, changed and removed files and the jar content, including an imported element replaced by folder
+     * content and an excluded element present in the folder, against the calculation before the snapshot lookups.
+     */
+    @Test
+    public void jarContent()
+        throws IOException
+    {
+        final List<SnapshotElement> elements = new ArrayList<SnapshotElement>();
+        elements.add( own( "org/foo/Unchanged.class", "unchanged" ) );
+        elements.add( own( "org/foo/Changed.class", "before" ) );
+        elements.add( own( "org/foo/Removed.class", "removed" ) );
+        elements.add( external( "org/bar/Imported.class", "imported", QType.IMPORTED ) );
+        elements.add( external( "org/bar/Overridden.class", "imported", QType.IMPORTED ) );
+        elements.add( external( "org/baz/Excluded.class", "excluded", QType.EXCLUDED ) );
+        elements.add( external( "org/baz/Shadowed.class", "excluded", QType.EXCLUDED ) );
+        final Snapshot snapshot = new DefaultSnapshot( elements );
+
+        final Map<String, Handle> folder = new HashMap<String, Handle>();
+        folder.put( "org/foo/Unchanged.class", store( "unchanged" ) );
+        folder.put( "org/foo/Changed.class", store( "after" ) );
+        folder.put( "org/foo/New.class", store( "new" ) );
+        folder.put( "org/bar/Overridden.class", store( "overriding" ) );
+        folder.put( "org/baz/Shadowed.class", store( "shadowing" ) );
+        final Map<String, Handle> folderBefore = new HashMap<String, Handle>( folder );
+
+        final DefaultQuickbuild.JarContent jar = m_quickbuild.calculateNewJarContent( snapshot, folder );
+        assertThat( "Folder content unchanged", folder, is( equalTo( folderBefore ) ) );
+        assertThat( "New", jar.m_added, is( equalTo( 1 ) ) );
+        assertThat( "Changed", jar.m_changed, is( equalTo( 1 ) ) );
+        assertThat( "Removed", jar.m_removed, is( equalTo( 1 ) ) );
+
+        final Map<String, String> content = pack( jar.m_entries );
+        final Map<String, String> expected = new HashMap<String, String>();
+        expected.put( "org/foo/Unchanged.class", "unchanged" );
+        expected.put( "org/foo/Changed.class", "after" );
+        expected.put( "org/foo/New.class", "new" );
+        expected.put( "org/bar/Imported.class", "imported" );
+        expected.put( "org/bar/Overridden.class", "overriding" );
+        expected.put( "org/baz/Excluded.class", "excluded" );
+        assertThat( "Jar content", content, is( equalTo( expected ) ) );
+
+        final DefaultQuickbuild.JarContent previous = previousJarContent( snapshot, folderBefore );
+        assertThat( "New as before", jar.m_added, is( equalTo( previous.m_added ) ) );
+        assertThat( "Changed as before", jar.m_changed, is( equalTo( previous.m_changed ) ) );
+        assertThat( "Removed as before", jar.m_removed, is( equalTo( previous.m_removed ) ) );
+        assertThat( "Jar content as before", jar.m_entries, is( equalTo( previous.m_entries ) ) );
+    }
+
+    /**
+     * Calculation of the new jar content as done before the snapshot offered lookups by name and type: walks all
+     * snapshot elements, removing matched folder content, and takes the rest of the folder content as new.
+     */
+    private DefaultQuickbuild.JarContent previousJarContent( Snapshot snapshot, Map<String, Handle> folder )
+        throws IOException
+    {
+        final Map<String, Handle> contentMap = new HashMap<String, Handle>( folder );
+        final DefaultQuickbuild.JarContent jar = new DefaultQuickbuild.JarContent();
+        for( SnapshotElement snapshotElement : snapshot )
+        {
+            if( !contentMap.containsKey( snapshotElement.name() ) )
+            {
+                if( snapshotElement.type() == QType.OWN )
+                {
+                    jar.m_removed++;
+                }
+                else
+                {
+                    jar.m_entries.put( snapshotElement.name(), snapshotElement.reference() );
+                }
+            }
+            else
+            {
+                if( snapshotElement.type() != QType.EXCLUDED )
+                {
+                    final Handle handle = contentMap.get( snapshotElement.name() );
+                    if( snapshotElement.type() == QType.OWN
+                        && !snapshotElement.checksum().equals( handle.getIdentification() ) )
+                    {
+                        jar.m_changed++;
+                    }
+                    jar.m_entries.put( snapshotElement.name(), m_store.getLocation( handle ) );
+                }
+                contentMap.remove( snapshotElement.name() );
+            }
+        }
+        for( String name : contentMap.keySet() )
+        {
+            jar.m_entries.put( name, m_store.getLocation( contentMap.get( name ) ) );
+            jar.m_added++;
+        }
+        return jar;
+    }
+
+    private SnapshotElement own( String name, String content )
+        throws IOException
+    {
+        final Handle handle = store( content );
+        return new DefaultSnapshotElement( name, m_store.getLocation( handle ), QType.OWN, handle.getIdentification() );
+    }
+
+    private SnapshotElement external( String name, String content, QType type )
+        throws IOException
+    {
+        final File file = new File( m_external, name.replace( '/', '_' ) );
+        final FileOutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content.getBytes() );
+        } finally
+        {
+            out.close();
+        }
+        return new DefaultSnapshotElement( name, file.toURI(), type, "external" );
+    }
+
+    private Handle store( String content )
+        throws IOException
+    {
+        return m_store.store( new ByteArrayInputStream( content.getBytes() ) );
+    }
+
+    /**
+     * Packs the entries and reads the content of each jar entry back.
+     */
+    private Map<String, String> pack( Map<String, URI> entries )
+        throws IOException
+    {
+        final ByteArrayOutputStream jar = new ByteArrayOutputStream();
+        m_quickbuild.pack( entries, jar );
+        final Map<String, String> content = new HashMap<String, String>();
+        final JarInputStream in = new JarInputStream( new ByteArrayInputStream( jar.toByteArray() ) );
+        try
+        {
+            JarEntry entry;
+            while( ( entry = in.getNextJarEntry() ) != null )
+            {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                int read;
+                while( ( read = in.read() ) != -1 )
+                {
+                    out.write( read );
+                }
+                content.put( entry.getName(), new String( out.toByteArray() ) );
+            }
+        } finally
+        {
+            in.close();
+        }
+        return content;
+    }
+}
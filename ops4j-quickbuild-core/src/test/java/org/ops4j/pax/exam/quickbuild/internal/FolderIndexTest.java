@@ -0,0 +1,143 @@
+package org.ops4j.pax.exam.quickbuild.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.store.Handle;
+import org.ops4j.store.Store;
+import org.ops4j.store.StoreFactory;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for {@link FolderIndex}.
+ *
+ * @since 1.2.3
+ */
+public class FolderIndexTest
+{
+
+    private File m_folder;
+    private File m_indexFile;
+    private Store<InputStream> m_store;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_folder = File.createTempFile( "quickbuild", "" );
+        m_folder.delete();
+        m_folder.mkdirs();
+        m_indexFile = new File( m_folder.getParentFile(), m_folder.getName() + ".index" );
+        m_store = StoreFactory.anonymousStore();
+    }
+
+    @After
+    public void tearDown()
+    {
+        delete( m_folder );
+        m_indexFile.delete();
+    }
+
+    /**
+     * Test that unchanged files keep their handle and that a changed file gets a new one.
+     */
+    @Test
+    public void changedFiles()
+        throws IOException
+    {
+        final long old = System.currentTimeMillis() - 60000;
+        write( "org/foo/Bar.class", "bar", old );
+        write( "org/foo/Baz.class", "baz", old );
+        write( "org/foo/readme.txt", "not a class", old );
+        final Map<String, Handle> first = index().deflate();
+        assertThat( "Class files", first.keySet().size(), is( equalTo( 2 ) ) );
+
+        write( "org/foo/Baz.class", "changed", old + 1000 );
+        final Map<String, Handle> second = index().deflate();
+        assertThat( "Unchanged", id( second, "org/foo/Bar.class" ), is( equalTo( id( first, "org/foo/Bar.class" ) ) ) );
+        assertThat( "Changed", id( second, "org/foo/Baz.class" ), is( not( equalTo( id( first, "org/foo/Baz.class" ) ) ) ) );
+    }
+
+    /**
+     * Test that a recently modified file rewritten with the same size and modification time is stored again.
+     */
+    @Test
+    public void rewriteWithinModificationTimeResolution()
+        throws IOException
+    {
+        final long now = System.currentTimeMillis() / 1000 * 1000;
+        write( "org/foo/Bar.class", "first", now );
+        final Map<String, Handle> first = index().deflate();
+        assertThat( "Same content", id( index().deflate(), "org/foo/Bar.class" ), is( equalTo( id( first, "org/foo/Bar.class" ) ) ) );
+
+        write( "org/foo/Bar.class", "other", now );
+        final Map<String, Handle> second = index().deflate();
+        assertThat( "Rewritten", id( second, "org/foo/Bar.class" ), is( not( equalTo( id( first, "org/foo/Bar.class" ) ) ) ) );
+        assertThat( "Content", read( second.get( "org/foo/Bar.class" ) ), is( equalTo( "other" ) ) );
+    }
+
+    private FolderIndex index()
+    {
+        return new FolderIndex( m_store, m_folder, m_indexFile );
+    }
+
+    private String read( Handle handle )
+        throws IOException
+    {
+        final InputStream in = m_store.load( handle );
+        try
+        {
+            final StringBuilder content = new StringBuilder();
+            int c;
+            while( ( c = in.read() ) != -1 )
+            {
+                content.append( (char) c );
+            }
+            return content.toString();
+        } finally
+        {
+            in.close();
+        }
+    }
+
+    private void write( String path, String content, long lastModified )
+        throws IOException
+    {
+        final File file = new File( m_folder, path );
+        file.getParentFile().mkdirs();
+        final FileOutputStream out = new FileOutputStream( file );
+        try
+        {
+            out.write( content.getBytes( "UTF-8" ) );
+        } finally
+        {
+            out.close();
+        }
+        file.setLastModified( lastModified );
+    }
+
+    private static String id( Map<String, Handle> content, String path )
+    {
+        return content.get( path ).getIdentification();
+    }
+
+    private static void delete( File file )
+    {
+        final File[] children = file.listFiles();
+        if( children != null )
+        {
+            for( File child : children )
+            {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,133 @@
+package org.ops4j.pax.exam.quickbuild.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedOutputStream;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for {@link PackingPipe}, written by another thread as while packing a jar.
+ *
+ * @since 1.2.3
+ */
+public class PackingPipeTest
+{
+
+    /**
+     * Test that content bigger than the pipe buffer arrives unchanged when packing succeeds.
+     */
+    @Test
+    public void success()
+        throws Exception
+    {
+        final byte[] content = content( PackingPipe.BUFFER_SIZE * 3 + 7 );
+        final PackingPipe pipe = pack( content, null );
+        assertThat( "Content", readFully( pipe ), is( equalTo( content ) ) );
+        assertThat( "End of stream", pipe.read(), is( equalTo( -1 ) ) );
+    }
+
+    /**
+     * Test that a failure of the packing side surfaces as IOException at the end of the stream, after the content
+     * written so far, instead of a silently truncated stream.
+     */
+    @Test
+    public void failureAtEndOfStream()
+        throws Exception
+    {
+        final byte[] content = content( PackingPipe.BUFFER_SIZE + 3 );
+        final IllegalStateException failure = new IllegalStateException( "entry cannot be read" );
+        final PackingPipe pipe = pack( content, failure );
+        final byte[] buffer = new byte[content.length];
+        int read = 0;
+        while( read < buffer.length )
+        {
+            read += pipe.read( buffer, read, buffer.length - read );
+        }
+        assertThat( "Content written before failure", buffer, is( equalTo( content ) ) );
+        try
+        {
+            pipe.read( buffer, 0, buffer.length );
+            fail( "Expected IOException" );
+        }
+        catch( IOException e )
+        {
+            assertThat( "Cause", e.getCause(), is( sameInstance( (Throwable) failure ) ) );
+        }
+        try
+        {
+            pipe.read();
+            fail( "Expected IOException" );
+        }
+        catch( IOException e )
+        {
+            assertThat( "Cause", e.getCause(), is( sameInstance( (Throwable) failure ) ) );
+        }
+    }
+
+    /**
+     * Writes content to a new pipe in another thread, failing afterwards if a failure is given, as
+     * {@link DefaultQuickbuild} does.
+     */
+    private static PackingPipe pack( final byte[] content,
+                                     final Throwable failure )
+        throws IOException
+    {
+        final PackingPipe pipe = new PackingPipe();
+        final PipedOutputStream out = new PipedOutputStream( pipe );
+        new Thread( new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    out.write( content );
+                    if( failure != null )
+                    {
+                        throw failure;
+                    }
+                } catch( Throwable e )
+                {
+                    pipe.fail( e );
+                } finally
+                {
+                    try
+                    {
+                        out.close();
+                    } catch( IOException e )
+                    {
+                        //
+                    }
+                }
+            }
+        }
+        ).start();
+        return pipe;
+    }
+
+    private static byte[] content( final int size )
+    {
+        final byte[] content = new byte[size];
+        for( int i = 0; i < size; i++ )
+        {
+            content[ i ] = (byte) i;
+        }
+        return content;
+    }
+
+    private static byte[] readFully( final InputStream in )
+        throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1000];
+        int read;
+        while( ( read = in.read( buffer ) ) != -1 )
+        {
+            out.write( buffer, 0, read );
+        }
+        return out.toByteArray();
+    }
+}
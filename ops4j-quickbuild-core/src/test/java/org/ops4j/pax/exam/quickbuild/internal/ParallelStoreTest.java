@@ -0,0 +1,212 @@
+package org.ops4j.pax.exam.quickbuild.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.ops4j.store.Handle;
+import org.ops4j.store.Store;
+import org.ops4j.store.StoreFactory;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for {@link ParallelStore}.
+ *
+ * @since 1.2.3
+ */
+public class ParallelStoreTest
+{
+
+    /**
+     * Test that a handle is returned for each stored content, in memory or file, by name.
+     */
+    @Test
+    public void allHandlesReturned()
+        throws Exception
+    {
+        final Store<InputStream> store = StoreFactory.anonymousStore();
+        final ParallelStore parallel = new ParallelStore( store );
+        for( int i = 0; i < 100; i++ )
+        {
+            parallel.store( "content" + i, ( "content " + i ).getBytes() );
+        }
+        final File file = File.createTempFile( "parallelstore", ".class" );
+        try
+        {
+            final FileOutputStream out = new FileOutputStream( file );
+            out.write( "file".getBytes() );
+            out.close();
+            parallel.store( "file", file );
+
+            final Map<String, Handle> handles = parallel.await();
+            assertThat( "Handles", handles.size(), is( equalTo( 101 ) ) );
+            for( int i = 0; i < 100; i++ )
+            {
+                assertThat( read( store, handles.get( "content" + i ) ), is( equalTo( "content " + i ) ) );
+            }
+            assertThat( read( store, handles.get( "file" ) ), is( equalTo( "file" ) ) );
+        } finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test that a failure to store a content is re-thrown by await.
+     */
+    @Test
+    public void storeFailureRethrown()
+        throws Exception
+    {
+        final ParallelStore parallel = new ParallelStore( new StubStore( null )
+        {
+            @Override
+            public Handle store( final InputStream content )
+                throws IOException
+            {
+                if( content.read() == 'x' )
+                {
+                    throw new IOException( "disk full" );
+                }
+                return super.store( content );
+            }
+        }
+        );
+        parallel.store( "ok", "ok".getBytes() );
+        parallel.store( "failing", "x".getBytes() );
+        try
+        {
+            parallel.await();
+            fail( "Expected IOException" );
+        } catch( IOException e )
+        {
+            assertThat( e.getMessage(), is( equalTo( "disk full" ) ) );
+        }
+    }
+
+    /**
+     * Test that the producer waits once the max number of contents are pending, till one of them is stored.
+     */
+    @Test
+    public void pendingContentsBounded()
+        throws Exception
+    {
+        final CountDownLatch gate = new CountDownLatch( 1 );
+        final StubStore store = new StubStore( gate );
+        final ParallelStore parallel = new ParallelStore( store );
+        final AtomicInteger submitted = new AtomicInteger();
+        final Thread producer = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    for( int i = 0; i <= ParallelStore.MAX_PENDING; i++ )
+                    {
+                        parallel.store( "content" + i, new byte[]{ 1 } );
+                        submitted.incrementAndGet();
+                    }
+                } catch( IOException e )
+                {
+                    // interrupted
+                }
+            }
+        }
+        );
+        producer.start();
+        try
+        {
+            final long deadline = System.currentTimeMillis() + 5000;
+            while( submitted.get() < ParallelStore.MAX_PENDING && System.currentTimeMillis() < deadline )
+            {
+                Thread.sleep( 10 );
+            }
+            Thread.sleep( 200 );
+            assertThat( "Submitted while all pending", submitted.get(), is( equalTo( ParallelStore.MAX_PENDING ) ) );
+            assertThat( "Producer waiting", producer.isAlive(), is( true ) );
+        } finally
+        {
+            gate.countDown();
+        }
+        producer.join( 5000 );
+        assertThat( "Submitted once stored", submitted.get(), is( equalTo( ParallelStore.MAX_PENDING + 1 ) ) );
+        assertThat( "Handles", parallel.await().size(), is( equalTo( ParallelStore.MAX_PENDING + 1 ) ) );
+    }
+
+    private static String read( final Store<InputStream> store,
+                                final Handle handle )
+        throws IOException
+    {
+        final InputStream in = store.load( handle );
+        try
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int read;
+            while( ( read = in.read() ) != -1 )
+            {
+                out.write( read );
+            }
+            return new String( out.toByteArray() );
+        } finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Store that only hands out handles, optionally waiting for a gate before.
+     */
+    private static class StubStore
+        implements Store<InputStream>
+    {
+
+        private final CountDownLatch m_gate;
+        private final AtomicInteger m_count = new AtomicInteger();
+
+        StubStore( final CountDownLatch gate )
+        {
+            m_gate = gate;
+        }
+
+        public Handle store( final InputStream content )
+            throws IOException
+        {
+            if( m_gate != null )
+            {
+                try
+                {
+                    m_gate.await();
+                } catch( InterruptedException e )
+                {
+                    throw new IOException( "Interrupted" );
+                }
+            }
+            final String id = String.valueOf( m_count.incrementAndGet() );
+            return new Handle()
+            {
+                public String getIdentification()
+                {
+                    return id;
+                }
+            };
+        }
+
+        public InputStream load( final Handle handle )
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public URI getLocation( final Handle handle )
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.ops4j.pax.exam.quickbuild.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.ops4j.pax.exam.quickbuild.QType;
+import org.ops4j.pax.exam.quickbuild.SnapshotElement;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Unit Tests for the binary snapshot format written by {@link SnapshotWriter} and read by {@link SnapshotReader}.
+ *
+ * @since 1.2.3
+ */
+public class SnapshotWriterTest
+{
+
+    private static final String SHA1_A = "0123456789abcdef0123456789abcdef01234567";
+    private static final String SHA1_B = "fedcba9876543210fedcba9876543210fedcba98";
+
+    /**
+     * Test that elements read back equal the written ones, whatever form checksum and reference have.
+     */
+    @Test
+    public void roundTrip()
+        throws IOException
+    {
+        final List<SnapshotElement> elements = new ArrayList<SnapshotElement>();
+        elements.add( element( "org/foo/Bar.class", "file:/tmp/tb/tinybundles_" + SHA1_A + ".bin", QType.OWN, SHA1_A ) );
+        elements.add( element( "org/foo/Baz.class", "file:/tmp/tb/tinybundles_" + SHA1_B + ".bin", QType.OWN, SHA1_B ) );
+        elements.add( element( "META-INF/MANIFEST.MF", "jar:file:/tmp/foo.jar!/META-INF/MANIFEST.MF", QType.IMPORTED, SHA1_A ) );
+        elements.add( element( "org/foo/Old.class", "file:/tmp/tb/old", QType.EXCLUDED, "not-a-digest" ) );
+        elements.add( element( "Top.class", "file:/tmp/tb/" + SHA1_B, QType.OWN, SHA1_B ) );
+
+        final byte[] bytes = write( 1234L, elements );
+        final SnapshotReader reader = new SnapshotReader( new ByteArrayInputStream( bytes ) );
+        assertThat( "Timestamp", reader.timestamp(), is( equalTo( 1234L ) ) );
+        for( SnapshotElement expected : elements )
+        {
+            final SnapshotElement read = reader.next();
+            assertThat( "Element", read, is( notNullValue() ) );
+            assertThat( "Name", read.name(), is( equalTo( expected.name() ) ) );
+            assertThat( "Type", read.type(), is( equalTo( expected.type() ) ) );
+            assertThat( "Checksum", read.checksum(), is( equalTo( expected.checksum() ) ) );
+            assertThat( "Reference", read.reference(), is( equalTo( expected.reference() ) ) );
+        }
+        assertThat( "End", reader.next(), is( nullValue() ) );
+        reader.close();
+    }
+
+    /**
+     * Test that the parts of store locations around the checksum are written once.
+     */
+    @Test
+    public void storeLocationsShareParts()
+        throws IOException
+    {
+        final List<SnapshotElement> elements = new ArrayList<SnapshotElement>();
+        elements.add( element( "org/foo/Bar.class", "file:/tmp/tb/tinybundles_" + SHA1_A + ".bin", QType.OWN, SHA1_A ) );
+        elements.add( element( "org/foo/Baz.class", "file:/tmp/tb/tinybundles_" + SHA1_B + ".bin", QType.OWN, SHA1_B ) );
+        final String written = new String( write( 0, elements ), "ISO-8859-1" );
+        assertThat( "Prefix once", written.indexOf( "tinybundles_" ), is( equalTo( written.lastIndexOf( "tinybundles_" ) ) ) );
+        assertThat( "Checksum as text", written.contains( SHA1_A ), is( false ) );
+    }
+
+    private static byte[] write( long timestamp, List<SnapshotElement> elements )
+        throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final SnapshotWriter writer = new SnapshotWriter( out, timestamp );
+        for( SnapshotElement element : elements )
+        {
+            writer.write( element );
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+
+    private static SnapshotElement element( String name, String reference, QType type, String checksum )
+    {
+        return new DefaultSnapshotElement( name, URI.create( reference ), type, checksum );
+    }
+}
@@ -152,6 +152,73 @@ public class PaxRunnerOptions
         return new RBCLookupTimeoutOption( timeoutInMillis );
     }
 
+    /**
+     * Creates a {@link org.ops4j.pax.exam.container.def.options.FastShutdownOption} with the default grace time.
+     *
+     * @return fast shutdown option
+     *
+     * @since 1.2.3
+     */
+    public static FastShutdownOption fastShutdown()
+    {
+        return fastShutdown( FastShutdownOption.DEFAULT_GRACE_TIME );
+    }
+
+    /**
+     * Creates a {@link org.ops4j.pax.exam.container.def.options.FastShutdownOption}.
+     *
+     * @param graceTimeInMillis time (in millis) the framework process gets to exit before being killed
+     *
+     * @return fast shutdown option
+     *
+     * @since 1.2.3
+     */
+    public static FastShutdownOption fastShutdown( final long graceTimeInMillis )
+    {
+        return new FastShutdownOption( graceTimeInMillis );
+    }
+
+    /**
+     * Creates a {@link org.ops4j.pax.exam.container.def.options.RBCTransportOption}.
+     *
+     * @param transport transport used to reach the remote bundle context, as
+     *                  {@link org.ops4j.pax.exam.rbc.Constants#TRANSPORT_SOCKET}
+     *
+     * @return transport option
+     *
+     * @since 1.2.3
+     */
+    public static RBCTransportOption rbcTransport( final String transport )
+    {
+        return new RBCTransportOption( transport );
+    }
+
+    /**
+     * Creates a {@link org.ops4j.pax.exam.container.def.options.LocalMavenResolutionOption} that provisions "mvn:"
+     * artifacts from the local maven repository when available and leaves the others to the mvn handler.
+     *
+     * @return local maven resolution option
+     *
+     * @since 1.2.3
+     */
+    public static LocalMavenResolutionOption localMavenResolution()
+    {
+        return new LocalMavenResolutionOption( false );
+    }
+
+    /**
+     * Creates a {@link org.ops4j.pax.exam.container.def.options.LocalMavenResolutionOption} that provisions "mvn:"
+     * artifacts only from the local maven repository, failing if an artifact is not available locally.
+     *
+     * @return offline local maven resolution option
+     *
+     * @since 1.2.3
+     */
+    public static LocalMavenResolutionOption offlineMavenResolution()
+    {
+        return new LocalMavenResolutionOption( true );
+    }
+
     /**
      * Creates a composite option of {@link VMOption}s.
      *
@@ -25,7 +25,7 @@ import java.util.Collection;
 import java.util.List;
 import org.ops4j.pax.exam.Customizer;
 import org.ops4j.pax.exam.Option;
-import static org.ops4j.pax.exam.OptionUtils.*;
+import org.ops4j.pax.exam.OptionSet;
 import org.ops4j.pax.exam.container.def.options.AutoWrapOption;
 import org.ops4j.pax.exam.container.def.options.CleanCachesOption;
 import org.ops4j.pax.exam.container.def.options.ExcludeDefaultRepositoriesOption;
@@ -79,6 +79,11 @@ class ArgumentsBuilder
     private File m_workingFolder;
     private Customizer[] m_customizers;
 
+    /**
+     * Working folder used if no working directory option is set. Null if there is no default.
+     */
+    private final File m_defaultWorkingFolder;
+
     /**
      * Converts configuration options to Pax Runner arguments.
      *
@@ -86,37 +91,68 @@ class ArgumentsBuilder
      */
     ArgumentsBuilder( final Option... options )
     {
+        this( new File( System.getProperty( "java.io.tmpdir" )
+                        + "/paxexam_runner_"
+                        + System.getProperty( "user.name" )
+        ), options
+        );
+    }
+
+    /**
+     * Converts configuration options to Pax Runner arguments.
+     *
+     * @param defaultWorkingFolder working folder to be used if not set via options (can be null, case when no default
+     *                             working directory is set)
+     * @param options              array of configuration options
+     */
+    ArgumentsBuilder( final File defaultWorkingFolder,
+                      final Option... options )
+    {
+        this( defaultWorkingFolder, new OptionSet( options ) );
+    }
+
+    /**
+     * Converts configuration options to Pax Runner arguments.
+     *
+     * @param defaultWorkingFolder working folder to be used if not set via options (can be null, case when no default
+     *                             working directory is set)
+     * @param options              configuration options
+     */
+    ArgumentsBuilder( final File defaultWorkingFolder,
+                      final OptionSet options )
+    {
+        m_defaultWorkingFolder = defaultWorkingFolder;
         final List<String> arguments = new ArrayList<String>();
-        m_customizers = filter( Customizer.class, options );
-
-        add( arguments, extractArguments( filter( MavenPluginGeneratedConfigOption.class, options ) ) );
-        add( arguments, extractArguments( filter( FrameworkOption.class, options ) ) );
-        add( arguments, extractArguments( filter( ProfileOption.class, options ) ) );
-        add( arguments, extractArguments( filter( BootDelegationOption.class, options ) ) );
-        add( arguments, extractArguments( filter( SystemPackageOption.class, options ) ) );
-        add( arguments, extractArguments( filter( ProvisionOption.class, options ) ) );
+        m_customizers = options.filter( Customizer.class );
+
+        add( arguments, extractArguments( options.filter( MavenPluginGeneratedConfigOption.class ) ) );
+        add( arguments, extractArguments( options.filter( FrameworkOption.class ) ) );
+        add( arguments, extractArguments( options.filter( ProfileOption.class ) ) );
+        add( arguments, extractArguments( options.filter( BootDelegationOption.class ) ) );
+        add( arguments, extractArguments( options.filter( SystemPackageOption.class ) ) );
+        add( arguments, extractArguments( options.filter( ProvisionOption.class ) ) );
         add( arguments,
              extractArguments(
-                 filter( RepositoryOptionImpl.class, options ),
-                 filter( ExcludeDefaultRepositoriesOption.class, options )
+                 options.filter( RepositoryOptionImpl.class ),
+                 options.filter( ExcludeDefaultRepositoriesOption.class )
              )
         );
-        add( arguments, extractArguments( filter( AutoWrapOption.class, options ) ) );
-        add( arguments, extractArguments( filter( CleanCachesOption.class, options ) ) );
-        add( arguments, extractArguments( filter( LocalRepositoryOption.class, options ) ) );
-        add( arguments, extractArguments( filter( FrameworkStartLevelOption.class, options ) ) );
-        add( arguments, extractArguments( filter( BundleStartLevelOption.class, options ) ) );
-        add( arguments, extractArguments( filter( WorkingDirectoryOption.class, options ) ) );
-
-        add( arguments, extractArguments( filter( RawPaxRunnerOptionOption.class, options ) ) );
+        add( arguments, extractArguments( options.filter( AutoWrapOption.class ) ) );
+        add( arguments, extractArguments( options.filter( CleanCachesOption.class ) ) );
+        add( arguments, extractArguments( options.filter( LocalRepositoryOption.class ) ) );
+        add( arguments, extractArguments( options.filter( FrameworkStartLevelOption.class ) ) );
+        add( arguments, extractArguments( options.filter( BundleStartLevelOption.class ) ) );
+        add( arguments, extractArguments( options.filter( WorkingDirectoryOption.class ) ) );
+
+        add( arguments, extractArguments( options.filter( RawPaxRunnerOptionOption.class ) ) );
         add( arguments,
              extractArguments(
-                 filter( SystemPropertyOption.class, options ),
-                 filter( VMOption.class, options )
+                 options.filter( SystemPropertyOption.class ),
+                 options.filter( VMOption.class )
              )
         );
-        add( arguments, extractArguments( filter( BootClasspathLibraryOption.class, options ) ) );
-        add( arguments, extractArguments( filter( DebugClassLoadingOption.class, options ) ) );
+        add( arguments, extractArguments( options.filter( BootClasspathLibraryOption.class ) ) );
+        add( arguments, extractArguments( options.filter( DebugClassLoadingOption.class ) ) );
         add( arguments, defaultArguments() );
 
         m_parsedArgs = arguments.toArray( new String[arguments.size()] );
@@ -174,11 +210,12 @@ class ArgumentsBuilder
         {
             arguments.add( "--noArgs" );
         }
-        String folder = System.getProperty( "java.io.tmpdir" )
-                        + "/paxexam_runner_"
-                        + System.getProperty( "user.name" );
-
-        arguments.add( "--workingDirectory=" + createWorkingDirectory( folder ).getAbsolutePath() );
+        if( m_defaultWorkingFolder != null )
+        {
+            arguments.add(
+                "--workingDirectory=" + createWorkingDirectory( m_defaultWorkingFolder.getPath() ).getAbsolutePath()
+            );
+        }
         return arguments;
     }
 
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.def.internal;
+
+import java.io.File;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.pax.exam.spi.maven.MavenUrl;
+import static org.ops4j.lang.NullArgumentException.*;
+
+/**
+ * Index from maven coordinates of "mvn:" urls to artifact files in a local maven repository. There is one index per
+ * local repository, built up while urls are resolved and shared by all test containers of the build, so each
+ * artifact is looked up on disk only once.
+ * Only urls with a fixed version can be resolved; urls without version or with a version range, LATEST or RELEASE
+ * are left to the mvn handler.
+ *
+ * @since 1.2.3
+ */
+class LocalMavenIndex
+{
+
+    /**
+     * JCL logger.
+     */
+    private static final Log LOG = LogFactory.getLog( LocalMavenIndex.class );
+
+    private static final String MVN_PROTOCOL = "mvn:";
+
+    /**
+     * Start of an url up to and including the "mvn:" protocol, eventually preceded by the protocols of wrapping url
+     * handlers.
+     */
+    private static final Pattern WRAPPED_MAVEN_URL = Pattern.compile( "([a-zA-Z][a-zA-Z0-9+.-]*:)*?" + MVN_PROTOCOL );
+
+    /**
+     * Indexes of already used local repositories. Guarded by class.
+     */
+    private static final Map<File, LocalMavenIndex> s_indexes = new HashMap<File, LocalMavenIndex>();
+
+    /**
+     * Local repository (cannot be null).
+     */
+    private final File m_repository;
+    /**
+     * Index from url to artifact file, for artifacts found in the local repository. Artifacts not found are looked up
+     * again, as they can be installed meanwhile. Guarded by this.
+     */
+    private final Map<String, File> m_artifacts;
+
+    /**
+     * Constructor.
+     *
+     * @param repository local repository root folder (cannot be null)
+     */
+    LocalMavenIndex( final File repository )
+    {
+        validateNotNull( repository, "Repository" );
+        m_repository = repository;
+        m_artifacts = new HashMap<String, File>();
+    }
+
+    /**
+     * Returns the shared index of a local repository.
+     *
+     * @param repository local repository root folder (cannot be null)
+     *
+     * @return index of local repository
+     */
+    static synchronized LocalMavenIndex getIndex( final File repository )
+    {
+        validateNotNull( repository, "Repository" );
+        LocalMavenIndex index = s_indexes.get( repository );
+        if( index == null )
+        {
+            index = new LocalMavenIndex( repository );
+            s_indexes.put( repository, index );
+        }
+        return index;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return local repository root folder
+     */
+    File getRepository()
+    {
+        return m_repository;
+    }
+
+    /**
+     * Resolves an url to an artifact file in the local repository.
+     *
+     * @param url url to be resolved
+     *
+     * @return artifact file or null if url is not a resolvable "mvn:" url or the artifact is not available locally
+     */
+    synchronized File resolve( final String url )
+    {
+        File artifact = m_artifacts.get( url );
+        if( artifact != null )
+        {
+            return artifact;
+        }
+        final String path = toPath( url );
+        if( path != null )
+        {
+            artifact = new File( m_repository, path );
+            if( artifact.isFile() )
+            {
+                LOG.debug( "Resolved " + url + " locally to " + artifact );
+                m_artifacts.put( url, artifact );
+                return artifact;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Converts a "mvn:" url of the form mvn:[repository!]groupId/artifactId/version[/type[/classifier]] to the path of
+     * the artifact relative to the local repository root.
+     *
+     * @param url url to be converted
+     *
+     * @return relative path or null if url is not a "mvn:" url with a fixed version
+     */
+    static String toPath( final String url )
+    {
+        final MavenUrl mavenUrl = MavenUrl.parse( url );
+        if( mavenUrl == null || !mavenUrl.hasFixedVersion() )
+        {
+            return null;
+        }
+        return mavenUrl.getPath( mavenUrl.getVersion() );
+    }
+
+    /**
+     * Finds the "mvn:" url in an url that is either a "mvn:" url or a "mvn:" url wrapped by other url handlers, as
+     * wrap:mvn:...$instructions or scan-bundle:mvn:...@options.
+     *
+     * @param url url to be searched (can be null)
+     *
+     * @return the "mvn:" url without the instructions or options of the wrapping handlers, or null if there is none
+     */
+    static String findMavenUrl( final String url )
+    {
+        if( url == null )
+        {
+            return null;
+        }
+        final Matcher matcher = WRAPPED_MAVEN_URL.matcher( url );
+        if( !matcher.lookingAt() )
+        {
+            return null;
+        }
+        String mavenUrl = url.substring( matcher.end() - MVN_PROTOCOL.length() );
+        final int instructions = mavenUrl.indexOf( '$' );
+        if( instructions >= 0 )
+        {
+            mavenUrl = mavenUrl.substring( 0, instructions );
+        }
+        // the repository, if any, can contain an '@' (user info)
+        final int options = mavenUrl.indexOf( '@', mavenUrl.lastIndexOf( '!' ) + 1 );
+        if( options >= 0 )
+        {
+            mavenUrl = mavenUrl.substring( 0, options );
+        }
+        return mavenUrl;
+    }
+
+    /**
+     * Determines the local repository from the path (or file url) given by a
+     * {@link org.ops4j.pax.exam.container.def.options.LocalRepositoryOption}, the pax url mvn local repository system
+     * property or the maven default.
+     *
+     * @param path local repository path or url as set by option. Can be null.
+     *
+     * @return local repository root folder or null if local repository is not a local folder
+     */
+    static File getLocalRepository( final String path )
+    {
+        String repository = path;
+        if( repository == null )
+        {
+            repository = System.getProperty( "org.ops4j.pax.url.mvn.localRepository" );
+        }
+        if( repository == null || repository.trim().length() == 0 )
+        {
+            return new File( System.getProperty( "user.home" ), ".m2/repository" );
+        }
+        repository = repository.trim();
+        if( repository.startsWith( "file:" ) )
+        {
+            return new File( URI.create( repository ) );
+        }
+        if( repository.indexOf( "://" ) > 0 )
+        {
+            return null;
+        }
+        return new File( repository );
+    }
+
+}
@@ -24,9 +24,12 @@ import java.io.InputStream;
 import java.net.URL;
 import java.rmi.registry.Registry;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.osgi.framework.Bundle;
@@ -38,18 +41,26 @@ import org.ops4j.pax.exam.CoreOptions;
 import static org.ops4j.pax.exam.CoreOptions.*;
 import org.ops4j.pax.exam.Info;
 import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionSet;
 import static org.ops4j.pax.exam.OptionUtils.*;
 import static org.ops4j.pax.exam.container.def.PaxRunnerOptions.*;
 import org.ops4j.pax.exam.container.def.options.BundleScannerProvisionOption;
+import org.ops4j.pax.exam.container.def.options.FastShutdownOption;
+import org.ops4j.pax.exam.container.def.options.LocalMavenResolutionOption;
+import org.ops4j.pax.exam.container.def.options.LocalRepositoryOption;
 import org.ops4j.pax.exam.container.def.options.RBCLookupTimeoutOption;
+import org.ops4j.pax.exam.container.def.options.RBCTransportOption;
 import org.ops4j.pax.exam.container.def.options.Scanner;
 import org.ops4j.pax.exam.options.ProvisionOption;
 import org.ops4j.pax.exam.options.TestContainerStartTimeoutOption;
+import org.ops4j.pax.exam.options.UrlReference;
 import org.ops4j.pax.exam.rbc.Constants;
 import org.ops4j.pax.exam.rbc.client.RemoteBundleContextClient;
 import org.ops4j.pax.exam.spi.container.TestContainer;
 import org.ops4j.pax.exam.spi.container.TestContainerException;
 import org.ops4j.pax.exam.spi.container.TimeoutException;
+import org.ops4j.pax.exam.spi.timing.Stopwatch;
+import org.ops4j.pax.exam.spi.timing.Timings;
 import org.ops4j.pax.runner.Run;
 import org.ops4j.pax.runner.handler.internal.URLUtils;
 import org.ops4j.pax.runner.platform.DefaultJavaRunner;
@@ -87,6 +98,22 @@ class PaxRunnerTestContainer
      */
     private static final int SYSTEM_BUNDLE = 0;
 
+    /**
+     * Rmi communication ports in use by test containers of this JVM.
+     */
+    private static final Set<Integer> RESERVED_PORTS = new HashSet<Integer>();
+
+    /**
+     * Guards Pax Runner start up and url handlers usage, as Pax Runner resets the JVM wide url stream handler factory
+     * on start. Test containers can be started in parallel by different threads.
+     */
+    private static final Object RUNNER_LOCK = new Object();
+
+    /**
+     * Built probes cache, shared by all test containers. Guarded by RUNNER_LOCK.
+     */
+    private static ProbeCache s_probeCache;
+
     /**
      * Remote bundle context client.
      */
@@ -118,8 +145,24 @@ class PaxRunnerTestContainer
      */
     private TestContainerSemaphore m_semaphore;
 
+    /**
+     * Default working folder reserved for this test container.
+     */
+    private final File m_defaultWorkingFolder;
+
     private boolean m_started = false;
 
+    /**
+     * Time (millis) the framework process gets to exit in background before being killed. Null if fast shutdown is
+     * not enabled, case when stop waits for the framework process to exit.
+     */
+    private final Long m_shutdownGraceTime;
+
+    /**
+     * Context of timing spans recorded by this test container.
+     */
+    private final String m_timingContext;
+
     /**
      * Constructor.
      * 
@@ -127,12 +170,44 @@ class PaxRunnerTestContainer
      * @param options user startup options
      */
     PaxRunnerTestContainer( final DefaultJavaRunner javaRunner, final Option... options )
+    {
+        this( javaRunner, new OptionSet( options ) );
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param javaRunner java runner to be used to start up Pax Runner
+     * @param options user startup options
+     */
+    PaxRunnerTestContainer( final DefaultJavaRunner javaRunner, final OptionSet options )
     {
         m_javaRunner = javaRunner;
         m_startTimeout = getTestContainerStartTimeout( options );
-        m_remoteBundleContextClient =
-            new RemoteBundleContextClient( findFreeCommunicationPort(), getRMITimeout( options ) );
-        m_arguments = new ArgumentsBuilder( wrap( expand( combine( options, localOptions() ) ) ) );
+        m_shutdownGraceTime = getShutdownGraceTime( options );
+        m_defaultWorkingFolder = TestContainerSemaphore.reserveDefaultWorkingFolder();
+        Integer port = null;
+        try
+        {
+            port = findFreeCommunicationPort();
+            // the framework runs on the same host, so bundle contents can be handed over via files
+            m_remoteBundleContextClient =
+                new RemoteBundleContextClient( port, getRMITimeout( options ),
+                                               new File( m_defaultWorkingFolder, "transfer" ), getTransport( options ) );
+            m_timingContext = "container:" + port;
+            final Stopwatch arguments = Timings.start( "container.arguments", m_timingContext );
+            m_arguments =
+                new ArgumentsBuilder( m_defaultWorkingFolder,
+                                      wrap( new OptionSet( combine( options.getOptions(), localOptions() ) ) ) );
+            arguments.stop();
+        }
+        catch ( RuntimeException e )
+        {
+            // as when offline and an artifact is not available locally; the container will never be stopped
+            TestContainerSemaphore.releaseDefaultWorkingFolder( m_defaultWorkingFolder );
+            releaseCommunicationPort( port );
+            throw e;
+        }
 
         m_customizers = new CompositeCustomizer( m_arguments.getCustomizers() );
         m_store = StoreFactory.sharedLocalStore();
@@ -177,24 +252,102 @@ class PaxRunnerTestContainer
         return id;
     }
 
+    /**
+     * {@inheritDoc} Delegates to {@link RemoteBundleContextClient}, after preparing the bundles as in
+     * {@link #installBundle(String)}.
+     */
+    public long[] installBundles( final int startLevel, final boolean start, final String... bundleUrls )
+    {
+        LOG.debug( "Preparing and Installing " + bundleUrls.length + " bundles .." );
+        final String[] locations = new String[bundleUrls.length];
+        final Stopwatch prepare = Timings.start( "bundle.prepare", m_timingContext );
+        try
+        {
+            for ( int i = 0; i < bundleUrls.length; i++ )
+            {
+                locations[i] = m_store.getLocation( storeAndGetData( bundleUrls[i] ) ).toASCIIString();
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+        finally
+        {
+            prepare.stop();
+        }
+        final Stopwatch install = Timings.start( "bundle.install", m_timingContext );
+        final long[] ids;
+        try
+        {
+            ids = m_remoteBundleContextClient.installBundles( startLevel, start, locations );
+        }
+        finally
+        {
+            install.stop();
+        }
+        LOG.debug( "Installed bundles as IDs: " + Arrays.toString( ids ) );
+        return ids;
+    }
+
+    /**
+     * Returns the probe cache shared by all test containers, creating it on first call. The cache index is kept next
+     * to the shared local store.
+     * 
+     * @return probe cache
+     *
+     * @throws IOException - If the folder of the store cannot be determined
+     */
+    private ProbeCache getProbeCache()
+        throws IOException
+    {
+        synchronized ( RUNNER_LOCK )
+        {
+            if ( s_probeCache == null )
+            {
+                s_probeCache = new ProbeCache( m_store );
+            }
+            return s_probeCache;
+        }
+    }
+
     private Handle storeAndGetData( String bundleUrl )
     {
         try
         {
             Handle handle = m_cache.get( bundleUrl );
+            final String key = handle == null ? ProbeCache.getKey( bundleUrl, m_arguments.getCustomizers() ) : null;
+            if ( handle == null && key != null )
+            {
+                handle = getProbeCache().get( key );
+            }
             if ( handle == null )
             {
                 // new, so build, customize and store
-                URL url = new URL( bundleUrl );
-                InputStream in = url.openStream();
-
-                in = m_customizers.customizeTestProbe( in );
+                final Stopwatch build = Timings.start( "probe.build", m_timingContext );
+                try
+                {
+                    synchronized( RUNNER_LOCK )
+                    {
+                        URL url = new URL( bundleUrl );
+                        InputStream in = url.openStream();
 
-                // store in and overwrite handle
-                handle = m_store.store( in );
-                m_cache.put( bundleUrl, handle );
+                        in = m_customizers.customizeTestProbe( in );
 
+                        // store in and overwrite handle
+                        handle = m_store.store( in );
+                    }
+                }
+                finally
+                {
+                    build.stop();
+                }
+                if ( key != null )
+                {
+                    getProbeCache().put( key, handle );
+                }
             }
+            m_cache.put( bundleUrl, handle );
             return handle;
 
         }
@@ -227,6 +380,37 @@ class PaxRunnerTestContainer
         LOG.debug( "Started test bundle with ID " + bundleId );
     }
 
+    /**
+     * {@inheritDoc} Delegates to {@link RemoteBundleContextClient}, after preparing the bundle again as in
+     * {@link #installBundle(String)}. Probes built from a folder are only rebuilt if the content of the folder changed.
+     */
+    public void updateBundle( final long bundleId, final String bundleUrl )
+        throws TestContainerException
+    {
+        LOG.debug( "Preparing and updating bundle with ID " + bundleId + " from [" + bundleUrl + "] .." );
+        final Stopwatch update = Timings.start( "bundle.update", m_timingContext );
+        try
+        {
+            m_cache.remove( bundleUrl );
+            ProbeCache.forgetKey( bundleUrl );
+            final Handle handle = storeAndGetData( bundleUrl );
+            if ( handle == null )
+            {
+                throw new TestContainerException( "Bundle [" + bundleUrl + "] cannot be prepared" );
+            }
+            m_remoteBundleContextClient.updateBundle( bundleId, m_store.getLocation( handle ).toASCIIString() );
+        }
+        catch ( IOException e )
+        {
+            throw new TestContainerException( "Bundle [" + bundleUrl + "] cannot be prepared", e );
+        }
+        finally
+        {
+            update.stop();
+        }
+        LOG.debug( "Updated bundle with ID " + bundleId );
+    }
+
     /**
      * {@inheritDoc} Delegates to {@link RemoteBundleContextClient}.
      */
@@ -242,8 +426,8 @@ class PaxRunnerTestContainer
     public void start()
     {
         LOG.info( "Starting up the test container (Pax Runner " + Info.getPaxRunnerVersion() + " )" );
-        /**
-         */
+        final Stopwatch total = Timings.start( "container.start", m_timingContext );
+        final Stopwatch lock = Timings.start( "container.lock", m_timingContext );
         m_semaphore = new TestContainerSemaphore( m_arguments.getWorkingFolder() );
         // this makes sure the system is ready to launch a new instance.
         // this could fail, based on what acquire actually checks.
@@ -259,14 +443,22 @@ class PaxRunnerTestContainer
             }
         }
 
+        lock.stop();
+
         long startedAt = System.currentTimeMillis();
-        URLUtils.resetURLStreamHandlerFactory();
-        Run.start( m_javaRunner, m_arguments.getArguments() );
+        synchronized( RUNNER_LOCK )
+        {
+            URLUtils.resetURLStreamHandlerFactory();
+            Run.start( m_javaRunner, m_arguments.getArguments() );
+        }
+        final long runEndedAt = System.currentTimeMillis();
+        recordRunSpans( startedAt, runEndedAt );
         LOG.info( "Test container (Pax Runner " + Info.getPaxRunnerVersion() + ") started in "
-            + ( System.currentTimeMillis() - startedAt ) + " millis" );
+            + ( runEndedAt - startedAt ) + " millis" );
 
         LOG.info( "Wait for test container to finish its initialization "
             + ( m_startTimeout == WAIT_FOREVER ? "without timing out" : "for " + m_startTimeout + " millis" ) );
+        final Stopwatch active = Timings.start( "container.active", m_timingContext );
         try
         {
             waitForState( SYSTEM_BUNDLE, Bundle.ACTIVE, m_startTimeout );
@@ -276,9 +468,37 @@ class PaxRunnerTestContainer
             throw new TimeoutException( "Test container did not initialize in the expected time of " + m_startTimeout
                 + " millis" );
         }
+        finally
+        {
+            active.stop();
+        }
+        final Stopwatch customize = Timings.start( "container.customize", m_timingContext );
         m_customizers.customizeEnvironment( m_arguments.getWorkingFolder() );
+        customize.stop();
 
         m_started = true;
+        total.stop();
+    }
+
+    /**
+     * Records the spans of Pax Runner start: resolving the provisioned artifacts and forking the framework process.
+     * The split is only known if the java runner is a {@link TimedJavaRunner}.
+     * 
+     * @param startedAt time (millis) when Pax Runner was started
+     * @param endedAt time (millis) when Pax Runner returned
+     */
+    private void recordRunSpans( final long startedAt, final long endedAt )
+    {
+        if ( m_javaRunner instanceof TimedJavaRunner && ( (TimedJavaRunner) m_javaRunner ).getForkEndedAt() > 0 )
+        {
+            final TimedJavaRunner runner = (TimedJavaRunner) m_javaRunner;
+            Timings.record( "container.resolve", m_timingContext, startedAt, runner.getForkStartedAt() );
+            Timings.record( "container.fork", m_timingContext, runner.getForkStartedAt(), runner.getForkEndedAt() );
+        }
+        else
+        {
+            Timings.record( "container.run", m_timingContext, startedAt, endedAt );
+        }
     }
 
     /**
@@ -286,28 +506,110 @@ class PaxRunnerTestContainer
      */
     public void stop()
     {
+        if ( m_started && m_shutdownGraceTime != null )
+        {
+            LOG.info( "Shutting down the test container (Pax Runner) in background" );
+            m_started = false;
+            final Thread shutdown = new Thread( new Runnable()
+            {
+                public void run()
+                {
+                    shutdown( true );
+                }
+            }, "pax-exam-shutdown-" + m_remoteBundleContextClient.getRmiPort() );
+            shutdown.setDaemon( true );
+            shutdown.start();
+            return;
+        }
         LOG.info( "Shutting down the test container (Pax Runner)" );
+        shutdown( m_started );
+    }
+
+    /**
+     * Stops the framework, waits for the framework process to exit and releases the resources held by this test
+     * container. If fast shutdown is enabled the framework process is killed if it does not exit within the grace
+     * time and a failing framework stop does not prevent that.
+     * 
+     * @param started true if the framework process was started
+     */
+    private void shutdown( final boolean started )
+    {
         try
         {
-            if ( m_started )
+            if ( started )
             {
                 if ( m_remoteBundleContextClient != null )
                 {
-                    m_remoteBundleContextClient.stop();
+                    try
+                    {
+                        m_remoteBundleContextClient.stop();
+                    }
+                    catch ( RuntimeException e )
+                    {
+                        if ( m_shutdownGraceTime == null )
+                        {
+                            throw e;
+                        }
+                        LOG.warn( "Cannot stop the test container framework: " + e.getMessage() );
+                    }
                 }
                 if ( m_javaRunner != null )
                 {
-                    m_javaRunner.waitForExit();
+                    if ( m_shutdownGraceTime == null )
+                    {
+                        m_javaRunner.waitForExit();
+                    }
+                    else
+                    {
+                        waitForExit( m_shutdownGraceTime );
+                    }
                 }
             }
         }
         finally
         {
-            m_semaphore.release();
+            if ( m_semaphore != null )
+            {
+                m_semaphore.release();
+            }
+            TestContainerSemaphore.releaseDefaultWorkingFolder( m_defaultWorkingFolder );
+            releaseCommunicationPort( m_remoteBundleContextClient.getRmiPort() );
             m_started = false;
         }
     }
 
+    /**
+     * Waits for the framework process to exit, killing it if it does not exit within the grace time.
+     * 
+     * @param graceTime time (millis) the framework process gets to exit
+     */
+    private void waitForExit( final long graceTime )
+    {
+        final Thread waiter = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                m_javaRunner.waitForExit();
+            }
+        }, Thread.currentThread().getName() + "-wait" );
+        waiter.setDaemon( true );
+        waiter.start();
+        try
+        {
+            waiter.join( graceTime );
+            if ( waiter.isAlive() )
+            {
+                LOG.warn( "Test container did not exit within " + graceTime + " millis. Killing it." );
+                m_javaRunner.shutdown();
+                waiter.join();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -332,31 +634,38 @@ class PaxRunnerTestContainer
                                                                                                                                                                                            START_LEVEL_SYSTEM_BUNDLES ),
             // rmi communication port
             systemProperty( Constants.RMI_PORT_PROPERTY ).value( m_remoteBundleContextClient.getRmiPort().toString() ),
+            // transport used to reach the remote bundle context
+            systemProperty( Constants.TRANSPORT_PROPERTY ).value( m_remoteBundleContextClient.getTransport() ),
             // boot delegation for sun.*. This seems only necessary in Knopflerfish version > 2.0.0
             bootDelegationPackage( "sun.*" ) };
     }
 
     /**
      * Wrap provision options that are not already scanner provision bundles with a {@link BundleScannerProvisionOption}
-     * in order to force update.
+     * in order to force update. If local maven resolution is enabled "mvn:" urls of wrapped provision options are
+     * replaced by the artifact files in the local repository.
      * 
-     * @param options options to be wrapped (can be null or an empty array)
+     * @param options options to be wrapped
      * @return eventual wrapped bundles
+     *
+     * @throws TestContainerException - If offline and an artifact is not available in the local repository
      */
-    private Option[] wrap( final Option... options )
+    static OptionSet wrap( final OptionSet options )
     {
-        if ( options != null && options.length > 0 )
+        if ( options.size() > 0 )
         {
             // get provison options out of options
-            final ProvisionOption[] provisionOptions = filter( ProvisionOption.class, options );
+            final ProvisionOption[] provisionOptions = options.filter( ProvisionOption.class );
             if ( provisionOptions != null && provisionOptions.length > 0 )
             {
+                final Boolean offline = getMavenOffline( options );
+                final LocalMavenIndex index = offline == null ? null : getLocalMavenIndex( options, offline );
                 final List<Option> processed = new ArrayList<Option>();
                 for ( final ProvisionOption provisionOption : provisionOptions )
                 {
                     if ( !( provisionOption instanceof Scanner ) )
                     {
-                        processed.add( scanBundle( provisionOption ).start( provisionOption.shouldStart() ).startLevel(
+                        processed.add( scanBundle( resolveLocally( provisionOption, index, offline ) ).start( provisionOption.shouldStart() ).startLevel(
                                                                                                                         provisionOption.getStartLevel() ).update(
                                                                                                                                                                   provisionOption.shouldUpdate() ) );
                     }
@@ -367,14 +676,145 @@ class PaxRunnerTestContainer
                 }
                 // finally combine the processed provision options with the original options
                 // (where provison options are removed)
-                return combine( remove( ProvisionOption.class, options ),
-                                processed.toArray( new Option[processed.size()] ) );
+                return new OptionSet( combine( options.remove( ProvisionOption.class ),
+                                               processed.toArray( new Option[processed.size()] ) ) );
             }
         }
         // if there is nothing to process of there are no provision options just return the original options
         return options;
     }
 
+    /**
+     * Replaces a "mvn:" url, also when wrapped by other url handlers, by the artifact file in the local repository.
+     *
+     * @param provisionOption provision option to be resolved
+     * @param index           index of local repository or null if local maven resolution is not enabled
+     * @param offline         true if an artifact that is not available locally must not be resolved remotely
+     *
+     * @return url reference of local artifact file or the original provision option if not resolved locally
+     *
+     * @throws TestContainerException - If offline and the artifact is not available in the local repository
+     */
+    private static UrlReference resolveLocally( final ProvisionOption provisionOption,
+                                                final LocalMavenIndex index,
+                                                final Boolean offline )
+    {
+        if ( index == null )
+        {
+            return provisionOption;
+        }
+        final String url = provisionOption.getURL();
+        // as well "mvn:" urls wrapped by other handlers, as wrap:mvn:...
+        final String mavenUrl = LocalMavenIndex.findMavenUrl( url );
+        if ( mavenUrl == null )
+        {
+            return provisionOption;
+        }
+        final File artifact = index.resolve( mavenUrl );
+        if ( artifact != null )
+        {
+            final int start = url.indexOf( mavenUrl );
+            return url( url.substring( 0, start ) + artifact.toURI().toString()
+                        + url.substring( start + mavenUrl.length() ) );
+        }
+        if ( offline )
+        {
+            throw new TestContainerException( "Artifact " + mavenUrl + " is not available in local repository "
+                                              + index.getRepository() + " and remote resolution is disabled (offline)" );
+        }
+        return provisionOption;
+    }
+
+    /**
+     * Determine if local maven resolution is enabled and if it is offline.<br/>
+     * Determined by looking for a {@link LocalMavenResolutionOption} in the user options or the
+     * {@link LocalMavenResolutionOption#OFFLINE_PROPERTY} system property, which turns on offline resolution.
+     *
+     * @param options user options
+     *
+     * @return true if offline, false if online or null if local maven resolution is not enabled
+     */
+    private static Boolean getMavenOffline( final OptionSet options )
+    {
+        if ( Boolean.getBoolean( LocalMavenResolutionOption.OFFLINE_PROPERTY ) )
+        {
+            return true;
+        }
+        final LocalMavenResolutionOption[] resolutionOptions = options.filter( LocalMavenResolutionOption.class );
+        if ( resolutionOptions.length > 0 )
+        {
+            return resolutionOptions[ 0 ].isOffline();
+        }
+        return null;
+    }
+
+    /**
+     * Determine the index of the local maven repository.<br/>
+     * The local repository is determined by looking for a {@link LocalRepositoryOption} in the user options. If not
+     * specified the pax url mvn setting or the maven default is used.
+     *
+     * @param options user options
+     * @param offline true if an artifact that is not available locally must not be resolved remotely
+     *
+     * @return index or null if the local repository is not a local folder
+     *
+     * @throws TestContainerException - If offline and the local repository is not a local folder
+     */
+    private static LocalMavenIndex getLocalMavenIndex( final OptionSet options, final boolean offline )
+    {
+        final LocalRepositoryOption[] repositoryOptions = options.filter( LocalRepositoryOption.class );
+        final String path = repositoryOptions.length > 0 ? repositoryOptions[ 0 ].getLocalRepositoryPath() : null;
+        final File repository = LocalMavenIndex.getLocalRepository( path );
+        if ( repository == null )
+        {
+            if ( offline )
+            {
+                throw new TestContainerException( "Local repository " + path + " is not a local folder (offline)" );
+            }
+            LOG.warn( "Local repository " + path + " is not a local folder. Local maven resolution is disabled." );
+            return null;
+        }
+        return LocalMavenIndex.getIndex( repository );
+    }
+
+    /**
+     * Determine the grace time of fast shutdown.<br/>
+     * Grace time is determined by looking for a {@link FastShutdownOption} in the user options. If not specified fast
+     * shutdown is not enabled.
+     *
+     * @param options user options
+     *
+     * @return grace time (millis) or null if fast shutdown is not enabled
+     */
+    private static Long getShutdownGraceTime( final OptionSet options )
+    {
+        final FastShutdownOption[] shutdownOptions = options.filter( FastShutdownOption.class );
+        if( shutdownOptions.length > 0 )
+        {
+            return shutdownOptions[ 0 ].getTimeout();
+        }
+        return null;
+    }
+
+    /**
+     * Determine the transport used to reach the remote bundle context.<br/>
+     * Transport is determined by looking for a {@link RBCTransportOption} in the user options. If not specified RMI is
+     * used.
+     *
+     * @param options user options
+     *
+     * @return transport
+     */
+    private static String getTransport( final OptionSet options )
+    {
+        final RBCTransportOption[] transportOptions = options.filter( RBCTransportOption.class );
+        if( transportOptions.length > 0 )
+        {
+            return transportOptions[ 0 ].getTransport();
+        }
+        return Constants.TRANSPORT_RMI;
+    }
+
     /**
      * Determine the rmi lookup timeout.<br/>
      * Timeout is dermined by first looking for a {@link RBCLookupTimeoutOption} in the user options. If not specified a
@@ -383,9 +823,9 @@ class PaxRunnerTestContainer
      * @param options user options
      * @return rmi lookup timeout
      */
-    private static long getRMITimeout( final Option... options )
+    private static long getRMITimeout( final OptionSet options )
     {
-        final RBCLookupTimeoutOption[] timeoutOptions = filter( RBCLookupTimeoutOption.class, options );
+        final RBCLookupTimeoutOption[] timeoutOptions = options.filter( RBCLookupTimeoutOption.class );
         if ( timeoutOptions.length > 0 )
         {
             return timeoutOptions[0].getTimeout();
@@ -401,10 +841,10 @@ class PaxRunnerTestContainer
      * @param options user options
      * @return rmi lookup timeout
      */
-    private static long getTestContainerStartTimeout( final Option... options )
+    private static long getTestContainerStartTimeout( final OptionSet options )
     {
         final TestContainerStartTimeoutOption[] timeoutOptions =
-            filter( TestContainerStartTimeoutOption.class, options );
+            options.filter( TestContainerStartTimeoutOption.class );
         if ( timeoutOptions.length > 0 )
         {
             return timeoutOptions[0].getTimeout();
@@ -413,13 +853,48 @@ class PaxRunnerTestContainer
     }
 
     /**
-     * Scanns ports for a free port to be used for RMI communication.
+     * Scanns ports for a free port to be used for RMI communication. Ports already handed out to other test containers
+     * of this JVM are skipped, as they may not be bound yet. The port stays reserved until released via
+     * {@link #releaseCommunicationPort(Integer)}.
      * 
      * @return found free port
+     *
+     * @throws TestContainerException - If there is no free port in the scanned range
      */
     public static Integer findFreeCommunicationPort()
     {
-        return new FreePort( Registry.REGISTRY_PORT, Registry.REGISTRY_PORT + AMOUNT_OF_PORTS_TO_CHECK ).getPort();
+        final int maxPort = Registry.REGISTRY_PORT + AMOUNT_OF_PORTS_TO_CHECK;
+        synchronized ( RESERVED_PORTS )
+        {
+            try
+            {
+                int port = new FreePort( Registry.REGISTRY_PORT, maxPort ).getPort();
+                while ( RESERVED_PORTS.contains( port ) )
+                {
+                    port = new FreePort( port + 1, maxPort ).getPort();
+                }
+                RESERVED_PORTS.add( port );
+                return port;
+            }
+            catch ( RuntimeException e )
+            {
+                throw new TestContainerException( "No free communication port in range " + Registry.REGISTRY_PORT
+                                                  + " - " + maxPort, e );
+            }
+        }
+    }
+
+    /**
+     * Releases a port found via {@link #findFreeCommunicationPort()}.
+     * 
+     * @param port port to release
+     */
+    public static void releaseCommunicationPort( final Integer port )
+    {
+        synchronized ( RESERVED_PORTS )
+        {
+            RESERVED_PORTS.remove( port );
+        }
     }
 
     @Override
@@ -17,10 +17,11 @@
  */
 package org.ops4j.pax.exam.container.def.internal;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.ops4j.pax.exam.Option;
 import org.ops4j.pax.exam.spi.container.TestContainer;
 import org.ops4j.pax.exam.spi.container.TestContainerFactory;
-import org.ops4j.pax.runner.platform.DefaultJavaRunner;
 
 /**
  * Factory for {@link PaxRunnerTestContainer}.
@@ -32,12 +33,87 @@ public class PaxRunnerTestContainerFactory
     implements TestContainerFactory
 {
 
+    /**
+     * System property that sets the number of test containers to be started in background, for the most requested
+     * configuration. Defaults to 0 (no pooling).
+     */
+    public static final String POOL_SIZE_PROPERTY = "org.ops4j.pax.exam.container.pool.size";
+
+    /**
+     * JCL logger.
+     */
+    private static final Log LOG = LogFactory.getLog( PaxRunnerTestContainerFactory.class );
+
+    /**
+     * Pool shared by all factory instances. Null if pooling is not enabled or not yet initialized.
+     */
+    private static PooledTestContainerFactory s_pool;
+    /**
+     * True if pool was initialized.
+     */
+    private static boolean s_poolInitialized;
+
     /**
      * {@inheritDoc}
      */
     public TestContainer newInstance( final Option... options )
     {
-        return new PaxRunnerTestContainer( new DefaultJavaRunner( false ), options );
+        final PooledTestContainerFactory pool = getPool();
+        if( pool != null )
+        {
+            return pool.newInstance( options );
+        }
+        return new PaxRunnerTestContainer( new TimedJavaRunner(), options );
+    }
+
+    /**
+     * Returns the pool of test containers, creating it on first call if {@link #POOL_SIZE_PROPERTY} is set.
+     *
+     * @return pool or null if pooling is not enabled
+     */
+    private static synchronized PooledTestContainerFactory getPool()
+    {
+        if( !s_poolInitialized )
+        {
+            s_poolInitialized = true;
+            final int size = getPoolSize();
+            if( size > 0 )
+            {
+                LOG.info( "Pool of " + size + " test containers enabled" );
+                s_pool = new PooledTestContainerFactory( new TestContainerFactory()
+                {
+                    public TestContainer newInstance( final Option... options )
+                    {
+                        return new PaxRunnerTestContainer( new TimedJavaRunner(), options );
+                    }
+                }, size
+                );
+            }
+        }
+        return s_pool;
+    }
+
+    /**
+     * Determines the pool size out of {@link #POOL_SIZE_PROPERTY} system property.
+     *
+     * @return pool size (0 if not set or invalid)
+     */
+    private static int getPoolSize()
+    {
+        final String size = System.getProperty( POOL_SIZE_PROPERTY );
+        if( size == null || size.trim().length() == 0 )
+        {
+            return 0;
+        }
+        try
+        {
+            return Integer.parseInt( size.trim() );
+        }
+        catch( NumberFormatException e )
+        {
+            LOG.warn( "Invalid value [" + size + "] for " + POOL_SIZE_PROPERTY + ". Pooling is disabled" );
+            return 0;
+        }
     }
 
 }
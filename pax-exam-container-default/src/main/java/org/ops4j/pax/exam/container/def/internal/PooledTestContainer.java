@@ -0,0 +1,261 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.def.internal;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.spi.container.TestContainer;
+import org.ops4j.pax.exam.spi.container.TestContainerException;
+import org.ops4j.pax.exam.spi.container.TestContainerFactory;
+import org.ops4j.pax.exam.spi.container.TimeoutException;
+
+/**
+ * {@link TestContainer} handed out by {@link PooledTestContainerFactory}, wrapping a test container started in
+ * background. Starting it only waits for the background start to complete. If the background start failed, a new test
+ * container is created and started.
+ *
+ * @since 1.2.3
+ */
+class PooledTestContainer
+    implements TestContainer
+{
+
+    /**
+     * JCL logger.
+     */
+    private static final Log LOG = LogFactory.getLog( PooledTestContainer.class );
+
+    /**
+     * Test container being started in background.
+     */
+    private final Future<TestContainer> m_starting;
+    /**
+     * Factory used to create a new test container if the background start failed.
+     */
+    private final TestContainerFactory m_factory;
+    /**
+     * Executor used to stop the background test container if this test container is stopped without being started.
+     */
+    private final ExecutorService m_executor;
+    /**
+     * Configuration options.
+     */
+    private final Option[] m_options;
+    /**
+     * Started test container. Null if not started.
+     */
+    private TestContainer m_container;
+
+    /**
+     * Constructor.
+     *
+     * @param starting test container being started in background
+     * @param factory  factory used to create a new test container if the background start failed
+     * @param executor executor used to stop the background test container if not used
+     * @param options  configuration options
+     */
+    PooledTestContainer( final Future<TestContainer> starting,
+                         final TestContainerFactory factory,
+                         final ExecutorService executor,
+                         final Option... options )
+    {
+        m_starting = starting;
+        m_factory = factory;
+        m_executor = executor;
+        m_options = options;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T getService( final Class<T> serviceType )
+    {
+        return getContainer().getService( serviceType );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T getService( final Class<T> serviceType, final long timeoutInMillis )
+    {
+        return getContainer().getService( serviceType, timeoutInMillis );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long installBundle( final String bundleUrl )
+    {
+        return getContainer().installBundle( bundleUrl );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long installBundle( final String bundleLocation, final byte[] bundle )
+    {
+        return getContainer().installBundle( bundleLocation, bundle );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long[] installBundles( final int startLevel, final boolean start, final String... bundleUrls )
+        throws TestContainerException
+    {
+        return getContainer().installBundles( startLevel, start, bundleUrls );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startBundle( final long bundleId )
+        throws TestContainerException
+    {
+        getContainer().startBundle( bundleId );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBundle( final long bundleId, final String bundleUrl )
+        throws TestContainerException
+    {
+        getContainer().updateBundle( bundleId, bundleUrl );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBundleStartLevel( final long bundleId, final int startLevel )
+        throws TestContainerException
+    {
+        getContainer().setBundleStartLevel( bundleId, startLevel );
+    }
+
+    /**
+     * {@inheritDoc}
+     * Waits for the background start to complete. If the background start failed a new test container is started.
+     */
+    public synchronized void start()
+    {
+        if( m_container != null )
+        {
+            return;
+        }
+        try
+        {
+            m_container = m_starting.get();
+            return;
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            PooledTestContainerFactory.stopQuietly( m_starting );
+            throw new TestContainerException( "Interrupted while waiting for the test container to start", e );
+        }
+        catch( ExecutionException e )
+        {
+            LOG.warn( "Pooled test container failed to start (" + e.getCause() + "). Starting a new one." );
+        }
+        final TestContainer container = m_factory.newInstance( m_options );
+        try
+        {
+            container.start();
+        }
+        catch( RuntimeException e )
+        {
+            PooledTestContainerFactory.stopQuietly( container );
+            throw e;
+        }
+        m_container = container;
+    }
+
+    /**
+     * {@inheritDoc}
+     * If not started, the test container started in background is stopped, once started.
+     */
+    public synchronized void stop()
+    {
+        if( m_container != null )
+        {
+            final TestContainer container = m_container;
+            m_container = null;
+            container.stop();
+        }
+        else
+        {
+            try
+            {
+                m_executor.submit( new Runnable()
+                {
+                    public void run()
+                    {
+                        PooledTestContainerFactory.stopQuietly( m_starting );
+                    }
+                }
+                );
+            }
+            catch( RejectedExecutionException e )
+            {
+                // pool is shut down: do not wait for a pending start, cancel it
+                if( !m_starting.cancel( true ) )
+                {
+                    PooledTestContainerFactory.stopQuietly( m_starting );
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void waitForState( final long bundleId, final int state, final long timeoutInMillis )
+        throws TimeoutException
+    {
+        getContainer().waitForState( bundleId, state, timeoutInMillis );
+    }
+
+    /**
+     * Returns the started test container.
+     *
+     * @return started test container
+     *
+     * @throws TestContainerException - If test container is not started
+     */
+    private synchronized TestContainer getContainer()
+    {
+        if( m_container == null )
+        {
+            throw new TestContainerException( "Test container is not started" );
+        }
+        return m_container;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PooledTestContainer{" + m_container + "}";
+    }
+
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.def.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionFingerprint;
+import org.ops4j.pax.exam.spi.container.TestContainer;
+import org.ops4j.pax.exam.spi.container.TestContainerFactory;
+
+/**
+ * {@link TestContainerFactory} that keeps a pool of already started test containers for the most requested
+ * configuration. Test containers are started in background while tests are running, so a request for the most common
+ * configuration gets a test container whose framework is already up. The pool is refilled after each request.
+ * Requests for other configurations get a test container that is started on demand, as usual.
+ *
+ * @since 1.2.3
+ */
+class PooledTestContainerFactory
+    implements TestContainerFactory
+{
+
+    /**
+     * JCL logger.
+     */
+    private static final Log LOG = LogFactory.getLog( PooledTestContainerFactory.class );
+
+    /**
+     * Factory used to create the actual test containers (cannot be null).
+     */
+    private final TestContainerFactory m_delegate;
+    /**
+     * Maximum number of started, not yet used, test containers.
+     */
+    private final int m_size;
+    /**
+     * Executor used to start and stop test containers in background.
+     */
+    private final ExecutorService m_executor;
+    /**
+     * Test containers being started or already started, per configuration key. Guarded by this.
+     */
+    private final Map<OptionFingerprint, LinkedList<Future<TestContainer>>> m_pool;
+    /**
+     * Number of requests per configuration key. Guarded by this.
+     */
+    private final Map<OptionFingerprint, Integer> m_usage;
+    /**
+     * Options of the first request per configuration key, used to start test containers in background.
+     * Guarded by this.
+     */
+    private final Map<OptionFingerprint, Option[]> m_options;
+    /**
+     * Configuration keys per options array already requested. Test runners hand out the same options array for test
+     * methods with the same configuration, so the key is computed once per configuration. Guarded by this.
+     */
+    private final Map<Option[], OptionFingerprint> m_keys;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate factory used to create the actual test containers
+     * @param size     maximum number of started, not yet used, test containers
+     */
+    PooledTestContainerFactory( final TestContainerFactory delegate,
+                                final int size )
+    {
+        m_delegate = delegate;
+        m_size = size;
+        m_pool = new HashMap<OptionFingerprint, LinkedList<Future<TestContainer>>>();
+        m_usage = new HashMap<OptionFingerprint, Integer>();
+        m_options = new HashMap<OptionFingerprint, Option[]>();
+        m_keys = new WeakHashMap<Option[], OptionFingerprint>();
+        m_executor = Executors.newCachedThreadPool( new ThreadFactory()
+        {
+            private int m_count;
+
+            public synchronized Thread newThread( final Runnable runnable )
+            {
+                final Thread thread = new Thread( runnable, "Pax Exam container pool " + ( ++m_count ) );
+                thread.setDaemon( true );
+                return thread;
+            }
+        }
+        );
+        Runtime.getRuntime().addShutdownHook( new Thread( "Pax Exam container pool shutdown" )
+        {
+            @Override
+            public void run()
+            {
+                shutdown();
+            }
+        }
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     * Hands out an already started test container if one is available for the same configuration and schedules the
+     * start of a new one.
+     */
+    public synchronized TestContainer newInstance( final Option... options )
+    {
+        final OptionFingerprint key = getKey( options );
+        final Integer usage = m_usage.get( key );
+        m_usage.put( key, usage == null ? 1 : usage + 1 );
+        if( !m_options.containsKey( key ) )
+        {
+            m_options.put( key, options );
+        }
+        final LinkedList<Future<TestContainer>> ready = m_pool.get( key );
+        final TestContainer container;
+        if( ready != null && !ready.isEmpty() )
+        {
+            LOG.debug( "Use pooled test container" );
+            container = new PooledTestContainer( ready.removeFirst(), m_delegate, m_executor, options );
+        }
+        else
+        {
+            container = m_delegate.newInstance( options );
+        }
+        refill();
+        return container;
+    }
+
+    /**
+     * Starts test containers in background for the most requested configuration, till the pool is full. Test
+     * containers started for other configurations are stopped, to make room.
+     */
+    private void refill()
+    {
+        OptionFingerprint mostUsed = null;
+        int maxUsage = 0;
+        for( Map.Entry<OptionFingerprint, Integer> entry : m_usage.entrySet() )
+        {
+            if( entry.getValue() > maxUsage )
+            {
+                mostUsed = entry.getKey();
+                maxUsage = entry.getValue();
+            }
+        }
+        for( Iterator<Map.Entry<OptionFingerprint, LinkedList<Future<TestContainer>>>> iterator =
+            m_pool.entrySet().iterator(); iterator.hasNext(); )
+        {
+            final Map.Entry<OptionFingerprint, LinkedList<Future<TestContainer>>> entry = iterator.next();
+            if( !entry.getKey().equals( mostUsed ) )
+            {
+                for( Future<TestContainer> container : entry.getValue() )
+                {
+                    stopInBackground( container );
+                }
+                iterator.remove();
+            }
+        }
+        LinkedList<Future<TestContainer>> ready = m_pool.get( mostUsed );
+        if( ready == null )
+        {
+            ready = new LinkedList<Future<TestContainer>>();
+            m_pool.put( mostUsed, ready );
+        }
+        final Option[] options = m_options.get( mostUsed );
+        while( ready.size() < m_size )
+        {
+            LOG.debug( "Start pooled test container in background" );
+            ready.add( m_executor.submit( new Callable<TestContainer>()
+            {
+                public TestContainer call()
+                {
+                    final TestContainer container = m_delegate.newInstance( options );
+                    try
+                    {
+                        container.start();
+                    }
+                    catch( RuntimeException e )
+                    {
+                        stopQuietly( container );
+                        throw e;
+                    }
+                    return container;
+                }
+            }
+            )
+            );
+        }
+    }
+
+    /**
+     * Stops a test container started in background, once its start is completed.
+     *
+     * @param container test container being started
+     */
+    private void stopInBackground( final Future<TestContainer> container )
+    {
+        m_executor.submit( new Runnable()
+        {
+            public void run()
+            {
+                stopQuietly( container );
+            }
+        }
+        );
+    }
+
+    /**
+     * Stops all test containers from the pool. Called on JVM shutdown. Test containers still being started are not
+     * waited for, as they were started ahead for requests that will not come anymore: their start is cancelled
+     * (the framework process, if already launched, is killed by the Java runner on JVM exit).
+     */
+    void shutdown()
+    {
+        final List<Future<TestContainer>> containers = new ArrayList<Future<TestContainer>>();
+        synchronized( this )
+        {
+            for( LinkedList<Future<TestContainer>> ready : m_pool.values() )
+            {
+                containers.addAll( ready );
+            }
+            m_pool.clear();
+            m_executor.shutdownNow();
+        }
+        for( Future<TestContainer> container : containers )
+        {
+            // cancel fails if start already completed, case when the started container has to be stopped
+            if( !container.cancel( true ) )
+            {
+                stopQuietly( container );
+            }
+        }
+    }
+
+    /**
+     * Returns the configuration key of the options, its {@link OptionFingerprint}, computing it only if not already
+     * computed for the same options array.
+     *
+     * @param options configuration options
+     *
+     * @return configuration key
+     */
+    private OptionFingerprint getKey( final Option... options )
+    {
+        OptionFingerprint key = m_keys.get( options );
+        if( key == null )
+        {
+            key = OptionFingerprint.of( options );
+            m_keys.put( options, key );
+        }
+        return key;
+    }
+
+    /**
+     * Waits for a test container started in background and stops it, logging eventual exceptions.
+     *
+     * @param container test container being started
+     */
+    static void stopQuietly( final Future<TestContainer> container )
+    {
+        try
+        {
+            stopQuietly( container.get() );
+        }
+        catch( Exception e )
+        {
+            LOG.debug( "Pooled test container did not start: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * Stops a test container, logging eventual exceptions.
+     *
+     * @param container test container to be stopped
+     */
+    static void stopQuietly( final TestContainer container )
+    {
+        try
+        {
+            container.stop();
+        }
+        catch( RuntimeException e )
+        {
+            LOG.error( "Cannot stop the test container: " + e.getMessage() );
+        }
+    }
+
+}
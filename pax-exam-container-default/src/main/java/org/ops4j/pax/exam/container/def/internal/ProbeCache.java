@@ -0,0 +1,529 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.def.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Properties;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.pax.exam.Customizer;
+import org.ops4j.pax.exam.OptionFingerprint;
+import org.ops4j.store.Handle;
+import org.ops4j.store.Store;
+
+/**
+ * Persistent cache of built test probes. A probe is identified by a hash of the content of the folder the probe is
+ * built from, the probe url (that contains the manifest instructions) and the customizers applied to it, described by
+ * their class and state (their {@link OptionFingerprint}), as one customizer class can be configured differently.
+ * Built probes are kept in the store while the index from probe key to store handle is kept in a properties file, so
+ * unchanged probes are reused by all test containers and by following runs.
+ * Only probes provisioned via "dir:" urls can be cached. Keys are computed once per run and url, as hashing the folder
+ * is expensive; urls whose folder content may have changed have to be forgotten via {@link #forgetKey(String)}.
+ *
+ * @since 1.2.3
+ */
+class ProbeCache
+{
+
+    /**
+     * JCL logger.
+     */
+    private static final Log LOG = LogFactory.getLog( ProbeCache.class );
+
+    /**
+     * Prefix of urls that can be cached.
+     */
+    private static final String DIR_PROTOCOL = "dir:";
+    /**
+     * Name of index file, kept in the folder of the store.
+     */
+    private static final String INDEX_FILE = "paxexam-probes.properties";
+    /**
+     * Probe keys already computed in this run, by url and customizers fingerprint. Guarded by class.
+     */
+    private static final Map<String, String> s_keys = new HashMap<String, String>();
+
+    /**
+     * Store where probes are kept (cannot be null).
+     */
+    private final Store<InputStream> m_store;
+    /**
+     * File holding the index (cannot be null).
+     */
+    private final File m_indexFile;
+    /**
+     * Index from probe key to store handle identification. Guarded by this.
+     */
+    private final Properties m_index;
+
+    /**
+     * Constructor. The index is kept in the folder of the store.
+     *
+     * @param store store where probes are kept
+     *
+     * @throws IOException - If the folder of the store cannot be determined
+     */
+    ProbeCache( final Store<InputStream> store )
+        throws IOException
+    {
+        this( store, new File( getStoreFolder( store ), INDEX_FILE ) );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param store     store where probes are kept
+     * @param indexFile file holding the index of cached probes
+     */
+    ProbeCache( final Store<InputStream> store,
+                final File indexFile )
+    {
+        m_store = store;
+        m_indexFile = indexFile;
+        m_index = new Properties();
+        load( m_index );
+    }
+
+    /**
+     * Looks up a cached probe.
+     *
+     * @param key probe key, as computed by {@link #getKey(String, Customizer[])}
+     *
+     * @return handle of the cached probe or null if probe is not cached
+     */
+    synchronized Handle get( final String key )
+    {
+        String id = m_index.getProperty( key );
+        if( id == null )
+        {
+            // maybe it was cached meanwhile by another process
+            load( m_index );
+            id = m_index.getProperty( key );
+        }
+        if( id == null )
+        {
+            return null;
+        }
+        final Handle handle = new StoredHandle( id );
+        try
+        {
+            final URI location = m_store.getLocation( handle );
+            if( !new File( location ).exists() )
+            {
+                LOG.debug( "Cached probe for [" + key + "] is gone from the store" );
+                m_index.remove( key );
+                return null;
+            }
+        }
+        catch( Exception e )
+        {
+            LOG.debug( "Cached probe for [" + key + "] cannot be located: " + e.getMessage() );
+            return null;
+        }
+        LOG.debug( "Use cached probe [" + id + "]" );
+        return handle;
+    }
+
+    /**
+     * Adds a probe to cache.
+     *
+     * @param key    probe key, as computed by {@link #getKey(String, Customizer[])}
+     * @param handle store handle of the probe
+     */
+    synchronized void put( final String key,
+                           final Handle handle )
+    {
+        load( m_index );
+        m_index.setProperty( key, handle.getIdentification() );
+        save( m_index );
+    }
+
+    /**
+     * Loads the index file into the properties. Existing properties are kept if not present in file.
+     *
+     * @param index properties to load into
+     */
+    private void load( final Properties index )
+    {
+        if( !m_indexFile.exists() )
+        {
+            return;
+        }
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream( m_indexFile );
+            index.load( in );
+        }
+        catch( IOException e )
+        {
+            LOG.warn( "Cannot read probe cache index " + m_indexFile + ": " + e.getMessage() );
+        }
+        finally
+        {
+            close( in );
+        }
+    }
+
+    /**
+     * Saves the properties to index file. Properties are written to a temporary file that is then renamed, so other
+     * processes reading the index never see a partial file.
+     *
+     * @param index properties to be saved
+     */
+    private void save( final Properties index )
+    {
+        OutputStream out = null;
+        try
+        {
+            m_indexFile.getParentFile().mkdirs();
+            final File temp = File.createTempFile( "probes", ".tmp", m_indexFile.getParentFile() );
+            out = new FileOutputStream( temp );
+            index.store( out, "Pax Exam probe cache" );
+            out.close();
+            out = null;
+            if( !temp.renameTo( m_indexFile ) )
+            {
+                m_indexFile.delete();
+                if( !temp.renameTo( m_indexFile ) )
+                {
+                    temp.delete();
+                    LOG.warn( "Cannot write probe cache index " + m_indexFile );
+                }
+            }
+        }
+        catch( IOException e )
+        {
+            LOG.warn( "Cannot write probe cache index " + m_indexFile + ": " + e.getMessage() );
+        }
+        finally
+        {
+            close( out );
+        }
+    }
+
+    /**
+     * Returns the key of a probe, computing it only the first time it is asked for in this run.
+     *
+     * @param bundleUrl   probe url
+     * @param customizers customizers that will be applied to probe
+     *
+     * @return probe key or null if the probe cannot be cached
+     */
+    static String getKey( final String bundleUrl,
+                          final Customizer[] customizers )
+    {
+        final String fingerprint = fingerprint( customizers );
+        final String id = bundleUrl + "\n" + fingerprint;
+        synchronized( ProbeCache.class )
+        {
+            if( s_keys.containsKey( id ) )
+            {
+                return s_keys.get( id );
+            }
+        }
+        final String key = computeKey( bundleUrl, fingerprint );
+        synchronized( ProbeCache.class )
+        {
+            s_keys.put( id, key );
+        }
+        return key;
+    }
+
+    /**
+     * Forgets the keys computed for a probe url, so they are computed again on next request, as after the content of
+     * the folder the probe is built from changed.
+     *
+     * @param bundleUrl probe url
+     */
+    static synchronized void forgetKey( final String bundleUrl )
+    {
+        final String prefix = bundleUrl + "\n";
+        for( Iterator<String> ids = s_keys.keySet().iterator(); ids.hasNext(); )
+        {
+            if( ids.next().startsWith( prefix ) )
+            {
+                ids.remove();
+            }
+        }
+    }
+
+    /**
+     * Computes the key of a probe.
+     *
+     * @param bundleUrl   probe url
+     * @param customizers customizers that will be applied to probe
+     *
+     * @return probe key or null if the probe cannot be cached
+     */
+    static String computeKey( final String bundleUrl,
+                              final Customizer[] customizers )
+    {
+        return computeKey( bundleUrl, fingerprint( customizers ) );
+    }
+
+    /**
+     * Computes the key of a probe.
+     *
+     * @param bundleUrl   probe url
+     * @param customizers fingerprint of customizers that will be applied to probe
+     *
+     * @return probe key or null if the probe cannot be cached
+     */
+    private static String computeKey( final String bundleUrl,
+                                      final String customizers )
+    {
+        if( bundleUrl == null || !bundleUrl.startsWith( DIR_PROTOCOL ) )
+        {
+            return null;
+        }
+        final int instructionsStart = bundleUrl.indexOf( '$' );
+        final String path = bundleUrl.substring(
+            DIR_PROTOCOL.length(), instructionsStart >= 0 ? instructionsStart : bundleUrl.length()
+        );
+        final String tail = getInstruction( bundleUrl.substring( instructionsStart + 1 ), "tail" );
+        final File root = tail == null ? new File( path ) : findParentOfTail( new File( path ), tail );
+        if( root == null )
+        {
+            return null;
+        }
+        try
+        {
+            final MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+            digest.update( bundleUrl.getBytes( "UTF-8" ) );
+            digest.update( customizers.getBytes( "UTF-8" ) );
+            hashFolder( root, digest );
+            return toHex( digest.digest() );
+        }
+        catch( NoSuchAlgorithmException e )
+        {
+            return null;
+        }
+        catch( IOException e )
+        {
+            LOG.debug( "Cannot compute probe key: " + e.getMessage() );
+            return null;
+        }
+    }
+
+    /**
+     * Describes the customizers applied to a probe by class and state.
+     *
+     * @param customizers customizers (can be null)
+     *
+     * @return fingerprint of customizers
+     */
+    private static String fingerprint( final Customizer[] customizers )
+    {
+        return customizers == null ? "" : OptionFingerprint.of( customizers ).getDigest();
+    }
+
+    /**
+     * Returns the value of an instruction from the instructions part of a "dir:" url.
+     *
+     * @param instructions instructions, as in name1=value1&name2=value2
+     * @param name         instruction name
+     *
+     * @return instruction value or null if not found
+     */
+    private static String getInstruction( final String instructions,
+                                          final String name )
+    {
+        for( String instruction : instructions.split( "&" ) )
+        {
+            final int separator = instruction.indexOf( '=' );
+            if( separator > 0 && instruction.substring( 0, separator ).equals( name ) )
+            {
+                return instruction.substring( separator + 1 );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the folder (under top level folder) that contains the tail, the same way the "dir:" url handler does.
+     *
+     * @param topLevel top level folder
+     * @param tail     relative path of a file that should be found
+     *
+     * @return folder containing the tail or null if not found
+     */
+    static File findParentOfTail( final File topLevel,
+                                  final String tail )
+    {
+        final LinkedList<File> folders = new LinkedList<File>();
+        folders.add( topLevel );
+        while( !folders.isEmpty() )
+        {
+            final File folder = folders.removeFirst();
+            if( new File( folder, tail ).isFile() )
+            {
+                return folder;
+            }
+            final File[] children = folder.listFiles();
+            if( children != null )
+            {
+                for( File child : children )
+                {
+                    if( child.isDirectory() )
+                    {
+                        folders.add( child );
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds names and content of all files in a folder (recursively, in a stable order) to a digest.
+     *
+     * @param root   folder to be hashed
+     * @param digest digest to update
+     *
+     * @throws IOException - If a file cannot be read
+     */
+    private static void hashFolder( final File root,
+                                    final MessageDigest digest )
+        throws IOException
+    {
+        final byte[] buffer = new byte[8192];
+        final LinkedList<File> files = new LinkedList<File>();
+        files.add( root );
+        final int rootLength = root.getAbsolutePath().length();
+        while( !files.isEmpty() )
+        {
+            final File file = files.removeFirst();
+            if( file.isDirectory() )
+            {
+                final File[] children = file.listFiles();
+                if( children != null )
+                {
+                    Arrays.sort( children );
+                    files.addAll( 0, Arrays.asList( children ) );
+                }
+                continue;
+            }
+            digest.update( file.getAbsolutePath().substring( rootLength ).getBytes( "UTF-8" ) );
+            final InputStream in = new FileInputStream( file );
+            try
+            {
+                int read;
+                while( ( read = in.read( buffer ) ) != -1 )
+                {
+                    digest.update( buffer, 0, read );
+                }
+            }
+            finally
+            {
+                close( in );
+            }
+        }
+    }
+
+    /**
+     * Determines the folder a store keeps its content in, from the location of an (empty) stored entry. Files kept
+     * next to the store so follow the store and its location is not repeated here.
+     *
+     * @param store store
+     *
+     * @return folder of the store
+     *
+     * @throws IOException - If the empty entry cannot be stored
+     */
+    static File getStoreFolder( final Store<InputStream> store )
+        throws IOException
+    {
+        final Handle handle = store.store( new ByteArrayInputStream( new byte[0] ) );
+        return new File( store.getLocation( handle ) ).getParentFile();
+    }
+
+    /**
+     * Converts bytes to hex string.
+     *
+     * @param bytes bytes to convert
+     *
+     * @return hex string
+     */
+    private static String toHex( final byte[] bytes )
+    {
+        final StringBuilder hex = new StringBuilder();
+        for( byte b : bytes )
+        {
+            hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Closes a stream, ignoring eventual exceptions.
+     *
+     * @param stream to be closed (can be null)
+     */
+    private static void close( final Closeable stream )
+    {
+        if( stream != null )
+        {
+            try
+            {
+                stream.close();
+            }
+            catch( IOException ignore )
+            {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Handle of a probe already in store, re-created out of its identification.
+     */
+    private static class StoredHandle
+        implements Handle
+    {
+
+        private final String m_identification;
+
+        StoredHandle( final String identification )
+        {
+            m_identification = identification;
+        }
+
+        public String getIdentification()
+        {
+            return m_identification;
+        }
+
+    }
+
+}
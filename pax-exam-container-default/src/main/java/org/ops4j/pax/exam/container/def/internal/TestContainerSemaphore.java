@@ -21,6 +21,8 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -31,6 +33,10 @@ import org.apache.commons.logging.LogFactory;
  *
  * Any failing acquire is "logged" into the lock file.
  *
+ * Within the same JVM, test containers that use the same working folder wait for each other on acquire(), so test
+ * containers can be started in parallel. Test containers that do not set a working folder get one of the default
+ * working folders reserved via reserveDefaultWorkingFolder().
+ *
  */
 public class TestContainerSemaphore
 {
@@ -40,15 +46,67 @@ public class TestContainerSemaphore
      */
     private static final Log LOG = LogFactory.getLog( PaxRunnerTestContainer.class );
 
+    /**
+     * Working folders currently locked by test containers of this JVM.
+     */
+    private static final Set<File> LOCKED_FOLDERS = new HashSet<File>();
+
+    /**
+     * Default working folders currently reserved by test containers of this JVM.
+     */
+    private static final Set<File> RESERVED_DEFAULT_FOLDERS = new HashSet<File>();
+
     private File m_workingFolder;
 
+    private boolean m_locked;
+
     public TestContainerSemaphore( File workingFolder )
     {
         m_workingFolder = workingFolder;
     }
 
+    /**
+     * Reserves a default working folder that is not used by another test container of this JVM. First one is
+     * ${java.io.tmpdir}/paxexam_runner_${user.name}, the following ones get a numeric suffix.
+     *
+     * @return reserved working folder, to be released via releaseDefaultWorkingFolder()
+     */
+    public static File reserveDefaultWorkingFolder()
+    {
+        final String base = System.getProperty( "java.io.tmpdir" )
+                            + "/paxexam_runner_"
+                            + System.getProperty( "user.name" );
+        synchronized( RESERVED_DEFAULT_FOLDERS )
+        {
+            File folder = new File( base );
+            for( int i = 1; RESERVED_DEFAULT_FOLDERS.contains( folder ); i++ )
+            {
+                folder = new File( base + "_" + i );
+            }
+            RESERVED_DEFAULT_FOLDERS.add( folder );
+            return folder;
+        }
+    }
+
+    /**
+     * Releases a default working folder reserved via reserveDefaultWorkingFolder().
+     *
+     * @param folder reserved folder (can be null, case when nothing is released)
+     */
+    public static void releaseDefaultWorkingFolder( final File folder )
+    {
+        if( folder != null )
+        {
+            synchronized( RESERVED_DEFAULT_FOLDERS )
+            {
+                RESERVED_DEFAULT_FOLDERS.remove( folder );
+            }
+        }
+    }
+
     public boolean acquire()
     {
+        lockInJVM();
         if( lockExists() )
         {
             // blame !
@@ -71,6 +129,54 @@ public class TestContainerSemaphore
     {
         // delete file
         getLockFile().delete();
+        unlockInJVM();
+    }
+
+    /**
+     * Waits till no other test container of this JVM uses the working folder and marks it as used.
+     */
+    private void lockInJVM()
+    {
+        if( m_locked )
+        {
+            return;
+        }
+        final File folder = m_workingFolder.getAbsoluteFile();
+        synchronized( LOCKED_FOLDERS )
+        {
+            while( LOCKED_FOLDERS.contains( folder ) )
+            {
+                LOG.info( "Wait for another test container to release " + folder.getAbsolutePath() );
+                try
+                {
+                    LOCKED_FOLDERS.wait();
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException( "Interrupted while waiting for " + folder.getAbsolutePath(), e );
+                }
+            }
+            LOCKED_FOLDERS.add( folder );
+            m_locked = true;
+        }
+    }
+
+    /**
+     * Marks the working folder as not used anymore by this JVM.
+     */
+    private void unlockInJVM()
+    {
+        if( !m_locked )
+        {
+            return;
+        }
+        synchronized( LOCKED_FOLDERS )
+        {
+            LOCKED_FOLDERS.remove( m_workingFolder.getAbsoluteFile() );
+            m_locked = false;
+            LOCKED_FOLDERS.notifyAll();
+        }
     }
 
     public File getLockFile()
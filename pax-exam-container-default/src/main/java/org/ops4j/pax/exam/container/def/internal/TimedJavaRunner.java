@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.def.internal;
+
+import java.io.File;
+import org.ops4j.pax.runner.platform.DefaultJavaRunner;
+import org.ops4j.pax.runner.platform.PlatformException;
+
+/**
+ * {@link DefaultJavaRunner} that remembers when the framework process was forked, so the time spent by Pax Runner in
+ * resolving the provisioned artifacts can be told apart from the time spent in forking the process.
+ *
+ * @since 1.2.3
+ */
+class TimedJavaRunner
+    extends DefaultJavaRunner
+{
+
+    /**
+     * Time (millis) when fork started. 0 if not yet forked.
+     */
+    private volatile long m_forkStartedAt;
+    /**
+     * Time (millis) when fork ended. 0 if not yet forked.
+     */
+    private volatile long m_forkEndedAt;
+
+    /**
+     * Constructor. Does not wait for the forked process to end.
+     */
+    TimedJavaRunner()
+    {
+        super( false );
+    }
+
+    /**
+     * {@inheritDoc} Records the start and end of fork.
+     */
+    @Override
+    public synchronized void exec( final String[] vmOptions,
+                                   final String[] classpath,
+                                   final String mainClass,
+                                   final String[] programOptions,
+                                   final String javaHome,
+                                   final File workingDirectory )
+        throws PlatformException
+    {
+        m_forkStartedAt = System.currentTimeMillis();
+        try
+        {
+            super.exec( vmOptions, classpath, mainClass, programOptions, javaHome, workingDirectory );
+        }
+        finally
+        {
+            m_forkEndedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Getter.
+     *
+     * @return time (millis) when fork started or 0 if not forked
+     */
+    long getForkStartedAt()
+    {
+        return m_forkStartedAt;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return time (millis) when fork ended or 0 if not forked
+     */
+    long getForkEndedAt()
+    {
+        return m_forkEndedAt;
+    }
+
+}
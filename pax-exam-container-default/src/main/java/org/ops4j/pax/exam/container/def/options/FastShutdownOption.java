@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.def.options;
+
+import org.ops4j.pax.exam.options.TimeoutOption;
+
+/**
+ * Option enabling fast shutdown of the test container: stop returns right away while the framework process is
+ * stopped in background, and killed if it did not exit within the grace time (in milliseconds).
+ *
+ * @since 1.2.3
+ */
+public class FastShutdownOption
+    extends TimeoutOption
+{
+
+    /**
+     * Default grace time (millis) the framework process gets to exit before being killed.
+     */
+    public static final long DEFAULT_GRACE_TIME = 10000;
+
+    /**
+     * Constructor.
+     *
+     * @param graceTimeInMillis time (in millis) the framework process gets to exit before being killed
+     */
+    public FastShutdownOption( final long graceTimeInMillis )
+    {
+        super( graceTimeInMillis );
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.def.options;
+
+import org.ops4j.pax.exam.Option;
+
+/**
+ * Option enabling resolution of "mvn:" provisioning urls against the local maven repository before they are handed
+ * to Pax Runner. Artifacts found locally are provisioned from their file, the others are left to the mvn handler.
+ * In offline mode an artifact that is not available locally fails the test container instead.
+ * Offline mode can also be turned on without changing the configuration by setting the {@link #OFFLINE_PROPERTY}
+ * system property to true.
+ *
+ * @since 1.2.3
+ */
+public class LocalMavenResolutionOption
+    implements Option
+{
+
+    /**
+     * System property that turns on offline local resolution for all test containers.
+     */
+    public static final String OFFLINE_PROPERTY = "org.ops4j.pax.exam.mvn.offline";
+
+    /**
+     * True if artifacts not available locally must not be resolved remotely.
+     */
+    private final boolean m_offline;
+
+    /**
+     * Constructor.
+     *
+     * @param offline true if artifacts not available locally must not be resolved remotely
+     */
+    public LocalMavenResolutionOption( final boolean offline )
+    {
+        m_offline = offline;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return true if artifacts not available locally must not be resolved remotely
+     */
+    public boolean isOffline()
+    {
+        return m_offline;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LocalMavenResolutionOption{offline=" + m_offline + "}";
+    }
+
+}
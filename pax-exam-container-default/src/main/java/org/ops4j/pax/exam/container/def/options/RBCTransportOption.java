@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.def.options;
+
+import static org.ops4j.lang.NullArgumentException.*;
+import org.ops4j.pax.exam.Option;
+
+/**
+ * Option specifying the transport used to reach the remote bundle context in the container process, one of the
+ * transports defined in {@link org.ops4j.pax.exam.rbc.Constants}. Defaults to RMI.
+ *
+ * @since 1.2.3
+ */
+public class RBCTransportOption
+    implements Option
+{
+
+    /**
+     * Transport (cannot be null).
+     */
+    private final String m_transport;
+
+    /**
+     * Constructor.
+     *
+     * @param transport transport, as {@link org.ops4j.pax.exam.rbc.Constants#TRANSPORT_SOCKET} (cannot be null)
+     *
+     * @throws IllegalArgumentException - If transport is null
+     */
+    public RBCTransportOption( final String transport )
+    {
+        validateNotNull( transport, "Transport" );
+        m_transport = transport;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return transport
+     */
+    public String getTransport()
+    {
+        return m_transport;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RBCTransportOption{transport=" + m_transport + "}";
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.def.internal;
+
+import java.io.File;
+import java.io.IOException;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.ops4j.io.FileUtils;
+import static org.ops4j.pax.exam.CoreOptions.*;
+
+/**
+ * Unit Tests for {@link LocalMavenIndex}.
+ *
+ * @since 1.2.3
+ */
+public class LocalMavenIndexTest
+{
+
+    /**
+     * Test conversion of "mvn:" urls to paths relative to the local repository.
+     */
+    @Test
+    public void toPath()
+    {
+        assertThat( "Default type", LocalMavenIndex.toPath( "mvn:org.ops4j/foo/1.0" ),
+                    is( equalTo( "org/ops4j/foo/1.0/foo-1.0.jar" ) )
+        );
+        assertThat( "Type and classifier", LocalMavenIndex.toPath( "mvn:org.ops4j/foo/1.0/zip/bin" ),
+                    is( equalTo( "org/ops4j/foo/1.0/foo-1.0-bin.zip" ) )
+        );
+        assertThat( "Repository", LocalMavenIndex.toPath( "mvn:http://repo.ops4j.org/maven2!org.ops4j/foo/1.0" ),
+                    is( equalTo( "org/ops4j/foo/1.0/foo-1.0.jar" ) )
+        );
+        assertThat( "Maven bundle", LocalMavenIndex.toPath(
+            mavenBundle().groupId( "org.ops4j" ).artifactId( "foo" ).version( "1.0-SNAPSHOT" ).getURL() ),
+                    is( equalTo( "org/ops4j/foo/1.0-SNAPSHOT/foo-1.0-SNAPSHOT.jar" ) )
+        );
+        assertThat( "No version", LocalMavenIndex.toPath( "mvn:org.ops4j/foo" ), is( nullValue() ) );
+        assertThat( "Range", LocalMavenIndex.toPath( "mvn:org.ops4j/foo/[1.0,2.0)" ), is( nullValue() ) );
+        assertThat( "Latest", LocalMavenIndex.toPath( "mvn:org.ops4j/foo/LATEST" ), is( nullValue() ) );
+        assertThat( "Not mvn", LocalMavenIndex.toPath( "file:foo.jar" ), is( nullValue() ) );
+    }
+
+    /**
+     * Test finding "mvn:" urls wrapped by other url handlers.
+     */
+    @Test
+    public void findMavenUrl()
+    {
+        assertThat( "Mvn", LocalMavenIndex.findMavenUrl( "mvn:org.ops4j/foo/1.0" ),
+                    is( equalTo( "mvn:org.ops4j/foo/1.0" ) )
+        );
+        assertThat( "Wrap", LocalMavenIndex.findMavenUrl( "wrap:mvn:org.ops4j/foo/1.0$Bundle-SymbolicName=foo" ),
+                    is( equalTo( "mvn:org.ops4j/foo/1.0" ) )
+        );
+        assertThat( "Scan bundle", LocalMavenIndex.findMavenUrl( "scan-bundle:mvn:org.ops4j/foo/1.0@5@update" ),
+                    is( equalTo( "mvn:org.ops4j/foo/1.0" ) )
+        );
+        assertThat( "Both", LocalMavenIndex.findMavenUrl( "scan-bundle:wrap:mvn:org.ops4j/foo/1.0$overwrite=merge@5" ),
+                    is( equalTo( "mvn:org.ops4j/foo/1.0" ) )
+        );
+        assertThat( "Repository", LocalMavenIndex.findMavenUrl( "wrap:mvn:http://u:p@host/m2!org.ops4j/foo/1.0" ),
+                    is( equalTo( "mvn:http://u:p@host/m2!org.ops4j/foo/1.0" ) )
+        );
+        assertThat( "Not mvn", LocalMavenIndex.findMavenUrl( "wrap:file:foo.jar" ), is( nullValue() ) );
+        assertThat( "Path", LocalMavenIndex.findMavenUrl( "file:/tmp/mvn:foo.jar" ), is( nullValue() ) );
+        assertThat( "Null", LocalMavenIndex.findMavenUrl( null ), is( nullValue() ) );
+    }
+
+    /**
+     * Test that artifacts are resolved to files only if available in the local repository.
+     *
+     * @throws IOException - Unexpected
+     */
+    @Test
+    public void resolve()
+        throws IOException
+    {
+        final File repository = new File( System.getProperty( "java.io.tmpdir" ), "paxexam_local_repository_test" );
+        FileUtils.delete( repository );
+        final File artifact = new File( repository, "org/ops4j/foo/1.0/foo-1.0.jar" );
+        artifact.getParentFile().mkdirs();
+        artifact.createNewFile();
+        try
+        {
+            final LocalMavenIndex index = new LocalMavenIndex( repository );
+            assertThat( "Available", index.resolve( "mvn:org.ops4j/foo/1.0" ), is( equalTo( artifact ) ) );
+            assertThat( "Not available", index.resolve( "mvn:org.ops4j/foo/2.0" ), is( nullValue() ) );
+            assertThat( "Not mvn", index.resolve( "file:foo.jar" ), is( nullValue() ) );
+
+            final File installed = new File( repository, "org/ops4j/foo/2.0/foo-2.0.jar" );
+            installed.getParentFile().mkdirs();
+            installed.createNewFile();
+            assertThat( "Installed meanwhile", index.resolve( "mvn:org.ops4j/foo/2.0" ), is( equalTo( installed ) ) );
+        }
+        finally
+        {
+            FileUtils.delete( repository );
+        }
+    }
+
+}
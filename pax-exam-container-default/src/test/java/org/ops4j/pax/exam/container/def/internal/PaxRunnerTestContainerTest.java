@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.def.internal;
+
+import java.io.File;
+import java.io.IOException;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.ops4j.io.FileUtils;
+import org.ops4j.pax.exam.OptionSet;
+import static org.ops4j.pax.exam.CoreOptions.*;
+import static org.ops4j.pax.exam.container.def.PaxRunnerOptions.*;
+import org.ops4j.pax.exam.options.ProvisionOption;
+import org.ops4j.pax.exam.spi.container.TestContainerException;
+
+/**
+ * Unit Tests for {@link PaxRunnerTestContainer} set up: resources held and local resolution of provisioned urls.
+ *
+ * @since 1.2.3
+ */
+public class PaxRunnerTestContainerTest
+{
+
+    /**
+     * Test that the default working folder and the communication port are released when the options cannot be
+     * resolved, as when offline and an artifact is not available locally.
+     */
+    @Test
+    public void releaseOnUnresolvableOptions()
+    {
+        final File repository = new File( System.getProperty( "java.io.tmpdir" ), "paxexam_empty_repository_test" );
+        FileUtils.delete( repository );
+        repository.mkdirs();
+        final File folder = TestContainerSemaphore.reserveDefaultWorkingFolder();
+        TestContainerSemaphore.releaseDefaultWorkingFolder( folder );
+        final Integer port = PaxRunnerTestContainer.findFreeCommunicationPort();
+        PaxRunnerTestContainer.releaseCommunicationPort( port );
+        try
+        {
+            new PaxRunnerTestContainer(
+                null,
+                offlineMavenResolution(),
+                localRepository( repository.getAbsolutePath() ),
+                mavenBundle( "org.ops4j", "foo", "1.0" )
+            );
+            fail( "Expected TestContainerException" );
+        }
+        catch( TestContainerException e )
+        {
+            // expected
+        }
+        finally
+        {
+            FileUtils.delete( repository );
+        }
+        final File reserved = TestContainerSemaphore.reserveDefaultWorkingFolder();
+        TestContainerSemaphore.releaseDefaultWorkingFolder( reserved );
+        assertThat( "Working folder released", reserved, is( equalTo( folder ) ) );
+        final Integer found = PaxRunnerTestContainer.findFreeCommunicationPort();
+        PaxRunnerTestContainer.releaseCommunicationPort( found );
+        assertThat( "Port released", found, is( equalTo( port ) ) );
+    }
+
+    /**
+     * Test that wrapped "mvn:" urls are resolved locally too, and fail if offline and not available locally.
+     *
+     * @throws IOException - Unexpected
+     */
+    @Test
+    public void resolveWrappedMavenUrls()
+        throws IOException
+    {
+        final File repository = new File( System.getProperty( "java.io.tmpdir" ), "paxexam_wrap_repository_test" );
+        FileUtils.delete( repository );
+        final File artifact = new File( repository, "org/ops4j/foo/1.0/foo-1.0.jar" );
+        artifact.getParentFile().mkdirs();
+        artifact.createNewFile();
+        try
+        {
+            final OptionSet wrapped = PaxRunnerTestContainer.wrap( new OptionSet(
+                offlineMavenResolution(),
+                localRepository( repository.getAbsolutePath() ),
+                wrappedBundle( mavenBundle( "org.ops4j", "foo", "1.0" ) ).bundleSymbolicName( "foo" )
+            )
+            );
+            final String url = wrapped.filter( ProvisionOption.class )[ 0 ].getURL();
+            assertThat( "Wrapped file", url.contains( "wrap:" + artifact.toURI() + "$" ), is( true ) );
+
+            try
+            {
+                PaxRunnerTestContainer.wrap( new OptionSet(
+                    offlineMavenResolution(),
+                    localRepository( repository.getAbsolutePath() ),
+                    wrappedBundle( mavenBundle( "org.ops4j", "foo", "2.0" ) )
+                )
+                );
+                fail( "Expected TestContainerException" );
+            }
+            catch( TestContainerException e )
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            FileUtils.delete( repository );
+        }
+    }
+
+}
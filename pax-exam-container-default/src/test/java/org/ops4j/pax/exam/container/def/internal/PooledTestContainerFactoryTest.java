@@ -0,0 +1,314 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.def.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.spi.container.TestContainer;
+import org.ops4j.pax.exam.spi.container.TestContainerException;
+import org.ops4j.pax.exam.spi.container.TestContainerFactory;
+
+/**
+ * Unit Tests for {@link PooledTestContainerFactory}, run against a factory of stub test containers.
+ *
+ * @since 1.2.3
+ */
+public class PooledTestContainerFactoryTest
+{
+
+    private static final Option[] CONFIG_A = { new Label( "a" ) };
+    private static final Option[] CONFIG_B = { new Label( "b" ) };
+
+    /**
+     * What happened to the stub test containers, in order.
+     */
+    private final List<String> m_events = Collections.synchronizedList( new ArrayList<String>() );
+    /**
+     * Gate stub test container starts wait for.
+     */
+    private CountDownLatch m_startGate;
+    private PooledTestContainerFactory m_pool;
+
+    @Before
+    public void setUp()
+    {
+        m_startGate = new CountDownLatch( 0 );
+        m_pool = new PooledTestContainerFactory( new StubFactory(), 1 );
+    }
+
+    @After
+    public void tearDown()
+    {
+        m_startGate.countDown();
+        m_pool.shutdown();
+    }
+
+    /**
+     * Test that the first request gets a new test container, that a test container is started in background for the
+     * next one and that the next request gets that test container, already started.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void handOutPooledContainer()
+        throws Exception
+    {
+        final TestContainer first = m_pool.newInstance( CONFIG_A );
+        assertThat( "First is pooled", first instanceof PooledTestContainer, is( false ) );
+        awaitEvent( "started a2" );
+
+        final TestContainer second = m_pool.newInstance( CONFIG_A );
+        assertThat( "Second is pooled", second instanceof PooledTestContainer, is( true ) );
+        second.start();
+        assertThat( "Pooled container", second.installBundle( "file:bundle.jar" ), is( equalTo( 2L ) ) );
+        assertThat( "Started once", Collections.frequency( m_events, "started a2" ), is( equalTo( 1 ) ) );
+
+        // and the pool is refilled
+        awaitEvent( "started a3" );
+        second.stop();
+        assertThat( m_events.contains( "stop a2" ), is( true ) );
+    }
+
+    /**
+     * Test that test containers started for a configuration are stopped once another configuration is requested more
+     * often, and that the pool is refilled for that one.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void evictLessUsedConfiguration()
+        throws Exception
+    {
+        m_pool.newInstance( CONFIG_A );
+        m_pool.newInstance( CONFIG_A );
+        // one handed out, one in the pool (started in any order)
+        awaitEvents( "started a", 2 );
+
+        m_pool.newInstance( CONFIG_B );
+        m_pool.newInstance( CONFIG_B );
+        m_pool.newInstance( CONFIG_B );
+        awaitEvents( "stop a", 1 );
+        assertThat( "Refilled for most used", m_pool.newInstance( CONFIG_B ) instanceof PooledTestContainer,
+                    is( true )
+        );
+    }
+
+    /**
+     * Test that shutdown does not wait for test containers still being started but cancels their start.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void shutdownCancelsPendingStarts()
+        throws Exception
+    {
+        m_startGate = new CountDownLatch( 1 );
+        m_pool.newInstance( CONFIG_A );
+        awaitEvent( "starting a2" );
+
+        final long start = System.currentTimeMillis();
+        m_pool.shutdown();
+        assertThat( "Shutdown took (millis)", System.currentTimeMillis() - start < 5000, is( true ) );
+        awaitEvent( "interrupted a2" );
+    }
+
+    /**
+     * Test that a pooled test container that was not started can be stopped after the pool was shut down.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void stopAfterShutdown()
+        throws Exception
+    {
+        m_pool.newInstance( CONFIG_A );
+        final TestContainer pooled = m_pool.newInstance( CONFIG_A );
+        assertThat( "Pooled", pooled instanceof PooledTestContainer, is( true ) );
+        m_pool.shutdown();
+        pooled.stop();
+    }
+
+    private void awaitEvent( final String event )
+        throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while( !m_events.contains( event ) && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 10 );
+        }
+        assertThat( "Events " + m_events, m_events.contains( event ), is( true ) );
+    }
+
+    private void awaitEvents( final String prefix,
+                              final int count )
+        throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while( countEvents( prefix ) < count && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 10 );
+        }
+        assertThat( "Events " + m_events, countEvents( prefix ), is( equalTo( count ) ) );
+    }
+
+    private int countEvents( final String prefix )
+    {
+        int count = 0;
+        synchronized( m_events )
+        {
+            for( String event : m_events )
+            {
+                if( event.startsWith( prefix ) )
+                {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Option naming a configuration.
+     */
+    private static class Label
+        implements Option
+    {
+
+        private final String m_name;
+
+        Label( final String name )
+        {
+            m_name = name;
+        }
+
+    }
+
+    /**
+     * Factory of stub test containers, named after the configuration label and a sequence number.
+     */
+    private class StubFactory
+        implements TestContainerFactory
+    {
+
+        private int m_count;
+
+        public synchronized TestContainer newInstance( final Option... options )
+        {
+            m_count++;
+            return new StubContainer( ( (Label) options[ 0 ] ).m_name + m_count, m_count );
+        }
+
+    }
+
+    /**
+     * Test container that records its start and stop. Start waits for the start gate.
+     */
+    private class StubContainer
+        implements TestContainer
+    {
+
+        private final String m_name;
+        private final long m_id;
+
+        StubContainer( final String name,
+                       final long id )
+        {
+            m_name = name;
+            m_id = id;
+        }
+
+        public void start()
+        {
+            m_events.add( "starting " + m_name );
+            try
+            {
+                m_startGate.await();
+            }
+            catch( InterruptedException e )
+            {
+                m_events.add( "interrupted " + m_name );
+                throw new TestContainerException( "Interrupted", e );
+            }
+            m_events.add( "started " + m_name );
+        }
+
+        public void stop()
+        {
+            m_events.add( "stop " + m_name );
+        }
+
+        public long installBundle( final String bundleUrl )
+        {
+            return m_id;
+        }
+
+        public <T> T getService( final Class<T> serviceType )
+        {
+            return null;
+        }
+
+        public <T> T getService( final Class<T> serviceType,
+                                 final long timeoutInMillis )
+        {
+            return null;
+        }
+
+        public long installBundle( final String bundleLocation,
+                                   final byte[] bundle )
+        {
+            return m_id;
+        }
+
+        public void startBundle( final long bundleId )
+        {
+        }
+
+        public long[] installBundles( final int startLevel,
+                                      final boolean start,
+                                      final String... bundleUrls )
+        {
+            return new long[0];
+        }
+
+        public void updateBundle( final long bundleId,
+                                  final String bundleUrl )
+        {
+        }
+
+        public void setBundleStartLevel( final long bundleId,
+                                         final int startLevel )
+        {
+        }
+
+        public void waitForState( final long bundleId,
+                                  final int state,
+                                  final long timeoutInMillis )
+        {
+        }
+
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.def.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.io.FileUtils;
+import org.ops4j.pax.exam.Customizer;
+import org.ops4j.store.Handle;
+import org.ops4j.store.Store;
+import org.ops4j.store.StoreFactory;
+
+/**
+ * Unit Tests for {@link ProbeCache}.
+ *
+ * @since 1.2.3
+ */
+public class ProbeCacheTest
+{
+
+    private File m_folder;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_folder = File.createTempFile( "probecache", "" );
+        m_folder.delete();
+        new File( m_folder, "classes/org/foo" ).mkdirs();
+        write( "classes/org/foo/Bar.class", "bar" );
+    }
+
+    @After
+    public void tearDown()
+    {
+        FileUtils.delete( m_folder );
+    }
+
+    /**
+     * Test that the key changes only when content of probe folder changes and that it is computed once until the url
+     * is forgotten.
+     */
+    @Test
+    public void keyFollowsContent()
+        throws IOException
+    {
+        final String url = "dir:" + m_folder.getAbsolutePath() + "$tail=org/foo/Bar.class&Bundle-SymbolicName=probe";
+        ProbeCache.forgetKey( url );
+        final String key = ProbeCache.getKey( url, null );
+        assertThat( "Key", key, is( notNullValue() ) );
+        assertThat( "Same content", ProbeCache.computeKey( url, null ), is( equalTo( key ) ) );
+        write( "classes/org/foo/Bar.class", "changed" );
+        assertThat( "Changed content", ProbeCache.computeKey( url, null ), is( not( equalTo( key ) ) ) );
+        assertThat( "Computed once", ProbeCache.getKey( url, null ), is( equalTo( key ) ) );
+        ProbeCache.forgetKey( url );
+        assertThat( "Forgotten", ProbeCache.getKey( url, null ), is( not( equalTo( key ) ) ) );
+        ProbeCache.forgetKey( url );
+    }
+
+    /**
+     * Test that customizers of the same class configured differently result in different keys, while equally
+     * configured ones share the key.
+     */
+    @Test
+    public void keyFollowsCustomizerState()
+    {
+        final String url = "dir:" + m_folder.getAbsolutePath() + "$tail=org/foo/Bar.class&Bundle-SymbolicName=probe";
+        final String key = ProbeCache.getKey( url, new Customizer[]{ appendingCustomizer( "a" ) } );
+        assertThat( "Key", key, is( notNullValue() ) );
+        assertThat(
+            "Same state",
+            ProbeCache.getKey( url, new Customizer[]{ appendingCustomizer( "a" ) } ),
+            is( equalTo( key ) )
+        );
+        assertThat(
+            "Other state",
+            ProbeCache.getKey( url, new Customizer[]{ appendingCustomizer( "b" ) } ),
+            is( not( equalTo( key ) ) )
+        );
+        assertThat( "No customizer", ProbeCache.getKey( url, null ), is( not( equalTo( key ) ) ) );
+        ProbeCache.forgetKey( url );
+    }
+
+    /**
+     * Test that only "dir:" urls are cached.
+     */
+    @Test
+    public void noKeyForOtherUrls()
+    {
+        assertThat( "Key", ProbeCache.getKey( "file:foo.jar", null ), is( nullValue() ) );
+    }
+
+    /**
+     * Test that a cached probe is found by a new cache instance using the same index file.
+     */
+    @Test
+    public void persistedIndex()
+        throws IOException
+    {
+        final Store<InputStream> store = StoreFactory.anonymousStore();
+        final File index = new File( m_folder, "index.properties" );
+        final Handle handle = store.store( new ByteArrayInputStream( "probe".getBytes() ) );
+        new ProbeCache( store, index ).put( "key", handle );
+
+        final Handle cached = new ProbeCache( store, index ).get( "key" );
+        assertThat( "Cached handle", cached, is( notNullValue() ) );
+        assertThat( "Identification", cached.getIdentification(), is( equalTo( handle.getIdentification() ) ) );
+        assertThat( "Unknown key", new ProbeCache( store, index ).get( "other" ), is( nullValue() ) );
+    }
+
+    private void write( final String path, final String content )
+        throws IOException
+    {
+        final FileWriter writer = new FileWriter( new File( m_folder, path ) );
+        try
+        {
+            writer.write( content );
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Creates a customizer appending a value to the probe, as an anonymous class capturing the value.
+     */
+    private static Customizer appendingCustomizer( final String value )
+    {
+        return new Customizer()
+        {
+            @Override
+            public InputStream customizeTestProbe( final InputStream testProbe )
+            {
+                return new SequenceInputStream( testProbe, new ByteArrayInputStream( value.getBytes() ) );
+            }
+        };
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.def.internal;
+
+import java.io.File;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit Tests for {@link TestContainerSemaphore} default working folder reservation.
+ *
+ * @since 1.2.3
+ */
+public class TestContainerSemaphoreTest
+{
+
+    /**
+     * Test that test containers running at the same time get different default working folders and that a released
+     * folder is handed out again.
+     */
+    @Test
+    public void reserveDifferentFolders()
+    {
+        final File first = TestContainerSemaphore.reserveDefaultWorkingFolder();
+        final File second = TestContainerSemaphore.reserveDefaultWorkingFolder();
+        try
+        {
+            assertThat( "Reserved folders", second, is( not( equalTo( first ) ) ) );
+            TestContainerSemaphore.releaseDefaultWorkingFolder( first );
+            final File third = TestContainerSemaphore.reserveDefaultWorkingFolder();
+            TestContainerSemaphore.releaseDefaultWorkingFolder( third );
+            assertThat( "Released folder reused", third, is( equalTo( first ) ) );
+        }
+        finally
+        {
+            TestContainerSemaphore.releaseDefaultWorkingFolder( first );
+            TestContainerSemaphore.releaseDefaultWorkingFolder( second );
+        }
+    }
+
+}
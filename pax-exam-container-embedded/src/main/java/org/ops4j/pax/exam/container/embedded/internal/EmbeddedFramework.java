@@ -0,0 +1,576 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.embedded.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Dictionary;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.pax.exam.Constants;
+import org.ops4j.pax.exam.spi.container.TestContainerException;
+
+/**
+ * An OSGi framework running in the current JVM, loaded in an isolated class loader (whose parent is the bootstrap
+ * class loader), so framework and bundles do not see the classes of the test class path. The framework is created via
+ * the OSGi launching api (org.osgi.framework.launch.FrameworkFactory) and, as OSGi classes are not the ones from test
+ * class path, all calls are done via reflection.
+ *
+ * @since 1.2.3
+ */
+class EmbeddedFramework
+{
+
+    /**
+     * JCL logger.
+     */
+    private static final Log LOG = LogFactory.getLog( EmbeddedFramework.class );
+
+    /**
+     * Service file that names the framework factory.
+     */
+    private static final String FACTORY_SERVICE = "META-INF/services/org.osgi.framework.launch.FrameworkFactory";
+    /**
+     * Interval in millis between two checks while waiting.
+     */
+    private static final long POLL_INTERVAL = 10;
+
+    /**
+     * Framework jar (cannot be null).
+     */
+    private final File m_frameworkJar;
+    /**
+     * Framework configuration properties (cannot be null).
+     */
+    private final Map<String, String> m_properties;
+    /**
+     * Isolated class loader. Null if not started.
+     */
+    private ClassLoader m_classLoader;
+    /**
+     * The framework (an org.osgi.framework.launch.Framework). Null if not started.
+     */
+    private Object m_framework;
+    /**
+     * Bundle context of the system bundle (an org.osgi.framework.BundleContext). Null if not started.
+     */
+    private Object m_bundleContext;
+
+    /**
+     * Constructor.
+     *
+     * @param frameworkJar framework jar
+     * @param properties   framework configuration properties
+     */
+    EmbeddedFramework( final File frameworkJar,
+                       final Map<String, String> properties )
+    {
+        m_frameworkJar = frameworkJar;
+        m_properties = properties;
+    }
+
+    /**
+     * Creates and starts the framework.
+     */
+    void start()
+    {
+        try
+        {
+            m_classLoader = new URLClassLoader( new URL[]{ m_frameworkJar.toURI().toURL() }, null );
+            final Object factory = m_classLoader.loadClass( getFactoryClassName() ).newInstance();
+            m_framework = invoke(
+                "org.osgi.framework.launch.FrameworkFactory", "newFramework", new Class<?>[]{ Map.class },
+                factory, m_properties
+            );
+            invoke( "org.osgi.framework.launch.Framework", "start", new Class<?>[0], m_framework );
+            m_bundleContext = invoke( "org.osgi.framework.Bundle", "getBundleContext", new Class<?>[0], m_framework );
+        }
+        catch( MalformedURLException e )
+        {
+            throw new TestContainerException( "Invalid framework jar " + m_frameworkJar, e );
+        }
+        catch( ClassNotFoundException e )
+        {
+            throw new TestContainerException( "Framework factory not found in " + m_frameworkJar, e );
+        }
+        catch( InstantiationException e )
+        {
+            throw new TestContainerException( "Framework factory cannot be created", e );
+        }
+        catch( IllegalAccessException e )
+        {
+            throw new TestContainerException( "Framework factory cannot be created", e );
+        }
+    }
+
+    /**
+     * Stops the framework and waits for it to stop.
+     *
+     * @param timeoutInMillis max time to wait for the framework to stop
+     */
+    void stop( final long timeoutInMillis )
+    {
+        if( m_framework == null )
+        {
+            return;
+        }
+        try
+        {
+            invoke( "org.osgi.framework.launch.Framework", "stop", new Class<?>[0], m_framework );
+            invoke(
+                "org.osgi.framework.launch.Framework", "waitForStop", new Class<?>[]{ long.class }, m_framework,
+                timeoutInMillis == Constants.WAIT_FOREVER ? 0 : timeoutInMillis
+            );
+        }
+        finally
+        {
+            m_framework = null;
+            m_bundleContext = null;
+            m_classLoader = null;
+        }
+    }
+
+    /**
+     * Installs a bundle.
+     *
+     * @param location bundle location
+     * @param content  bundle content
+     *
+     * @return bundle id
+     */
+    long installBundle( final String location,
+                        final InputStream content )
+    {
+        final Object bundle = invoke(
+            "org.osgi.framework.BundleContext", "installBundle", new Class<?>[]{ String.class, InputStream.class },
+            getBundleContext(), location, content
+        );
+        return (Long) invoke( "org.osgi.framework.Bundle", "getBundleId", new Class<?>[0], bundle );
+    }
+
+    /**
+     * Starts a bundle. Fragments are not started.
+     *
+     * @param bundleId bundle id
+     */
+    void startBundle( final long bundleId )
+    {
+        final Object bundle = getBundle( bundleId );
+        final Object headers = invoke( "org.osgi.framework.Bundle", "getHeaders", new Class<?>[0], bundle );
+        if( ( (Dictionary<?, ?>) headers ).get( "Fragment-Host" ) != null )
+        {
+            return;
+        }
+        invoke( "org.osgi.framework.Bundle", "start", new Class<?>[0], bundle );
+    }
+
+    /**
+     * Updates a bundle with new content.
+     *
+     * @param bundleId bundle id
+     * @param content  new bundle content (closed by the framework)
+     */
+    void updateBundle( final long bundleId,
+                       final InputStream content )
+    {
+        invoke(
+            "org.osgi.framework.Bundle", "update", new Class<?>[]{ InputStream.class }, getBundle( bundleId ), content
+        );
+    }
+
+    /**
+     * Uninstalls a bundle.
+     *
+     * @param bundleId bundle id
+     */
+    void uninstallBundle( final long bundleId )
+    {
+        invoke( "org.osgi.framework.Bundle", "uninstall", new Class<?>[0], getBundle( bundleId ) );
+    }
+
+    /**
+     * Returns the state of a bundle.
+     *
+     * @param bundleId bundle id
+     *
+     * @return bundle state
+     */
+    int getBundleState( final long bundleId )
+    {
+        return (Integer) invoke( "org.osgi.framework.Bundle", "getState", new Class<?>[0], getBundle( bundleId ) );
+    }
+
+    /**
+     * Sets the start level of a bundle via the start level service.
+     *
+     * @param bundleId   bundle id
+     * @param startLevel start level
+     */
+    void setBundleStartLevel( final long bundleId,
+                              final int startLevel )
+    {
+        invoke(
+            "org.osgi.service.startlevel.StartLevel", "setBundleStartLevel",
+            new Class<?>[]{ loadClass( "org.osgi.framework.Bundle" ), int.class },
+            getStartLevelService(), getBundle( bundleId ), startLevel
+        );
+    }
+
+    /**
+     * Sets the framework start level via the start level service.
+     *
+     * @param startLevel start level
+     */
+    void setStartLevel( final int startLevel )
+    {
+        invoke(
+            "org.osgi.service.startlevel.StartLevel", "setStartLevel", new Class<?>[]{ int.class },
+            getStartLevelService(), startLevel
+        );
+    }
+
+    /**
+     * Returns the framework start level.
+     *
+     * @return framework start level
+     */
+    int getStartLevel()
+    {
+        return (Integer) invoke(
+            "org.osgi.service.startlevel.StartLevel", "getStartLevel", new Class<?>[0], getStartLevelService()
+        );
+    }
+
+    /**
+     * Returns a proxy to a service registered in the framework. The proxy implements the service type as loaded by
+     * the caller and forwards calls, by method name and parameter type names, to the actual service.
+     *
+     * @param serviceType     service type
+     * @param timeoutInMillis max time to wait for the service to be available
+     *
+     * @return service proxy
+     */
+    @SuppressWarnings( "unchecked" )
+    <T> T getService( final Class<T> serviceType,
+                      final long timeoutInMillis )
+    {
+        final Object service = waitForService( serviceType.getName(), timeoutInMillis );
+        return (T) Proxy.newProxyInstance(
+            serviceType.getClassLoader(),
+            new Class<?>[]{ serviceType },
+            new InvocationHandler()
+            {
+                public Object invoke( final Object proxy,
+                                      final Method method,
+                                      final Object[] params )
+                    throws Throwable
+                {
+                    final Method target = findServiceMethod( service, serviceType.getName(), method );
+                    try
+                    {
+                        return target.invoke( service, params );
+                    }
+                    catch( InvocationTargetException e )
+                    {
+                        throw e.getCause();
+                    }
+                }
+            }
+        );
+    }
+
+    /**
+     * Waits for a service to be registered.
+     *
+     * @param serviceType     service type name
+     * @param timeoutInMillis max time to wait
+     *
+     * @return the service
+     */
+    private Object waitForService( final String serviceType,
+                                   final long timeoutInMillis )
+    {
+        final long waitUntil = System.currentTimeMillis() + timeoutInMillis;
+        while( true )
+        {
+            final Object reference = invoke(
+                "org.osgi.framework.BundleContext", "getServiceReference", new Class<?>[]{ String.class },
+                getBundleContext(), serviceType
+            );
+            if( reference != null )
+            {
+                final Object service = invoke(
+                    "org.osgi.framework.BundleContext", "getService",
+                    new Class<?>[]{ loadClass( "org.osgi.framework.ServiceReference" ) },
+                    getBundleContext(), reference
+                );
+                if( service != null )
+                {
+                    return service;
+                }
+            }
+            if( timeoutInMillis != Constants.WAIT_FOREVER && System.currentTimeMillis() >= waitUntil )
+            {
+                throw new TestContainerException( "Service [" + serviceType + "] is not available" );
+            }
+            sleep();
+        }
+    }
+
+    /**
+     * Finds the method of the service that corresponds to a method of the service type as loaded by caller.
+     *
+     * @param service     service object
+     * @param serviceType service type name
+     * @param method      method of the service type as loaded by caller
+     *
+     * @return method to invoke on service
+     */
+    private static Method findServiceMethod( final Object service,
+                                             final String serviceType,
+                                             final Method method )
+    {
+        final Class<?> serviceInterface = findInterface( service.getClass(), serviceType );
+        if( serviceInterface == null )
+        {
+            throw new TestContainerException( "Service does not implement [" + serviceType + "]" );
+        }
+        final Class<?>[] paramTypes = method.getParameterTypes();
+        final Class<?>[] serviceParamTypes = new Class<?>[paramTypes.length];
+        try
+        {
+            for( int i = 0; i < paramTypes.length; i++ )
+            {
+                serviceParamTypes[ i ] = paramTypes[ i ].isPrimitive() || paramTypes[ i ].getClassLoader() == null
+                                         ? paramTypes[ i ]
+                                         : serviceInterface.getClassLoader().loadClass( paramTypes[ i ].getName() );
+            }
+            return serviceInterface.getMethod( method.getName(), serviceParamTypes );
+        }
+        catch( ClassNotFoundException e )
+        {
+            throw new TestContainerException( "Method [" + method + "] cannot be forwarded to service", e );
+        }
+        catch( NoSuchMethodException e )
+        {
+            throw new TestContainerException( "Method [" + method + "] cannot be forwarded to service", e );
+        }
+    }
+
+    /**
+     * Finds an interface with a certain name implemented by a class or its super classes.
+     *
+     * @param type          class to search
+     * @param interfaceName interface name
+     *
+     * @return found interface or null if not found
+     */
+    private static Class<?> findInterface( final Class<?> type,
+                                           final String interfaceName )
+    {
+        if( type == null )
+        {
+            return null;
+        }
+        if( type.isInterface() && type.getName().equals( interfaceName ) )
+        {
+            return type;
+        }
+        for( Class<?> implemented : type.getInterfaces() )
+        {
+            final Class<?> found = findInterface( implemented, interfaceName );
+            if( found != null )
+            {
+                return found;
+            }
+        }
+        return findInterface( type.getSuperclass(), interfaceName );
+    }
+
+    /**
+     * Returns the start level service.
+     *
+     * @return start level service
+     */
+    private Object getStartLevelService()
+    {
+        return waitForService( "org.osgi.service.startlevel.StartLevel", Constants.NO_WAIT );
+    }
+
+    /**
+     * Returns a bundle.
+     *
+     * @param bundleId bundle id
+     *
+     * @return the bundle (an org.osgi.framework.Bundle)
+     */
+    private Object getBundle( final long bundleId )
+    {
+        final Object bundle = invoke(
+            "org.osgi.framework.BundleContext", "getBundle", new Class<?>[]{ long.class },
+            getBundleContext(), bundleId
+        );
+        if( bundle == null )
+        {
+            throw new TestContainerException( "There is no bundle with id [" + bundleId + "]" );
+        }
+        return bundle;
+    }
+
+    /**
+     * Returns the system bundle context.
+     *
+     * @return system bundle context
+     */
+    private Object getBundleContext()
+    {
+        if( m_bundleContext == null )
+        {
+            throw new TestContainerException( "Framework is not started" );
+        }
+        return m_bundleContext;
+    }
+
+    /**
+     * Invokes a method of an OSGi api type (as loaded by the framework class loader).
+     *
+     * @param typeName   OSGi api type name
+     * @param methodName method name
+     * @param paramTypes method parameter types
+     * @param target     object to invoke on
+     * @param params     actual parameters
+     *
+     * @return invocation result
+     */
+    private Object invoke( final String typeName,
+                           final String methodName,
+                           final Class<?>[] paramTypes,
+                           final Object target,
+                           final Object... params )
+    {
+        try
+        {
+            return loadClass( typeName ).getMethod( methodName, paramTypes ).invoke( target, params );
+        }
+        catch( NoSuchMethodException e )
+        {
+            throw new TestContainerException( "Framework does not support " + typeName + "." + methodName, e );
+        }
+        catch( IllegalAccessException e )
+        {
+            throw new TestContainerException( "Cannot call " + typeName + "." + methodName, e );
+        }
+        catch( InvocationTargetException e )
+        {
+            throw new TestContainerException( typeName + "." + methodName + " failed", e.getCause() );
+        }
+    }
+
+    /**
+     * Loads a class via the framework class loader.
+     *
+     * @param className class name
+     *
+     * @return loaded class
+     */
+    private Class<?> loadClass( final String className )
+    {
+        try
+        {
+            return m_classLoader.loadClass( className );
+        }
+        catch( ClassNotFoundException e )
+        {
+            throw new TestContainerException( "Class [" + className + "] not found in " + m_frameworkJar, e );
+        }
+    }
+
+    /**
+     * Reads the name of the framework factory class out of the framework jar.
+     *
+     * @return framework factory class name
+     */
+    private String getFactoryClassName()
+    {
+        final InputStream in = m_classLoader.getResourceAsStream( FACTORY_SERVICE );
+        if( in == null )
+        {
+            throw new TestContainerException(
+                m_frameworkJar + " does not support the OSGi launching api (no " + FACTORY_SERVICE + ")"
+            );
+        }
+        try
+        {
+            final BufferedReader reader = new BufferedReader( new InputStreamReader( in, "UTF-8" ) );
+            String line;
+            while( ( line = reader.readLine() ) != null )
+            {
+                line = line.trim();
+                if( line.length() > 0 && !line.startsWith( "#" ) )
+                {
+                    LOG.debug( "Framework factory is [" + line + "]" );
+                    return line;
+                }
+            }
+            throw new TestContainerException( "Empty " + FACTORY_SERVICE + " in " + m_frameworkJar );
+        }
+        catch( IOException e )
+        {
+            throw new TestContainerException( "Cannot read " + FACTORY_SERVICE + " from " + m_frameworkJar, e );
+        }
+        finally
+        {
+            try
+            {
+                in.close();
+            }
+            catch( IOException ignore )
+            {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Sleeps for the poll interval.
+     */
+    static void sleep()
+    {
+        try
+        {
+            Thread.sleep( POLL_INTERVAL );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new TestContainerException( "Interrupted", e );
+        }
+    }
+
+}
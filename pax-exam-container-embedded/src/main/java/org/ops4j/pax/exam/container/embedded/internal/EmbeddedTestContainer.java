@@ -0,0 +1,549 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.embedded.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ops4j.pax.exam.CompositeCustomizer;
+import static org.ops4j.pax.exam.Constants.*;
+import org.ops4j.pax.exam.CoreOptions;
+import org.ops4j.pax.exam.Customizer;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionSet;
+import org.ops4j.pax.exam.options.BootDelegationOption;
+import org.ops4j.pax.exam.options.BundleStartLevelOption;
+import org.ops4j.pax.exam.options.FrameworkOption;
+import org.ops4j.pax.exam.options.FrameworkStartLevelOption;
+import org.ops4j.pax.exam.options.ProvisionOption;
+import org.ops4j.pax.exam.options.SystemPackageOption;
+import org.ops4j.pax.exam.options.SystemPropertyOption;
+import org.ops4j.pax.exam.options.TestContainerStartTimeoutOption;
+import org.ops4j.pax.exam.spi.container.TestContainer;
+import org.ops4j.pax.exam.spi.container.TestContainerException;
+import org.ops4j.pax.exam.spi.container.TimeoutException;
+import org.ops4j.pax.exam.spi.timing.Timings;
+
+/**
+ * {@link TestContainer} implementation that runs the OSGi framework in the same JVM as the test runner, so no
+ * process has to be forked and no remote communication is needed.
+ * Bundles are resolved from local maven repository (mvn: urls), built in memory (dir: urls, as the test probe) or read
+ * via plain java urls. Virtual machine options are ignored as there is no separate virtual machine.
+ *
+ * @since 1.2.3
+ */
+class EmbeddedTestContainer
+    implements TestContainer
+{
+
+    /**
+     * JCL logger.
+     */
+    private static final Log LOG = LogFactory.getLog( EmbeddedTestContainer.class );
+
+    /**
+     * Active bundle state (org.osgi.framework.Bundle.ACTIVE).
+     */
+    private static final int ACTIVE = 32;
+    /**
+     * System bundle id.
+     */
+    private static final long SYSTEM_BUNDLE = 0;
+    /**
+     * Framework start level used when not configured.
+     */
+    private static final int DEFAULT_FRAMEWORK_START_LEVEL = 6;
+    /**
+     * Felix framework artifact.
+     */
+    private static final String FELIX = "mvn:org.apache.felix/org.apache.felix.framework";
+    /**
+     * Equinox framework artifact.
+     */
+    private static final String EQUINOX = "mvn:org.eclipse/osgi";
+
+    /**
+     * Configuration options (cannot be null).
+     */
+    private final OptionSet m_options;
+    /**
+     * Local maven repository used to resolve mvn: urls (cannot be null).
+     */
+    private final LocalMavenRepository m_repository;
+    /**
+     * Customizers to be applied (cannot be null).
+     */
+    private final CompositeCustomizer m_customizers;
+    /**
+     * Test container start timeout.
+     */
+    private final long m_startTimeout;
+    /**
+     * Framework storage folder. Null if not started.
+     */
+    private File m_storage;
+    /**
+     * Running framework. Null if not started.
+     */
+    private EmbeddedFramework m_framework;
+
+    /**
+     * Constructor.
+     *
+     * @param options integration test options (cannot be null)
+     */
+    EmbeddedTestContainer( final Option... options )
+    {
+        m_options = new OptionSet( options );
+        m_repository = new LocalMavenRepository();
+        m_customizers = new CompositeCustomizer( m_options.filter( Customizer.class ) );
+        m_startTimeout = getTestContainerStartTimeout( m_options );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T getService( final Class<T> serviceType )
+    {
+        return getService( serviceType, NO_WAIT );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T getService( final Class<T> serviceType,
+                             final long timeoutInMillis )
+    {
+        return getFramework().getService( serviceType, timeoutInMillis );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long installBundle( final String bundleUrl )
+    {
+        LOG.debug( "Install bundle [" + bundleUrl + "]" );
+        return getFramework().installBundle( bundleUrl, openBundle( bundleUrl ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long installBundle( final String bundleLocation,
+                               final byte[] bundle )
+    {
+        LOG.debug( "Install bundle [" + bundleLocation + "] from byte array" );
+        return getFramework().installBundle( bundleLocation, new ByteArrayInputStream( bundle ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startBundle( final long bundleId )
+    {
+        getFramework().startBundle( bundleId );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long[] installBundles( final int startLevel,
+                                  final boolean start,
+                                  final String... bundleUrls )
+    {
+        final long[] bundleIds = new long[bundleUrls.length];
+        int installed = 0;
+        try
+        {
+            for( String bundleUrl : bundleUrls )
+            {
+                bundleIds[ installed ] = installBundle( bundleUrl );
+                installed++;
+                setBundleStartLevel( bundleIds[ installed - 1 ], startLevel );
+            }
+            if( start )
+            {
+                for( long bundleId : bundleIds )
+                {
+                    startBundle( bundleId );
+                }
+            }
+            return bundleIds;
+        }
+        catch( RuntimeException e )
+        {
+            for( int i = 0; i < installed; i++ )
+            {
+                try
+                {
+                    getFramework().uninstallBundle( bundleIds[ i ] );
+                }
+                catch( RuntimeException ignore )
+                {
+                    LOG.warn( "Cannot uninstall bundle [" + bundleIds[ i ] + "]: " + ignore.getMessage() );
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBundle( final long bundleId,
+                              final String bundleUrl )
+    {
+        LOG.debug( "Update bundle [" + bundleId + "] from [" + bundleUrl + "]" );
+        getFramework().updateBundle( bundleId, openBundle( bundleUrl ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBundleStartLevel( final long bundleId,
+                                     final int startLevel )
+    {
+        getFramework().setBundleStartLevel( bundleId, startLevel );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void start()
+    {
+        LOG.info( "Starting up the embedded test container" );
+        final long startedAt = System.currentTimeMillis();
+        m_storage = createStorage();
+        m_customizers.customizeEnvironment( m_storage );
+        m_framework = new EmbeddedFramework( resolveFramework(), getFrameworkProperties() );
+        boolean started = false;
+        try
+        {
+            m_framework.start();
+            final ProvisionOption[] bundles = m_options.filter( ProvisionOption.class );
+            final long[] bundleIds = new long[bundles.length];
+            for( int i = 0; i < bundles.length; i++ )
+            {
+                bundleIds[ i ] = installBundle( bundles[ i ].getURL() );
+                if( bundles[ i ].getStartLevel() != null )
+                {
+                    setBundleStartLevel( bundleIds[ i ], bundles[ i ].getStartLevel() );
+                }
+            }
+            for( int i = 0; i < bundles.length; i++ )
+            {
+                if( bundles[ i ].shouldStart() )
+                {
+                    startBundle( bundleIds[ i ] );
+                }
+            }
+            m_framework.setStartLevel( getFrameworkStartLevel() );
+            waitForState( SYSTEM_BUNDLE, ACTIVE, m_startTimeout );
+            started = true;
+        }
+        finally
+        {
+            if( !started )
+            {
+                stop();
+            }
+        }
+        final long endedAt = System.currentTimeMillis();
+        Timings.record( "container.start", "embedded:" + m_storage.getName(), startedAt, endedAt );
+        LOG.info( "Embedded test container started in " + ( endedAt - startedAt ) + " millis" );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void stop()
+    {
+        LOG.info( "Shutting down the embedded test container" );
+        try
+        {
+            if( m_framework != null )
+            {
+                m_framework.stop( m_startTimeout );
+            }
+        }
+        finally
+        {
+            m_framework = null;
+            if( m_storage != null )
+            {
+                delete( m_storage );
+                m_storage = null;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void waitForState( final long bundleId,
+                              final int state,
+                              final long timeoutInMillis )
+        throws TimeoutException
+    {
+        final long waitUntil = System.currentTimeMillis() + timeoutInMillis;
+        while( getFramework().getBundleState( bundleId ) != state )
+        {
+            if( timeoutInMillis != WAIT_FOREVER && System.currentTimeMillis() >= waitUntil )
+            {
+                throw new TimeoutException(
+                    "Timeout while waiting for bundle [" + bundleId + "] to reach state [" + state + "]"
+                );
+            }
+            EmbeddedFramework.sleep();
+        }
+    }
+
+    /**
+     * Opens the content of a bundle. Test probes (dir: urls) are passed through customizers.
+     *
+     * @param bundleUrl bundle url
+     *
+     * @return bundle content
+     */
+    private InputStream openBundle( final String bundleUrl )
+    {
+        File file = null;
+        if( LocalMavenRepository.isMavenUrl( bundleUrl ) )
+        {
+            file = m_repository.resolve( bundleUrl );
+            if( file == null )
+            {
+                throw new TestContainerException(
+                    "Bundle [" + bundleUrl + "] is not available in local maven repository " + m_repository
+                );
+            }
+        }
+        try
+        {
+            if( file != null )
+            {
+                return new FileInputStream( file );
+            }
+            if( ProbeBuilder.isDirUrl( bundleUrl ) )
+            {
+                return m_customizers.customizeTestProbe( ProbeBuilder.build( bundleUrl ) );
+            }
+            return new URL( bundleUrl ).openStream();
+        }
+        catch( Exception e )
+        {
+            throw new TestContainerException( "Bundle [" + bundleUrl + "] cannot be read", e );
+        }
+    }
+
+    /**
+     * Resolves the framework jar out of framework option from local maven repository.
+     *
+     * @return framework jar
+     */
+    private File resolveFramework()
+    {
+        final FrameworkOption[] frameworks = m_options.filter( FrameworkOption.class );
+        final String name = frameworks.length > 0 ? frameworks[ 0 ].getName() : "felix";
+        final String version = frameworks.length > 0 ? frameworks[ 0 ].getVersion() : null;
+        final String url;
+        if( "felix".equals( name ) )
+        {
+            url = FELIX;
+        }
+        else if( "equinox".equals( name ) )
+        {
+            url = EQUINOX;
+        }
+        else
+        {
+            throw new TestContainerException( "Framework [" + name + "] cannot be run embedded" );
+        }
+        final String versionedUrl =
+            version == null || "snapshot".equals( version ) || "latest".equals( version )
+            ? url
+            : url + "/" + version;
+        final File jar = m_repository.resolve( versionedUrl );
+        if( jar == null )
+        {
+            throw new TestContainerException(
+                "Framework [" + versionedUrl + "] is not available in local maven repository " + m_repository
+            );
+        }
+        LOG.debug( "Using framework " + jar );
+        return jar;
+    }
+
+    /**
+     * Converts the options into framework configuration properties.
+     *
+     * @return framework properties
+     */
+    private Map<String, String> getFrameworkProperties()
+    {
+        final Map<String, String> properties = new HashMap<String, String>();
+        for( SystemPropertyOption property : m_options.filter( SystemPropertyOption.class ) )
+        {
+            if( property.getKey() != null && property.getKey().trim().length() > 0 )
+            {
+                properties.put( property.getKey(), property.getValue() );
+            }
+        }
+        final StringBuilder bootDelegation = new StringBuilder( "sun.*" );
+        for( BootDelegationOption pkg : m_options.filter( BootDelegationOption.class ) )
+        {
+            if( pkg.getPackage() != null && pkg.getPackage().length() > 0 )
+            {
+                bootDelegation.append( "," ).append( pkg.getPackage() );
+            }
+        }
+        properties.put( "org.osgi.framework.bootdelegation", bootDelegation.toString() );
+        final StringBuilder systemPackages = new StringBuilder();
+        for( SystemPackageOption pkg : m_options.filter( SystemPackageOption.class ) )
+        {
+            if( pkg.getPackage() != null && pkg.getPackage().length() > 0 )
+            {
+                if( systemPackages.length() > 0 )
+                {
+                    systemPackages.append( "," );
+                }
+                systemPackages.append( pkg.getPackage() );
+            }
+        }
+        if( systemPackages.length() > 0 )
+        {
+            properties.put( "org.osgi.framework.system.packages.extra", systemPackages.toString() );
+        }
+        final BundleStartLevelOption[] bundleStartLevels = m_options.filter( BundleStartLevelOption.class );
+        if( bundleStartLevels.length > 0 )
+        {
+            properties.put(
+                "felix.startlevel.bundle", String.valueOf( bundleStartLevels[ 0 ].getStartLevel() )
+            );
+            properties.put(
+                "osgi.bundles.defaultStartLevel", String.valueOf( bundleStartLevels[ 0 ].getStartLevel() )
+            );
+        }
+        properties.put( "org.osgi.framework.storage", m_storage.getAbsolutePath() );
+        properties.put( "org.osgi.framework.storage.clean", "onFirstInit" );
+        return properties;
+    }
+
+    /**
+     * Returns the configured framework start level.
+     *
+     * @return framework start level
+     */
+    private int getFrameworkStartLevel()
+    {
+        final FrameworkStartLevelOption[] startLevels = m_options.filter( FrameworkStartLevelOption.class );
+        return startLevels.length > 0 ? startLevels[ 0 ].getStartLevel() : DEFAULT_FRAMEWORK_START_LEVEL;
+    }
+
+    /**
+     * Returns the running framework.
+     *
+     * @return running framework
+     *
+     * @throws TestContainerException - If test container is not started
+     */
+    private EmbeddedFramework getFramework()
+    {
+        final EmbeddedFramework framework = m_framework;
+        if( framework == null )
+        {
+            throw new TestContainerException( "Test container is not started" );
+        }
+        return framework;
+    }
+
+    /**
+     * Creates an unique framework storage folder.
+     *
+     * @return created folder
+     */
+    private static File createStorage()
+    {
+        try
+        {
+            final File storage = File.createTempFile( "paxexam_embedded_", "" );
+            if( !storage.delete() || !storage.mkdirs() )
+            {
+                throw new TestContainerException( "Cannot create framework storage " + storage );
+            }
+            return storage;
+        }
+        catch( IOException e )
+        {
+            throw new TestContainerException( "Cannot create framework storage", e );
+        }
+    }
+
+    /**
+     * Deletes a file or a folder with its content.
+     *
+     * @param file file to be deleted
+     */
+    private static void delete( final File file )
+    {
+        final File[] children = file.listFiles();
+        if( children != null )
+        {
+            for( File child : children )
+            {
+                delete( child );
+            }
+        }
+        if( !file.delete() )
+        {
+            LOG.debug( "Cannot delete " + file );
+        }
+    }
+
+    /**
+     * Determine the timeout while starting the test container.
+     *
+     * @param options options from where the timeout is extracted
+     *
+     * @return timeout in millis
+     */
+    private static long getTestContainerStartTimeout( final OptionSet options )
+    {
+        final TestContainerStartTimeoutOption[] timeoutOptions =
+            options.filter( TestContainerStartTimeoutOption.class );
+        if( timeoutOptions.length > 0 )
+        {
+            return timeoutOptions[ 0 ].getTimeout();
+        }
+        return CoreOptions.waitForFrameworkStartup().getTimeout();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "EmbeddedTestContainer{" + m_framework + "}";
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.embedded.internal;
+
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.spi.container.TestContainer;
+import org.ops4j.pax.exam.spi.container.TestContainerFactory;
+
+/**
+ * {@link TestContainerFactory} for test containers that run the OSGi framework in the test runner JVM.
+ *
+ * @since 1.2.3
+ */
+public class EmbeddedTestContainerFactory
+    implements TestContainerFactory
+{
+
+    /**
+     * {@inheritDoc}
+     */
+    public TestContainer newInstance( final Option... options )
+    {
+        return new EmbeddedTestContainer( options );
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.embedded.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.ops4j.pax.exam.spi.maven.MavenUrl;
+
+/**
+ * Resolves "mvn:" urls to artifacts from the local Maven repository. There is no remote download, so artifacts must
+ * be already available in the local repository (as after a Maven build of the project using them).
+ * Url syntax is the one of Pax URL mvn: mvn:[repository!]groupId/artifactId[/version[/type[/classifier]]].
+ *
+ * @since 1.2.3
+ */
+class LocalMavenRepository
+{
+
+    /**
+     * Pax URL mvn property that sets the local repository.
+     */
+    private static final String LOCAL_REPOSITORY_PROPERTY = "org.ops4j.pax.url.mvn.localRepository";
+
+    /**
+     * Local repository root folder (cannot be null).
+     */
+    private final File m_root;
+
+    /**
+     * Constructor. The local repository is the one set via "org.ops4j.pax.url.mvn.localRepository" system property or,
+     * by default, ${user.home}/.m2/repository.
+     */
+    LocalMavenRepository()
+    {
+        this( getDefaultRoot() );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param root local repository root folder
+     */
+    LocalMavenRepository( final File root )
+    {
+        m_root = root;
+    }
+
+    /**
+     * Checks if an url is a maven url.
+     *
+     * @param url to check
+     *
+     * @return true if the url can be resolved by this repository
+     */
+    static boolean isMavenUrl( final String url )
+    {
+        return MavenUrl.isMavenUrl( url );
+    }
+
+    /**
+     * Resolves a maven url to a file from local repository. If the version is not specified, the highest version
+     * available in local repository is used.
+     *
+     * @param url maven url
+     *
+     * @return artifact file or null if not available in local repository
+     */
+    File resolve( final String url )
+    {
+        final MavenUrl mavenUrl = MavenUrl.parse( url );
+        if( mavenUrl == null )
+        {
+            return null;
+        }
+        String version = mavenUrl.getVersion();
+        if( version == null || "LATEST".equals( version ) )
+        {
+            version = getHighestVersion( new File( m_root, mavenUrl.getArtifactFolder() ) );
+            if( version == null )
+            {
+                return null;
+            }
+        }
+        final File file = new File( m_root, mavenUrl.getPath( version ) );
+        return file.isFile() ? file : null;
+    }
+
+    /**
+     * Finds the highest version of an artifact in local repository.
+     *
+     * @param artifactFolder artifact folder (contains one folder per version)
+     *
+     * @return highest version or null if there are no versions
+     */
+    private static String getHighestVersion( final File artifactFolder )
+    {
+        final File[] versionFolders = artifactFolder.listFiles();
+        if( versionFolders == null )
+        {
+            return null;
+        }
+        final List<String> versions = new ArrayList<String>();
+        for( File versionFolder : versionFolders )
+        {
+            if( versionFolder.isDirectory() )
+            {
+                versions.add( versionFolder.getName() );
+            }
+        }
+        if( versions.isEmpty() )
+        {
+            return null;
+        }
+        Collections.sort( versions, new VersionComparator() );
+        return versions.get( versions.size() - 1 );
+    }
+
+    /**
+     * Determines the local repository root folder.
+     *
+     * @return local repository root folder
+     */
+    private static File getDefaultRoot()
+    {
+        final String root = System.getProperty( LOCAL_REPOSITORY_PROPERTY );
+        if( root != null && root.trim().length() > 0 )
+        {
+            return new File( root.trim() );
+        }
+        return new File( System.getProperty( "user.home" ), ".m2/repository" );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LocalMavenRepository{" + m_root + "}";
+    }
+
+}
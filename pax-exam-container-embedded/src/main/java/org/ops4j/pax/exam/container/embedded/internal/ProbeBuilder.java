@@ -0,0 +1,218 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.embedded.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Builds a bundle out of a "dir:" url, as the one used for the test probe. The folder to be bundled is found via the
+ * "tail" instruction (the folder containing the tail file) and all other instructions become manifest headers.
+ * Unlike the Pax URL dir handler, no bnd analysis is done: instructions are used as they are, instructions that are
+ * negations (as Export-Package=!*) are left out and imports are dynamic.
+ *
+ * @since 1.2.3
+ */
+class ProbeBuilder
+{
+
+    /**
+     * Prefix of urls that can be built.
+     */
+    private static final String DIR_PROTOCOL = "dir:";
+
+    /**
+     * Utility class. Ment to be used via the static factory methods.
+     */
+    private ProbeBuilder()
+    {
+        // utility class
+    }
+
+    /**
+     * Checks if an url is a "dir:" url.
+     *
+     * @param url to check
+     *
+     * @return true if the url can be built by this builder
+     */
+    static boolean isDirUrl( final String url )
+    {
+        return url != null && url.startsWith( DIR_PROTOCOL );
+    }
+
+    /**
+     * Builds the bundle.
+     *
+     * @param url "dir:" url
+     *
+     * @return bundle content
+     *
+     * @throws IOException - If folder cannot be found or read
+     */
+    static InputStream build( final String url )
+        throws IOException
+    {
+        final int instructionsStart = url.indexOf( '$' );
+        final File topLevel = new File(
+            url.substring( DIR_PROTOCOL.length(), instructionsStart >= 0 ? instructionsStart : url.length() )
+        );
+        final Manifest manifest = new Manifest();
+        final Attributes attributes = manifest.getMainAttributes();
+        attributes.put( Attributes.Name.MANIFEST_VERSION, "1.0" );
+        attributes.putValue( "Bundle-ManifestVersion", "2" );
+        attributes.putValue( "DynamicImport-Package", "*" );
+        String tail = null;
+        if( instructionsStart >= 0 )
+        {
+            for( String instruction : url.substring( instructionsStart + 1 ).split( "&" ) )
+            {
+                final int separator = instruction.indexOf( '=' );
+                if( separator <= 0 )
+                {
+                    continue;
+                }
+                final String name = instruction.substring( 0, separator );
+                final String value = instruction.substring( separator + 1 );
+                if( "tail".equals( name ) )
+                {
+                    tail = value;
+                }
+                else if( !value.startsWith( "!" ) )
+                {
+                    attributes.putValue( name, value );
+                }
+            }
+        }
+        final File root = tail == null ? topLevel : findParentOfTail( topLevel, tail );
+        if( root == null )
+        {
+            throw new IOException( "Folder " + topLevel + " does not contain " + tail );
+        }
+        final ByteArrayOutputStream bundle = new ByteArrayOutputStream();
+        final JarOutputStream jar = new JarOutputStream( bundle, manifest );
+        try
+        {
+            addFolder( jar, root );
+        }
+        finally
+        {
+            jar.close();
+        }
+        return new ByteArrayInputStream( bundle.toByteArray() );
+    }
+
+    /**
+     * Finds the folder (under top level folder) that contains the tail.
+     *
+     * @param topLevel top level folder
+     * @param tail     relative path of a file that should be found
+     *
+     * @return folder containing the tail or null if not found
+     */
+    private static File findParentOfTail( final File topLevel,
+                                          final String tail )
+    {
+        final LinkedList<File> folders = new LinkedList<File>();
+        folders.add( topLevel );
+        while( !folders.isEmpty() )
+        {
+            final File folder = folders.removeFirst();
+            if( new File( folder, tail ).isFile() )
+            {
+                return folder;
+            }
+            final File[] children = folder.listFiles();
+            if( children != null )
+            {
+                for( File child : children )
+                {
+                    if( child.isDirectory() )
+                    {
+                        folders.add( child );
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds all files from a folder (recursively) to a jar. An eventual manifest from folder is skipped, as the
+     * manifest is built from instructions.
+     *
+     * @param jar  jar to add to
+     * @param root folder to be added
+     *
+     * @throws IOException - If a file cannot be read
+     */
+    private static void addFolder( final JarOutputStream jar,
+                                   final File root )
+        throws IOException
+    {
+        final byte[] buffer = new byte[8192];
+        final int rootLength = root.getAbsolutePath().length() + 1;
+        final LinkedList<File> files = new LinkedList<File>();
+        files.add( root );
+        while( !files.isEmpty() )
+        {
+            final File file = files.removeFirst();
+            if( file.isDirectory() )
+            {
+                final File[] children = file.listFiles();
+                if( children != null )
+                {
+                    Arrays.sort( children );
+                    files.addAll( 0, Arrays.asList( children ) );
+                }
+                continue;
+            }
+            final String name = file.getAbsolutePath().substring( rootLength ).replace( File.separatorChar, '/' );
+            if( "META-INF/MANIFEST.MF".equalsIgnoreCase( name ) )
+            {
+                continue;
+            }
+            jar.putNextEntry( new JarEntry( name ) );
+            final InputStream in = new FileInputStream( file );
+            try
+            {
+                int read;
+                while( ( read = in.read( buffer ) ) != -1 )
+                {
+                    jar.write( buffer, 0, read );
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+            jar.closeEntry();
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.embedded.internal;
+
+import java.util.Comparator;
+
+/**
+ * Compares maven versions segment by segment, numerically where segments are numbers.
+ * Good enough to find the highest version of an artifact in a local repository.
+ *
+ * @since 1.2.3
+ */
+class VersionComparator
+    implements Comparator<String>
+{
+
+    public int compare( final String version1,
+                        final String version2 )
+    {
+        final String[] segments1 = version1.split( "[.-]" );
+        final String[] segments2 = version2.split( "[.-]" );
+        for( int i = 0; i < Math.min( segments1.length, segments2.length ); i++ )
+        {
+            final int result = compareSegments( segments1[ i ], segments2[ i ] );
+            if( result != 0 )
+            {
+                return result;
+            }
+        }
+        return segments1.length - segments2.length;
+    }
+
+    /**
+     * Compares two version segments, numerically if both are numbers.
+     *
+     * @param segment1 first segment
+     * @param segment2 second segment
+     *
+     * @return comparison result
+     */
+    private static int compareSegments( final String segment1,
+                                        final String segment2 )
+    {
+        try
+        {
+            final long number1 = Long.parseLong( segment1 );
+            final long number2 = Long.parseLong( segment2 );
+            return number1 < number2 ? -1 : ( number1 == number2 ? 0 : 1 );
+        }
+        catch( NumberFormatException e )
+        {
+            return segment1.compareTo( segment2 );
+        }
+    }
+
+}
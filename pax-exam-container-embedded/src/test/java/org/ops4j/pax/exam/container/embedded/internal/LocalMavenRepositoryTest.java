@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.container.embedded.internal;
+
+import java.io.File;
+import java.io.IOException;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit Tests for {@link LocalMavenRepository}.
+ *
+ * @since 1.2.3
+ */
+public class LocalMavenRepositoryTest
+{
+
+    private File m_root;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_root = File.createTempFile( "repository", "" );
+        m_root.delete();
+        create( "org/foo/bar/1.0.0/bar-1.0.0.jar" );
+        create( "org/foo/bar/1.10.0/bar-1.10.0.jar" );
+        create( "org/foo/bar/1.2.0/bar-1.2.0.jar" );
+        create( "org/foo/bar/1.2.0/bar-1.2.0-tests.zip" );
+    }
+
+    @After
+    public void tearDown()
+    {
+        delete( m_root );
+    }
+
+    /**
+     * Test that a fully specified url resolves to the artifact file.
+     */
+    @Test
+    public void resolveVersion()
+    {
+        final LocalMavenRepository repository = new LocalMavenRepository( m_root );
+        assertThat(
+            "Resolved",
+            repository.resolve( "mvn:org.foo/bar/1.2.0" ),
+            is( equalTo( new File( m_root, "org/foo/bar/1.2.0/bar-1.2.0.jar" ) ) )
+        );
+        assertThat(
+            "Resolved with type and classifier",
+            repository.resolve( "mvn:http://repo!org.foo/bar/1.2.0/zip/tests" ),
+            is( equalTo( new File( m_root, "org/foo/bar/1.2.0/bar-1.2.0-tests.zip" ) ) )
+        );
+    }
+
+    /**
+     * Test that without a version the highest local version is used.
+     */
+    @Test
+    public void resolveHighestVersion()
+    {
+        final LocalMavenRepository repository = new LocalMavenRepository( m_root );
+        final File expected = new File( m_root, "org/foo/bar/1.10.0/bar-1.10.0.jar" );
+        assertThat( "No version", repository.resolve( "mvn:org.foo/bar" ), is( equalTo( expected ) ) );
+        assertThat( "LATEST", repository.resolve( "mvn:org.foo/bar/LATEST" ), is( equalTo( expected ) ) );
+    }
+
+    /**
+     * Test that artifacts not in local repository are not resolved.
+     */
+    @Test
+    public void resolveMissing()
+    {
+        final LocalMavenRepository repository = new LocalMavenRepository( m_root );
+        assertThat( "Missing version", repository.resolve( "mvn:org.foo/bar/2.0.0" ), is( nullValue() ) );
+        assertThat( "Missing artifact", repository.resolve( "mvn:org.foo/baz" ), is( nullValue() ) );
+    }
+
+    private void create( final String path )
+        throws IOException
+    {
+        final File file = new File( m_root, path );
+        file.getParentFile().mkdirs();
+        file.createNewFile();
+    }
+
+    private static void delete( final File file )
+    {
+        final File[] children = file.listFiles();
+        if( children != null )
+        {
+            for( File child : children )
+            {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+
+}
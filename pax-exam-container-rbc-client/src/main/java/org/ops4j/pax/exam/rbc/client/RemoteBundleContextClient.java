@@ -17,10 +17,15 @@
  */
 package org.ops4j.pax.exam.rbc.client;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.rmi.ConnectException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
@@ -30,13 +35,17 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.osgi.framework.BundleException;
 import org.ops4j.pax.exam.Constants;
+import org.ops4j.pax.exam.rbc.internal.InstallBundleRequest;
+import org.ops4j.pax.exam.rbc.internal.InstallBundleResult;
 import org.ops4j.pax.exam.rbc.internal.RemoteBundleContext;
+import org.ops4j.pax.exam.rbc.internal.SocketRemoteBundleContext;
 import org.ops4j.pax.exam.spi.container.TestContainer;
 import org.ops4j.pax.exam.spi.container.TestContainerException;
 import org.ops4j.pax.exam.spi.container.TimeoutException;
+import org.ops4j.pax.exam.spi.timing.Timings;
 
 /**
- * A {@link RemoteBundleContext} client, that takes away RMI handling.
+ * A {@link RemoteBundleContext} client, that takes away RMI (or socket transport) handling.
  *
  * @author Alin Dreghiciu (adreghiciu@gmail.com)
  * @since 0.3.0, December 15, 2008
@@ -49,6 +58,14 @@ public class RemoteBundleContextClient
      * JCL logger.
      */
     private static final Log LOG = LogFactory.getLog( RemoteBundleContextClient.class );
+    /**
+     * Time in millis to wait before looking up the remote bundle context again, after the first failed lookup.
+     */
+    private static final long MIN_LOOKUP_BACKOFF = 10;
+    /**
+     * Max time in millis to wait between two lookups of the remote bundle context.
+     */
+    private static final long MAX_LOOKUP_BACKOFF = 500;
 
     /**
      * RMI communication port.
@@ -58,6 +75,15 @@ public class RemoteBundleContextClient
      * Timeout for looking up the remote bundle context via RMI.
      */
     private final long m_rmiLookupTimeout;
+    /**
+     * Folder used to hand over bundle contents via files. Null if contents should be sent via RMI.
+     */
+    private final File m_transferFolder;
+    /**
+     * Transport used to reach the remote bundle context, one of the transports defined in
+     * {@link org.ops4j.pax.exam.rbc.Constants}.
+     */
+    private final String m_transport;
     /**
      * Remote bundle context instance.
      */
@@ -71,9 +97,46 @@ public class RemoteBundleContextClient
      */
     public RemoteBundleContextClient( final Integer rmiPort,
                                       final long rmiLookupTimeout )
+    {
+        this( rmiPort, rmiLookupTimeout, null );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param rmiPort          RMI communication port (cannot be null)
+     * @param rmiLookupTimeout timeout for looking up the remote bundle context via RMI (cannot be null)
+     * @param transferFolder   folder used to hand over bundle contents via files, when the remote bundle context
+     *                         runs on the same host (can be null, case when bundle contents are sent via RMI)
+     */
+    public RemoteBundleContextClient( final Integer rmiPort,
+                                      final long rmiLookupTimeout,
+                                      final File transferFolder )
+    {
+        this( rmiPort, rmiLookupTimeout, transferFolder, org.ops4j.pax.exam.rbc.Constants.TRANSPORT_RMI );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param rmiPort          communication port (cannot be null)
+     * @param rmiLookupTimeout timeout for looking up the remote bundle context (cannot be null)
+     * @param transferFolder   folder used to hand over bundle contents via files, when the remote bundle context
+     *                         runs on the same host (can be null, case when bundle contents are sent remotely)
+     * @param transport        transport used to reach the remote bundle context, one of the transports defined in
+     *                         {@link org.ops4j.pax.exam.rbc.Constants} (cannot be null)
+     *
+     * @since 1.2.3
+     */
+    public RemoteBundleContextClient( final Integer rmiPort,
+                                      final long rmiLookupTimeout,
+                                      final File transferFolder,
+                                      final String transport )
     {
         m_rmiPort = rmiPort;
         m_rmiLookupTimeout = rmiLookupTimeout;
+        m_transferFolder = transferFolder;
+        m_transport = transport;
     }
 
     /**
@@ -159,9 +222,25 @@ public class RemoteBundleContextClient
                                final byte[] bundle )
         throws TestContainerException
     {
+        if( m_transferFolder == null )
+        {
+            try
+            {
+                return getRemoteBundleContext().installBundle( bundleLocation, bundle );
+            }
+            catch( RemoteException e )
+            {
+                throw new TestContainerException( "Remote exception", e );
+            }
+            catch( BundleException e )
+            {
+                throw new TestContainerException( "Bundle cannot be installed", e );
+            }
+        }
+        final File bundleFile = writeTransferFile( bundle );
         try
         {
-            return getRemoteBundleContext().installBundle( bundleLocation, bundle );
+            return getRemoteBundleContext().installBundleFromFile( bundleLocation, bundleFile.getAbsolutePath() );
         }
         catch( RemoteException e )
         {
@@ -171,6 +250,91 @@ public class RemoteBundleContextClient
         {
             throw new TestContainerException( "Bundle cannot be installed", e );
         }
+        finally
+        {
+            bundleFile.delete();
+        }
+    }
+
+    /**
+     * Writes bundle content to a new file in transfer folder.
+     *
+     * @param bundle bundle content
+     *
+     * @return written file
+     *
+     * @throws TestContainerException - If file cannot be written
+     */
+    private File writeTransferFile( final byte[] bundle )
+    {
+        FileChannel channel = null;
+        try
+        {
+            m_transferFolder.mkdirs();
+            final File bundleFile = File.createTempFile( "bundle", ".jar", m_transferFolder );
+            channel = new FileOutputStream( bundleFile ).getChannel();
+            final ByteBuffer buffer = ByteBuffer.wrap( bundle );
+            while( buffer.hasRemaining() )
+            {
+                channel.write( buffer );
+            }
+            return bundleFile;
+        }
+        catch( IOException e )
+        {
+            throw new TestContainerException( "Bundle content cannot be written to " + m_transferFolder, e );
+        }
+        finally
+        {
+            if( channel != null )
+            {
+                try
+                {
+                    channel.close();
+                }
+                catch( IOException e )
+                {
+                    // ignore.
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Bundles are installed in one remote call.
+     */
+    public long[] installBundles( final int startLevel,
+                                  final boolean start,
+                                  final String... bundleUrls )
+        throws TestContainerException
+    {
+        final InstallBundleRequest[] requests = new InstallBundleRequest[bundleUrls.length];
+        for( int i = 0; i < bundleUrls.length; i++ )
+        {
+            requests[ i ] = new InstallBundleRequest( bundleUrls[ i ] ).startLevel( startLevel ).start( start );
+        }
+        final InstallBundleResult[] results;
+        try
+        {
+            results = getRemoteBundleContext().installBundles( requests );
+        }
+        catch( RemoteException e )
+        {
+            throw new TestContainerException( "Remote exception", e );
+        }
+        final long[] bundleIds = new long[results.length];
+        for( int i = 0; i < results.length; i++ )
+        {
+            if( results[ i ].getFailure() != null )
+            {
+                throw new TestContainerException(
+                    "Bundle [" + bundleUrls[ i ] + "] cannot be installed or started", results[ i ].getFailure()
+                );
+            }
+            bundleIds[ i ] = results[ i ].getBundleId();
+        }
+        return bundleIds;
     }
 
     /**
@@ -193,6 +357,27 @@ public class RemoteBundleContextClient
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBundle( final long bundleId,
+                              final String bundleUrl )
+        throws TestContainerException
+    {
+        try
+        {
+            getRemoteBundleContext().updateBundle( bundleId, bundleUrl );
+        }
+        catch( RemoteException e )
+        {
+            throw new TestContainerException( "Remote exception", e );
+        }
+        catch( BundleException e )
+        {
+            throw new TestContainerException( "Bundle cannot be updated", e );
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -250,6 +435,15 @@ public class RemoteBundleContextClient
         {
             throw new TestContainerException( "System bundle cannot be stopped", e );
         }
+        finally
+        {
+            // the connection of the socket transport is not needed anymore, as the framework is stopping
+            if( m_remoteBundleContext instanceof SocketRemoteBundleContext )
+            {
+                ( (SocketRemoteBundleContext) m_remoteBundleContext ).close();
+                m_remoteBundleContext = null;
+            }
+        }
     }
 
     /**
@@ -294,22 +488,55 @@ public class RemoteBundleContextClient
             Throwable reason = null;
             try
             {
-                final Registry registry = LocateRegistry.getRegistry( m_rmiPort );
+                final Registry registry = isSocketTransport() ? null : LocateRegistry.getRegistry( m_rmiPort );
+                long backoff = MIN_LOOKUP_BACKOFF;
                 do
                 {
                     try
                     {
-                        m_remoteBundleContext =
-                            (RemoteBundleContext) registry.lookup( RemoteBundleContext.class.getName() );
+                        m_remoteBundleContext = registry == null
+                                                ? connect()
+                                                : (RemoteBundleContext) registry.lookup(
+                                                    RemoteBundleContext.class.getName()
+                                                );
                     }
                     catch( ConnectException e )
                     {
                         reason = e;
                     }
+                    catch( java.net.ConnectException e )
+                    {
+                        reason = e;
+                    }
                     catch( NotBoundException e )
                     {
                         reason = e;
                     }
+                    if( m_remoteBundleContext == null )
+                    {
+                        // framework is still starting up, so back off before trying again
+                        long toWait = backoff;
+                        if( m_rmiLookupTimeout != Constants.WAIT_FOREVER )
+                        {
+                            toWait = Math.min(
+                                toWait, startedTrying + m_rmiLookupTimeout - System.currentTimeMillis()
+                            );
+                        }
+                        if( toWait > 0 )
+                        {
+                            try
+                            {
+                                Thread.sleep( toWait );
+                            }
+                            catch( InterruptedException e )
+                            {
+                                Thread.currentThread().interrupt();
+                                reason = e;
+                                break;
+                            }
+                        }
+                        backoff = Math.min( backoff * 2, MAX_LOOKUP_BACKOFF );
+                    }
                 }
                 while( m_remoteBundleContext == null
                        && ( m_rmiLookupTimeout == Constants.WAIT_FOREVER
@@ -323,13 +550,56 @@ public class RemoteBundleContextClient
             {
                 throw new TestContainerException( "Cannot get the remote bundle context", reason );
             }
-            LOG.info(
-                "Remote bundle context found after " + ( System.currentTimeMillis() - startedTrying ) + " millis"
-            );
+            final long foundAt = System.currentTimeMillis();
+            Timings.record( "container.rmi.lookup", "container:" + m_rmiPort, startedTrying, foundAt );
+            LOG.info( "Remote bundle context found after " + ( foundAt - startedTrying ) + " millis" );
         }
         return m_remoteBundleContext;
     }
 
+    /**
+     * Connects to the remote bundle context via the socket transport.
+     *
+     * @return remote bundle context
+     *
+     * @throws java.net.ConnectException - If the remote bundle context is not (yet) listening
+     * @throws RemoteException           - If the connection cannot be established for other reasons
+     */
+    private RemoteBundleContext connect()
+        throws java.net.ConnectException, RemoteException
+    {
+        try
+        {
+            return new SocketRemoteBundleContext( m_rmiPort, getClass().getClassLoader() );
+        }
+        catch( java.net.ConnectException e )
+        {
+            throw e;
+        }
+        catch( IOException e )
+        {
+            throw new RemoteException( "Cannot connect to remote bundle context", e );
+        }
+    }
+
+    /**
+     * @return true if the remote bundle context is reached via the socket transport
+     */
+    private boolean isSocketTransport()
+    {
+        return org.ops4j.pax.exam.rbc.Constants.TRANSPORT_SOCKET.equals( m_transport );
+    }
+
+    /**
+     * Getter.
+     *
+     * @return transport used to reach the remote bundle context
+     */
+    public String getTransport()
+    {
+        return m_transport;
+    }
+
     /**
      * Getter.
      *
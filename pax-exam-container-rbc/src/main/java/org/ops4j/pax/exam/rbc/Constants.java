@@ -31,4 +31,27 @@ public interface Constants
      */
     String RMI_PORT_PROPERTY = "org.ops4j.pax.exam.rbc.rmi.port";
 
+    /**
+     * Name of the system (framework) property that specifies the transport used to reach the remote bundle context,
+     * one of {@link #TRANSPORT_RMI} (default) or {@link #TRANSPORT_SOCKET}. Both use the port set via
+     * {@link #RMI_PORT_PROPERTY}.
+     *
+     * @since 1.2.3
+     */
+    String TRANSPORT_PROPERTY = "org.ops4j.pax.exam.rbc.transport";
+
+    /**
+     * Transport via Java RMI.
+     *
+     * @since 1.2.3
+     */
+    String TRANSPORT_RMI = "rmi";
+
+    /**
+     * Transport via a compact binary protocol over one persistent local socket per client.
+     *
+     * @since 1.2.3
+     */
+    String TRANSPORT_SOCKET = "socket";
+
 }
\ No newline at end of file
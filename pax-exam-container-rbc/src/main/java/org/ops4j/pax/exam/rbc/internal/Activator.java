@@ -17,21 +17,17 @@
  */
 package org.ops4j.pax.exam.rbc.internal;
 
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
-import java.rmi.server.UnicastRemoteObject;
-import java.util.concurrent.Callable;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleException;
 import org.ops4j.pax.exam.rbc.Constants;
-import org.ops4j.pax.swissbox.core.ContextClassLoaderUtils;
 
 /**
- * Registers the an instance of RemoteTestRunnerService as RMI service using a port set by system property
- * pax.exam.communication.port.
+ * Exports an instance of {@link RemoteBundleContext} using a port set by system property
+ * {@link Constants#RMI_PORT_PROPERTY}, via the transport set by system property {@link Constants#TRANSPORT_PROPERTY}
+ * (RMI by default).
  *
  * @author Toni Menzel (tonit)
  * @author Alin Dreghiciu (adreghiciu@gmail.com)
@@ -47,15 +43,9 @@ public class Activator
     private static final Log LOG = LogFactory.getLog( Activator.class );
 
     /**
-     * RMI registry.
+     * Transport the remote bundle context is exported with.
      */
-    private Registry m_registry;
-    /**
-     * Strong reference to {@link RemoteBundleContext}.
-     * !Note: this must be here otherwise JVM will garbage collect it and this will result in an
-     * java.rmi.NoSuchObjectException: no such object in table
-     */
-    private RemoteBundleContext m_remoteBundleContext;
+    private RemoteBundleContextTransport m_transport;
 
     /**
      * {@inheritDoc}
@@ -63,38 +53,33 @@ public class Activator
     public void start( final BundleContext bundleContext )
         throws Exception
     {
-        //!! Absolutely necessary for RMIClassLoading to work
-        ContextClassLoaderUtils.doWithClassLoader(
-            null, // getClass().getClassLoader()
-            new Callable<Object>()
-            {
-                public Object call()
-                    throws Exception
-                {
-                    try
-                    {
-                        // try to find port from property
-                        int port = getPort();
-                        LOG.debug( "Starting up RMI registry on port [" + port + "]" );
-                        m_registry = LocateRegistry.createRegistry( port );
-                        LOG.debug( "Binding " + RemoteBundleContext.class.getSimpleName() + " to RMI registry" );
-                        m_registry.bind(
-                            RemoteBundleContext.class.getName(),
-                            UnicastRemoteObject.exportObject(
-                                m_remoteBundleContext = new RemoteBundleContextImpl( bundleContext ),
-                                port
-                            )
-                        );
-                        LOG.info( "RMI registry started on port [" + port + "]" );
-                    }
-                    catch( Exception e )
-                    {
-                        throw new BundleException( "Cannot setup RMI registry", e );
-                    }
-                    return null;
-                }
-            }
-        );
+        // try to find port from property
+        final int port = getPort();
+        final String transport = System.getProperty( Constants.TRANSPORT_PROPERTY, Constants.TRANSPORT_RMI );
+        if( Constants.TRANSPORT_SOCKET.equals( transport ) )
+        {
+            m_transport = new SocketTransport();
+        }
+        else if( Constants.TRANSPORT_RMI.equals( transport ) )
+        {
+            m_transport = new RmiTransport();
+        }
+        else
+        {
+            throw new BundleException(
+                "Unknown transport [" + transport + "] set via property " + Constants.TRANSPORT_PROPERTY
+            );
+        }
+        try
+        {
+            m_transport.export( new RemoteBundleContextImpl( bundleContext ), port );
+        }
+        catch( Exception e )
+        {
+            m_transport = null;
+            throw new BundleException( "Cannot export remote bundle context via " + transport, e );
+        }
+        LOG.debug( "Remote bundle context exported via " + transport );
     }
 
     /**
@@ -103,19 +88,15 @@ public class Activator
     public void stop( BundleContext bundleContext )
         throws Exception
     {
-        LOG.debug( "Unbinding " + RemoteBundleContext.class.getSimpleName() );
-        m_registry.unbind( RemoteBundleContext.class.getName() );
-        UnicastRemoteObject.unexportObject( m_remoteBundleContext, true );
-        UnicastRemoteObject.unexportObject( m_registry, true );
-        m_registry = null;
-        m_remoteBundleContext = null;
-        // this is necessary, unfortunately.. RMI wouldn' stop otherwise
-        System.gc();
-        LOG.info( "RMI registry stopped" );
+        if( m_transport != null )
+        {
+            m_transport.unexport();
+            m_transport = null;
+        }
     }
 
     /**
-     * @return the port where {@link RemoteBundleContext} is being exposed as an RMI service.
+     * @return the port where {@link RemoteBundleContext} is being exposed.
      *
      * @throws BundleException - If communication port cannot be determined
      */
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.rbc.internal;
+
+import java.io.Serializable;
+import static org.ops4j.lang.NullArgumentException.*;
+
+/**
+ * Describes one bundle of a {@link RemoteBundleContext#installBundles(InstallBundleRequest[])} batch: where to install
+ * it from and what should happen with it once installed.
+ *
+ * @since 1.2.3
+ */
+public class InstallBundleRequest
+    implements Serializable
+{
+
+    /**
+     * Start level value specifying that the start level should not be changed.
+     */
+    public static final int NO_START_LEVEL = -1;
+    /**
+     * State value specifying that there should be no waiting for a state.
+     */
+    public static final int NO_STATE = 0;
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Bundle location (cannot be null). An url accessible from the remote OSGi container if there is no content.
+     */
+    private final String m_location;
+    /**
+     * Bundle content. Null if the bundle should be installed from location.
+     */
+    private final byte[] m_content;
+    /**
+     * Bundle start level or {@link #NO_START_LEVEL}.
+     */
+    private int m_startLevel;
+    /**
+     * True if the bundle should be started.
+     */
+    private boolean m_start;
+    /**
+     * State to wait for or {@link #NO_STATE}.
+     */
+    private int m_state;
+    /**
+     * Max time to wait for state.
+     */
+    private long m_timeout;
+
+    /**
+     * Constructor for a bundle to be installed from an url.
+     *
+     * @param bundleUrl url of the bundle to be installed (cannot be null). The url must be accessible from the remote
+     *                  OSGi container.
+     */
+    public InstallBundleRequest( final String bundleUrl )
+    {
+        this( bundleUrl, null );
+    }
+
+    /**
+     * Constructor for a bundle to be installed from its content.
+     *
+     * @param bundleLocation bundle location (cannot be null)
+     * @param bundle         bundle content (can be null, case when the bundle is installed from location)
+     */
+    public InstallBundleRequest( final String bundleLocation,
+                                 final byte[] bundle )
+    {
+        validateNotNull( bundleLocation, "Bundle location" );
+        m_location = bundleLocation;
+        m_content = bundle;
+        m_startLevel = NO_START_LEVEL;
+        m_state = NO_STATE;
+    }
+
+    /**
+     * Sets the start level of the bundle once installed.
+     *
+     * @param startLevel bundle start level
+     *
+     * @return itself, for fluent api usage
+     */
+    public InstallBundleRequest startLevel( final int startLevel )
+    {
+        m_startLevel = startLevel;
+        return this;
+    }
+
+    /**
+     * Sets if the bundle should be started once installed.
+     *
+     * @param start true if the bundle should be started
+     *
+     * @return itself, for fluent api usage
+     */
+    public InstallBundleRequest start( final boolean start )
+    {
+        m_start = start;
+        return this;
+    }
+
+    /**
+     * Sets a state the bundle should reach before the batch is completed.
+     *
+     * @param state           expected state
+     * @param timeoutInMillis max time to wait for state
+     *
+     * @return itself, for fluent api usage
+     */
+    public InstallBundleRequest waitForState( final int state,
+                                              final long timeoutInMillis )
+    {
+        m_state = state;
+        m_timeout = timeoutInMillis;
+        return this;
+    }
+
+    public String getLocation()
+    {
+        return m_location;
+    }
+
+    public byte[] getContent()
+    {
+        return m_content;
+    }
+
+    public int getStartLevel()
+    {
+        return m_startLevel;
+    }
+
+    public boolean shouldStart()
+    {
+        return m_start;
+    }
+
+    public int getState()
+    {
+        return m_state;
+    }
+
+    public long getTimeout()
+    {
+        return m_timeout;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InstallBundleRequest{location=" + m_location + ", startLevel=" + m_startLevel + ", start=" + m_start
+               + "}";
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.rbc.internal;
+
+import java.io.Serializable;
+
+/**
+ * Outcome of one bundle of a {@link RemoteBundleContext#installBundles(InstallBundleRequest[])} batch.
+ *
+ * @since 1.2.3
+ */
+public class InstallBundleResult
+    implements Serializable
+{
+
+    /**
+     * Bundle id value specifying that the bundle is not installed.
+     */
+    public static final long NOT_INSTALLED = -1;
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Id of the installed bundle or {@link #NOT_INSTALLED}.
+     */
+    private final long m_bundleId;
+    /**
+     * Reason why the bundle could not be installed, started or did not reach the expected state. Null if successful.
+     */
+    private final Exception m_failure;
+
+    /**
+     * Constructor.
+     *
+     * @param bundleId id of the installed bundle or {@link #NOT_INSTALLED}
+     * @param failure  failure reason (can be null, case when successful)
+     */
+    public InstallBundleResult( final long bundleId,
+                                final Exception failure )
+    {
+        m_bundleId = bundleId;
+        m_failure = failure;
+    }
+
+    public long getBundleId()
+    {
+        return m_bundleId;
+    }
+
+    public Exception getFailure()
+    {
+        return m_failure;
+    }
+
+    public boolean isSuccessful()
+    {
+        return m_failure == null;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InstallBundleResult{bundleId=" + m_bundleId + ", failure=" + m_failure + "}";
+    }
+
+}
@@ -97,6 +97,36 @@ public interface RemoteBundleContext
     long installBundle( String bundleLocation, byte[] bundle )
         throws RemoteException, BundleException;
 
+    /**
+     * Installs a bundle remotly given a file containing the bundle content. The file must be accessible from the
+     * remote OSGi container, so this is meant to be used when the remote OSGi container runs on the same host.
+     * The file is not changed or deleted.
+     *
+     * @param bundleLocation bundle location
+     * @param bundleFile     absolute path of the file containing the bundle content
+     *
+     * @return bundle id of the installed bundle
+     *
+     * @throws RemoteException - Remote communication related exception (mandatory by RMI)
+     * @throws BundleException - Re-thrown from installing the bundle or if the file cannot be read
+     */
+    long installBundleFromFile( String bundleLocation, String bundleFile )
+        throws RemoteException, BundleException;
+
+    /**
+     * Installs a batch of bundles in one remote call. All bundles are installed first, then start levels are set,
+     * then bundles are started (in the given order) and at last the expected states are awaited. If any of the steps
+     * fails for any of the bundles, all bundles installed by the batch are uninstalled.
+     *
+     * @param requests bundles to be installed
+     *
+     * @return per bundle results, in the same order as the requests
+     *
+     * @throws RemoteException - Remote communication related exception (mandatory by RMI)
+     */
+    InstallBundleResult[] installBundles( InstallBundleRequest... requests )
+        throws RemoteException;
+
     /**
      * Starts a bundle.
      *
@@ -119,6 +149,19 @@ public interface RemoteBundleContext
     void stopBundle( long bundleId )
         throws RemoteException, BundleException;
 
+    /**
+     * Updates a bundle with the content of an url. The url must be accessible from the remote OSGi container.
+     *
+     * @param bundleId  id of the bundle to be updated
+     * @param bundleUrl url of the new bundle content
+     *
+     * @throws RemoteException - Remote communication related exception (mandatory by RMI)
+     * @throws BundleException - Re-thrown from updating the bundle or if the url cannot be read
+     * @since 1.2.3
+     */
+    void updateBundle( long bundleId, String bundleUrl )
+        throws RemoteException, BundleException;
+
     /**
      * Sets bundle start level.
      *
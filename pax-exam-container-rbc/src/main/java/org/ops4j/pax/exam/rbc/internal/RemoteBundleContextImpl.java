@@ -17,19 +17,31 @@
  */
 package org.ops4j.pax.exam.rbc.internal;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.rmi.RemoteException;
 import java.util.Dictionary;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
 import org.osgi.framework.BundleException;
+import org.osgi.framework.BundleListener;
 import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.SynchronousBundleListener;
 import org.osgi.service.startlevel.StartLevel;
 import static org.ops4j.lang.NullArgumentException.*;
 
@@ -48,6 +60,14 @@ public class RemoteBundleContextImpl
      * JCL Logger.
      */
     private static final Log LOG = LogFactory.getLog( RemoteBundleContextImpl.class );
+    /**
+     * Max time in millis between two checks of bundle state while waiting for a state.
+     */
+    private static final long RECHECK_INTERVAL = 1000;
+    /**
+     * Size of buffer used while reading bundle content from files.
+     */
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
     /**
      * Bundle context (cannot be null).
      */
@@ -119,6 +139,109 @@ public class RemoteBundleContextImpl
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * The content is streamed from the file channel, so the bundle is never held in memory as a whole.
+     */
+    public long installBundleFromFile( final String bundleLocation,
+                                       final String bundleFile )
+        throws BundleException
+    {
+        LOG.info( "Install bundle [" + bundleLocation + "] from file [" + bundleFile + "]" );
+        final FileChannel channel;
+        try
+        {
+            channel = new RandomAccessFile( bundleFile, "r" ).getChannel();
+        }
+        catch( FileNotFoundException e )
+        {
+            throw new BundleException( "Cannot read bundle content from [" + bundleFile + "]", e );
+        }
+        try
+        {
+            return m_bundleContext.installBundle(
+                bundleLocation, new BufferedInputStream( Channels.newInputStream( channel ), TRANSFER_BUFFER_SIZE )
+            ).getBundleId();
+        }
+        finally
+        {
+            try
+            {
+                channel.close();
+            }
+            catch( IOException e )
+            {
+                // ignore.
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public InstallBundleResult[] installBundles( final InstallBundleRequest... requests )
+    {
+        LOG.info( "Install batch of " + requests.length + " bundles" );
+        final Bundle[] bundles = new Bundle[requests.length];
+        Exception failure = null;
+        int failed = -1;
+        try
+        {
+            for( int i = 0; i < requests.length; i++ )
+            {
+                failed = i;
+                bundles[ i ] = installBundle( requests[ i ] );
+            }
+            for( int i = 0; i < requests.length; i++ )
+            {
+                failed = i;
+                if( requests[ i ].getStartLevel() != InstallBundleRequest.NO_START_LEVEL )
+                {
+                    setBundleStartLevel( bundles[ i ].getBundleId(), requests[ i ].getStartLevel() );
+                }
+            }
+            for( int i = 0; i < requests.length; i++ )
+            {
+                failed = i;
+                if( requests[ i ].shouldStart() )
+                {
+                    startBundle( bundles[ i ] );
+                }
+            }
+            for( int i = 0; i < requests.length; i++ )
+            {
+                failed = i;
+                if( requests[ i ].getState() != InstallBundleRequest.NO_STATE )
+                {
+                    waitForState( bundles[ i ].getBundleId(), requests[ i ].getState(), requests[ i ].getTimeout() );
+                }
+            }
+            failed = -1;
+        }
+        catch( Exception e )
+        {
+            LOG.error( "Batch install failed for " + requests[ failed ] + ": " + e.getMessage() );
+            failure = e;
+        }
+        final InstallBundleResult[] results = new InstallBundleResult[requests.length];
+        for( int i = 0; i < requests.length; i++ )
+        {
+            if( failure == null )
+            {
+                results[ i ] = new InstallBundleResult( bundles[ i ].getBundleId(), null );
+            }
+            else
+            {
+                uninstallQuietly( bundles[ i ] );
+                results[ i ] = new InstallBundleResult(
+                    InstallBundleResult.NOT_INSTALLED,
+                    i == failed ? failure : null
+                );
+            }
+        }
+        return results;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -137,6 +260,31 @@ public class RemoteBundleContextImpl
         m_bundleContext.getBundle( bundleId ).stop();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBundle( final long bundleId, final String bundleUrl )
+        throws BundleException
+    {
+        LOG.info( "Update bundle [" + bundleId + "] from [" + bundleUrl + "]" );
+        final Bundle bundle = m_bundleContext.getBundle( bundleId );
+        if( bundle == null )
+        {
+            throw new BundleException( "There is no bundle with id [" + bundleId + "]" );
+        }
+        final InputStream content;
+        try
+        {
+            content = new BufferedInputStream( new URL( bundleUrl ).openStream(), TRANSFER_BUFFER_SIZE );
+        }
+        catch( IOException e )
+        {
+            throw new BundleException( "Cannot read bundle content from [" + bundleUrl + "]", e );
+        }
+        // the framework closes the stream
+        bundle.update( content );
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -170,22 +318,10 @@ public class RemoteBundleContextImpl
                 + "' not '" + bundleStateToString( state ) + "' as expected"
             );
         }
-        long startedTrying = System.currentTimeMillis();
-        do
+        if( bundle.getState() < state )
         {
-           try
-           {
-              Thread.sleep(50);
-           }
-           catch (InterruptedException e)
-           {
-              Thread.currentThread().interrupt();
-              break;
-           }
+            waitForEvents( bundle, state, timeoutInMillis );
         }
-        while( bundle.getState() < state
-               && ( timeoutInMillis == WAIT_FOREVER
-                    || System.currentTimeMillis() < startedTrying + timeoutInMillis ) );
         if( bundle.getState() < state )
         {
             throw new TimeoutException(
@@ -195,6 +331,77 @@ public class RemoteBundleContextImpl
         }
     }
 
+    /**
+     * Waits for a bundle to reach a state by listening to bundle and framework events, so the wait ends as soon as
+     * the state is reached. The state is re-checked now and then, in case that the framework does not fire an event
+     * for the change (as for the system bundle on some frameworks).
+     *
+     * @param bundle          bundle to wait for
+     * @param state           expected state
+     * @param timeoutInMillis max time to wait for state
+     */
+    private void waitForEvents( final Bundle bundle,
+                                final int state,
+                                final long timeoutInMillis )
+    {
+        final Object monitor = new Object();
+        final BundleListener bundleListener = new SynchronousBundleListener()
+        {
+            public void bundleChanged( final BundleEvent event )
+            {
+                if( event.getBundle().getBundleId() == bundle.getBundleId() )
+                {
+                    synchronized( monitor )
+                    {
+                        monitor.notifyAll();
+                    }
+                }
+            }
+        };
+        final FrameworkListener frameworkListener = new FrameworkListener()
+        {
+            public void frameworkEvent( final FrameworkEvent event )
+            {
+                synchronized( monitor )
+                {
+                    monitor.notifyAll();
+                }
+            }
+        };
+        m_bundleContext.addBundleListener( bundleListener );
+        m_bundleContext.addFrameworkListener( frameworkListener );
+        try
+        {
+            final long waitUntil = System.currentTimeMillis() + timeoutInMillis;
+            synchronized( monitor )
+            {
+                while( bundle.getState() < state )
+                {
+                    long toWait = RECHECK_INTERVAL;
+                    if( timeoutInMillis != WAIT_FOREVER )
+                    {
+                        final long remaining = waitUntil - System.currentTimeMillis();
+                        if( remaining <= 0 )
+                        {
+                            return;
+                        }
+                        toWait = Math.min( toWait, remaining );
+                    }
+                    monitor.wait( toWait );
+                }
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            m_bundleContext.removeBundleListener( bundleListener );
+            m_bundleContext.removeFrameworkListener( frameworkListener );
+        }
+    }
+
     /**
      * Lookup a service in the service registry.
      *
@@ -227,6 +434,45 @@ public class RemoteBundleContextImpl
         }
     }
 
+    /**
+     * Installs a bundle as requested by a batch install.
+     *
+     * @param request install request
+     *
+     * @return installed bundle
+     *
+     * @throws BundleException - Re-thrown from installing the bundle
+     */
+    private Bundle installBundle( final InstallBundleRequest request )
+        throws BundleException
+    {
+        if( request.getContent() == null )
+        {
+            return m_bundleContext.installBundle( request.getLocation() );
+        }
+        return m_bundleContext.installBundle( request.getLocation(), new ByteArrayInputStream( request.getContent() ) );
+    }
+
+    /**
+     * Uninstalls a bundle installed by a failed batch install, logging eventual exceptions.
+     *
+     * @param bundle bundle to uninstall (can be null, case when nothing happens)
+     */
+    private static void uninstallQuietly( final Bundle bundle )
+    {
+        if( bundle != null )
+        {
+            try
+            {
+                bundle.uninstall();
+            }
+            catch( Exception e )
+            {
+                LOG.error( "Cannot uninstall bundle [" + bundle.getBundleId() + "]: " + e.getMessage() );
+            }
+        }
+    }
+
     /**
      * Starts a bundle.
      *
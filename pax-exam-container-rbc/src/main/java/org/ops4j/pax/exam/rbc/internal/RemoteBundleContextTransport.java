@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.rbc.internal;
+
+/**
+ * Makes a {@link RemoteBundleContext} reachable by clients running in another process.
+ *
+ * @since 1.2.3
+ */
+interface RemoteBundleContextTransport
+{
+
+    /**
+     * Starts accepting calls to the remote bundle context.
+     *
+     * @param remoteBundleContext remote bundle context to be exported
+     * @param port                port to be used
+     *
+     * @throws Exception - If the remote bundle context cannot be exported
+     */
+    void export( RemoteBundleContext remoteBundleContext, int port )
+        throws Exception;
+
+    /**
+     * Stops accepting calls and releases used resources.
+     *
+     * @throws Exception - If the remote bundle context cannot be unexported
+     */
+    void unexport()
+        throws Exception;
+
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.rbc.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Wire format of the socket transport of {@link RemoteBundleContext}.
+ *
+ * Each request and each reply is a frame: the length of the payload as int, followed by the payload. A request payload
+ * starts with an operation byte followed by the operation arguments; a reply payload starts with a status byte,
+ * followed by the result if the status is {@link #OK} or by the thrown exception if the status is {@link #FAILURE}.
+ * Ids, states and start levels are sent as fixed width numbers, strings and bundle contents as length prefixed bytes
+ * (strings encoded as UTF-8, so they can be of any length). Only service call parameters, results and exceptions, whose types are not known in advance,
+ * are sent as serialized java objects.
+ * A connection starts with a {@link #HELLO} request carrying {@link #MAGIC} and {@link #VERSION}.
+ *
+ * @since 1.2.3
+ */
+final class SocketProtocol
+{
+
+    static final int MAGIC = 0x50524243;
+    static final int VERSION = 1;
+
+    static final byte HELLO = 0;
+    static final byte REMOTE_CALL = 1;
+    static final byte INSTALL_BUNDLE_URL = 2;
+    static final byte INSTALL_BUNDLE_CONTENT = 3;
+    static final byte INSTALL_BUNDLE_FILE = 4;
+    static final byte INSTALL_BUNDLES = 5;
+    static final byte START_BUNDLE = 6;
+    static final byte STOP_BUNDLE = 7;
+    static final byte UPDATE_BUNDLE = 8;
+    static final byte SET_BUNDLE_START_LEVEL = 9;
+    static final byte WAIT_FOR_STATE = 10;
+
+    static final byte OK = 0;
+    static final byte FAILURE = 1;
+
+    /**
+     * Encoding of strings.
+     */
+    private static final String UTF_8 = "UTF-8";
+    /**
+     * Primitive types by name, as they cannot be loaded via a class loader.
+     */
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<String, Class<?>>();
+
+    static
+    {
+        for( Class<?> type : new Class<?>[]{
+            boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class,
+            void.class
+        } )
+        {
+            PRIMITIVES.put( type.getName(), type );
+        }
+    }
+
+    /**
+     * Utility class. Ment to be used via the static methods.
+     */
+    private SocketProtocol()
+    {
+        // utility class
+    }
+
+    /**
+     * Writes a frame and flushes.
+     *
+     * @param out     where to write
+     * @param message message to be written as frame payload
+     *
+     * @throws IOException - Re-thrown from writing
+     */
+    static void writeFrame( final OutputStream out,
+                            final Message message )
+        throws IOException
+    {
+        final byte[] payload = message.toByteArray();
+        final byte[] frame = new byte[payload.length + 4];
+        frame[ 0 ] = (byte) ( payload.length >>> 24 );
+        frame[ 1 ] = (byte) ( payload.length >>> 16 );
+        frame[ 2 ] = (byte) ( payload.length >>> 8 );
+        frame[ 3 ] = (byte) payload.length;
+        System.arraycopy( payload, 0, frame, 4, payload.length );
+        out.write( frame );
+        out.flush();
+    }
+
+    /**
+     * Reads a frame.
+     *
+     * @param in where to read from
+     *
+     * @return frame payload
+     *
+     * @throws IOException - Re-thrown from reading or if frame is corrupt
+     * @throws java.io.EOFException - If the connection was closed before the start of the frame
+     */
+    static DataInputStream readFrame( final DataInputStream in )
+        throws IOException
+    {
+        final int length = in.readInt();
+        if( length < 0 )
+        {
+            throw new IOException( "Corrupt frame of length " + length );
+        }
+        final byte[] payload = new byte[length];
+        in.readFully( payload );
+        return new DataInputStream( new ByteArrayInputStream( payload ) );
+    }
+
+    /**
+     * Writes length prefixed bytes.
+     */
+    static void writeBytes( final DataOutput out,
+                            final byte[] bytes )
+        throws IOException
+    {
+        if( bytes == null )
+        {
+            out.writeInt( -1 );
+        }
+        else
+        {
+            out.writeInt( bytes.length );
+            out.write( bytes );
+        }
+    }
+
+    /**
+     * Reads length prefixed bytes.
+     */
+    static byte[] readBytes( final DataInput in )
+        throws IOException
+    {
+        final int length = in.readInt();
+        if( length < 0 )
+        {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully( bytes );
+        return bytes;
+    }
+
+    /**
+     * Writes a string, as length prefixed UTF-8 bytes.
+     */
+    static void writeString( final DataOutput out,
+                             final String string )
+        throws IOException
+    {
+        writeBytes( out, string == null ? null : string.getBytes( UTF_8 ) );
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}.
+     */
+    static String readString( final DataInput in )
+        throws IOException
+    {
+        final byte[] bytes = readBytes( in );
+        return bytes == null ? null : new String( bytes, UTF_8 );
+    }
+
+    /**
+     * Writes a serialized java object, as length prefixed bytes.
+     */
+    static void writeObject( final DataOutput out,
+                             final Object object )
+        throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream objectOut = new ObjectOutputStream( bytes );
+        objectOut.writeObject( object );
+        objectOut.close();
+        writeBytes( out, bytes.toByteArray() );
+    }
+
+    /**
+     * Reads a serialized java object, resolving its classes via a class loader.
+     */
+    static Object readObject( final DataInput in,
+                              final ClassLoader classLoader )
+        throws IOException
+    {
+        final ObjectInputStream objectIn = new ObjectInputStream( new ByteArrayInputStream( readBytes( in ) ) )
+        {
+            @Override
+            protected Class<?> resolveClass( final ObjectStreamClass description )
+                throws IOException, ClassNotFoundException
+            {
+                try
+                {
+                    return loadClass( description.getName(), classLoader );
+                }
+                catch( ClassNotFoundException e )
+                {
+                    return super.resolveClass( description );
+                }
+            }
+        };
+        try
+        {
+            return objectIn.readObject();
+        }
+        catch( ClassNotFoundException e )
+        {
+            final IOException failure = new IOException( "Cannot read remote object: " + e.getMessage() );
+            failure.initCause( e );
+            throw failure;
+        }
+    }
+
+    /**
+     * Loads a class (or primitive type) by name.
+     */
+    static Class<?> loadClass( final String name,
+                               final ClassLoader classLoader )
+        throws ClassNotFoundException
+    {
+        final Class<?> primitive = PRIMITIVES.get( name );
+        if( primitive != null )
+        {
+            return primitive;
+        }
+        return Class.forName( name, false, classLoader );
+    }
+
+    /**
+     * Payload of a frame, being written.
+     */
+    static class Message
+        extends DataOutputStream
+    {
+
+        /**
+         * Constructor.
+         *
+         * @param code operation (for requests) or status (for replies)
+         */
+        Message( final byte code )
+            throws IOException
+        {
+            super( new ByteArrayOutputStream() );
+            writeByte( code );
+        }
+
+        byte[] toByteArray()
+        {
+            return ( (ByteArrayOutputStream) out ).toByteArray();
+        }
+
+    }
+
+}
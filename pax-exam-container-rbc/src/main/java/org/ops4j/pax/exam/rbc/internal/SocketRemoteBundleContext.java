@@ -0,0 +1,483 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.rbc.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.rmi.RemoteException;
+import org.osgi.framework.BundleException;
+
+import static org.ops4j.pax.exam.rbc.internal.SocketProtocol.*;
+
+/**
+ * Client side of the socket transport: a {@link RemoteBundleContext} forwarding all calls over one persistent
+ * connection, using the {@link SocketProtocol}. Calls are sent one after the other. Communication failures are
+ * reported as {@link RemoteException}, as for RMI.
+ *
+ * @since 1.2.3
+ */
+public class SocketRemoteBundleContext
+    implements RemoteBundleContext, Closeable
+{
+
+    /**
+     * Size of socket stream buffers.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Connection to remote bundle context. Guarded by this.
+     */
+    private final Socket m_socket;
+    private final DataInputStream m_in;
+    private final OutputStream m_out;
+    /**
+     * True once communication failed, as the connection may be left in the middle of a frame. Guarded by this.
+     */
+    private boolean m_broken;
+    /**
+     * Class loader used to resolve classes of call results and exceptions.
+     */
+    private final ClassLoader m_classLoader;
+
+    /**
+     * Connects to a remote bundle context listening on the loopback interface.
+     *
+     * @param port        port the remote bundle context listens on
+     * @param classLoader class loader used to resolve classes of call results and exceptions
+     *
+     * @throws IOException - If connection cannot be opened, as {@link java.net.ConnectException} if nobody listens
+     */
+    public SocketRemoteBundleContext( final int port,
+                                      final ClassLoader classLoader )
+        throws IOException
+    {
+        m_socket = new Socket( InetAddress.getByName( null ), port );
+        m_classLoader = classLoader;
+        try
+        {
+            m_socket.setTcpNoDelay( true );
+            m_in = new DataInputStream( new BufferedInputStream( m_socket.getInputStream(), BUFFER_SIZE ) );
+            m_out = new BufferedOutputStream( m_socket.getOutputStream(), BUFFER_SIZE );
+            final Message hello = new Message( HELLO );
+            hello.writeInt( MAGIC );
+            hello.writeInt( VERSION );
+            call( hello );
+        }
+        catch( Exception e )
+        {
+            close();
+            final IOException failure = new IOException( "Cannot connect to remote bundle context: " + e.getMessage() );
+            failure.initCause( e );
+            throw failure;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object remoteCall( final Class<?> serviceType,
+                              final String methodName,
+                              final Class<?>[] methodParamTypes,
+                              final long timeoutInMillis,
+                              final Object... actualParams )
+        throws RemoteException, NoSuchServiceException, NoSuchMethodException, IllegalAccessException,
+               InvocationTargetException
+    {
+        try
+        {
+            final Message request = new Message( REMOTE_CALL );
+            writeString( request, serviceType.getName() );
+            writeString( request, methodName );
+            request.writeInt( methodParamTypes.length );
+            for( Class<?> paramType : methodParamTypes )
+            {
+                writeString( request, paramType.getName() );
+            }
+            request.writeLong( timeoutInMillis );
+            writeObject( request, actualParams );
+            return readObject( call( request ), m_classLoader );
+        }
+        catch( IOException e )
+        {
+            throw new RemoteException( "Remote call failed", e );
+        }
+        catch( RemoteFailure e )
+        {
+            final Throwable failure = e.getCause();
+            if( failure instanceof NoSuchServiceException )
+            {
+                throw (NoSuchServiceException) failure;
+            }
+            if( failure instanceof NoSuchMethodException )
+            {
+                throw (NoSuchMethodException) failure;
+            }
+            if( failure instanceof IllegalAccessException )
+            {
+                throw (IllegalAccessException) failure;
+            }
+            if( failure instanceof InvocationTargetException )
+            {
+                throw (InvocationTargetException) failure;
+            }
+            throw e.rethrow();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long installBundle( final String bundleUrl )
+        throws RemoteException, BundleException
+    {
+        try
+        {
+            final Message request = new Message( INSTALL_BUNDLE_URL );
+            writeString( request, bundleUrl );
+            return call( request ).readLong();
+        }
+        catch( IOException e )
+        {
+            throw new RemoteException( "Remote call failed", e );
+        }
+        catch( RemoteFailure e )
+        {
+            throw e.rethrowBundleException();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long installBundle( final String bundleLocation,
+                               final byte[] bundle )
+        throws RemoteException, BundleException
+    {
+        try
+        {
+            final Message request = new Message( INSTALL_BUNDLE_CONTENT );
+            writeString( request, bundleLocation );
+            writeBytes( request, bundle );
+            return call( request ).readLong();
+        }
+        catch( IOException e )
+        {
+            throw new RemoteException( "Remote call failed", e );
+        }
+        catch( RemoteFailure e )
+        {
+            throw e.rethrowBundleException();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long installBundleFromFile( final String bundleLocation,
+                                       final String bundleFile )
+        throws RemoteException, BundleException
+    {
+        try
+        {
+            final Message request = new Message( INSTALL_BUNDLE_FILE );
+            writeString( request, bundleLocation );
+            writeString( request, bundleFile );
+            return call( request ).readLong();
+        }
+        catch( IOException e )
+        {
+            throw new RemoteException( "Remote call failed", e );
+        }
+        catch( RemoteFailure e )
+        {
+            throw e.rethrowBundleException();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public InstallBundleResult[] installBundles( final InstallBundleRequest... requests )
+        throws RemoteException
+    {
+        try
+        {
+            final Message request = new Message( INSTALL_BUNDLES );
+            request.writeInt( requests.length );
+            for( InstallBundleRequest installRequest : requests )
+            {
+                writeString( request, installRequest.getLocation() );
+                writeBytes( request, installRequest.getContent() );
+                request.writeInt( installRequest.getStartLevel() );
+                request.writeBoolean( installRequest.shouldStart() );
+                request.writeInt( installRequest.getState() );
+                request.writeLong( installRequest.getTimeout() );
+            }
+            final DataInputStream reply = call( request );
+            final InstallBundleResult[] results = new InstallBundleResult[reply.readInt()];
+            for( int i = 0; i < results.length; i++ )
+            {
+                final long bundleId = reply.readLong();
+                final Exception failure = reply.readBoolean() ? (Exception) readObject( reply, m_classLoader ) : null;
+                results[ i ] = new InstallBundleResult( bundleId, failure );
+            }
+            return results;
+        }
+        catch( IOException e )
+        {
+            throw new RemoteException( "Remote call failed", e );
+        }
+        catch( RemoteFailure e )
+        {
+            throw e.rethrow();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void startBundle( final long bundleId )
+        throws RemoteException, BundleException
+    {
+        callWithBundleId( START_BUNDLE, bundleId );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void stopBundle( final long bundleId )
+        throws RemoteException, BundleException
+    {
+        callWithBundleId( STOP_BUNDLE, bundleId );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void updateBundle( final long bundleId,
+                              final String bundleUrl )
+        throws RemoteException, BundleException
+    {
+        try
+        {
+            final Message request = new Message( UPDATE_BUNDLE );
+            request.writeLong( bundleId );
+            writeString( request, bundleUrl );
+            call( request );
+        }
+        catch( IOException e )
+        {
+            throw new RemoteException( "Remote call failed", e );
+        }
+        catch( RemoteFailure e )
+        {
+            throw e.rethrowBundleException();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setBundleStartLevel( final long bundleId,
+                                     final int startLevel )
+        throws RemoteException, BundleException
+    {
+        try
+        {
+            final Message request = new Message( SET_BUNDLE_START_LEVEL );
+            request.writeLong( bundleId );
+            request.writeInt( startLevel );
+            call( request );
+        }
+        catch( IOException e )
+        {
+            throw new RemoteException( "Remote call failed", e );
+        }
+        catch( RemoteFailure e )
+        {
+            throw e.rethrowBundleException();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void waitForState( final long bundleId,
+                              final int state,
+                              final long timeoutInMillis )
+        throws RemoteException, BundleException, TimeoutException
+    {
+        try
+        {
+            final Message request = new Message( WAIT_FOR_STATE );
+            request.writeLong( bundleId );
+            request.writeInt( state );
+            request.writeLong( timeoutInMillis );
+            call( request );
+        }
+        catch( IOException e )
+        {
+            throw new RemoteException( "Remote call failed", e );
+        }
+        catch( RemoteFailure e )
+        {
+            if( e.getCause() instanceof TimeoutException )
+            {
+                throw (TimeoutException) e.getCause();
+            }
+            throw e.rethrowBundleException();
+        }
+    }
+
+    /**
+     * Closes the connection.
+     */
+    public void close()
+    {
+        try
+        {
+            m_socket.close();
+        }
+        catch( IOException e )
+        {
+            // ignore.
+        }
+    }
+
+    /**
+     * Calls an operation that takes only a bundle id as argument.
+     */
+    private void callWithBundleId( final byte operation,
+                                   final long bundleId )
+        throws RemoteException, BundleException
+    {
+        try
+        {
+            final Message request = new Message( operation );
+            request.writeLong( bundleId );
+            call( request );
+        }
+        catch( IOException e )
+        {
+            throw new RemoteException( "Remote call failed", e );
+        }
+        catch( RemoteFailure e )
+        {
+            throw e.rethrowBundleException();
+        }
+    }
+
+    /**
+     * Sends a request and waits for the reply. If communication fails the connection is closed, as request and reply
+     * could be partially sent or read, and all following calls fail.
+     *
+     * @param request request to be sent
+     *
+     * @return reply payload, positioned after the status
+     *
+     * @throws IOException    - If communication fails or failed before
+     * @throws RemoteFailure - If the remote bundle context threw an exception
+     */
+    private synchronized DataInputStream call( final Message request )
+        throws IOException, RemoteFailure
+    {
+        if( m_broken )
+        {
+            throw new IOException( "Connection closed after an earlier communication failure" );
+        }
+        final DataInputStream reply;
+        try
+        {
+            writeFrame( m_out, request );
+            reply = readFrame( m_in );
+        }
+        catch( IOException e )
+        {
+            m_broken = true;
+            close();
+            throw e;
+        }
+        if( reply.readByte() == FAILURE )
+        {
+            throw new RemoteFailure( (Throwable) readObject( reply, m_classLoader ) );
+        }
+        return reply;
+    }
+
+    /**
+     * Exception thrown by the remote bundle context, to be re-thrown as one of the exceptions declared by the called
+     * operation.
+     */
+    private static class RemoteFailure
+        extends Exception
+    {
+
+        private static final long serialVersionUID = 1L;
+
+        RemoteFailure( final Throwable cause )
+        {
+            super( cause );
+        }
+
+        /**
+         * Re-throws unchecked exceptions and remote exceptions as they are.
+         *
+         * @return remote exception wrapping any other exception, to be thrown by caller
+         */
+        RemoteException rethrow()
+        {
+            final Throwable cause = getCause();
+            if( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            if( cause instanceof RemoteException )
+            {
+                return (RemoteException) cause;
+            }
+            return new RemoteException( "Remote call failed", cause );
+        }
+
+        /**
+         * As {@link #rethrow()} but re-throws bundle exceptions as they are as well.
+         */
+        RemoteException rethrowBundleException()
+            throws BundleException
+        {
+            if( getCause() instanceof BundleException )
+            {
+                throw (BundleException) getCause();
+            }
+            return rethrow();
+        }
+
+    }
+
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.rbc.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import static org.ops4j.pax.exam.rbc.internal.SocketProtocol.*;
+
+/**
+ * Exports the remote bundle context via plain sockets, using the {@link SocketProtocol}. Listens on the loopback
+ * interface only. Each client keeps one connection open, on which its calls are served one after the other.
+ *
+ * @since 1.2.3
+ */
+class SocketTransport
+    implements RemoteBundleContextTransport
+{
+
+    /**
+     * JCL logger.
+     */
+    private static final Log LOG = LogFactory.getLog( SocketTransport.class );
+    /**
+     * Size of socket stream buffers.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Exported remote bundle context. Null if not exported.
+     */
+    private volatile RemoteBundleContext m_remoteBundleContext;
+    /**
+     * Socket accepting connections. Null if not exported.
+     */
+    private ServerSocket m_serverSocket;
+    /**
+     * Open connections. Guarded by itself.
+     */
+    private final Set<Socket> m_connections = new HashSet<Socket>();
+
+    /**
+     * {@inheritDoc}
+     */
+    public void export( final RemoteBundleContext remoteBundleContext,
+                        final int port )
+        throws IOException
+    {
+        m_remoteBundleContext = remoteBundleContext;
+        m_serverSocket = new ServerSocket( port, 50, InetAddress.getByName( null ) );
+        final ServerSocket serverSocket = m_serverSocket;
+        newThread( "pax-exam-rbc-accept", new Runnable()
+        {
+            public void run()
+            {
+                accept( serverSocket );
+            }
+        }
+        ).start();
+        LOG.info( "Remote bundle context listening on port [" + port + "]" );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void unexport()
+        throws IOException
+    {
+        m_remoteBundleContext = null;
+        if( m_serverSocket != null )
+        {
+            m_serverSocket.close();
+            m_serverSocket = null;
+        }
+        final List<Socket> connections;
+        synchronized( m_connections )
+        {
+            connections = new ArrayList<Socket>( m_connections );
+            m_connections.clear();
+        }
+        for( Socket connection : connections )
+        {
+            close( connection );
+        }
+        LOG.info( "Remote bundle context stopped listening" );
+    }
+
+    /**
+     * Accepts connections till the server socket is closed, serving each one in its own thread.
+     *
+     * @param serverSocket socket to accept connections from
+     */
+    private void accept( final ServerSocket serverSocket )
+    {
+        while( !serverSocket.isClosed() )
+        {
+            final Socket connection;
+            try
+            {
+                connection = serverSocket.accept();
+            }
+            catch( IOException e )
+            {
+                if( !serverSocket.isClosed() )
+                {
+                    LOG.error( "Cannot accept connection: " + e.getMessage() );
+                }
+                return;
+            }
+            synchronized( m_connections )
+            {
+                m_connections.add( connection );
+            }
+            newThread( "pax-exam-rbc-connection", new Runnable()
+            {
+                public void run()
+                {
+                    serve( connection );
+                }
+            }
+            ).start();
+        }
+    }
+
+    /**
+     * Serves the requests of one connection till it is closed.
+     *
+     * @param connection connection to be served
+     */
+    private void serve( final Socket connection )
+    {
+        try
+        {
+            connection.setTcpNoDelay( true );
+            final DataInputStream in = new DataInputStream(
+                new BufferedInputStream( connection.getInputStream(), BUFFER_SIZE )
+            );
+            final OutputStream out = new BufferedOutputStream( connection.getOutputStream(), BUFFER_SIZE );
+            while( true )
+            {
+                final DataInputStream request;
+                try
+                {
+                    request = readFrame( in );
+                }
+                catch( EOFException e )
+                {
+                    // closed by client
+                    return;
+                }
+                writeFrame( out, handle( request ) );
+            }
+        }
+        catch( IOException e )
+        {
+            if( !connection.isClosed() )
+            {
+                LOG.debug( "Connection closed: " + e.getMessage() );
+            }
+        }
+        finally
+        {
+            synchronized( m_connections )
+            {
+                m_connections.remove( connection );
+            }
+            close( connection );
+        }
+    }
+
+    /**
+     * Handles a request, replying the exception thrown by the remote bundle context in case of failure.
+     *
+     * @param request request payload
+     *
+     * @return reply payload
+     *
+     * @throws IOException - If the reply cannot be written
+     */
+    private Message handle( final DataInputStream request )
+        throws IOException
+    {
+        try
+        {
+            return dispatch( request.readByte(), request );
+        }
+        catch( Exception e )
+        {
+            final Message reply = new Message( FAILURE );
+            try
+            {
+                writeObject( reply, e );
+                return reply;
+            }
+            catch( IOException notSerializable )
+            {
+                final Message fallback = new Message( FAILURE );
+                writeObject( fallback, new RemoteException( e.toString() ) );
+                return fallback;
+            }
+        }
+    }
+
+    /**
+     * Reads the arguments of an operation, calls the remote bundle context and writes the result.
+     *
+     * @param operation operation code
+     * @param request   operation arguments
+     *
+     * @return reply payload
+     *
+     * @throws Exception - Re-thrown from remote bundle context or if request is corrupt
+     */
+    private Message dispatch( final byte operation,
+                              final DataInputStream request )
+        throws Exception
+    {
+        final RemoteBundleContext context = m_remoteBundleContext;
+        if( context == null )
+        {
+            throw new RemoteException( "Remote bundle context is not exported" );
+        }
+        final Message reply = new Message( OK );
+        switch( operation )
+        {
+            case HELLO:
+                final int magic = request.readInt();
+                final int version = request.readInt();
+                if( magic != MAGIC || version != VERSION )
+                {
+                    throw new RemoteException( "Unsupported protocol " + magic + "/" + version );
+                }
+                break;
+            case REMOTE_CALL:
+                final ClassLoader classLoader = getClass().getClassLoader();
+                final Class<?> serviceType = loadClass( readString( request ), classLoader );
+                final String methodName = readString( request );
+                final Class<?>[] paramTypes = new Class<?>[request.readInt()];
+                for( int i = 0; i < paramTypes.length; i++ )
+                {
+                    paramTypes[ i ] = loadClass( readString( request ), classLoader );
+                }
+                final long timeout = request.readLong();
+                final Object[] params = (Object[]) readObject( request, classLoader );
+                writeObject( reply, context.remoteCall( serviceType, methodName, paramTypes, timeout, params ) );
+                break;
+            case INSTALL_BUNDLE_URL:
+                reply.writeLong( context.installBundle( readString( request ) ) );
+                break;
+            case INSTALL_BUNDLE_CONTENT:
+                reply.writeLong( context.installBundle( readString( request ), readBytes( request ) ) );
+                break;
+            case INSTALL_BUNDLE_FILE:
+                reply.writeLong( context.installBundleFromFile( readString( request ), readString( request ) ) );
+                break;
+            case INSTALL_BUNDLES:
+                final InstallBundleRequest[] requests = new InstallBundleRequest[request.readInt()];
+                for( int i = 0; i < requests.length; i++ )
+                {
+                    requests[ i ] = new InstallBundleRequest( readString( request ), readBytes( request ) )
+                        .startLevel( request.readInt() )
+                        .start( request.readBoolean() );
+                    requests[ i ].waitForState( request.readInt(), request.readLong() );
+                }
+                final InstallBundleResult[] results = context.installBundles( requests );
+                reply.writeInt( results.length );
+                for( InstallBundleResult result : results )
+                {
+                    reply.writeLong( result.getBundleId() );
+                    reply.writeBoolean( result.getFailure() != null );
+                    if( result.getFailure() != null )
+                    {
+                        writeObject( reply, result.getFailure() );
+                    }
+                }
+                break;
+            case START_BUNDLE:
+                context.startBundle( request.readLong() );
+                break;
+            case STOP_BUNDLE:
+                context.stopBundle( request.readLong() );
+                break;
+            case UPDATE_BUNDLE:
+                context.updateBundle( request.readLong(), readString( request ) );
+                break;
+            case SET_BUNDLE_START_LEVEL:
+                context.setBundleStartLevel( request.readLong(), request.readInt() );
+                break;
+            case WAIT_FOR_STATE:
+                context.waitForState( request.readLong(), request.readInt(), request.readLong() );
+                break;
+            default:
+                throw new RemoteException( "Unknown operation " + operation );
+        }
+        return reply;
+    }
+
+    private static Thread newThread( final String name,
+                                     final Runnable runnable )
+    {
+        final Thread thread = new Thread( runnable, name );
+        thread.setDaemon( true );
+        return thread;
+    }
+
+    private static void close( final Socket socket )
+    {
+        try
+        {
+            socket.close();
+        }
+        catch( IOException e )
+        {
+            // ignore.
+        }
+    }
+
+}
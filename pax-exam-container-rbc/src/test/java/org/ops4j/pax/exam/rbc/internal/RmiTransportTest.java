@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.rbc.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * {@link RmiTransport} unit tests.
+ *
+ * @since 1.2.3
+ */
+public class RmiTransportTest
+{
+
+    /**
+     * Time (millis) a test container shutting down fast gives the framework process to exit before killing it, as by
+     * default.
+     */
+    private static final long GRACE_TIME = 10000;
+
+    /**
+     * Test that a process that exported and unexported the remote bundle context exits on its own well before a test
+     * container shutting down fast would kill it, so there is no need to wait for the grace time.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void processExitsAfterUnexport()
+        throws Exception
+    {
+        final ServerSocket probe = new ServerSocket( 0 );
+        final int port = probe.getLocalPort();
+        probe.close();
+        String classPath = System.getProperty( "surefire.test.class.path" );
+        if( classPath == null )
+        {
+            classPath = System.getProperty( "java.class.path" );
+        }
+        final Process process = new ProcessBuilder(
+            System.getProperty( "java.home" ) + File.separator + "bin" + File.separator + "java",
+            "-cp", classPath,
+            Framework.class.getName(),
+            String.valueOf( port )
+        ).redirectErrorStream( true ).start();
+        process.getOutputStream().close();
+        final BufferedReader output = new BufferedReader( new InputStreamReader( process.getInputStream() ) );
+        String line;
+        while( ( line = output.readLine() ) != null && !Framework.STOPPED.equals( line ) )
+        {
+            // skip log output till stopped
+        }
+        assertThat( "Framework stopped", line, is( equalTo( Framework.STOPPED ) ) );
+        final long stopped = System.currentTimeMillis();
+        final Thread drain = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    while( output.readLine() != null )
+                    {
+                        // discard
+                    }
+                }
+                catch( Exception ignore )
+                {
+                    // process gone
+                }
+            }
+        }
+        );
+        drain.setDaemon( true );
+        drain.start();
+        final Thread waiter = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    process.waitFor();
+                }
+                catch( InterruptedException ignore )
+                {
+                    // timed out
+                }
+            }
+        }
+        );
+        waiter.start();
+        waiter.join( GRACE_TIME );
+        final long exitTime = System.currentTimeMillis() - stopped;
+        if( waiter.isAlive() )
+        {
+            process.destroy();
+            waiter.interrupt();
+        }
+        assertThat( "Exited before grace time (" + exitTime + " millis)", waiter.isAlive(), is( false ) );
+        assertThat( "Exit value", process.exitValue(), is( equalTo( 0 ) ) );
+    }
+
+    /**
+     * Stand in for a framework process: exports a remote bundle context via RMI, unexports it as on framework stop and
+     * returns, leaving it to the RMI threads whether the process exits.
+     */
+    public static class Framework
+    {
+
+        static final String STOPPED = "Remote bundle context unexported";
+
+        public static void main( final String[] args )
+            throws Exception
+        {
+            final RemoteBundleContext context = (RemoteBundleContext) Proxy.newProxyInstance(
+                RemoteBundleContext.class.getClassLoader(), new Class<?>[]{ RemoteBundleContext.class },
+                new InvocationHandler()
+                {
+                    public Object invoke( final Object proxy, final Method method, final Object[] args )
+                    {
+                        return null;
+                    }
+                }
+            );
+            final RmiTransport transport = new RmiTransport();
+            transport.export( context, Integer.parseInt( args[ 0 ] ) );
+            transport.unexport();
+            System.out.println( STOPPED );
+            System.out.flush();
+        }
+
+    }
+
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.rbc.internal;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.ServerSocket;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import static org.junit.matchers.JUnitMatchers.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.BundleException;
+
+/**
+ * Round trip tests of the socket transport: {@link SocketRemoteBundleContext} calling a stub remote bundle context
+ * exported by {@link SocketTransport} on the loopback interface.
+ *
+ * @since 1.2.3
+ */
+public class SocketTransportTest
+{
+
+    private SocketTransport m_transport;
+    private SocketRemoteBundleContext m_client;
+    private byte[] m_content;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        final ServerSocket probe = new ServerSocket( 0 );
+        final int port = probe.getLocalPort();
+        probe.close();
+        m_transport = new SocketTransport();
+        m_transport.export( new StubRemoteBundleContext(), port );
+        m_client = new SocketRemoteBundleContext( port, getClass().getClassLoader() );
+    }
+
+    @After
+    public void tearDown()
+        throws IOException
+    {
+        m_client.close();
+        m_transport.unexport();
+    }
+
+    /**
+     * Test that results of successful calls are returned.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void okReplies()
+        throws Exception
+    {
+        assertThat( m_client.installBundle( "file:bundle.jar" ), is( equalTo( 15L ) ) );
+        assertThat(
+            m_client.remoteCall( Object.class, "echo", new Class<?>[]{ String.class, int.class }, 0, "hello", 1 ),
+            is( equalTo( (Object) "hello" ) )
+        );
+        m_client.stopBundle( 1 );
+        m_client.setBundleStartLevel( 1, 5 );
+    }
+
+    /**
+     * Test that bundle contents arrive unchanged, including empty and missing contents.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void bytePayloads()
+        throws Exception
+    {
+        final byte[] content = new byte[200000];
+        for( int i = 0; i < content.length; i++ )
+        {
+            content[ i ] = (byte) i;
+        }
+        assertThat( m_client.installBundle( "test", content ), is( equalTo( 200000L ) ) );
+        assertThat( Arrays.equals( m_content, content ), is( true ) );
+        assertThat( m_client.installBundle( "test", new byte[0] ), is( equalTo( 0L ) ) );
+        assertThat( m_client.installBundle( "test", null ), is( equalTo( -1L ) ) );
+    }
+
+    /**
+     * Test that strings longer than 64K (the limit of modified UTF-8) and non ASCII strings arrive unchanged.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void longStrings()
+        throws Exception
+    {
+        final StringBuilder url = new StringBuilder( "file:" );
+        while( url.length() < 100000 )
+        {
+            url.append( "é中" );
+        }
+        assertThat( m_client.installBundle( url.toString() ), is( equalTo( (long) url.length() ) ) );
+        assertThat(
+            m_client.remoteCall( Object.class, "echo", new Class<?>[]{ String.class }, 0, url.toString() ),
+            is( equalTo( (Object) url.toString() ) )
+        );
+    }
+
+    /**
+     * Test that declared exceptions thrown remotely are thrown by the client as they are.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void declaredExceptions()
+        throws Exception
+    {
+        try
+        {
+            m_client.installBundleFromFile( "test", "missing.jar" );
+            fail( "Expected BundleException" );
+        }
+        catch( BundleException e )
+        {
+            assertThat( e.getMessage(), is( equalTo( "missing.jar" ) ) );
+        }
+        try
+        {
+            m_client.remoteCall( Object.class, "missing", new Class<?>[0], 0 );
+            fail( "Expected NoSuchMethodException" );
+        }
+        catch( NoSuchMethodException e )
+        {
+            assertThat( e.getMessage(), is( equalTo( "missing" ) ) );
+        }
+        try
+        {
+            m_client.remoteCall( Object.class, "fail", new Class<?>[0], 0 );
+            fail( "Expected InvocationTargetException" );
+        }
+        catch( InvocationTargetException e )
+        {
+            assertThat( e.getCause() instanceof IllegalStateException, is( true ) );
+        }
+        try
+        {
+            m_client.waitForState( 1, 32, 10 );
+            fail( "Expected TimeoutException" );
+        }
+        catch( TimeoutException e )
+        {
+            assertThat( e.getMessage(), is( equalTo( "1" ) ) );
+        }
+        // connection is still usable after failure replies
+        assertThat( m_client.installBundle( "file:bundle.jar" ), is( equalTo( 15L ) ) );
+    }
+
+    /**
+     * Test that unchecked exceptions thrown remotely are thrown by the client as they are.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void uncheckedExceptions()
+        throws Exception
+    {
+        try
+        {
+            m_client.startBundle( 7 );
+            fail( "Expected IllegalStateException" );
+        }
+        catch( IllegalStateException e )
+        {
+            assertThat( e.getMessage(), is( equalTo( "7" ) ) );
+        }
+        assertThat( m_client.installBundle( "file:bundle.jar" ), is( equalTo( 15L ) ) );
+    }
+
+    /**
+     * Test that failures of single bundle installations are returned as part of the results.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void installBundlesResults()
+        throws Exception
+    {
+        final InstallBundleResult[] results = m_client.installBundles(
+            new InstallBundleRequest( "file:ok.jar" ), new InstallBundleRequest( "file:bad.jar" )
+        );
+        assertThat( results.length, is( equalTo( 2 ) ) );
+        assertThat( results[ 0 ].getBundleId(), is( equalTo( 1L ) ) );
+        assertThat( results[ 0 ].isSuccessful(), is( true ) );
+        assertThat( results[ 1 ].getFailure() instanceof BundleException, is( true ) );
+    }
+
+    /**
+     * Test that after a communication failure the connection is not used anymore.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void communicationFailureClosesConnection()
+        throws Exception
+    {
+        m_transport.unexport();
+        try
+        {
+            m_client.installBundle( "file:bundle.jar" );
+            fail( "Expected RemoteException" );
+        }
+        catch( RemoteException e )
+        {
+            // expected
+        }
+        try
+        {
+            m_client.installBundle( "file:bundle.jar" );
+            fail( "Expected RemoteException" );
+        }
+        catch( RemoteException e )
+        {
+            assertThat( e.getCause().getMessage(), containsString( "earlier communication failure" ) );
+        }
+    }
+
+    /**
+     * Remote bundle context answering with fixed results and failures.
+     */
+    private class StubRemoteBundleContext
+        implements RemoteBundleContext
+    {
+
+        public Object remoteCall( final Class<?> serviceType,
+                                  final String methodName,
+                                  final Class<?>[] methodParamTypes,
+                                  final long timeoutInMillis,
+                                  final Object... actualParams )
+            throws NoSuchMethodException, InvocationTargetException
+        {
+            if( "echo".equals( methodName ) )
+            {
+                return actualParams[ 0 ];
+            }
+            if( "fail".equals( methodName ) )
+            {
+                throw new InvocationTargetException( new IllegalStateException( methodName ) );
+            }
+            throw new NoSuchMethodException( methodName );
+        }
+
+        public long installBundle( final String bundleUrl )
+        {
+            return bundleUrl.length();
+        }
+
+        public long installBundle( final String bundleLocation,
+                                   final byte[] bundle )
+        {
+            m_content = bundle;
+            return bundle == null ? -1 : bundle.length;
+        }
+
+        public long installBundleFromFile( final String bundleLocation,
+                                           final String bundleFile )
+            throws BundleException
+        {
+            throw new BundleException( bundleFile );
+        }
+
+        public InstallBundleResult[] installBundles( final InstallBundleRequest... requests )
+        {
+            return new InstallBundleResult[]{
+                new InstallBundleResult( 1, null ),
+                new InstallBundleResult( InstallBundleResult.NOT_INSTALLED, new BundleException( "bad" ) )
+            };
+        }
+
+        public void startBundle( final long bundleId )
+        {
+            throw new IllegalStateException( String.valueOf( bundleId ) );
+        }
+
+        public void stopBundle( final long bundleId )
+        {
+        }
+
+        public void updateBundle( final long bundleId,
+                                  final String bundleUrl )
+        {
+        }
+
+        public void setBundleStartLevel( final long bundleId,
+                                         final int startLevel )
+        {
+        }
+
+        public void waitForState( final long bundleId,
+                                  final int state,
+                                  final long timeoutInMillis )
+            throws TimeoutException
+        {
+            throw new TimeoutException( String.valueOf( bundleId ) );
+        }
+
+    }
+
+}
@@ -18,11 +18,8 @@
  */
 package org.ops4j.pax.exam.junit.extender.impl.internal;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Callable;
 
@@ -34,11 +31,11 @@ import org.osgi.framework.BundleContext;
 
 import static org.ops4j.lang.NullArgumentException.*;
 
-import org.ops4j.pax.exam.Inject;
 import org.ops4j.pax.exam.junit.extender.CallableTestMethod;
 
 /**
  * {@link Callable} implementation.
+ * The test class is inspected only on first call; subsequent calls reuse the resolved {@link InvocationPlan}.
  *
  * @author Toni Menzel (tonit)
  * @author Alin Dreghiciu (adreghiciu@gmail.com)
@@ -62,278 +59,172 @@ class CallableTestMethodImpl
      */
     private final String m_testClassName;
     /**
-     * Test method name (cannot be null or empty).
+     * Names of test methods that can be called (cannot be null or empty).
      */
-    private final String m_testMethodName;
+    private final List<String> m_testMethodNames;
+    /**
+     * Invocation plan of test class. Null until first call.
+     */
+    private InvocationPlan m_plan;
 
     /**
      * Constructor.
      *
      * @param bundleContext  bundle context of the bundle containing the test class (cannot be null)
      * @param testClassName  test class name (cannot be null  or empty)
-     * @param testMethodName test method name (cannot be null or empty)
+     * @param testMethodNames names of test methods that can be called (cannot be null or empty)
      *
      * @throws IllegalArgumentException - If bundle context is null
      *                                  - If test class name is null or empty
-     *                                  - If test method name is null or empty
+     *                                  - If test method names are null or empty
      */
     CallableTestMethodImpl( final BundleContext bundleContext,
                             final String testClassName,
-                            final String testMethodName )
+                            final String... testMethodNames )
     {
         validateNotNull( bundleContext, "Bundle context" );
         validateNotEmpty( testClassName, true, "Test class name" );
-        validateNotEmpty( testMethodName, true, "Test method name" );
+        validateNotEmptyContent( testMethodNames, true, "Test method names" );
 
         m_bundleContext = bundleContext;
         m_testClassName = testClassName;
-        m_testMethodName = testMethodName;
+        m_testMethodNames = Arrays.asList( testMethodNames );
     }
 
     /**
      * {@inheritDoc}
+     * Only possible if there is only one test method.
      */
     public void call()
         throws ClassNotFoundException, InstantiationException, IllegalAccessException, InvocationTargetException
     {
-        final Class testClass = m_bundleContext.getBundle().loadClass( m_testClassName );
-        int encountered = 0;
-        for( final Method testMethod : testClass.getMethods() )
+        if( m_testMethodNames.size() != 1 )
         {
-            if( testMethod.getName().equals( m_testMethodName ) )
-            {
-                injectContextAndInvoke( testClass.newInstance(), testMethod );
-                encountered++;
-            }
-        }
-        if( encountered == 0 )
-        {
-            throw new RuntimeException( " test " + m_testMethodName + " not found in test class " + testClass.getName() );
+            throw new RuntimeException(
+                "Test bundle of " + m_testClassName + " contains more test methods " + m_testMethodNames
+                + ". Test method name must be specified."
+            );
         }
+        invoke( m_testMethodNames.get( 0 ) );
     }
 
     /**
-     * Invokes the bundle context (if possible and required) and executes the test method.
-     *
-     * @param testInstance an instance of the test class
-     * @param testMethod   test method
-     *
-     * @throws IllegalAccessException    - Re-thrown from reflection invokation
-     * @throws InvocationTargetException - Re-thrown from reflection invokation
+     * {@inheritDoc}
      */
-    private void injectContextAndInvoke( final Object testInstance,
-                                         final Method testMethod )
-        throws IllegalAccessException, InvocationTargetException
+    public void call( final String testMethodName )
+        throws ClassNotFoundException, InstantiationException, IllegalAccessException, InvocationTargetException
     {
-        final Class<?>[] paramTypes = testMethod.getParameterTypes();
-        injectFieldInstances( testInstance.getClass(), testInstance );
-        boolean cleanup = false;
-        try
+        if( !m_testMethodNames.contains( testMethodName ) )
         {
-            runBefores( testInstance );
-            // if there is only one param and is of type BundleContext we inject it, otherwise just call
-            // this means that if there are actual params the call will fail, but that is okay as it will be reported back
-            if( paramTypes.length == 1
-                && paramTypes[ 0 ].isAssignableFrom( BundleContext.class ) )
-            {
-                testMethod.invoke( testInstance, m_bundleContext );
-            }
-            else
-            {
-                testMethod.invoke( testInstance );
-            }
-            cleanup = true;
-            runAfters( testInstance );
-        }
-        finally
-        {
-            if( !cleanup )
-            {
-                try
-                {
-                    runAfters( testInstance );
-                } catch( Throwable throwable )
-                {
-                    LOG.warn( "Got the exception when calling the runAfters. [Exception]: " + throwable );
-                }
-            }
+            throw new RuntimeException(
+                " test " + testMethodName + " not contained by test bundle of test class " + m_testClassName
+            );
         }
+        invoke( testMethodName );
     }
 
     /**
-     * Run all methods annotated with {@link Before}.
+     * Creates a new instance of test class and invokes the test methods with a certain name.
      *
-     * @param testInstance an instance of the test class (cannot be null)
+     * @param testMethodName test method name
      *
-     * @throws IllegalAccessException    - Re-thrown from reflection invokation
-     * @throws InvocationTargetException - Re-thrown from reflection invokation
+     * @throws ClassNotFoundException    - If the test class cannot be loaded
+     * @throws InstantiationException    - If an instance of the test class cannot be created
+     * @throws IllegalAccessException    - Re-thrown from reflective invokation of test method
+     * @throws InvocationTargetException - Re-thrown from reflective invokation of test method
      */
-    private void runBefores( final Object testInstance )
-        throws IllegalAccessException, InvocationTargetException
+    private void invoke( final String testMethodName )
+        throws ClassNotFoundException, InstantiationException, IllegalAccessException, InvocationTargetException
     {
-        for( final Method beforeMethod : getAnnotatedMethods( testInstance.getClass(), Before.class ) )
+        final InvocationPlan plan = getPlan();
+        final List<InvocationPlan.Invocation> testMethods = plan.getTestMethods( testMethodName );
+        if( testMethods.isEmpty() )
         {
-            final Class<?>[] paramTypes = beforeMethod.getParameterTypes();
-            if( paramTypes.length == 1
-                && paramTypes[ 0 ].isAssignableFrom( BundleContext.class ) )
-            {
-                beforeMethod.invoke( testInstance, m_bundleContext );
-            }
-            else
-            {
-                beforeMethod.invoke( testInstance );
-            }
+            throw new RuntimeException(
+                " test " + testMethodName + " not found in test class " + plan.getTestClass().getName()
+            );
         }
-    }
-
-    /**
-     * Run all methods annotated with {@link After}.
-     *
-     * @param testInstance an instance of the test class (cannot be null)
-     *
-     * @throws IllegalAccessException    - Re-thrown from reflection invokation
-     * @throws InvocationTargetException - Re-thrown from reflection invokation
-     */
-    private void runAfters( final Object testInstance )
-        throws IllegalAccessException, InvocationTargetException
-    {
-        for( final Method afterMethod : getAnnotatedMethods( testInstance.getClass(), After.class ) )
+        for( final InvocationPlan.Invocation testMethod : testMethods )
         {
-            final Class<?>[] paramTypes = afterMethod.getParameterTypes();
-            if( paramTypes.length == 1
-                && paramTypes[ 0 ].isAssignableFrom( BundleContext.class ) )
-            {
-                afterMethod.invoke( testInstance, m_bundleContext );
-            }
-            else
-            {
-                afterMethod.invoke( testInstance );
-            }
+            injectContextAndInvoke( plan, plan.getTestClass().newInstance(), testMethod );
         }
     }
 
     /**
-     * Injects instances into fields found in testInstance and its superclases.
+     * Returns the invocation plan of the test class, resolving it on first call.
      *
-     * @param clazz
-     * @param inst
-     */
-    private void injectFieldInstances( Class clazz, Object inst )
-        throws IllegalAccessException
-    {
-        if( clazz.getSuperclass() != null )
-        {
-            injectFieldInstances( clazz.getSuperclass(), inst );
-        }
-        for( Field field : clazz.getDeclaredFields() )
-        {
-            setIfMatching( inst, field, m_bundleContext );
-        }
-    }
-
-    /**
-     * @param testInstance object instance where you found field
-     * @param field        field that is going to be set
-     * @param o            target value of field
+     * @return invocation plan
+     *
+     * @throws ClassNotFoundException - If test class cannot be loaded
      */
-    private void setIfMatching( Object testInstance, Field field, Object o )
-        throws IllegalAccessException
+    private synchronized InvocationPlan getPlan()
+        throws ClassNotFoundException
     {
-        if( isInjectionField( field ) && isMatchingType( field, o.getClass() ) )
+        if( m_plan == null )
         {
-            field.setAccessible( true );
-            field.set( testInstance, o );
+            m_plan = new InvocationPlan(
+                m_bundleContext.getBundle().loadClass( m_testClassName ), m_bundleContext.getClass()
+            );
         }
+        return m_plan;
     }
 
     /**
-     * Just checks if type of field is a assignable from clazz.
-     *
-     * @param field
-     * @param clazz
-     */
-    private boolean isMatchingType( Field field, Class clazz )
-    {
-        boolean result =  field.getType().isAssignableFrom( clazz );
-        LOG.debug( "Trying to match " + field.getType() + " with injection " + clazz.getName()  + ": " + result);
-        return result;
-    }
-
-    /**
-     * Tests if the given field has the {@link @Inject} annotation.
-     * Due to some osgi quirks, currently direct getAnnotation( Inject.class ) does not work..:(
+     * Invokes the bundle context (if possible and required) and executes the test method.
      *
-     * @param field field to be tested
+     * @param plan         invocation plan of test class
+     * @param testInstance an instance of the test class
+     * @param testMethod   test method
      *
-     * @return trze if it has the Inject annotation. Otherwise false.
+     * @throws IllegalAccessException    - Re-thrown from reflection invokation
+     * @throws InvocationTargetException - Re-thrown from reflection invokation
      */
-    public boolean isInjectionField( Field field )
+    private void injectContextAndInvoke( final InvocationPlan plan,
+                                         final Object testInstance,
+                                         final InvocationPlan.Invocation testMethod )
+        throws IllegalAccessException, InvocationTargetException
     {
-        // Usually, this should be enough.
-        if( field.getAnnotation( Inject.class ) != null )
+        plan.inject( testInstance, m_bundleContext );
+        boolean cleanup = false;
+        try
         {
-            return true;
+            runAll( plan.getBefores(), testInstance );
+            testMethod.invoke( testInstance, m_bundleContext );
+            cleanup = true;
+            runAll( plan.getAfters(), testInstance );
         }
-        else
+        finally
         {
-            // the above one fails in some cases currently (returns null) while annotation is there.
-            // So this is a fallback:
-            for( Annotation annot : field.getAnnotations() )
+            if( !cleanup )
             {
-                if( annot.annotationType().getName().equals( Inject.class.getName() ) )
+                try
                 {
-                    return true;
-                }
-            }
-        }
-
-        return false;
-    }
-
-    /**
-     * Find all methods marked with a specific annotation.
-     *
-     * @param testClass       class to be inspected
-     * @param annotationClass annotation class to be found
-     *
-     * @return list of annotated methods (cannot be null)
-     */
-    public List<Method> getAnnotatedMethods( final Class testClass,
-                                             final Class<? extends Annotation> annotationClass )
-    {
-        final List<Method> results = new ArrayList<Method>();
-        for( final Class<?> clazz : getSuperClasses( testClass ) )
-        {
-            final Method[] methods = clazz.getDeclaredMethods();
-            for( final Method method : methods )
-            {
-                final Annotation annotation = method.getAnnotation( annotationClass );
-                if( annotation != null )
+                    runAll( plan.getAfters(), testInstance );
+                } catch( Throwable throwable )
                 {
-                    results.add( method );
+                    LOG.warn( "Got the exception when calling the runAfters. [Exception]: " + throwable );
                 }
             }
         }
-        return results;
     }
 
     /**
-     * Finds all superclasses of a certain class including itself.
+     * Run all methods annotated with {@link Before} or {@link After}.
      *
-     * @param testClass class whom superclasses should be found
+     * @param methods      methods to be run
+     * @param testInstance an instance of the test class (cannot be null)
      *
-     * @return list of superclasses (cannot be null)
+     * @throws IllegalAccessException    - Re-thrown from reflection invokation
+     * @throws InvocationTargetException - Re-thrown from reflection invokation
      */
-    private List<Class<?>> getSuperClasses( final Class<?> testClass )
+    private void runAll( final List<InvocationPlan.Invocation> methods,
+                         final Object testInstance )
+        throws IllegalAccessException, InvocationTargetException
     {
-        final ArrayList<Class<?>> results = new ArrayList<Class<?>>();
-        Class<?> current = testClass;
-        while( current != null )
+        for( final InvocationPlan.Invocation method : methods )
         {
-            results.add( current );
-            current = current.getSuperclass();
+            method.invoke( testInstance, m_bundleContext );
         }
-        return results;
     }
 
 }
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.junit.extender.impl.internal;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.osgi.framework.BundleContext;
+import org.ops4j.pax.exam.Inject;
+
+/**
+ * Everything needed to invoke test methods of a test class, resolved once: test methods by name, methods annotated
+ * with {@link Before} and {@link After} and the fields where the bundle context should be injected.
+ *
+ * @since 1.2.3
+ */
+class InvocationPlan
+{
+
+    /**
+     * Logger.
+     */
+    private static final Log LOG = LogFactory.getLog( InvocationPlan.class );
+
+    /**
+     * Test class (cannot be null).
+     */
+    private final Class<?> m_testClass;
+    /**
+     * Public methods of test class, by name (cannot be null).
+     */
+    private final Map<String, List<Invocation>> m_testMethods;
+    /**
+     * Methods annotated with {@link Before}, in the order they should be run (cannot be null).
+     */
+    private final List<Invocation> m_befores;
+    /**
+     * Methods annotated with {@link After}, in the order they should be run (cannot be null).
+     */
+    private final List<Invocation> m_afters;
+    /**
+     * Fields where the bundle context should be injected, already made accessible (cannot be null).
+     */
+    private final List<Field> m_injectionFields;
+
+    /**
+     * Constructor.
+     *
+     * @param testClass          test class
+     * @param bundleContextClass class of the bundle context to be injected
+     */
+    InvocationPlan( final Class<?> testClass,
+                    final Class<?> bundleContextClass )
+    {
+        m_testClass = testClass;
+        m_testMethods = new HashMap<String, List<Invocation>>();
+        for( final Method method : testClass.getMethods() )
+        {
+            List<Invocation> methods = m_testMethods.get( method.getName() );
+            if( methods == null )
+            {
+                methods = new ArrayList<Invocation>();
+                m_testMethods.put( method.getName(), methods );
+            }
+            methods.add( new Invocation( method ) );
+        }
+        m_befores = getAnnotatedMethods( testClass, Before.class );
+        m_afters = getAnnotatedMethods( testClass, After.class );
+        m_injectionFields = new ArrayList<Field>();
+        addInjectionFields( testClass, bundleContextClass );
+    }
+
+    /**
+     * Getter.
+     *
+     * @return test class
+     */
+    Class<?> getTestClass()
+    {
+        return m_testClass;
+    }
+
+    /**
+     * Returns the public methods with a certain name.
+     *
+     * @param name method name
+     *
+     * @return methods (never null)
+     */
+    List<Invocation> getTestMethods( final String name )
+    {
+        final List<Invocation> methods = m_testMethods.get( name );
+        if( methods == null )
+        {
+            return Collections.emptyList();
+        }
+        return methods;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return methods annotated with {@link Before}
+     */
+    List<Invocation> getBefores()
+    {
+        return m_befores;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return methods annotated with {@link After}
+     */
+    List<Invocation> getAfters()
+    {
+        return m_afters;
+    }
+
+    /**
+     * Injects the bundle context into the injection fields.
+     *
+     * @param testInstance  an instance of the test class
+     * @param bundleContext bundle context to be injected
+     *
+     * @throws IllegalAccessException - Re-thrown from reflection
+     */
+    void inject( final Object testInstance,
+                 final BundleContext bundleContext )
+        throws IllegalAccessException
+    {
+        for( Field field : m_injectionFields )
+        {
+            field.set( testInstance, bundleContext );
+        }
+    }
+
+    /**
+     * Finds the fields where the bundle context should be injected, in the class and its super classes (super classes
+     * first).
+     *
+     * @param clazz              class to be inspected
+     * @param bundleContextClass class of the bundle context to be injected
+     */
+    private void addInjectionFields( final Class<?> clazz,
+                                     final Class<?> bundleContextClass )
+    {
+        if( clazz.getSuperclass() != null )
+        {
+            addInjectionFields( clazz.getSuperclass(), bundleContextClass );
+        }
+        for( Field field : clazz.getDeclaredFields() )
+        {
+            if( isInjectionField( field ) && isMatchingType( field, bundleContextClass ) )
+            {
+                field.setAccessible( true );
+                m_injectionFields.add( field );
+            }
+        }
+    }
+
+    /**
+     * Just checks if type of field is a assignable from clazz.
+     *
+     * @param field field to be checked
+     * @param clazz class of the value to be injected
+     *
+     * @return true if the value can be set
+     */
+    private static boolean isMatchingType( final Field field,
+                                           final Class<?> clazz )
+    {
+        boolean result = field.getType().isAssignableFrom( clazz );
+        LOG.debug( "Trying to match " + field.getType() + " with injection " + clazz.getName() + ": " + result );
+        return result;
+    }
+
+    /**
+     * Tests if the given field has the {@link Inject} annotation.
+     * Due to some osgi quirks, currently direct getAnnotation( Inject.class ) does not work..:(
+     *
+     * @param field field to be tested
+     *
+     * @return true if it has the Inject annotation. Otherwise false.
+     */
+    private static boolean isInjectionField( final Field field )
+    {
+        // Usually, this should be enough.
+        if( field.getAnnotation( Inject.class ) != null )
+        {
+            return true;
+        }
+        // the above one fails in some cases currently (returns null) while annotation is there.
+        // So this is a fallback:
+        for( Annotation annot : field.getAnnotations() )
+        {
+            if( annot.annotationType().getName().equals( Inject.class.getName() ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find all methods marked with a specific annotation, in the class and its super classes (class first).
+     *
+     * @param testClass       class to be inspected
+     * @param annotationClass annotation class to be found
+     *
+     * @return list of annotated methods (cannot be null)
+     */
+    private static List<Invocation> getAnnotatedMethods( final Class<?> testClass,
+                                                         final Class<? extends Annotation> annotationClass )
+    {
+        final List<Invocation> results = new ArrayList<Invocation>();
+        Class<?> current = testClass;
+        while( current != null )
+        {
+            for( final Method method : current.getDeclaredMethods() )
+            {
+                if( method.getAnnotation( annotationClass ) != null )
+                {
+                    results.add( new Invocation( method ) );
+                }
+            }
+            current = current.getSuperclass();
+        }
+        return results;
+    }
+
+    /**
+     * A method together with the knowledge if the bundle context should be passed as parameter.
+     */
+    static class Invocation
+    {
+
+        /**
+         * Method to be invoked.
+         */
+        private final Method m_method;
+        /**
+         * True if the method has only one parameter, of type bundle context.
+         */
+        private final boolean m_passBundleContext;
+
+        /**
+         * Constructor.
+         *
+         * @param method method to be invoked
+         */
+        Invocation( final Method method )
+        {
+            m_method = method;
+            final Class<?>[] paramTypes = method.getParameterTypes();
+            m_passBundleContext = paramTypes.length == 1 && paramTypes[ 0 ].isAssignableFrom( BundleContext.class );
+        }
+
+        /**
+         * Invokes the method. If there is only one param and is of type BundleContext we inject it, otherwise just
+         * call. This means that if there are actual params the call will fail, but that is okay as it will be
+         * reported back.
+         *
+         * @param instance      instance to invoke on
+         * @param bundleContext bundle context to be eventually passed
+         *
+         * @throws IllegalAccessException    - Re-thrown from reflection invokation
+         * @throws InvocationTargetException - Re-thrown from reflection invokation
+         */
+        void invoke( final Object instance,
+                     final BundleContext bundleContext )
+            throws IllegalAccessException, InvocationTargetException
+        {
+            if( m_passBundleContext )
+            {
+                m_method.invoke( instance, bundleContext );
+            }
+            else
+            {
+                m_method.invoke( instance );
+            }
+        }
+
+    }
+
+}
@@ -79,6 +79,10 @@ class TestBundleObserver
             {
                 testMethodName = manifestEntry.getValue();
             }
+            if( Constants.PROBE_TEST_METHODS.equals( manifestEntry.getKey() ) )
+            {
+                testMethodName = manifestEntry.getValue();
+            }
         }
         if( testClassName != null && testMethodName != null )
         {
@@ -89,7 +93,7 @@ class TestBundleObserver
             final BundleContext bundleContext = BundleUtils.getBundleContext( bundle );
             final ServiceRegistration serviceRegistration = bundleContext.registerService(
                 CallableTestMethod.class.getName(),
-                new CallableTestMethodImpl( bundleContext, testClassName, testMethodName ),
+                new CallableTestMethodImpl( bundleContext, testClassName, splitMethodNames( testMethodName ) ),
                 props
             );
             m_registrations.put( bundle, new Registration( testClassName, testMethodName, serviceRegistration ) );
@@ -114,6 +118,23 @@ class TestBundleObserver
         }
     }
 
+    /**
+     * Splits a comma separated list of test method names.
+     *
+     * @param testMethodNames comma separated test method names
+     *
+     * @return test method names
+     */
+    static String[] splitMethodNames( final String testMethodNames )
+    {
+        final String[] names = testMethodNames.split( "," );
+        for( int i = 0; i < names.length; i++ )
+        {
+            names[ i ] = names[ i ].trim();
+        }
+        return names;
+    }
+
     /**
      * Registration holder.
      */
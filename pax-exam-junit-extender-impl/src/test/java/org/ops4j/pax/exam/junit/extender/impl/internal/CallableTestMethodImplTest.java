@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.junit.extender.impl.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Unit Tests for {@link CallableTestMethodImpl} calls of a test bundle containing more test methods.
+ *
+ * @since 1.2.3
+ */
+public class CallableTestMethodImplTest
+{
+
+    private static final List<String> s_called = new ArrayList<String>();
+
+    private BundleContext m_bundleContext;
+
+    @Before
+    public void setUp()
+        throws ClassNotFoundException
+    {
+        s_called.clear();
+        final Bundle bundle = createMock( Bundle.class );
+        m_bundleContext = createMock( BundleContext.class );
+        expect( m_bundleContext.getBundle() ).andReturn( bundle ).anyTimes();
+        expect( bundle.loadClass( SampleTest.class.getName() ) ).andReturn( SampleTest.class ).anyTimes();
+        replay( bundle, m_bundleContext );
+    }
+
+    /**
+     * Test that only the named test method is called, each time on a new test instance.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void callByName()
+        throws Exception
+    {
+        final CallableTestMethodImpl callable = new CallableTestMethodImpl(
+            m_bundleContext, SampleTest.class.getName(), "first", "second"
+        );
+        callable.call( "second" );
+        callable.call( "first" );
+        assertThat( "Called", s_called, is( equalTo( Arrays.asList( "before", "second", "before", "first" ) ) ) );
+    }
+
+    /**
+     * Test that a test method not named by the test bundle cannot be called.
+     *
+     * @throws Exception - Expected
+     */
+    @Test( expected = RuntimeException.class )
+    public void callOfUnknownMethod()
+        throws Exception
+    {
+        new CallableTestMethodImpl( m_bundleContext, SampleTest.class.getName(), "first" ).call( "second" );
+    }
+
+    /**
+     * Test that a test method name is required if the test bundle contains more test methods.
+     *
+     * @throws Exception - Expected
+     */
+    @Test( expected = RuntimeException.class )
+    public void callWithoutNameOfMoreMethods()
+        throws Exception
+    {
+        new CallableTestMethodImpl( m_bundleContext, SampleTest.class.getName(), "first", "second" ).call();
+    }
+
+    /**
+     * Test that the test method names of the PaxExam-TestMethodNames header are split and trimmed.
+     */
+    @Test
+    public void testMethodNamesHeader()
+    {
+        assertThat( "Names", TestBundleObserver.splitMethodNames( "first, second,third" ),
+                    is( equalTo( new String[]{ "first", "second", "third" } ) )
+        );
+    }
+
+    public static class SampleTest
+    {
+
+        @Before
+        public void before()
+        {
+            s_called.add( "before" );
+        }
+
+        public void first()
+        {
+            s_called.add( "first" );
+        }
+
+        public void second()
+        {
+            s_called.add( "second" );
+        }
+
+    }
+
+}
@@ -40,4 +40,18 @@ public interface CallableTestMethod
     void call()
         throws ClassNotFoundException, InstantiationException, IllegalAccessException, InvocationTargetException;
 
+    /**
+     * Executes one of the test methods declared by a test bundle that contains more test methods.
+     *
+     * @param testMethodName name of test method to be executed
+     *
+     * @throws ClassNotFoundException    - If the test class cannot be loaded
+     * @throws InstantiationException    - If an instance of the test class cannot be created
+     * @throws IllegalAccessException    - Re-thrown from reflective invokation of test method
+     * @throws InvocationTargetException - Re-thrown from reflective invokation of test method
+     * @since 1.2.3
+     */
+    void call( String testMethodName )
+        throws ClassNotFoundException, InstantiationException, IllegalAccessException, InvocationTargetException;
+
 }
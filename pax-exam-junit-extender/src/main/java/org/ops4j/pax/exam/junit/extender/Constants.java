@@ -34,6 +34,11 @@ public class Constants
      * Manifest header specifying the test method name in the test class.
      */
     public static final String PROBE_TEST_METHOD = "PaxExam-TestMethodName";
+    /**
+     * Manifest header specifying the comma separated names of all test methods in the test class, for a test bundle
+     * that can run any of them (used instead of {@link #PROBE_TEST_METHOD}).
+     */
+    public static final String PROBE_TEST_METHODS = "PaxExam-TestMethodNames";
     /**
      * Test bundle symbolic name.
      */
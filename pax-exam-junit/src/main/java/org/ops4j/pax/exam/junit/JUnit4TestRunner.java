@@ -17,15 +17,28 @@
  */
 package org.ops4j.pax.exam.junit;
 
+import java.io.File;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.security.CodeSource;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.junit.Test;
 import org.junit.internal.runners.ClassRoadie;
 import org.junit.internal.runners.InitializationError;
@@ -40,17 +53,15 @@ import org.junit.runner.manipulation.NoTestsRemainException;
 import org.junit.runner.manipulation.Sortable;
 import org.junit.runner.manipulation.Sorter;
 import org.junit.runner.notification.RunNotifier;
-import static org.ops4j.pax.exam.Constants.*;
-import static org.ops4j.pax.exam.CoreOptions.*;
-import org.ops4j.pax.exam.Info;
 import org.ops4j.pax.exam.Option;
-import org.ops4j.pax.exam.OptionUtils;
-import static org.ops4j.pax.exam.junit.JUnitOptions.*;
+import org.ops4j.pax.exam.junit.internal.ClassFolderWatcher;
+import org.ops4j.pax.exam.junit.internal.ConfigurationPlan;
+import org.ops4j.pax.exam.junit.internal.ConfigurationPlanner;
 import org.ops4j.pax.exam.junit.internal.JUnit4MethodRoadie;
 import org.ops4j.pax.exam.junit.internal.JUnit4TestMethod;
-import org.ops4j.pax.exam.junit.options.JUnitBundlesOption;
+import org.ops4j.pax.exam.junit.internal.SharedTestContainer;
+import org.ops4j.pax.exam.junit.internal.SynchronizedRunNotifier;
 import org.ops4j.pax.exam.options.CompositeOption;
-import org.ops4j.pax.exam.options.DefaultCompositeOption;
 import org.ops4j.pax.exam.options.FrameworkOption;
 
 /**
@@ -68,13 +79,45 @@ public class JUnit4TestRunner
     implements Filterable, Sortable
 {
 
+    /**
+     * System property that sets the number of test methods that can be run at the same time, each one in its own
+     * test container. Use "auto" to match the number of available processors. Defaults to 1.
+     */
+    public static final String THREADS_PROPERTY = "org.ops4j.pax.exam.junit.threads";
+
+    /**
+     * System property that turns on watch mode for test classes marked with {@link ReuseContainer}: after the test
+     * methods ran, the shared test containers are kept running and, each time the compiled test classes change, the
+     * installed test bundle is updated and the test methods are run again. Defaults to false.
+     * Note that in watch mode {@link #run(RunNotifier)} does not return after the first run but blocks till the running
+     * thread is interrupted (e.g. the test run is stopped from the IDE), and that each run executes the test methods
+     * found when the runner was created: test methods added, removed or renamed afterwards are not picked up, and a
+     * removed test method fails in the test container.
+     */
+    public static final String WATCH_PROPERTY = "org.ops4j.pax.exam.junit.watch";
+
+    /**
+     * Time between checks for changed test classes in watch mode, in milliseconds.
+     */
+    private static final long WATCH_POLL_INTERVAL = 500;
+
+    /**
+     * JCL logger.
+     */
+    private static final Log LOG = LogFactory.getLog( JUnit4TestRunner.class );
+
     private final List<JUnit4TestMethod> m_testMethods;
     private final TestClass m_testClass;
+    /**
+     * Test containers shared between test methods, in case that the test class is marked with {@link ReuseContainer}.
+     */
+    private final Map<List<Object>, SharedTestContainer> m_sharedContainers;
 
     public JUnit4TestRunner( Class<?> klass )
         throws InitializationError
     {
         m_testClass = new TestClass( klass );
+        m_sharedContainers = new LinkedHashMap<List<Object>, SharedTestContainer>();
         try
         {
             m_testMethods = getTestMethods();
@@ -89,29 +132,70 @@ public class JUnit4TestRunner
     protected List<JUnit4TestMethod> getTestMethods()
         throws Exception
     {
-        final Collection<JUnit4ConfigMethod> configMethods = getConfigurationMethods();
+        final ConfigurationPlanner planner = new ConfigurationPlanner( getConfigurationMethods() );
         final List<JUnit4TestMethod> methods = new ArrayList<JUnit4TestMethod>();
         final Collection<Method> testMethods = m_testClass.getAnnotatedMethods( Test.class );
+        final boolean reuseContainer = m_testClass.getJavaClass().getAnnotation( ReuseContainer.class ) != null;
+        final String classTestBundleUrl = reuseContainer ? getClassTestBundleUrl( testMethods ) : null;
         for( Method testMethod : testMethods )
         {
-            final Option configOptions = getOptions( testMethod, configMethods );
-            final FrameworkOption[] frameworkOptions = OptionUtils.filter( FrameworkOption.class, configOptions );
-            final Option[] filteredOptions = OptionUtils.remove( FrameworkOption.class, configOptions );
-            if( frameworkOptions.length == 0 )
-            {
-                methods.add( new JUnit4TestMethod( testMethod, m_testClass, null, filteredOptions ) );
-            }
-            else
+            final ConfigurationPlan plan = planner.plan( testMethod );
+            final FrameworkOption[] frameworkOptions = plan.getFrameworkOptions();
+            for( int i = 0; i < frameworkOptions.length; i++ )
             {
-                for( FrameworkOption frameworkOption : frameworkOptions )
-                {
-                    methods.add( new JUnit4TestMethod( testMethod, m_testClass, frameworkOption, filteredOptions ) );
-                }
+                methods.add(
+                    new JUnit4TestMethod(
+                        testMethod, m_testClass, frameworkOptions[ i ], plan.getOptions( i ),
+                        reuseContainer ? getSharedContainer( classTestBundleUrl, plan, i ) : null
+                    )
+                );
             }
         }
         return methods;
     }
 
+    /**
+     * Returns the test container to be shared by all test methods that have the same configuration plan and run on
+     * the same framework.
+     *
+     * @param testBundleUrl  url of the test bundle containing all test methods of the test class
+     * @param plan           configuration plan of the test method
+     * @param frameworkIndex index of the framework among the frameworks of the configuration plan
+     *
+     * @return shared test container
+     */
+    private SharedTestContainer getSharedContainer( final String testBundleUrl,
+                                                    final ConfigurationPlan plan,
+                                                    final int frameworkIndex )
+    {
+        final List<Object> key = Arrays.<Object>asList( plan, frameworkIndex );
+        SharedTestContainer sharedContainer = m_sharedContainers.get( key );
+        if( sharedContainer == null )
+        {
+            sharedContainer = new SharedTestContainer( testBundleUrl, plan.getOptions( frameworkIndex ) );
+            m_sharedContainers.put( key, sharedContainer );
+        }
+        return sharedContainer;
+    }
+
+    /**
+     * Returns the url of the test bundle that contains all test methods of the test class, to be installed once per
+     * shared test container.
+     *
+     * @param testMethods test methods
+     *
+     * @return test bundle url
+     */
+    private String getClassTestBundleUrl( final Collection<Method> testMethods )
+    {
+        final Set<String> names = new LinkedHashSet<String>();
+        for( Method testMethod : testMethods )
+        {
+            names.add( testMethod.getName() );
+        }
+        return JUnit4TestMethod.getTestBundleUrl( m_testClass.getName(), names );
+    }
+
     /**
      * Finds the configuration methods based on the configured {@link ConfigurationStrategy}.
      *
@@ -191,9 +275,239 @@ public class JUnit4TestRunner
 
     protected void runMethods( final RunNotifier notifier )
     {
+        try
+        {
+            // created before the first run so changes made while running are not missed
+            final ClassFolderWatcher watcher = createWatcher();
+            final int threads = getThreads();
+            if( threads <= 1 )
+            {
+                for( JUnit4TestMethod method : m_testMethods )
+                {
+                    invokeTestMethod( method, notifier );
+                }
+            }
+            else
+            {
+                runMethodsInParallel( new SynchronizedRunNotifier( notifier ), threads );
+            }
+            if( watcher != null )
+            {
+                watch( watcher, notifier );
+            }
+        }
+        finally
+        {
+            for( SharedTestContainer sharedContainer : m_sharedContainers.values() )
+            {
+                sharedContainer.stop();
+            }
+        }
+    }
+
+    /**
+     * Creates the watcher of the folder containing the compiled test class, if watch mode is turned on and the test
+     * containers are shared.
+     *
+     * @return watcher or null if not watching
+     */
+    private ClassFolderWatcher createWatcher()
+    {
+        if( !Boolean.getBoolean( WATCH_PROPERTY ) )
+        {
+            return null;
+        }
+        if( m_sharedContainers.isEmpty() )
+        {
+            LOG.warn( "Watch mode is only supported for test classes marked with @ReuseContainer" );
+            return null;
+        }
+        final File folder = getTestClassesFolder();
+        if( folder == null )
+        {
+            LOG.warn( "Watch mode is only supported for test classes loaded from a folder" );
+            return null;
+        }
+        return new ClassFolderWatcher( folder, WATCH_POLL_INTERVAL );
+    }
+
+    /**
+     * Finds the folder the test class was loaded from.
+     *
+     * @return folder or null if test class was not loaded from a folder
+     */
+    private File getTestClassesFolder()
+    {
+        try
+        {
+            final CodeSource codeSource = m_testClass.getJavaClass().getProtectionDomain().getCodeSource();
+            if( codeSource == null || codeSource.getLocation() == null )
+            {
+                return null;
+            }
+            final File folder = new File( codeSource.getLocation().toURI() );
+            return folder.isDirectory() ? folder : null;
+        }
+        catch( Exception e )
+        {
+            LOG.debug( "Cannot determine folder of test class: " + e.getMessage() );
+            return null;
+        }
+    }
+
+    /**
+     * Waits for changes of the compiled test classes and runs the test methods again in the shared test containers,
+     * with updated test bundles, till interrupted. Blocks the calling thread for as long as it watches. Test methods
+     * are the ones found when the runner was created, changes to the set of test methods are not picked up.
+     *
+     * @param watcher  watcher of compiled test classes
+     * @param notifier notifier to report to
+     */
+    private void watch( final ClassFolderWatcher watcher,
+                        final RunNotifier notifier )
+    {
+        LOG.info( "Watching " + watcher.getFolder() + " for changes. Stop the test run to end watch mode." );
+        try
+        {
+            while( true )
+            {
+                watcher.awaitChange();
+                LOG.info( "Test classes changed. Updating test bundles and running tests again" );
+                try
+                {
+                    for( SharedTestContainer sharedContainer : m_sharedContainers.values() )
+                    {
+                        sharedContainer.updateTestBundle();
+                    }
+                }
+                catch( RuntimeException e )
+                {
+                    LOG.error( "Cannot update test bundles, waiting for next change: " + e.getMessage() );
+                    continue;
+                }
+                for( JUnit4TestMethod method : m_testMethods )
+                {
+                    invokeTestMethod( method, notifier );
+                }
+            }
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the test methods using a pool of threads. Test methods that share a test container are run one after
+     * the other by the same thread, in their original order, while test methods that run in their own test
+     * container are scheduled independently.
+     *
+     * @param notifier notifier to report to (must be safe to be used by multiple threads)
+     * @param threads  maximum number of test methods to run at the same time
+     */
+    private void runMethodsInParallel( final RunNotifier notifier,
+                                       final int threads )
+    {
+        final Map<Object, List<JUnit4TestMethod>> units = new LinkedHashMap<Object, List<JUnit4TestMethod>>();
         for( JUnit4TestMethod method : m_testMethods )
         {
-            invokeTestMethod( method, notifier );
+            final Object key = method.getSharedContainer() != null ? method.getSharedContainer() : method;
+            List<JUnit4TestMethod> unit = units.get( key );
+            if( unit == null )
+            {
+                unit = new ArrayList<JUnit4TestMethod>();
+                units.put( key, unit );
+            }
+            unit.add( method );
+        }
+        LOG.info( "Run " + m_testMethods.size() + " test methods using " + threads + " threads" );
+        final ExecutorService executor = Executors.newFixedThreadPool( Math.min( threads, units.size() ) );
+        try
+        {
+            final List<Future<?>> results = new ArrayList<Future<?>>();
+            for( final List<JUnit4TestMethod> unit : units.values() )
+            {
+                results.add( executor.submit( new Runnable()
+                {
+                    public void run()
+                    {
+                        for( JUnit4TestMethod method : unit )
+                        {
+                            invokeTestMethod( method, notifier );
+                        }
+                    }
+                }
+                )
+                );
+            }
+            for( Future<?> result : results )
+            {
+                waitFor( result );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a scheduled unit of test methods to finish. Failures are already reported via the notifier, so only
+     * unexpected errors, as a stop requested by user, are re-thrown.
+     *
+     * @param result result of the scheduled unit
+     */
+    private static void waitFor( final Future<?> result )
+    {
+        try
+        {
+            result.get();
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Interrupted while waiting for test methods to finish", e );
+        }
+        catch( ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+            throw new RuntimeException( cause );
+        }
+    }
+
+    /**
+     * Determines the number of test methods that can be run at the same time, out of {@link #THREADS_PROPERTY}
+     * system property. Defaults to 1 (run one test method at a time).
+     *
+     * @return number of threads to use
+     */
+    private static int getThreads()
+    {
+        final String threads = System.getProperty( THREADS_PROPERTY );
+        if( threads == null || threads.trim().length() == 0 )
+        {
+            return 1;
+        }
+        if( "auto".equalsIgnoreCase( threads.trim() ) )
+        {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        try
+        {
+            return Integer.parseInt( threads.trim() );
+        }
+        catch( NumberFormatException e )
+        {
+            LOG.warn( "Invalid value [" + threads + "] for " + THREADS_PROPERTY + ". Test methods will run serially" );
+            return 1;
         }
     }
 
@@ -314,47 +628,6 @@ public class JUnit4TestRunner
         return m_testClass;
     }
 
-    private static Option getOptions( final Method methodName,
-                                      final Collection<JUnit4ConfigMethod> configMethods )
-        throws Exception
-    {
-        // always add the junit extender
-        final DefaultCompositeOption option = new DefaultCompositeOption(
-            mavenBundle()
-                .groupId( "org.ops4j.pax.exam" )
-                .artifactId( "pax-exam" )
-                .version( Info.getPaxExamVersion() )
-                .update( Info.isPaxExamSnapshotVersion() )
-                .startLevel( START_LEVEL_SYSTEM_BUNDLES ),
-            mavenBundle()
-                .groupId( "org.ops4j.pax.exam" )
-                .artifactId( "pax-exam-junit-extender" )
-                .version( Info.getPaxExamVersion() )
-                .update( Info.isPaxExamSnapshotVersion() )
-                .startLevel( START_LEVEL_SYSTEM_BUNDLES ),
-            mavenBundle()
-                .groupId( "org.ops4j.pax.exam" )
-                .artifactId( "pax-exam-junit-extender-impl" )
-                .version( Info.getPaxExamVersion() )
-                .update( Info.isPaxExamSnapshotVersion() )
-                .startLevel( START_LEVEL_SYSTEM_BUNDLES )
-        );
-        // add options based on available configuration options from the test itself
-        for( JUnit4ConfigMethod configMethod : configMethods )
-        {
-            if( configMethod.matches( methodName ) )
-            {
-                option.add( configMethod.getOptions() );
-            }
-        }
-        // add junit bundles, if the user did not add junit bundles into configuration
-        if( OptionUtils.filter( JUnitBundlesOption.class, option ).length == 0 )
-        {
-            option.add( junitBundles() );
-        }
-        return option;
-    }
-
     @ConfigurationStrategy
     private class DefaultConfigurationStrategy
     {
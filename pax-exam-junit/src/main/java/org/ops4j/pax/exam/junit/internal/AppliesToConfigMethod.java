@@ -21,6 +21,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.regex.Pattern;
 import static org.ops4j.lang.NullArgumentException.*;
 import org.ops4j.pax.exam.Option;
 import org.ops4j.pax.exam.options.CompositeOption;
@@ -50,7 +51,7 @@ public class AppliesToConfigMethod
     /**
      * Array of regular expression that are matched against test method name (cannot be null or empty).
      */
-    private final String[] m_patterns;
+    private final Pattern[] m_patterns;
     /**
      * Configuration options. Lazy initialized only when the getter is called.
      */
@@ -74,13 +75,20 @@ public class AppliesToConfigMethod
 
         final AppliesTo appliesToAnnotation = configMethod.getAnnotation( AppliesTo.class );
 
+        final String[] patterns;
         if( appliesToAnnotation != null )
         {
-            m_patterns = appliesToAnnotation.value();
+            patterns = appliesToAnnotation.value();
         }
         else
         {
-            m_patterns = new String[]{ ".*" };
+            patterns = new String[]{ ".*" };
+        }
+        // compiled once, as they are matched against every test method
+        m_patterns = new Pattern[patterns.length];
+        for( int i = 0; i < patterns.length; i++ )
+        {
+            m_patterns[ i ] = Pattern.compile( patterns[ i ] );
         }
     }
 
@@ -99,9 +107,9 @@ public class AppliesToConfigMethod
 
         if( m_patterns != null )
         {
-            for( String pattern : m_patterns )
+            for( Pattern pattern : m_patterns )
             {
-                if( method.getName().matches( pattern ) )
+                if( pattern.matcher( method.getName() ).matches() )
                 {
                     return true;
                 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.junit.internal;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import static org.ops4j.lang.NullArgumentException.*;
+
+/**
+ * Polls a folder of compiled classes for changes, comparing size and last modification time of all class files
+ * (in all sub folders) between scans.
+ *
+ * @since 1.2.3
+ */
+public class ClassFolderWatcher
+{
+
+    /**
+     * Extension of watched files.
+     */
+    private static final String CLASS_EXTENSION = ".class";
+
+    /**
+     * Watched folder (cannot be null).
+     */
+    private final File m_folder;
+    /**
+     * Time between scans in milliseconds.
+     */
+    private final long m_pollInterval;
+    /**
+     * Result of last scan, from file path to size and last modification time.
+     */
+    private Map<String, String> m_lastScan;
+
+    /**
+     * Constructor. Scans the folder so changes made from now on are detected.
+     *
+     * @param folder       folder to watch (cannot be null)
+     * @param pollInterval time between scans in milliseconds
+     */
+    public ClassFolderWatcher( final File folder,
+                               final long pollInterval )
+    {
+        validateNotNull( folder, "Folder" );
+        m_folder = folder;
+        m_pollInterval = pollInterval;
+        m_lastScan = scan();
+    }
+
+    /**
+     * Waits till class files were added, changed or removed since the last scan. As a compiler writes class files one
+     * by one, it returns only once two consecutive scans find the same files.
+     *
+     * @throws InterruptedException - If interrupted while waiting
+     */
+    public void awaitChange()
+        throws InterruptedException
+    {
+        Map<String, String> current = m_lastScan;
+        while( current.equals( m_lastScan ) )
+        {
+            Thread.sleep( m_pollInterval );
+            current = scan();
+        }
+        Map<String, String> previous;
+        do
+        {
+            previous = current;
+            Thread.sleep( m_pollInterval );
+            current = scan();
+        }
+        while( !current.equals( previous ) );
+        m_lastScan = current;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return watched folder
+     */
+    public File getFolder()
+    {
+        return m_folder;
+    }
+
+    /**
+     * Collects size and last modification time of all class files in watched folder.
+     *
+     * @return size and last modification time by file path
+     */
+    private Map<String, String> scan()
+    {
+        final Map<String, String> scan = new HashMap<String, String>();
+        final LinkedList<File> folders = new LinkedList<File>();
+        folders.add( m_folder );
+        while( !folders.isEmpty() )
+        {
+            final File[] files = folders.removeFirst().listFiles();
+            if( files == null )
+            {
+                continue;
+            }
+            for( File file : files )
+            {
+                if( file.isDirectory() )
+                {
+                    folders.add( file );
+                }
+                else if( file.getName().endsWith( CLASS_EXTENSION ) )
+                {
+                    scan.put( file.getPath(), file.length() + "," + file.lastModified() );
+                }
+            }
+        }
+        return scan;
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.junit.internal;
+
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionSet;
+import org.ops4j.pax.exam.OptionUtils;
+import org.ops4j.pax.exam.options.FrameworkOption;
+
+/**
+ * Configuration shared by all test methods that are configured by the same configuration methods: the frameworks to
+ * run on and the options per framework. Plans are interned by {@link ConfigurationPlanner}, so the options arrays of a
+ * plan are the same instances for all those test methods and can be told apart by identity.
+ *
+ * @since 1.2.3
+ */
+public class ConfigurationPlan
+{
+
+    /**
+     * Frameworks to run on. A single null element if no framework is configured (= default framework).
+     */
+    private final FrameworkOption[] m_frameworkOptions;
+    /**
+     * Configured options without the framework options.
+     */
+    private final Option[] m_userOptions;
+    /**
+     * Options per framework, user options followed by the framework option.
+     */
+    private final Option[][] m_options;
+
+    /**
+     * Constructor.
+     *
+     * @param options configured options, including the framework options (cannot be null)
+     */
+    ConfigurationPlan( final OptionSet options )
+    {
+        m_userOptions = options.remove( FrameworkOption.class );
+        final FrameworkOption[] frameworkOptions = options.filter( FrameworkOption.class );
+        if( frameworkOptions.length == 0 )
+        {
+            m_frameworkOptions = new FrameworkOption[]{ null };
+            m_options = new Option[][]{ m_userOptions };
+        }
+        else
+        {
+            m_frameworkOptions = frameworkOptions;
+            m_options = new Option[frameworkOptions.length][];
+            for( int i = 0; i < frameworkOptions.length; i++ )
+            {
+                m_options[ i ] = OptionUtils.combine( m_userOptions, frameworkOptions[ i ] );
+            }
+        }
+    }
+
+    /**
+     * Returns the frameworks the test methods should run on.
+     *
+     * @return framework options (never empty). A single null element means the default framework.
+     */
+    public FrameworkOption[] getFrameworkOptions()
+    {
+        return m_frameworkOptions.clone();
+    }
+
+    /**
+     * Returns the options to run on one of the frameworks. The returned array is shared and must not be modified.
+     *
+     * @param frameworkIndex index of the framework among {@link #getFrameworkOptions()}
+     *
+     * @return options, including the framework option
+     */
+    public Option[] getOptions( final int frameworkIndex )
+    {
+        return m_options[ frameworkIndex ];
+    }
+
+}
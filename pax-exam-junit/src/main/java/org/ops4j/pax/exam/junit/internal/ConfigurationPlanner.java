@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.junit.internal;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.ops4j.lang.NullArgumentException.*;
+import static org.ops4j.pax.exam.Constants.*;
+import static org.ops4j.pax.exam.CoreOptions.*;
+import org.ops4j.pax.exam.Info;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.OptionSet;
+import org.ops4j.pax.exam.OptionUtils;
+import org.ops4j.pax.exam.junit.JUnit4ConfigMethod;
+import static org.ops4j.pax.exam.junit.JUnitOptions.*;
+import org.ops4j.pax.exam.junit.options.JUnitBundlesOption;
+
+/**
+ * Plans the configuration of the test methods of a test class.
+ * Each configuration method is asked for its options only once, and test methods that are configured by the same
+ * configuration methods get the same {@link ConfigurationPlan}.
+ *
+ * @since 1.2.3
+ */
+public class ConfigurationPlanner
+{
+
+    /**
+     * All configuration methods of the test class (cannot be null).
+     */
+    private final Collection<JUnit4ConfigMethod> m_configMethods;
+    /**
+     * Options of the bundles every test container needs, as the junit extender.
+     */
+    private final Option[] m_defaultOptions;
+    /**
+     * Options per configuration method, as already asked for.
+     */
+    private final Map<JUnit4ConfigMethod, Option[]> m_options;
+    /**
+     * Plans per matching configuration methods.
+     */
+    private final Map<List<JUnit4ConfigMethod>, ConfigurationPlan> m_plans;
+
+    /**
+     * Constructor.
+     *
+     * @param configMethods all configuration methods of the test class (cannot be null)
+     */
+    public ConfigurationPlanner( final Collection<JUnit4ConfigMethod> configMethods )
+    {
+        validateNotNull( configMethods, "Configuration methods" );
+        m_configMethods = configMethods;
+        m_options = new IdentityHashMap<JUnit4ConfigMethod, Option[]>();
+        m_plans = new HashMap<List<JUnit4ConfigMethod>, ConfigurationPlan>();
+        // always add the junit extender
+        m_defaultOptions = new Option[]{
+            mavenBundle()
+                .groupId( "org.ops4j.pax.exam" )
+                .artifactId( "pax-exam" )
+                .version( Info.getPaxExamVersion() )
+                .update( Info.isPaxExamSnapshotVersion() )
+                .startLevel( START_LEVEL_SYSTEM_BUNDLES ),
+            mavenBundle()
+                .groupId( "org.ops4j.pax.exam" )
+                .artifactId( "pax-exam-junit-extender" )
+                .version( Info.getPaxExamVersion() )
+                .update( Info.isPaxExamSnapshotVersion() )
+                .startLevel( START_LEVEL_SYSTEM_BUNDLES ),
+            mavenBundle()
+                .groupId( "org.ops4j.pax.exam" )
+                .artifactId( "pax-exam-junit-extender-impl" )
+                .version( Info.getPaxExamVersion() )
+                .update( Info.isPaxExamSnapshotVersion() )
+                .startLevel( START_LEVEL_SYSTEM_BUNDLES )
+        };
+    }
+
+    /**
+     * Returns the configuration of a test method.
+     *
+     * @param testMethod test method (cannot be null)
+     *
+     * @return configuration plan, shared with all test methods configured by the same configuration methods
+     *
+     * @throws Exception - Re-thrown from determining the options of configuration methods
+     */
+    public ConfigurationPlan plan( final Method testMethod )
+        throws Exception
+    {
+        validateNotNull( testMethod, "Test method" );
+        final List<JUnit4ConfigMethod> matching = new ArrayList<JUnit4ConfigMethod>();
+        for( JUnit4ConfigMethod configMethod : m_configMethods )
+        {
+            if( configMethod.matches( testMethod ) )
+            {
+                matching.add( configMethod );
+            }
+        }
+        ConfigurationPlan plan = m_plans.get( matching );
+        if( plan == null )
+        {
+            plan = new ConfigurationPlan( getOptions( matching ) );
+            m_plans.put( matching, plan );
+        }
+        return plan;
+    }
+
+    /**
+     * Collects the options of the default bundles and of the configuration methods.
+     *
+     * @param configMethods configuration methods that apply
+     *
+     * @return options
+     *
+     * @throws Exception - Re-thrown from determining the options of configuration methods
+     */
+    private OptionSet getOptions( final List<JUnit4ConfigMethod> configMethods )
+        throws Exception
+    {
+        Option[] options = m_defaultOptions;
+        // add options based on available configuration options from the test itself
+        for( JUnit4ConfigMethod configMethod : configMethods )
+        {
+            options = OptionUtils.combine( options, getOptions( configMethod ) );
+        }
+        final OptionSet optionSet = new OptionSet( options );
+        // add junit bundles, if the user did not add junit bundles into configuration
+        if( !optionSet.contains( JUnitBundlesOption.class ) )
+        {
+            return new OptionSet( OptionUtils.combine( optionSet.getOptions(), junitBundles() ) );
+        }
+        return optionSet;
+    }
+
+    /**
+     * Returns the options of a configuration method, asking the configuration method only the first time.
+     *
+     * @param configMethod configuration method
+     *
+     * @return options
+     *
+     * @throws Exception - Re-thrown from determining the options of the configuration method
+     */
+    private Option[] getOptions( final JUnit4ConfigMethod configMethod )
+        throws Exception
+    {
+        Option[] options = m_options.get( configMethod );
+        if( options == null )
+        {
+            options = configMethod.getOptions();
+            m_options.put( configMethod, options );
+        }
+        return options;
+    }
+
+}
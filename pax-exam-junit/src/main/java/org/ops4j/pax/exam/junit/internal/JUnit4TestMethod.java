@@ -20,6 +20,7 @@ package org.ops4j.pax.exam.junit.internal;
 import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.internal.runners.TestClass;
@@ -35,6 +36,8 @@ import org.ops4j.pax.exam.options.FrameworkOption;
 import org.ops4j.pax.exam.runtime.PaxExamRuntime;
 import org.ops4j.pax.exam.spi.container.TestContainer;
 import org.ops4j.pax.exam.spi.container.TestContainerFactory;
+import org.ops4j.pax.exam.spi.timing.Stopwatch;
+import org.ops4j.pax.exam.spi.timing.Timings;
 
 /**
  * A {@link TestMethod} that upon invokation starts a {@link TestContainer} and executes the test in the test container.
@@ -56,16 +59,6 @@ public class JUnit4TestMethod
      */
     private static final int CONTAINER_STARTED = 1;
 
-    /**
-     * Test bundle installed.
-     */
-    private static final int PROBE_INSTALLED = 2;
-
-    /**
-     * Test bundle started.
-     */
-    private static final int PROBE_STARTED = 3;
-
     /**
      * Test flow ended
      */
@@ -96,6 +89,11 @@ public class JUnit4TestMethod
      */
     private final String m_testBundleUrl;
 
+    /**
+     * Test container shared with other test methods. Null if the test method should use its own test container.
+     */
+    private final SharedTestContainer m_sharedContainer;
+
     /**
      * Constructor.
      * 
@@ -109,19 +107,46 @@ public class JUnit4TestMethod
                              final TestClass testClass,
                              final FrameworkOption frameworkOption,
                              final Option... userOptions )
+    {
+        this( testMethod, testClass, frameworkOption, OptionUtils.combine( userOptions, frameworkOption ), null );
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param testMethod test method (cannot be null)
+     * @param testClass test class (cannot be null)
+     * @param frameworkOption framework option (on which framework the test method should be run) (can be null = default
+     *            framework)
+     * @param options configuration options, including the framework option (cannot be null). Can be shared with test
+     *            methods that have the same configuration, as it is not modified
+     * @param sharedContainer test container shared with other test methods (can be null = the test method starts its
+     *            own test container)
+     * 
+     * @since 1.2.3
+     */
+    public JUnit4TestMethod( final Method testMethod,
+                             final TestClass testClass,
+                             final FrameworkOption frameworkOption,
+                             final Option[] options,
+                             final SharedTestContainer sharedContainer )
     {
         super( testMethod, testClass );
         validateNotNull( testMethod, "Test method" );
         validateNotNull( testClass, "Test class" );
+        validateNotNull( options, "Options" );
 
         m_testMethod = testMethod;
-        m_options = OptionUtils.combine( userOptions, frameworkOption );
+        m_options = options;
         m_name = calculateName( testMethod.getName(), frameworkOption );
         m_testBundleUrl = getTestBundleUrl( testClass.getName(), m_testMethod.getName() );
+        m_sharedContainer = sharedContainer;
     }
 
     /**
      * {@inheritDoc} Starts the test container, installs the test bundle and executes the test within the container.
+     * In case that the test container is shared, the test container is only started if not already started and the
+     * test bundle of the whole test class is installed once per shared test container.
      */
     @Override
     public void invoke( Object test )
@@ -132,6 +157,12 @@ public class JUnit4TestMethod
         final String fullTestName = m_name + "(" + m_testMethod.getDeclaringClass().getName() + ")";
         LOG.info( "Starting test " + fullTestName );
 
+        if ( m_sharedContainer != null )
+        {
+            invokeInSharedContainer( fullTestName );
+            return;
+        }
+
         int executionState = NOT_STARTED;
         final TestContainerFactory containerFactory = PaxExamRuntime.getTestContainerFactory();
         TestContainer container = null;
@@ -142,30 +173,7 @@ public class JUnit4TestMethod
             container.start();
             executionState = CONTAINER_STARTED;
 
-            LOG.trace( "Install and start test bundle" );
-            final long bundleId = container.installBundle( m_testBundleUrl );
-            executionState = PROBE_INSTALLED;
-            container.setBundleStartLevel( bundleId, START_LEVEL_TEST_BUNDLE );
-            container.startBundle( bundleId );
-            executionState = PROBE_STARTED;
-
-            LOG.trace( "Execute test [" + m_name + "]" );
-            final CallableTestMethod callable = container.getService( CallableTestMethod.class );
-            try
-            {
-                LOG.info( "Starting test " + fullTestName );
-                callable.call();
-                LOG.info( "Test " + fullTestName + " ended succesfully" );
-                executionState = SUCCESFUL;
-            }
-            catch ( InstantiationException e )
-            {
-                throw new InvocationTargetException( e );
-            }
-            catch ( ClassNotFoundException e )
-            {
-                throw new InvocationTargetException( e );
-            }
+            executionState = executeTestBundle( container, fullTestName );
         }
         finally
         {
@@ -195,6 +203,86 @@ public class JUnit4TestMethod
         }
     }
 
+    /**
+     * Executes the test in the shared test container, using the test bundle of the whole test class that is installed
+     * once per shared test container.
+     * 
+     * @param fullTestName full test name (for logging purposes)
+     * @throws IllegalAccessException - Re-thrown from test invocation
+     * @throws InvocationTargetException - Re-thrown from test invocation
+     */
+    private void invokeInSharedContainer( final String fullTestName )
+        throws IllegalAccessException, InvocationTargetException
+    {
+        callTest( m_sharedContainer.getContainerWithTestBundle(), fullTestName, m_testMethod.getName() );
+    }
+
+    /**
+     * Installs and starts the test bundle and executes the test.
+     * 
+     * @param container started test container
+     * @param fullTestName full test name (for logging purposes)
+     * @return reached execution state
+     * @throws IllegalAccessException - Re-thrown from test invocation
+     * @throws InvocationTargetException - Re-thrown from test invocation
+     */
+    private int executeTestBundle( final TestContainer container,
+                                   final String fullTestName )
+        throws IllegalAccessException, InvocationTargetException
+    {
+        LOG.trace( "Install and start test bundle" );
+        container.installBundles( START_LEVEL_TEST_BUNDLE, true, m_testBundleUrl );
+
+        return callTest( container, fullTestName, null );
+    }
+
+    /**
+     * Executes the test via the test service registered for the installed test bundle.
+     * 
+     * @param container started test container, with test bundle installed
+     * @param fullTestName full test name (for logging purposes)
+     * @param testMethodName name of test method to be called or null if the test bundle contains only this test
+     * method
+     * @return reached execution state
+     * @throws IllegalAccessException - Re-thrown from test invocation
+     * @throws InvocationTargetException - Re-thrown from test invocation
+     */
+    private int callTest( final TestContainer container,
+                          final String fullTestName,
+                          final String testMethodName )
+        throws IllegalAccessException, InvocationTargetException
+    {
+        LOG.trace( "Execute test [" + m_name + "]" );
+        final CallableTestMethod callable = container.getService( CallableTestMethod.class );
+        final Stopwatch invocation = Timings.start( "test.invoke", fullTestName );
+        try
+        {
+            LOG.info( "Starting test " + fullTestName );
+            if ( testMethodName == null )
+            {
+                callable.call();
+            }
+            else
+            {
+                callable.call( testMethodName );
+            }
+            LOG.info( "Test " + fullTestName + " ended succesfully" );
+            return SUCCESFUL;
+        }
+        catch ( InstantiationException e )
+        {
+            throw new InvocationTargetException( e );
+        }
+        catch ( ClassNotFoundException e )
+        {
+            throw new InvocationTargetException( e );
+        }
+        finally
+        {
+            invocation.stop();
+        }
+    }
+
     /**
      * Getter.
      * 
@@ -215,6 +303,16 @@ public class JUnit4TestMethod
         return m_name;
     }
 
+    /**
+     * Getter.
+     *
+     * @return shared test container or null if the test method runs in its own test container
+     */
+    public SharedTestContainer getSharedContainer()
+    {
+        return m_sharedContainer;
+    }
+
     /**
      * Computes the test method name out of test method name, framework and framework version.
      * 
@@ -240,6 +338,28 @@ public class JUnit4TestMethod
         return name.toString();
     }
 
+    /**
+     * Returns the url of a test bundle that contains all test methods of a test class, using an Pax URL Dir url.
+     * 
+     * @param testClassName test class name
+     * @param testMethodNames names of test methods in test class
+     * @return test bundle url
+     */
+    public static String getTestBundleUrl( final String testClassName,
+                                           final Collection<String> testMethodNames )
+    {
+        final StringBuilder names = new StringBuilder();
+        for ( String testMethodName : testMethodNames )
+        {
+            if ( names.length() > 0 )
+            {
+                names.append( "," );
+            }
+            names.append( testMethodName );
+        }
+        return getTestBundleUrl( testClassName, Constants.PROBE_TEST_METHODS, names.toString() );
+    }
+
     /**
      * Returns the test bundle url using an Pax URL Dir url.
      * 
@@ -249,6 +369,21 @@ public class JUnit4TestMethod
      */
     private static String getTestBundleUrl( final String testClassName,
                                             final String testMethodName )
+    {
+        return getTestBundleUrl( testClassName, Constants.PROBE_TEST_METHOD, testMethodName );
+    }
+
+    /**
+     * Returns the test bundle url using an Pax URL Dir url.
+     * 
+     * @param testClassName test class name
+     * @param testMethodHeader manifest header used to specify the test methods
+     * @param testMethods test method name(s)
+     * @return test bundle url
+     */
+    private static String getTestBundleUrl( final String testClassName,
+                                            final String testMethodHeader,
+                                            final String testMethods )
     {
         final StringBuilder url = new StringBuilder();
         url.append( "dir:" )
@@ -258,7 +393,7 @@ public class JUnit4TestMethod
            .append( "&" )
            .append( Constants.PROBE_TEST_CLASS ).append( "=" ).append( testClassName )
            .append( "&" )
-           .append( Constants.PROBE_TEST_METHOD ).append( "=" ).append( testMethodName )
+           .append( testMethodHeader ).append( "=" ).append( testMethods )
            .append( "&" )
            .append( org.osgi.framework.Constants.BUNDLE_SYMBOLICNAME )
            .append( "=" )
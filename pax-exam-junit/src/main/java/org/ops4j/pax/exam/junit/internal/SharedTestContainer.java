@@ -0,0 +1,167 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.junit.internal;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import static org.ops4j.lang.NullArgumentException.*;
+import static org.ops4j.pax.exam.Constants.*;
+import org.ops4j.pax.exam.Option;
+import org.ops4j.pax.exam.runtime.PaxExamRuntime;
+import org.ops4j.pax.exam.spi.container.TestContainer;
+
+/**
+ * A {@link TestContainer} shared by all test methods that have the same configuration.
+ * The test container is started on first request and stays started till {@link #stop()} is called.
+ * The test bundle, containing all test methods of the test class, is installed once per started test container.
+ *
+ * @since 1.2.3
+ */
+public class SharedTestContainer
+{
+
+    /**
+     * JCL logger.
+     */
+    private static final Log LOG = LogFactory.getLog( SharedTestContainer.class );
+
+    /**
+     * Marker for a test bundle that is not (yet) installed.
+     */
+    private static final long NOT_INSTALLED = -1;
+
+    /**
+     * Url of test bundle containing all test methods of the test class (cannot be null).
+     */
+    private final String m_testBundleUrl;
+    /**
+     * Configuration options of the test container (cannot be null).
+     */
+    private final Option[] m_options;
+    /**
+     * Started test container. Null if not yet started or stopped.
+     */
+    private TestContainer m_container;
+    /**
+     * Id of installed test bundle or NOT_INSTALLED if not yet installed in the started test container.
+     */
+    private long m_testBundleId = NOT_INSTALLED;
+
+    /**
+     * Constructor.
+     *
+     * @param testBundleUrl url of test bundle containing all test methods of the test class (cannot be null)
+     * @param options       configuration options (cannot be null)
+     */
+    public SharedTestContainer( final String testBundleUrl,
+                                final Option... options )
+    {
+        validateNotNull( testBundleUrl, "Test bundle url" );
+        validateNotNull( options, "Options" );
+        m_testBundleUrl = testBundleUrl;
+        m_options = options;
+    }
+
+    /**
+     * Returns the test container, starting it if not already started.
+     *
+     * @return started test container
+     */
+    public synchronized TestContainer getContainer()
+    {
+        if( m_container == null )
+        {
+            LOG.trace( "Start shared test container" );
+            final TestContainer container = PaxExamRuntime.getTestContainerFactory().newInstance( m_options );
+            try
+            {
+                container.start();
+            }
+            catch( RuntimeException e )
+            {
+                stopQuietly( container );
+                throw e;
+            }
+            m_container = container;
+        }
+        return m_container;
+    }
+
+    /**
+     * Returns the test container with the test bundle installed and started, starting the test container and
+     * installing the test bundle if not already done.
+     *
+     * @return started test container
+     */
+    public synchronized TestContainer getContainerWithTestBundle()
+    {
+        final TestContainer container = getContainer();
+        if( m_testBundleId == NOT_INSTALLED )
+        {
+            LOG.trace( "Install and start test bundle" );
+            m_testBundleId = container.installBundles( START_LEVEL_TEST_BUNDLE, true, m_testBundleUrl )[ 0 ];
+        }
+        return container;
+    }
+
+    /**
+     * Updates the installed test bundle with the current content of the test bundle url, as after test classes were
+     * recompiled. Does nothing if the test bundle is not installed, as it will be installed with current content.
+     */
+    public synchronized void updateTestBundle()
+    {
+        if( m_container != null && m_testBundleId != NOT_INSTALLED )
+        {
+            LOG.trace( "Update test bundle" );
+            m_container.updateBundle( m_testBundleId, m_testBundleUrl );
+        }
+    }
+
+    /**
+     * Stops the test container (if started). A subsequent {@link #getContainer()} will start a new one.
+     */
+    public synchronized void stop()
+    {
+        m_testBundleId = NOT_INSTALLED;
+        if( m_container != null )
+        {
+            LOG.trace( "Stop shared test container" );
+            final TestContainer container = m_container;
+            m_container = null;
+            stopQuietly( container );
+        }
+    }
+
+    /**
+     * Stops a test container by logging eventual exceptions.
+     *
+     * @param container test container to be stopped
+     */
+    private static void stopQuietly( final TestContainer container )
+    {
+        try
+        {
+            container.stop();
+        }
+        catch( RuntimeException e )
+        {
+            LOG.error( "Cannot stop the test container: " + e.getMessage() );
+        }
+    }
+
+}
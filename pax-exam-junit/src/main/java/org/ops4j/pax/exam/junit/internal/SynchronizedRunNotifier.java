@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.junit.internal;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runner.notification.StoppedByUserException;
+import static org.ops4j.lang.NullArgumentException.*;
+
+/**
+ * {@link RunNotifier} that forwards all notifications to another notifier, one notification at a time.
+ * Used when test methods are run in parallel, as the listeners of the original notifier do not expect concurrent
+ * notifications.
+ *
+ * @since 1.2.3
+ */
+public class SynchronizedRunNotifier
+    extends RunNotifier
+{
+
+    /**
+     * Notifier to forward to (cannot be null).
+     */
+    private final RunNotifier m_delegate;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate notifier to forward to (cannot be null)
+     */
+    public SynchronizedRunNotifier( final RunNotifier delegate )
+    {
+        validateNotNull( delegate, "Delegate notifier" );
+        m_delegate = delegate;
+    }
+
+    @Override
+    public synchronized void addListener( final RunListener listener )
+    {
+        m_delegate.addListener( listener );
+    }
+
+    @Override
+    public synchronized void addFirstListener( final RunListener listener )
+    {
+        m_delegate.addFirstListener( listener );
+    }
+
+    @Override
+    public synchronized void removeListener( final RunListener listener )
+    {
+        m_delegate.removeListener( listener );
+    }
+
+    @Override
+    public synchronized void fireTestRunStarted( final Description description )
+    {
+        m_delegate.fireTestRunStarted( description );
+    }
+
+    @Override
+    public synchronized void fireTestRunFinished( final Result result )
+    {
+        m_delegate.fireTestRunFinished( result );
+    }
+
+    @Override
+    public synchronized void fireTestStarted( final Description description )
+        throws StoppedByUserException
+    {
+        m_delegate.fireTestStarted( description );
+    }
+
+    @Override
+    public synchronized void fireTestFailure( final Failure failure )
+    {
+        m_delegate.fireTestFailure( failure );
+    }
+
+    @Override
+    public synchronized void fireTestIgnored( final Description description )
+    {
+        m_delegate.fireTestIgnored( description );
+    }
+
+    @Override
+    public synchronized void fireTestFinished( final Description description )
+    {
+        m_delegate.fireTestFinished( description );
+    }
+
+    @Override
+    public synchronized void testAborted( final Description description, final Throwable cause )
+    {
+        m_delegate.testAborted( description, cause );
+    }
+
+    @Override
+    public synchronized void pleaseStop()
+    {
+        m_delegate.pleaseStop();
+    }
+
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.junit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.ops4j.pax.exam.Option;
+import static org.ops4j.pax.exam.CoreOptions.*;
+import org.ops4j.pax.exam.junit.extender.CallableTestMethod;
+import org.ops4j.pax.exam.spi.container.TestContainer;
+import org.ops4j.pax.exam.spi.container.TestContainerFactory;
+
+/**
+ * Unit Tests for watch mode of {@link JUnit4TestRunner}, run against recording test containers.
+ *
+ * @since 1.2.3
+ */
+public class JUnit4TestRunnerWatchTest
+{
+
+    /**
+     * Test methods called and container methods invoked, in order.
+     */
+    private static final List<String> s_calls = Collections.synchronizedList( new ArrayList<String>() );
+
+    private File m_trigger;
+
+    @Before
+    public void setUp()
+    {
+        s_calls.clear();
+        System.setProperty( JUnit4TestRunner.WATCH_PROPERTY, "true" );
+    }
+
+    @After
+    public void tearDown()
+    {
+        System.clearProperty( JUnit4TestRunner.WATCH_PROPERTY );
+        if( m_trigger != null )
+        {
+            m_trigger.delete();
+            m_trigger.getParentFile().delete();
+        }
+    }
+
+    /**
+     * Test that in watch mode the runner does not return after the first run, runs the test methods found at start
+     * again (the same methods, in a reused container) with an updated test bundle once test classes change and returns, stopping the containers, only once
+     * interrupted.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void rerunOnChangeTillInterrupted()
+        throws Exception
+    {
+        final List<Failure> failures = Collections.synchronizedList( new ArrayList<Failure>() );
+        final RunNotifier notifier = new RunNotifier();
+        notifier.addListener( new RunListener()
+        {
+            @Override
+            public void testFailure( final Failure failure )
+            {
+                failures.add( failure );
+            }
+        }
+        );
+        final JUnit4TestRunner runner = new JUnit4TestRunner( SampleTest.class );
+        final Thread thread = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                runner.run( notifier );
+            }
+        }
+        );
+        thread.start();
+        try
+        {
+            awaitCalls( "sample" );
+            Thread.sleep( 1000 );
+            assertThat( "Still watching", thread.isAlive(), is( true ) );
+            assertThat( "Not run again", count( "sample" ), is( equalTo( 1 ) ) );
+
+            final File folder = new File(
+                SampleTest.class.getProtectionDomain().getCodeSource().getLocation().toURI()
+            );
+            m_trigger = new File( folder, "watch-trigger/Trigger.class" );
+            m_trigger.getParentFile().mkdirs();
+            final FileOutputStream out = new FileOutputStream( m_trigger );
+            out.write( 42 );
+            out.close();
+
+            awaitCalls( "sample", "updateBundle", "sample" );
+            assertThat( "Still watching", thread.isAlive(), is( true ) );
+        }
+        finally
+        {
+            thread.interrupt();
+            thread.join( 10000 );
+        }
+        assertThat( "Ended by interrupt", thread.isAlive(), is( false ) );
+        assertThat( "Container stopped", s_calls.get( s_calls.size() - 1 ), is( equalTo( "stop" ) ) );
+        assertThat( "Failures", failures, is( equalTo( Collections.<Failure>emptyList() ) ) );
+    }
+
+    /**
+     * Waits till the test methods and test bundle updates recorded so far are the expected ones.
+     */
+    private static void awaitCalls( final String... expected )
+        throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 20000;
+        while( !relevantCalls().equals( Arrays.asList( expected ) ) && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 50 );
+        }
+        assertThat( "Calls", relevantCalls(), is( equalTo( Arrays.asList( expected ) ) ) );
+    }
+
+    private static List<String> relevantCalls()
+    {
+        final List<String> relevant = new ArrayList<String>();
+        synchronized( s_calls )
+        {
+            for( String call : s_calls )
+            {
+                if( !"start".equals( call ) && !"stop".equals( call ) && !"installBundles".equals( call ) )
+                {
+                    relevant.add( call );
+                }
+            }
+        }
+        return relevant;
+    }
+
+    private static int count( final String call )
+    {
+        return Collections.frequency( relevantCalls(), call );
+    }
+
+    @ReuseContainer
+    public static class SampleTest
+    {
+
+        @Configuration
+        public static Option[] configure()
+        {
+            return options();
+        }
+
+        @Test
+        public void sample()
+        {
+        }
+
+    }
+
+    /**
+     * Test container factory, registered for discovery in the test resources, whose containers record what is
+     * invoked on them and whose test service records called test methods.
+     */
+    public static class RecordingTestContainerFactory
+        implements TestContainerFactory
+    {
+
+        public TestContainer newInstance( final Option... options )
+        {
+            return (TestContainer) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{ TestContainer.class }, new InvocationHandler()
+            {
+                public Object invoke( final Object proxy, final Method method, final Object[] args )
+                {
+                    if( "getService".equals( method.getName() ) )
+                    {
+                        return recordingCallable();
+                    }
+                    s_calls.add( method.getName() );
+                    if( "installBundles".equals( method.getName() ) )
+                    {
+                        return new long[]{ 1 };
+                    }
+                    return null;
+                }
+            }
+            );
+        }
+
+        private static CallableTestMethod recordingCallable()
+        {
+            return (CallableTestMethod) Proxy.newProxyInstance(
+                CallableTestMethod.class.getClassLoader(), new Class<?>[]{ CallableTestMethod.class },
+                new InvocationHandler()
+                {
+                    public Object invoke( final Object proxy, final Method method, final Object[] args )
+                    {
+                        s_calls.add( (String) args[ 0 ] );
+                        return null;
+                    }
+                }
+            );
+        }
+
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.junit.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link ClassFolderWatcher} unit tests.
+ *
+ * @since 1.2.3
+ */
+public class ClassFolderWatcherTest
+{
+
+    private static final long POLL_INTERVAL = 50;
+
+    private File m_folder;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        m_folder = File.createTempFile( "watch", "" );
+        m_folder.delete();
+        new File( m_folder, "org/example" ).mkdirs();
+        write( "org/example/Existing.class", 1 );
+    }
+
+    @After
+    public void tearDown()
+    {
+        delete( m_folder );
+    }
+
+    /**
+     * Test that an added class file in a sub folder ends waiting.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void addedClassFile()
+        throws Exception
+    {
+        assertThat( "Change detected", awaitChangeAfter( "org/example/Added.class", 1 ), is( true ) );
+    }
+
+    /**
+     * Test that a class file of other size ends waiting.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void changedClassFile()
+        throws Exception
+    {
+        assertThat( "Change detected", awaitChangeAfter( "org/example/Existing.class", 2 ), is( true ) );
+    }
+
+    /**
+     * Test that changes of files other then class files are ignored.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void otherFile()
+        throws Exception
+    {
+        assertThat( "Change detected", awaitChangeAfter( "org/example/notes.txt", 1 ), is( false ) );
+    }
+
+    /**
+     * Test that waiting ends with an InterruptedException once the waiting thread is interrupted.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test( expected = InterruptedException.class )
+    public void interrupted()
+        throws Exception
+    {
+        final ClassFolderWatcher watcher = new ClassFolderWatcher( m_folder, POLL_INTERVAL );
+        Thread.currentThread().interrupt();
+        watcher.awaitChange();
+    }
+
+    /**
+     * Writes a file after the watcher started and waits for a change for a while.
+     *
+     * @return true if the watcher reported a change
+     */
+    private boolean awaitChangeAfter( final String path,
+                                      final int size )
+        throws Exception
+    {
+        final ClassFolderWatcher watcher = new ClassFolderWatcher( m_folder, POLL_INTERVAL );
+        final boolean[] changed = new boolean[1];
+        final Thread thread = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    watcher.awaitChange();
+                    changed[ 0 ] = true;
+                }
+                catch( InterruptedException ignore )
+                {
+                    // no change
+                }
+            }
+        }
+        );
+        thread.start();
+        write( path, size );
+        thread.join( 20 * POLL_INTERVAL );
+        thread.interrupt();
+        thread.join();
+        return changed[ 0 ];
+    }
+
+    private static void delete( final File file )
+    {
+        final File[] files = file.listFiles();
+        if( files != null )
+        {
+            for( File child : files )
+            {
+                delete( child );
+            }
+        }
+        file.delete();
+    }
+
+    private void write( final String path,
+                        final int size )
+        throws IOException
+    {
+        final FileOutputStream out = new FileOutputStream( new File( m_folder, path ) );
+        try
+        {
+            out.write( new byte[size] );
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.junit.internal;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.exam.Option;
+import static org.ops4j.pax.exam.CoreOptions.*;
+import org.ops4j.pax.exam.junit.AppliesTo;
+import org.ops4j.pax.exam.junit.Configuration;
+import org.ops4j.pax.exam.junit.JUnit4ConfigMethod;
+
+/**
+ * Unit Tests for {@link ConfigurationPlanner} and the {@link AppliesTo} matching of {@link AppliesToConfigMethod}.
+ *
+ * @since 1.2.3
+ */
+public class ConfigurationPlannerTest
+{
+
+    /**
+     * Invocations per configuration method name.
+     */
+    private static final Map<String, Integer> s_invocations = new HashMap<String, Integer>();
+
+    @Before
+    public void setUp()
+    {
+        s_invocations.clear();
+    }
+
+    /**
+     * Test that each configuration method is asked for its options only once, however many test methods it applies
+     * to.
+     */
+    @Test
+    public void configMethodsInvokedOnce()
+        throws Exception
+    {
+        final ConfigurationPlanner planner = planner();
+        for( Method testMethod : Tests.class.getDeclaredMethods() )
+        {
+            planner.plan( testMethod );
+            planner.plan( testMethod );
+        }
+        assertThat( "All", s_invocations.get( "all" ), is( equalTo( 1 ) ) );
+        assertThat( "Foo", s_invocations.get( "foo" ), is( equalTo( 1 ) ) );
+        assertThat( "Bar", s_invocations.get( "bar" ), is( equalTo( 1 ) ) );
+    }
+
+    /**
+     * Test that test methods matched by the same configuration methods share the same plan, and so the same options
+     * arrays.
+     */
+    @Test
+    public void samePlanForSameConfigMethods()
+        throws Exception
+    {
+        final ConfigurationPlanner planner = planner();
+        final ConfigurationPlan foo = planner.plan( method( "foo" ) );
+        assertThat( "Same config methods", planner.plan( method( "fooBar" ) ), is( sameInstance( foo ) ) );
+        assertThat( "Same options", planner.plan( method( "fooBar" ) ).getOptions( 0 ), is( sameInstance( foo.getOptions( 0 ) ) ) );
+        final ConfigurationPlan bar = planner.plan( method( "bar" ) );
+        assertThat( "Other config methods", bar, is( not( sameInstance( foo ) ) ) );
+        assertThat( "Same config methods", planner.plan( method( "baz" ) ), is( sameInstance( bar ) ) );
+        assertThat( "Only default config", planner.plan( method( "Foo" ) ), is( not( sameInstance( foo ) ) ) );
+        assertThat( "Only default config", planner.plan( method( "Foo" ) ), is( not( sameInstance( bar ) ) ) );
+    }
+
+    /**
+     * Test that the precompiled {@link AppliesTo} patterns match test method names as {@link String#matches} does.
+     */
+    @Test
+    public void appliesToMatchesAsStringMatches()
+        throws Exception
+    {
+        for( String configMethodName : Arrays.asList( "all", "foo", "bar", "patterns" ) )
+        {
+            final Method configMethod = Configs.class.getMethod( configMethodName );
+            final AppliesToConfigMethod appliesTo = new AppliesToConfigMethod( configMethod, null );
+            final AppliesTo annotation = configMethod.getAnnotation( AppliesTo.class );
+            final String[] patterns = annotation == null ? new String[]{ ".*" } : annotation.value();
+            for( Method testMethod : Tests.class.getDeclaredMethods() )
+            {
+                boolean expected = false;
+                for( String pattern : patterns )
+                {
+                    expected |= testMethod.getName().matches( pattern );
+                }
+                assertThat( configMethodName + " applies to " + testMethod.getName(),
+                            appliesTo.matches( testMethod ), is( equalTo( expected ) )
+                );
+            }
+        }
+    }
+
+    private static ConfigurationPlanner planner()
+        throws NoSuchMethodException
+    {
+        return new ConfigurationPlanner( Arrays.<JUnit4ConfigMethod>asList(
+            new AppliesToConfigMethod( Configs.class.getMethod( "all" ), null ),
+            new AppliesToConfigMethod( Configs.class.getMethod( "foo" ), null ),
+            new AppliesToConfigMethod( Configs.class.getMethod( "bar" ), null )
+        )
+        );
+    }
+
+    private static Method method( final String name )
+        throws NoSuchMethodException
+    {
+        return Tests.class.getMethod( name );
+    }
+
+    private static Option[] invoked( final String name )
+    {
+        final Integer invocations = s_invocations.get( name );
+        s_invocations.put( name, invocations == null ? 1 : invocations + 1 );
+        return options( systemProperty( name ).value( "true" ) );
+    }
+
+    public static class Configs
+    {
+
+        @Configuration
+        public static Option[] all()
+        {
+            return invoked( "all" );
+        }
+
+        @Configuration
+        @AppliesTo( "foo.*" )
+        public static Option[] foo()
+        {
+            return invoked( "foo" );
+        }
+
+        @Configuration
+        @AppliesTo( { "bar", "ba[zr]+" } )
+        public static Option[] bar()
+        {
+            return invoked( "bar" );
+        }
+
+        @Configuration
+        @AppliesTo( { "o", "f?oo", "Foo|ba", "(fo)+.?" } )
+        public static Option[] patterns()
+        {
+            return invoked( "patterns" );
+        }
+
+    }
+
+    public static class Tests
+    {
+
+        public void foo()
+        {
+        }
+
+        public void fooBar()
+        {
+        }
+
+        public void bar()
+        {
+        }
+
+        public void baz()
+        {
+        }
+
+        public void barBaz()
+        {
+        }
+
+        public void Foo()
+        {
+        }
+
+        public void oo()
+        {
+        }
+
+        public void fof()
+        {
+        }
+
+    }
+
+}
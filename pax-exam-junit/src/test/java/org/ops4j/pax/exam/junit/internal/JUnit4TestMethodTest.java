@@ -0,0 +1,48 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.junit.internal;
+
+import java.util.Arrays;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit Tests for {@link JUnit4TestMethod} test bundle urls.
+ *
+ * @since 1.2.3
+ */
+public class JUnit4TestMethodTest
+{
+
+    /**
+     * Test that the test bundle of a whole test class names all its test methods in the PaxExam-TestMethodNames
+     * header.
+     */
+    @Test
+    public void testBundleUrlOfTestClass()
+    {
+        final String url = JUnit4TestMethod.getTestBundleUrl( "org.foo.BarTest", Arrays.asList( "first", "second" ) );
+        assertThat( "Dir url", url.startsWith( "dir:" ), is( true ) );
+        assertThat( "Tail", url.contains( "$tail=org/foo/BarTest.class&" ), is( true ) );
+        assertThat( "Test class", url.contains( "&PaxExam-TestClassName=org.foo.BarTest&" ), is( true ) );
+        assertThat( "Test methods", url.contains( "&PaxExam-TestMethodNames=first,second&" ), is( true ) );
+        assertThat( "Single test method", url.contains( "PaxExam-TestMethodName=" ), is( false ) );
+    }
+
+}
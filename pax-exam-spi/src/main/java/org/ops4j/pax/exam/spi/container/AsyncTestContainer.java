@@ -0,0 +1,167 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.spi.container;
+
+import java.util.concurrent.Future;
+
+/**
+ * Non blocking variant of {@link TestContainer}. Operations return immediately with a {@link Future} of their result.
+ * Operations on the same test container are executed one after the other, in the order they were requested, so for
+ * example a bundle installation can be requested right after the start of the test container without waiting for it.
+ * Failures are reported via the futures, as {@link java.util.concurrent.ExecutionException} caused by the
+ * {@link TestContainerException} (or other runtime exception) thrown by the operation.
+ *
+ * @see AsyncTestContainerAdapter
+ * @since 1.2.3
+ */
+public interface AsyncTestContainer
+{
+
+    /**
+     * Getter.
+     *
+     * @return the underlying (blocking) test container
+     */
+    TestContainer getContainer();
+
+    /**
+     * Starts the test container.
+     *
+     * @return future of the start
+     *
+     * @see TestContainer#start()
+     */
+    Future<Void> start();
+
+    /**
+     * Looks up a service, waiting for it to become available for the default time of the test container.
+     *
+     * @param serviceType type of service
+     *
+     * @return future of the service
+     *
+     * @see TestContainer#getService(Class)
+     */
+    <T> Future<T> getService( Class<T> serviceType );
+
+    /**
+     * Looks up a service, waiting for it to become available.
+     *
+     * @param serviceType     type of service
+     * @param timeoutInMillis max time to wait for the service
+     *
+     * @return future of the service
+     *
+     * @see TestContainer#getService(Class, long)
+     */
+    <T> Future<T> getService( Class<T> serviceType, long timeoutInMillis );
+
+    /**
+     * Installs a bundle.
+     *
+     * @param bundleUrl url of bundle to be installed
+     *
+     * @return future of the id of installed bundle
+     *
+     * @see TestContainer#installBundle(String)
+     */
+    Future<Long> installBundle( String bundleUrl );
+
+    /**
+     * Installs a bundle from its content.
+     *
+     * @param bundleLocation location of bundle to be installed
+     * @param bundle         content of bundle to be installed
+     *
+     * @return future of the id of installed bundle
+     *
+     * @see TestContainer#installBundle(String, byte[])
+     */
+    Future<Long> installBundle( String bundleLocation, byte[] bundle );
+
+    /**
+     * Installs a list of bundles, sets their start level and starts them, in one go.
+     *
+     * @param startLevel start level to be set for all bundles
+     * @param start      true if the bundles should be started
+     * @param bundleUrls urls of bundles to be installed
+     *
+     * @return future of the ids of installed bundles, in the same order as the urls
+     *
+     * @see TestContainer#installBundles(int, boolean, String...)
+     */
+    Future<long[]> installBundles( int startLevel, boolean start, String... bundleUrls );
+
+    /**
+     * Starts a bundle.
+     *
+     * @param bundleId bundle id
+     *
+     * @return future of the start
+     *
+     * @see TestContainer#startBundle(long)
+     */
+    Future<Void> startBundle( long bundleId );
+
+    /**
+     * Updates an installed bundle with the content of an url.
+     *
+     * @param bundleId  bundle id
+     * @param bundleUrl url of new bundle content
+     *
+     * @return future of the update
+     *
+     * @see TestContainer#updateBundle(long, String)
+     */
+    Future<Void> updateBundle( long bundleId, String bundleUrl );
+
+    /**
+     * Sets the start level for a bundle.
+     *
+     * @param bundleId   bundle id
+     * @param startLevel start level
+     *
+     * @return future of the change
+     *
+     * @see TestContainer#setBundleStartLevel(long, int)
+     */
+    Future<Void> setBundleStartLevel( long bundleId, int startLevel );
+
+    /**
+     * Waits for a bundle to be in a certain state.
+     *
+     * @param bundleId        bundle id
+     * @param state           expected state
+     * @param timeoutInMillis max time to wait for state
+     *
+     * @return future that is done as soon as the state is reached or the timeout occurred
+     *
+     * @see TestContainer#waitForState(long, int, long)
+     */
+    Future<Void> waitForState( long bundleId, int state, long timeoutInMillis );
+
+    /**
+     * Stops the test container.
+     *
+     * @return future of the stop
+     *
+     * @see TestContainer#stop()
+     */
+    Future<Void> stop();
+
+}
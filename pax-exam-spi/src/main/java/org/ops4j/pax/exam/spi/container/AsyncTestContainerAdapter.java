@@ -0,0 +1,295 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.spi.container;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import static org.ops4j.lang.NullArgumentException.*;
+
+/**
+ * {@link AsyncTestContainer} on top of an existing (blocking) {@link TestContainer}. Operations are run by the threads
+ * of an executor, one after the other per test container, so a thread is only used by a test container while one of
+ * its operations is running.
+ *
+ * @since 1.2.3
+ */
+public class AsyncTestContainerAdapter
+    implements AsyncTestContainer
+{
+
+    /**
+     * Executor used when none is specified. Threads are daemons so pending operations do not keep the vm alive.
+     */
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool( new ThreadFactory()
+    {
+        public Thread newThread( final Runnable runnable )
+        {
+            final Thread thread = new Thread( runnable, "pax-exam-async-container" );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+    );
+
+    /**
+     * Adapted test container (cannot be null).
+     */
+    private final TestContainer m_container;
+    /**
+     * Executor running the operations of the test container in request order (cannot be null).
+     */
+    private final Executor m_executor;
+
+    /**
+     * Constructor. Operations are run by a shared pool of threads.
+     *
+     * @param container test container to be adapted (cannot be null)
+     */
+    public AsyncTestContainerAdapter( final TestContainer container )
+    {
+        this( container, DEFAULT_EXECUTOR );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param container test container to be adapted (cannot be null)
+     * @param executor  executor running the operations (cannot be null)
+     */
+    public AsyncTestContainerAdapter( final TestContainer container,
+                                      final Executor executor )
+    {
+        validateNotNull( container, "Test container" );
+        validateNotNull( executor, "Executor" );
+        m_container = container;
+        m_executor = new SerialExecutor( executor );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public TestContainer getContainer()
+    {
+        return m_container;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<Void> start()
+    {
+        return submit( new Callable<Void>()
+        {
+            public Void call()
+            {
+                m_container.start();
+                return null;
+            }
+        }
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> Future<T> getService( final Class<T> serviceType )
+    {
+        return submit( new Callable<T>()
+        {
+            public T call()
+            {
+                return m_container.getService( serviceType );
+            }
+        }
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> Future<T> getService( final Class<T> serviceType,
+                                     final long timeoutInMillis )
+    {
+        return submit( new Callable<T>()
+        {
+            public T call()
+            {
+                return m_container.getService( serviceType, timeoutInMillis );
+            }
+        }
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<Long> installBundle( final String bundleUrl )
+    {
+        return submit( new Callable<Long>()
+        {
+            public Long call()
+            {
+                return m_container.installBundle( bundleUrl );
+            }
+        }
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<Long> installBundle( final String bundleLocation,
+                                       final byte[] bundle )
+    {
+        return submit( new Callable<Long>()
+        {
+            public Long call()
+            {
+                return m_container.installBundle( bundleLocation, bundle );
+            }
+        }
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<long[]> installBundles( final int startLevel,
+                                          final boolean start,
+                                          final String... bundleUrls )
+    {
+        return submit( new Callable<long[]>()
+        {
+            public long[] call()
+            {
+                return m_container.installBundles( startLevel, start, bundleUrls );
+            }
+        }
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<Void> startBundle( final long bundleId )
+    {
+        return submit( new Callable<Void>()
+        {
+            public Void call()
+            {
+                m_container.startBundle( bundleId );
+                return null;
+            }
+        }
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<Void> updateBundle( final long bundleId,
+                                      final String bundleUrl )
+    {
+        return submit( new Callable<Void>()
+        {
+            public Void call()
+            {
+                m_container.updateBundle( bundleId, bundleUrl );
+                return null;
+            }
+        }
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<Void> setBundleStartLevel( final long bundleId,
+                                             final int startLevel )
+    {
+        return submit( new Callable<Void>()
+        {
+            public Void call()
+            {
+                m_container.setBundleStartLevel( bundleId, startLevel );
+                return null;
+            }
+        }
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<Void> waitForState( final long bundleId,
+                                      final int state,
+                                      final long timeoutInMillis )
+    {
+        return submit( new Callable<Void>()
+        {
+            public Void call()
+            {
+                m_container.waitForState( bundleId, state, timeoutInMillis );
+                return null;
+            }
+        }
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Future<Void> stop()
+    {
+        return submit( new Callable<Void>()
+        {
+            public Void call()
+            {
+                m_container.stop();
+                return null;
+            }
+        }
+        );
+    }
+
+    /**
+     * Schedules an operation after the already requested ones.
+     *
+     * @param operation operation to be run
+     *
+     * @return future of the operation result
+     */
+    private <T> Future<T> submit( final Callable<T> operation )
+    {
+        final FutureTask<T> task = new FutureTask<T>( operation );
+        m_executor.execute( task );
+        return task;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Async " + m_container;
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.spi.container;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+
+/**
+ * Executor that runs tasks one after the other, in submission order, using the threads of another executor. No thread
+ * is used while there are no tasks.
+ *
+ * @since 1.2.3
+ */
+class SerialExecutor
+    implements Executor
+{
+
+    /**
+     * Executor running the tasks.
+     */
+    private final Executor m_executor;
+    /**
+     * Tasks waiting to be run. Guarded by this.
+     */
+    private final LinkedList<Runnable> m_tasks;
+    /**
+     * Task being run, null if none. Guarded by this.
+     */
+    private Runnable m_active;
+
+    /**
+     * Constructor.
+     *
+     * @param executor executor running the tasks
+     */
+    SerialExecutor( final Executor executor )
+    {
+        m_executor = executor;
+        m_tasks = new LinkedList<Runnable>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void execute( final Runnable task )
+    {
+        m_tasks.add( new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    scheduleNext();
+                }
+            }
+        }
+        );
+        if( m_active == null )
+        {
+            scheduleNext();
+        }
+    }
+
+    /**
+     * Hands the next waiting task to the executor. If the executor does not accept the task (e.g. because it was shut
+     * down) the task is dropped and no task is considered to be running anymore, so the next submitted task is handed
+     * to the executor again.
+     *
+     * @throws RuntimeException - Re-thrown from executor if it does not accept the task
+     */
+    private synchronized void scheduleNext()
+    {
+        m_active = m_tasks.poll();
+        if( m_active != null )
+        {
+            try
+            {
+                m_executor.execute( m_active );
+            }
+            catch( RuntimeException e )
+            {
+                m_active = null;
+                throw e;
+            }
+        }
+    }
+
+}
@@ -41,6 +41,34 @@ public interface TestContainer
     void startBundle( long bundleId )
         throws TestContainerException;
 
+    /**
+     * Installs a list of bundles, sets their start level and starts them, in one go. If any of the bundles cannot be
+     * installed or started, none of them stays installed.
+     *
+     * @param startLevel start level to be set for all bundles
+     * @param start      true if the bundles should be started
+     * @param bundleUrls urls of bundles to be installed
+     *
+     * @return ids of installed bundles, in the same order as the urls
+     *
+     * @throws TestContainerException if any of the bundles cannot be installed or started
+     */
+    long[] installBundles( int startLevel, boolean start, String... bundleUrls )
+        throws TestContainerException;
+
+    /**
+     * Updates an installed bundle with the (current) content of an url, as for a test bundle whose classes changed.
+     * The bundle keeps its id and, if it was started, is started again.
+     *
+     * @param bundleId  id of the bundle to be updated
+     * @param bundleUrl url of the new bundle content
+     *
+     * @throws TestContainerException if bundle cannot be updated
+     * @since 1.2.3
+     */
+    void updateBundle( long bundleId, String bundleUrl )
+        throws TestContainerException;
+
     /**
      * Sets the start level for a bundle.
      *
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.spi.maven;
+
+/**
+ * Parsed "mvn:" url, of the Pax URL mvn syntax mvn:[repository!]groupId/artifactId[/version[/type[/classifier]]],
+ * locating the artifact in a Maven repository layout.
+ *
+ * @since 1.2.3
+ */
+public final class MavenUrl
+{
+
+    /**
+     * Prefix of maven urls.
+     */
+    private static final String MVN_PROTOCOL = "mvn:";
+    /**
+     * Default artifact type.
+     */
+    private static final String DEFAULT_TYPE = "jar";
+
+    private final String m_groupId;
+    private final String m_artifactId;
+    /**
+     * Version, null if not set.
+     */
+    private final String m_version;
+    private final String m_type;
+    /**
+     * Classifier, null if not set.
+     */
+    private final String m_classifier;
+
+    /**
+     * Constructor.
+     */
+    private MavenUrl( final String groupId,
+                      final String artifactId,
+                      final String version,
+                      final String type,
+                      final String classifier )
+    {
+        m_groupId = groupId;
+        m_artifactId = artifactId;
+        m_version = version;
+        m_type = type;
+        m_classifier = classifier;
+    }
+
+    /**
+     * Checks if an url is a maven url.
+     *
+     * @param url to check (can be null)
+     *
+     * @return true if the url starts with "mvn:"
+     */
+    public static boolean isMavenUrl( final String url )
+    {
+        return url != null && url.startsWith( MVN_PROTOCOL );
+    }
+
+    /**
+     * Parses a maven url. The repository, if any, is ignored.
+     *
+     * @param url url to be parsed (can be null)
+     *
+     * @return parsed url or null if url is not a "mvn:" url with at least group and artifact id
+     */
+    public static MavenUrl parse( final String url )
+    {
+        if( !isMavenUrl( url ) )
+        {
+            return null;
+        }
+        String coordinates = url.substring( MVN_PROTOCOL.length() );
+        final int repositoryEnd = coordinates.lastIndexOf( '!' );
+        if( repositoryEnd >= 0 )
+        {
+            coordinates = coordinates.substring( repositoryEnd + 1 );
+        }
+        final String[] segments = coordinates.split( "/" );
+        if( segments.length < 2 || segments.length > 5 || segments[ 0 ].length() == 0
+            || segments[ 1 ].length() == 0 )
+        {
+            return null;
+        }
+        return new MavenUrl(
+            segments[ 0 ],
+            segments[ 1 ],
+            segment( segments, 2 ),
+            segments.length > 3 && segments[ 3 ].length() > 0 ? segments[ 3 ] : DEFAULT_TYPE,
+            segment( segments, 4 )
+        );
+    }
+
+    public String getGroupId()
+    {
+        return m_groupId;
+    }
+
+    public String getArtifactId()
+    {
+        return m_artifactId;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return version or null if not set
+     */
+    public String getVersion()
+    {
+        return m_version;
+    }
+
+    public String getType()
+    {
+        return m_type;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return classifier or null if not set
+     */
+    public String getClassifier()
+    {
+        return m_classifier;
+    }
+
+    /**
+     * Tells if the version denotes one version, as opposed to none, a range or a "LATEST"/"RELEASE" placeholder.
+     *
+     * @return true if the version is fixed
+     */
+    public boolean hasFixedVersion()
+    {
+        return m_version != null
+               && !"LATEST".equals( m_version )
+               && !"RELEASE".equals( m_version )
+               && "[(,".indexOf( m_version.charAt( 0 ) ) < 0
+               && m_version.indexOf( ',' ) < 0;
+    }
+
+    /**
+     * Returns the folder holding all versions of the artifact, relative to the repository root.
+     *
+     * @return relative path of artifact folder
+     */
+    public String getArtifactFolder()
+    {
+        return m_groupId.replace( '.', '/' ) + "/" + m_artifactId;
+    }
+
+    /**
+     * Returns the path of the artifact file of a version, relative to the repository root.
+     *
+     * @param version version of artifact (cannot be null)
+     *
+     * @return relative path of artifact file
+     */
+    public String getPath( final String version )
+    {
+        return getArtifactFolder() + "/" + version + "/" + m_artifactId + "-" + version
+               + ( m_classifier == null ? "" : "-" + m_classifier ) + "." + m_type;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MVN_PROTOCOL + m_groupId + "/" + m_artifactId + "/" + ( m_version == null ? "" : m_version ) + "/"
+               + m_type + ( m_classifier == null ? "" : "/" + m_classifier );
+    }
+
+    /**
+     * Returns a segment of the coordinates, null if missing or empty.
+     */
+    private static String segment( final String[] segments,
+                                   final int index )
+    {
+        return segments.length > index && segments[ index ].length() > 0 ? segments[ index ] : null;
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.spi.timing;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * {@link TimingListener} that writes spans to a file, one tab separated line per span: start in millis since the
+ * listener was created, duration in millis, phase name, context and thread. The file is overwritten on first span of
+ * the run. As there is no notification about the end of the run, the file is opened for each span and closed again
+ * once the span is written.
+ *
+ * @since 1.2.3
+ */
+class ReportFileTimingListener
+    implements TimingListener
+{
+
+    /**
+     * JCL logger.
+     */
+    private static final Log LOG = LogFactory.getLog( ReportFileTimingListener.class );
+
+    /**
+     * Report file.
+     */
+    private final File m_file;
+    /**
+     * True once the report was started in this run, case when following spans are appended.
+     */
+    private boolean m_started;
+    /**
+     * Creation time. Span starts are reported relative to it.
+     */
+    private final long m_createdAt;
+    /**
+     * True if writing failed, case when no more spans are written.
+     */
+    private boolean m_failed;
+
+    /**
+     * Constructor.
+     *
+     * @param file report file
+     */
+    ReportFileTimingListener( final File file )
+    {
+        m_file = file;
+        m_createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void spanEnded( final TimingSpan span )
+    {
+        if( m_failed )
+        {
+            return;
+        }
+        Writer writer = null;
+        try
+        {
+            if( !m_started && m_file.getParentFile() != null )
+            {
+                m_file.getParentFile().mkdirs();
+            }
+            writer = new FileWriter( m_file, m_started );
+            if( !m_started )
+            {
+                writer.write( "# offset\tduration\tname\tcontext\tthread\n" );
+                m_started = true;
+            }
+            writer.write(
+                ( span.getStartedAt() - m_createdAt ) + "\t" + span.getDuration() + "\t" + span.getName()
+                + "\t" + span.getContext() + "\t" + span.getThreadName() + "\n"
+            );
+        }
+        catch( IOException e )
+        {
+            m_failed = true;
+            LOG.warn( "Cannot write timing report " + m_file + ": " + e.getMessage() );
+        }
+        finally
+        {
+            close( writer );
+        }
+    }
+
+    /**
+     * Closes the report, logging eventual exceptions.
+     *
+     * @param writer report writer (can be null)
+     */
+    private void close( final Writer writer )
+    {
+        if( writer != null )
+        {
+            try
+            {
+                writer.close();
+            }
+            catch( IOException e )
+            {
+                m_failed = true;
+                LOG.warn( "Cannot write timing report " + m_file + ": " + e.getMessage() );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.spi.timing;
+
+/**
+ * A running {@link TimingSpan}, as returned by {@link Timings#start(String, String)}.
+ *
+ * @since 1.2.3
+ */
+public class Stopwatch
+{
+
+    /**
+     * Phase name.
+     */
+    private final String m_name;
+    /**
+     * What the phase belongs to.
+     */
+    private final String m_context;
+    /**
+     * Start time in millis.
+     */
+    private final long m_startedAt;
+    /**
+     * Ended span. Null while running.
+     */
+    private TimingSpan m_span;
+
+    /**
+     * Constructor.
+     *
+     * @param name    phase name
+     * @param context what the phase belongs to
+     */
+    Stopwatch( final String name,
+               final String context )
+    {
+        m_name = name;
+        m_context = context;
+        m_startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Ends the span and notifies the listeners. Subsequent calls have no effect, so it is safe to call it from a
+     * finally block as well as from the regular flow.
+     *
+     * @return ended span
+     */
+    public synchronized TimingSpan stop()
+    {
+        if( m_span == null )
+        {
+            m_span = Timings.record( m_name, m_context, m_startedAt, System.currentTimeMillis() );
+        }
+        return m_span;
+    }
+
+}
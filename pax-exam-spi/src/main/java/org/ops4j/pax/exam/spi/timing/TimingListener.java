@@ -0,0 +1,37 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.spi.timing;
+
+/**
+ * Gets notified about {@link TimingSpan}s recorded while starting test containers, building and installing test
+ * probes and invoking tests. Listeners are registered via {@link Timings#addListener(TimingListener)}.
+ * Listeners are called synchronously by the thread that ended the span, so they should return fast.
+ *
+ * @since 1.2.3
+ */
+public interface TimingListener
+{
+
+    /**
+     * Called when a span ended.
+     *
+     * @param span ended span (never null)
+     */
+    void spanEnded( TimingSpan span );
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.spi.timing;
+
+/**
+ * The measured duration of one phase (as container start, probe build or test invocation).
+ *
+ * @since 1.2.3
+ */
+public class TimingSpan
+{
+
+    /**
+     * Phase name, e.g. "container.fork" (cannot be null).
+     */
+    private final String m_name;
+    /**
+     * What the phase belongs to, e.g. a test container or a test (cannot be null).
+     */
+    private final String m_context;
+    /**
+     * Name of the thread that ended the span.
+     */
+    private final String m_threadName;
+    /**
+     * Start time in millis.
+     */
+    private final long m_startedAt;
+    /**
+     * End time in millis.
+     */
+    private final long m_endedAt;
+
+    /**
+     * Constructor.
+     *
+     * @param name      phase name
+     * @param context   what the phase belongs to
+     * @param startedAt start time in millis
+     * @param endedAt   end time in millis
+     */
+    public TimingSpan( final String name,
+                       final String context,
+                       final long startedAt,
+                       final long endedAt )
+    {
+        m_name = name;
+        m_context = context == null ? "" : context;
+        m_threadName = Thread.currentThread().getName();
+        m_startedAt = startedAt;
+        m_endedAt = endedAt;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return phase name
+     */
+    public String getName()
+    {
+        return m_name;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return what the phase belongs to (never null)
+     */
+    public String getContext()
+    {
+        return m_context;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return name of the thread that ended the span
+     */
+    public String getThreadName()
+    {
+        return m_threadName;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return start time in millis
+     */
+    public long getStartedAt()
+    {
+        return m_startedAt;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return end time in millis
+     */
+    public long getEndedAt()
+    {
+        return m_endedAt;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return duration in millis
+     */
+    public long getDuration()
+    {
+        return m_endedAt - m_startedAt;
+    }
+
+    @Override
+    public String toString()
+    {
+        return m_name + " [" + m_context + "] took " + getDuration() + " millis";
+    }
+
+}
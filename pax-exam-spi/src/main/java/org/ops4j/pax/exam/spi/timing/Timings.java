@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.spi.timing;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import static org.ops4j.lang.NullArgumentException.*;
+
+/**
+ * Records {@link TimingSpan}s and hands them to registered {@link TimingListener}s.
+ * If system property {@link #REPORT_PROPERTY} is set to a file name all spans are written to that file, one per line.
+ *
+ * @since 1.2.3
+ */
+public class Timings
+{
+
+    /**
+     * System property that names the file where spans are reported.
+     */
+    public static final String REPORT_PROPERTY = "org.ops4j.pax.exam.timing.report";
+
+    /**
+     * Registered listeners.
+     */
+    private static final List<TimingListener> LISTENERS = new CopyOnWriteArrayList<TimingListener>();
+
+    static
+    {
+        final String report = System.getProperty( REPORT_PROPERTY );
+        if( report != null && report.trim().length() > 0 )
+        {
+            LISTENERS.add( new ReportFileTimingListener( new File( report.trim() ) ) );
+        }
+    }
+
+    /**
+     * Utility class. Ment to be used via the static factory methods.
+     */
+    private Timings()
+    {
+        // utility class
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener listener to be notified about ended spans (cannot be null)
+     */
+    public static void addListener( final TimingListener listener )
+    {
+        validateNotNull( listener, "Listener" );
+        LISTENERS.add( listener );
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener listener to be removed
+     */
+    public static void removeListener( final TimingListener listener )
+    {
+        LISTENERS.remove( listener );
+    }
+
+    /**
+     * Starts a span.
+     *
+     * @param name    phase name (cannot be null)
+     * @param context what the phase belongs to (can be null)
+     *
+     * @return running span, to be stopped when the phase ends
+     */
+    public static Stopwatch start( final String name,
+                                   final String context )
+    {
+        validateNotNull( name, "Name" );
+        return new Stopwatch( name, context );
+    }
+
+    /**
+     * Records a span whose start and end were measured separately.
+     *
+     * @param name      phase name (cannot be null)
+     * @param context   what the phase belongs to (can be null)
+     * @param startedAt start time in millis
+     * @param endedAt   end time in millis
+     *
+     * @return recorded span
+     */
+    public static TimingSpan record( final String name,
+                                     final String context,
+                                     final long startedAt,
+                                     final long endedAt )
+    {
+        validateNotNull( name, "Name" );
+        final TimingSpan span = new TimingSpan( name, context, startedAt, endedAt );
+        for( TimingListener listener : LISTENERS )
+        {
+            try
+            {
+                listener.spanEnded( span );
+            }
+            catch( RuntimeException ignore )
+            {
+                // a failing listener must not fail the test run
+            }
+        }
+        return span;
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.spi.container;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit Tests for {@link AsyncTestContainerAdapter}.
+ *
+ * @since 1.2.3
+ */
+public class AsyncTestContainerAdapterTest
+{
+
+    private final List<String> m_calls = Collections.synchronizedList( new ArrayList<String>() );
+
+    /**
+     * Test that operations requested without waiting are run in request order.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void operationsRunInRequestOrder()
+        throws Exception
+    {
+        final AsyncTestContainer container = new AsyncTestContainerAdapter( recordingContainer( null ) );
+        final Future<Void> start = container.start();
+        final Future<Long> install = container.installBundle( "file:bundle.jar" );
+        final Future<Void> stop = container.stop();
+
+        assertThat( install.get(), is( equalTo( 42L ) ) );
+        stop.get();
+        assertThat( start.isDone(), is( true ) );
+        assertThat( m_calls, is( equalTo( Arrays.asList( "start", "installBundle", "stop" ) ) ) );
+    }
+
+    /**
+     * Test that a failed operation is reported via its future and following operations are still run.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void failureIsReportedViaFuture()
+        throws Exception
+    {
+        final AsyncTestContainer container = new AsyncTestContainerAdapter( recordingContainer( "startBundle" ) );
+        final Future<Void> failed = container.startBundle( 1 );
+        final Future<Void> stop = container.stop();
+        try
+        {
+            failed.get();
+            fail( "Expected failure of bundle start" );
+        }
+        catch( ExecutionException e )
+        {
+            assertThat( e.getCause() instanceof TestContainerException, is( true ) );
+        }
+        stop.get();
+        assertThat( m_calls, is( equalTo( Arrays.asList( "startBundle", "stop" ) ) ) );
+    }
+
+    /**
+     * Test that service lookup, installation from content and start level changes are queued as other operations.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void allOperationsAreQueued()
+        throws Exception
+    {
+        final AsyncTestContainer container = new AsyncTestContainerAdapter( recordingContainer( null ) );
+        container.start();
+        final Future<Long> install = container.installBundle( "test", new byte[]{ 1 } );
+        container.setBundleStartLevel( 42, 5 );
+        container.getService( Runnable.class, 1000 );
+        final Future<Runnable> service = container.getService( Runnable.class );
+
+        assertThat( service.get(), is( nullValue() ) );
+        assertThat( install.get(), is( equalTo( 42L ) ) );
+        assertThat(
+            m_calls,
+            is( equalTo( Arrays.asList( "start", "installBundle", "setBundleStartLevel", "getService", "getService" ) ) )
+        );
+    }
+
+    /**
+     * Test that an operation rejected by the executor is reported to the caller and does not block later operations.
+     *
+     * @throws Exception - Unexpected
+     */
+    @Test
+    public void rejectedOperationDoesNotBlockQueue()
+        throws Exception
+    {
+        final boolean[] reject = { true };
+        final AsyncTestContainer container = new AsyncTestContainerAdapter(
+            recordingContainer( null ), new Executor()
+        {
+            public void execute( final Runnable task )
+            {
+                if( reject[ 0 ] )
+                {
+                    throw new RejectedExecutionException( "rejected" );
+                }
+                task.run();
+            }
+        }
+        );
+        try
+        {
+            container.start();
+            fail( "Expected rejection" );
+        }
+        catch( RejectedExecutionException expected )
+        {
+            // expected
+        }
+        reject[ 0 ] = false;
+        container.stop().get();
+        assertThat( m_calls, is( equalTo( Arrays.asList( "stop" ) ) ) );
+    }
+
+    /**
+     * Creates a test container that records the called operations, with a slow start.
+     *
+     * @param failing name of operation that fails or null
+     *
+     * @return test container
+     */
+    private TestContainer recordingContainer( final String failing )
+    {
+        return (TestContainer) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[]{ TestContainer.class }, new InvocationHandler()
+        {
+            public Object invoke( final Object proxy, final Method method, final Object[] args )
+                throws Throwable
+            {
+                if( "start".equals( method.getName() ) )
+                {
+                    Thread.sleep( 100 );
+                }
+                m_calls.add( method.getName() );
+                if( method.getName().equals( failing ) )
+                {
+                    throw new TestContainerException( method.getName() + " failed" );
+                }
+                return method.getReturnType() == long.class ? 42L : null;
+            }
+        }
+        );
+    }
+
+}
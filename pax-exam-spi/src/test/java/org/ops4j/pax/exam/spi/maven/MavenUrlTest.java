@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.spi.maven;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit Tests for {@link MavenUrl}.
+ *
+ * @since 1.2.3
+ */
+public class MavenUrlTest
+{
+
+    @Test
+    public void parse()
+    {
+        final MavenUrl url = MavenUrl.parse( "mvn:http://repo.ops4j.org/maven2!org.ops4j/foo/1.0/zip/bin" );
+        assertThat( "Group id", url.getGroupId(), is( equalTo( "org.ops4j" ) ) );
+        assertThat( "Artifact id", url.getArtifactId(), is( equalTo( "foo" ) ) );
+        assertThat( "Version", url.getVersion(), is( equalTo( "1.0" ) ) );
+        assertThat( "Type", url.getType(), is( equalTo( "zip" ) ) );
+        assertThat( "Classifier", url.getClassifier(), is( equalTo( "bin" ) ) );
+    }
+
+    @Test
+    public void defaults()
+    {
+        final MavenUrl url = MavenUrl.parse( "mvn:org.ops4j/foo" );
+        assertThat( "Version", url.getVersion(), is( nullValue() ) );
+        assertThat( "Type", url.getType(), is( equalTo( "jar" ) ) );
+        assertThat( "Classifier", url.getClassifier(), is( nullValue() ) );
+        assertThat( "Fixed version", url.hasFixedVersion(), is( false ) );
+    }
+
+    @Test
+    public void notParsed()
+    {
+        assertThat( "Not mvn", MavenUrl.parse( "file:foo.jar" ), is( nullValue() ) );
+        assertThat( "Null", MavenUrl.parse( null ), is( nullValue() ) );
+        assertThat( "No artifact id", MavenUrl.parse( "mvn:org.ops4j" ), is( nullValue() ) );
+        assertThat( "Empty group id", MavenUrl.parse( "mvn:/foo/1.0" ), is( nullValue() ) );
+        assertThat( "Too many segments", MavenUrl.parse( "mvn:org.ops4j/foo/1.0/jar/bin/x" ), is( nullValue() ) );
+    }
+
+    @Test
+    public void fixedVersion()
+    {
+        assertThat( MavenUrl.parse( "mvn:org.ops4j/foo/1.0" ).hasFixedVersion(), is( true ) );
+        assertThat( MavenUrl.parse( "mvn:org.ops4j/foo/1.0-SNAPSHOT" ).hasFixedVersion(), is( true ) );
+        assertThat( MavenUrl.parse( "mvn:org.ops4j/foo/LATEST" ).hasFixedVersion(), is( false ) );
+        assertThat( MavenUrl.parse( "mvn:org.ops4j/foo/RELEASE" ).hasFixedVersion(), is( false ) );
+        assertThat( MavenUrl.parse( "mvn:org.ops4j/foo/[1.0,2.0)" ).hasFixedVersion(), is( false ) );
+    }
+
+    @Test
+    public void paths()
+    {
+        final MavenUrl url = MavenUrl.parse( "mvn:org.ops4j/foo//zip/bin" );
+        assertThat( url.getArtifactFolder(), is( equalTo( "org/ops4j/foo" ) ) );
+        assertThat( url.getPath( "2.0" ), is( equalTo( "org/ops4j/foo/2.0/foo-2.0-bin.zip" ) ) );
+        assertThat(
+            MavenUrl.parse( "mvn:org.ops4j/foo/1.0" ).getPath( "1.0" ),
+            is( equalTo( "org/ops4j/foo/1.0/foo-1.0.jar" ) )
+        );
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.spi.timing;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Unit Tests for {@link ReportFileTimingListener}.
+ *
+ * @since 1.2.3
+ */
+public class ReportFileTimingListenerTest
+{
+
+    /**
+     * Test that a report left by a previous run is overwritten and that all spans of the run are written.
+     *
+     * @throws IOException - Unexpected
+     */
+    @Test
+    public void report()
+        throws IOException
+    {
+        final File file = File.createTempFile( "paxexam_timing", ".txt" );
+        try
+        {
+            final FileWriter previous = new FileWriter( file );
+            previous.write( "previous run\n" );
+            previous.close();
+
+            final ReportFileTimingListener listener = new ReportFileTimingListener( file );
+            listener.spanEnded( new TimingSpan( "first", "context", 100, 150 ) );
+            listener.spanEnded( new TimingSpan( "second", null, 200, 300 ) );
+
+            final List<String> lines = read( file );
+            assertThat( "Lines", lines.size(), is( equalTo( 3 ) ) );
+            assertThat( "Header", lines.get( 0 ).startsWith( "#" ), is( true ) );
+            assertThat( "First", lines.get( 1 ).split( "\t" )[ 2 ], is( equalTo( "first" ) ) );
+            assertThat( "Second duration", lines.get( 2 ).split( "\t" )[ 1 ], is( equalTo( "100" ) ) );
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    private static List<String> read( final File file )
+        throws IOException
+    {
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader reader = new BufferedReader( new FileReader( file ) );
+        try
+        {
+            String line;
+            while( ( line = reader.readLine() ) != null )
+            {
+                lines.add( line );
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return lines;
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam.spi.timing;
+
+import java.util.ArrayList;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit Tests for {@link Timings}.
+ *
+ * @since 1.2.3
+ */
+public class TimingsTest
+{
+
+    private final List<TimingSpan> m_spans = new ArrayList<TimingSpan>();
+
+    private final TimingListener m_listener = new TimingListener()
+    {
+        public void spanEnded( final TimingSpan span )
+        {
+            m_spans.add( span );
+        }
+    };
+
+    @Before
+    public void setUp()
+    {
+        Timings.addListener( m_listener );
+    }
+
+    @After
+    public void tearDown()
+    {
+        Timings.removeListener( m_listener );
+    }
+
+    /**
+     * Test that a stopped span is reported once, even if stopped more times.
+     */
+    @Test
+    public void spanReportedOnce()
+    {
+        final Stopwatch stopwatch = Timings.start( "phase", "context" );
+        final TimingSpan span = stopwatch.stop();
+        assertThat( "Same span", stopwatch.stop(), is( sameInstance( span ) ) );
+        assertThat( "Reported spans", m_spans.size(), is( equalTo( 1 ) ) );
+        assertThat( "Name", m_spans.get( 0 ).getName(), is( equalTo( "phase" ) ) );
+        assertThat( "Context", m_spans.get( 0 ).getContext(), is( equalTo( "context" ) ) );
+    }
+
+    /**
+     * Test that recorded spans keep the measured times.
+     */
+    @Test
+    public void recordedSpan()
+    {
+        Timings.record( "phase", null, 100, 350 );
+        assertThat( "Reported spans", m_spans.size(), is( equalTo( 1 ) ) );
+        assertThat( "Duration", m_spans.get( 0 ).getDuration(), is( equalTo( 250L ) ) );
+        assertThat( "Context", m_spans.get( 0 ).getContext(), is( equalTo( "" ) ) );
+    }
+
+    /**
+     * Test that removed listeners are not notified.
+     */
+    @Test
+    public void removedListener()
+    {
+        Timings.removeListener( m_listener );
+        Timings.start( "phase", "context" ).stop();
+        assertThat( "Reported spans", m_spans.size(), is( equalTo( 0 ) ) );
+    }
+
+}
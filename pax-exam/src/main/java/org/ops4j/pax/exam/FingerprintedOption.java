@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam;
+
+/**
+ * Option that describes itself for {@link OptionFingerprint}s, instead of being described out of its fields.
+ * To be implemented by custom options whose fields do not tell the configuration apart, as options holding
+ * resources or computing their values on demand.
+ *
+ * @since 1.2.3
+ */
+public interface FingerprintedOption
+    extends Option
+{
+
+    /**
+     * Returns a canonical description of the option. Options that configure the test container the same way must
+     * return equal descriptions, other options different ones.
+     *
+     * @return canonical description (cannot be null)
+     */
+    String getFingerprint();
+
+}
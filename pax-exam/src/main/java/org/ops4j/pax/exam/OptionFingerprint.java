@@ -0,0 +1,443 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import org.ops4j.pax.exam.options.UrlReference;
+
+/**
+ * Fingerprint of a configuration, telling if two arrays of options describe the same test container.
+ * Options are expanded as by {@link OptionSet} and compared in their order, as order matters (e.g. the last of
+ * repeated system properties wins and bundles are provisioned in order). Each option is described by its class and
+ * the values of its fields, including values captured by anonymous options. Elements of maps and sets are compared
+ * regardless of their order, unless the map or set has a defined order (sorted or linked). {@link UrlReference}s held by options are described by their url,
+ * other java platform values by their {@code toString()} and {@link FingerprintedOption}s describe themselves. Two fingerprints are equal if the options have equal
+ * descriptions.
+ *
+ * @since 1.2.3
+ */
+public final class OptionFingerprint
+{
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Orders fields by name, as the order of declared fields is not specified.
+     */
+    private static final Comparator<Field> FIELD_ORDER = new Comparator<Field>()
+    {
+        public int compare( final Field field1,
+                            final Field field2 )
+        {
+            return field1.getName().compareTo( field2.getName() );
+        }
+    };
+
+    /**
+     * SHA-1 digest of the option descriptions, in option order, as hex string.
+     */
+    private final String m_digest;
+    /**
+     * Number of options described.
+     */
+    private final int m_size;
+
+    /**
+     * Constructor.
+     *
+     * @param digest digest of the option descriptions
+     * @param size   number of options described
+     */
+    private OptionFingerprint( final String digest,
+                               final int size )
+    {
+        m_digest = digest;
+        m_size = size;
+    }
+
+    /**
+     * Computes the fingerprint of options.
+     *
+     * @param options options to be fingerprinted (can be null or an empty array)
+     *
+     * @return fingerprint (never null)
+     */
+    public static OptionFingerprint of( final Option... options )
+    {
+        return of( new OptionSet( options ) );
+    }
+
+    /**
+     * Computes the fingerprint of an option set.
+     *
+     * @param options options to be fingerprinted (cannot be null)
+     *
+     * @return fingerprint (never null)
+     */
+    public static OptionFingerprint of( final OptionSet options )
+    {
+        final List<String> descriptions = new ArrayList<String>( options.size() );
+        for( Option option : options.getOptions() )
+        {
+            descriptions.add( describe( option ) );
+        }
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not supported", e );
+        }
+        for( String description : descriptions )
+        {
+            update( digest, description );
+            digest.update( (byte) '\n' );
+        }
+        return new OptionFingerprint( toHex( digest.digest() ), descriptions.size() );
+    }
+
+    /**
+     * Returns the canonical description of one option, the one its fingerprint is computed from.
+     *
+     * @param option option to be described (cannot be null)
+     *
+     * @return description
+     */
+    public static String describe( final Option option )
+    {
+        final StringBuilder description = new StringBuilder();
+        describe( option, description, new IdentityHashMap<Object, Object>() );
+        return description.toString();
+    }
+
+    /**
+     * Getter.
+     *
+     * @return SHA-1 digest of the option descriptions, as hex string
+     */
+    public String getDigest()
+    {
+        return m_digest;
+    }
+
+    /**
+     * Getter.
+     *
+     * @return number of options (after expansion)
+     */
+    public int size()
+    {
+        return m_size;
+    }
+
+    @Override
+    public boolean equals( final Object other )
+    {
+        return other instanceof OptionFingerprint
+               && m_size == ( (OptionFingerprint) other ).m_size
+               && m_digest.equals( ( (OptionFingerprint) other ).m_digest );
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return m_digest.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return m_digest;
+    }
+
+    /**
+     * Appends the description of a value.
+     *
+     * @param value       value to be described (can be null)
+     * @param description where to append the description
+     * @param visiting    objects being described, to cut cycles
+     */
+    private static void describe( final Object value,
+                                  final StringBuilder description,
+                                  final Map<Object, Object> visiting )
+    {
+        if( value == null )
+        {
+            description.append( "null" );
+        }
+        else if( value instanceof String )
+        {
+            // length prefixed, so descriptions cannot be confused by values containing separators
+            description.append( ( (String) value ).length() ).append( '"' ).append( value ).append( '"' );
+        }
+        else if( value instanceof Number || value instanceof Boolean || value instanceof Character )
+        {
+            description.append( value );
+        }
+        else if( value instanceof Enum )
+        {
+            description.append( ( (Enum) value ).name() );
+        }
+        else if( value instanceof Class )
+        {
+            description.append( ( (Class) value ).getName() );
+        }
+        else if( value instanceof File || value instanceof URL || value instanceof URI )
+        {
+            describe( value.toString(), description, visiting );
+        }
+        else if( visiting.containsKey( value ) )
+        {
+            description.append( "<cycle>" );
+        }
+        else
+        {
+            visiting.put( value, value );
+            if( value instanceof FingerprintedOption )
+            {
+                description.append( value.getClass().getName() ).append( '(' );
+                describe( ( (FingerprintedOption) value ).getFingerprint(), description, visiting );
+                description.append( ')' );
+            }
+            else if( value instanceof UrlReference && !( value instanceof Option ) )
+            {
+                // references build the url on demand, out of different fields for the same url
+                description.append( "url(" );
+                describe( ( (UrlReference) value ).getURL(), description, visiting );
+                description.append( ')' );
+            }
+            else if( value.getClass().isArray() )
+            {
+                description.append( '[' );
+                for( int i = 0; i < Array.getLength( value ); i++ )
+                {
+                    separate( description, i );
+                    describe( Array.get( value, i ), description, visiting );
+                }
+                description.append( ']' );
+            }
+            else if( value instanceof Map )
+            {
+                final List<String> entries = new ArrayList<String>();
+                for( Map.Entry<?, ?> entry : ( (Map<?, ?>) value ).entrySet() )
+                {
+                    final StringBuilder entryDescription = new StringBuilder();
+                    describe( entry.getKey(), entryDescription, visiting );
+                    entryDescription.append( '=' );
+                    describe( entry.getValue(), entryDescription, visiting );
+                    entries.add( entryDescription.toString() );
+                }
+                append( entries, !isOrdered( value ), description );
+            }
+            else if( value instanceof Set )
+            {
+                final List<String> elements = new ArrayList<String>();
+                for( Object element : (Set<?>) value )
+                {
+                    final StringBuilder elementDescription = new StringBuilder();
+                    describe( element, elementDescription, visiting );
+                    elements.add( elementDescription.toString() );
+                }
+                append( elements, !isOrdered( value ), description );
+            }
+            else if( value instanceof Collection )
+            {
+                describe( ( (Collection<?>) value ).toArray(), description, visiting );
+            }
+            else if( isPlatformClass( value.getClass() ) )
+            {
+                // not an option, and its fields may not be accessible (modules), so described as it describes itself
+                description.append( value.getClass().getName() ).append( '(' );
+                describe( String.valueOf( value ), description, visiting );
+                description.append( ')' );
+            }
+            else
+            {
+                describeFields( value, description, visiting );
+            }
+            visiting.remove( value );
+        }
+    }
+
+    /**
+     * Appends the class name and the values of all instance fields of an object, skipping transient fields and the
+     * enclosing instance of inner (e.g. anonymous) classes. Synthetic fields holding captured local values are
+     * described as any other field. Fields declared by platform super classes are not described. A field that cannot
+     * be read is described by the identity of the object, so the object only equals itself.
+     *
+     * @param value       object to be described
+     * @param description where to append the description
+     * @param visiting    objects being described, to cut cycles
+     */
+    private static void describeFields( final Object value,
+                                        final StringBuilder description,
+                                        final Map<Object, Object> visiting )
+    {
+        description.append( value.getClass().getName() ).append( '(' );
+        int count = 0;
+        for( Class<?> type = value.getClass(); type != null && !isPlatformClass( type ); type = type.getSuperclass() )
+        {
+            final Field[] fields = type.getDeclaredFields();
+            Arrays.sort( fields, FIELD_ORDER );
+            for( Field field : fields )
+            {
+                final int modifiers = field.getModifiers();
+                if( Modifier.isStatic( modifiers ) || Modifier.isTransient( modifiers ) || isOuterInstance( field ) )
+                {
+                    continue;
+                }
+                separate( description, count++ );
+                description.append( field.getName() ).append( '=' );
+                try
+                {
+                    field.setAccessible( true );
+                    describe( field.get( value ), description, visiting );
+                }
+                catch( IllegalAccessException e )
+                {
+                    describeIdentity( value, description );
+                }
+                catch( RuntimeException e )
+                {
+                    // security manager or module restrictions
+                    describeIdentity( value, description );
+                }
+            }
+        }
+        description.append( ')' );
+    }
+
+    private static void describeIdentity( final Object value,
+                                          final StringBuilder description )
+    {
+        description.append( "<identity " ).append( System.identityHashCode( value ) ).append( '>' );
+    }
+
+    /**
+     * Tells if a class belongs to the java platform, whose internals are not described field by field.
+     *
+     * @param type class to be checked
+     *
+     * @return true if a java platform class
+     */
+    private static boolean isPlatformClass( final Class<?> type )
+    {
+        final String name = type.getName();
+        return name.startsWith( "java." ) || name.startsWith( "javax." )
+               || name.startsWith( "sun." ) || name.startsWith( "com.sun." ) || name.startsWith( "jdk." );
+    }
+
+    /**
+     * Tells if a field is the reference to the enclosing instance of an inner class, which is not part of the option.
+     *
+     * @param field field to be checked
+     *
+     * @return true if synthetic reference to enclosing instance
+     */
+    private static boolean isOuterInstance( final Field field )
+    {
+        return field.isSynthetic() && field.getName().startsWith( "this$" );
+    }
+
+    /**
+     * Tells if the iteration order of a map or set is defined, so that it can matter.
+     *
+     * @param value map or set
+     *
+     * @return true if sorted or linked
+     */
+    private static boolean isOrdered( final Object value )
+    {
+        return value instanceof SortedMap || value instanceof SortedSet
+               || value instanceof LinkedHashMap || value instanceof LinkedHashSet;
+    }
+
+    private static void append( final List<String> elements,
+                                final boolean sort,
+                                final StringBuilder description )
+    {
+        if( sort )
+        {
+            Collections.sort( elements );
+        }
+        description.append( '{' );
+        for( int i = 0; i < elements.size(); i++ )
+        {
+            separate( description, i );
+            description.append( elements.get( i ) );
+        }
+        description.append( '}' );
+    }
+
+    private static void separate( final StringBuilder description,
+                                  final int index )
+    {
+        if( index > 0 )
+        {
+            description.append( ',' );
+        }
+    }
+
+    private static void update( final MessageDigest digest,
+                                final String value )
+    {
+        try
+        {
+            digest.update( value.getBytes( "UTF-8" ) );
+        }
+        catch( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( "UTF-8 is not supported", e );
+        }
+    }
+
+    private static String toHex( final byte[] bytes )
+    {
+        final char[] hex = new char[bytes.length * 2];
+        for( int i = 0; i < bytes.length; i++ )
+        {
+            hex[ i * 2 ] = HEX[ ( bytes[ i ] >> 4 ) & 0x0F ];
+            hex[ i * 2 + 1 ] = HEX[ bytes[ i ] & 0x0F ];
+        }
+        return new String( hex );
+    }
+
+}
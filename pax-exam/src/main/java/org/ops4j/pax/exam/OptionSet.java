@@ -0,0 +1,222 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.ops4j.pax.exam.options.CompositeOption;
+
+/**
+ * Options flattened and indexed by type in one pass.
+ * {@link CompositeOption}s are expanded at any depth, each of them only once, and null options are eliminated. The
+ * options can then be filtered by any class or interface they are instance of without expanding and going over all
+ * options again, as {@link OptionUtils#filter(Class, Option[])} does on each call. Option sets are immutable.
+ *
+ * @since 1.2.3
+ */
+public class OptionSet
+{
+
+    /**
+     * Flattened options, in the order they were provided.
+     */
+    private final Option[] m_options;
+    /**
+     * Options by each class and interface they are instance of, in the order they were provided. Each array has the
+     * type it is mapped to as component type.
+     */
+    private final Map<Class<?>, Option[]> m_index;
+
+    /**
+     * Constructor.
+     *
+     * @param options options to be flattened and indexed (can be null or an empty array)
+     */
+    public OptionSet( final Option... options )
+    {
+        final List<Option> flattened = new ArrayList<Option>();
+        flatten( options, flattened );
+        m_options = flattened.toArray( new Option[flattened.size()] );
+        m_index = index( m_options );
+    }
+
+    /**
+     * Getter.
+     *
+     * @return flattened options (never null)
+     */
+    public Option[] getOptions()
+    {
+        return m_options.clone();
+    }
+
+    /**
+     * Returns the options that are instance of the provided class, as {@link OptionUtils#filter(Class, Option[])}.
+     *
+     * @param optionType class of the desired options
+     * @param <T>        type of desired options
+     *
+     * @return array of desired option type (never null). In case that there is no option that matches the desired type
+     *         an empty array is returned
+     */
+    @SuppressWarnings( "unchecked" )
+    public <T extends Option> T[] filter( final Class<T> optionType )
+    {
+        final Option[] filtered = m_index.get( optionType );
+        if( filtered == null )
+        {
+            return (T[]) Array.newInstance( optionType, 0 );
+        }
+        return (T[]) filtered.clone();
+    }
+
+    /**
+     * Returns the options that are not instance of the provided class, as {@link OptionUtils#remove(Class, Option[])}.
+     *
+     * @param optionType class of the options to be removed
+     *
+     * @return array of remaining options (never null)
+     */
+    public Option[] remove( final Class<? extends Option> optionType )
+    {
+        if( !m_index.containsKey( optionType ) )
+        {
+            return getOptions();
+        }
+        final List<Option> remaining = new ArrayList<Option>( m_options.length );
+        for( Option option : m_options )
+        {
+            if( !optionType.isInstance( option ) )
+            {
+                remaining.add( option );
+            }
+        }
+        return remaining.toArray( new Option[remaining.size()] );
+    }
+
+    /**
+     * @param optionType class of the desired options
+     *
+     * @return true if there is at least one option instance of the provided class
+     */
+    public boolean contains( final Class<? extends Option> optionType )
+    {
+        return m_index.containsKey( optionType );
+    }
+
+    /**
+     * @return number of flattened options
+     */
+    public int size()
+    {
+        return m_options.length;
+    }
+
+    /**
+     * Adds options to a list by expanding composite options at any depth and eliminating null options.
+     *
+     * @param options   options to be flattened (can be null)
+     * @param flattened list to add the options to
+     */
+    private static void flatten( final Option[] options,
+                                 final List<Option> flattened )
+    {
+        if( options != null )
+        {
+            for( Option option : options )
+            {
+                if( option instanceof CompositeOption )
+                {
+                    flatten( ( (CompositeOption) option ).getOptions(), flattened );
+                }
+                else if( option != null )
+                {
+                    flattened.add( option );
+                }
+            }
+        }
+    }
+
+    /**
+     * Groups options by each class and interface they are instance of.
+     *
+     * @param options options to be indexed
+     *
+     * @return index of options by type
+     */
+    private static Map<Class<?>, Option[]> index( final Option[] options )
+    {
+        final Map<Class<?>, Set<Class<?>>> typesOfClass = new HashMap<Class<?>, Set<Class<?>>>();
+        final Map<Class<?>, List<Option>> buckets = new HashMap<Class<?>, List<Option>>();
+        for( Option option : options )
+        {
+            Set<Class<?>> types = typesOfClass.get( option.getClass() );
+            if( types == null )
+            {
+                types = new LinkedHashSet<Class<?>>();
+                collectTypes( option.getClass(), types );
+                typesOfClass.put( option.getClass(), types );
+            }
+            for( Class<?> type : types )
+            {
+                List<Option> bucket = buckets.get( type );
+                if( bucket == null )
+                {
+                    bucket = new ArrayList<Option>();
+                    buckets.put( type, bucket );
+                }
+                bucket.add( option );
+            }
+        }
+        final Map<Class<?>, Option[]> index = new HashMap<Class<?>, Option[]>();
+        for( Map.Entry<Class<?>, List<Option>> entry : buckets.entrySet() )
+        {
+            final List<Option> bucket = entry.getValue();
+            index.put(
+                entry.getKey(),
+                bucket.toArray( (Option[]) Array.newInstance( entry.getKey(), bucket.size() ) )
+            );
+        }
+        return index;
+    }
+
+    /**
+     * Collects a type and all its super classes and interfaces that are options.
+     *
+     * @param type  type to start from (can be null)
+     * @param types set to add the types to
+     */
+    private static void collectTypes( final Class<?> type,
+                                      final Set<Class<?>> types )
+    {
+        if( type != null && Option.class.isAssignableFrom( type ) && types.add( type ) )
+        {
+            collectTypes( type.getSuperclass(), types );
+            for( Class<?> implemented : type.getInterfaces() )
+            {
+                collectTypes( implemented, types );
+            }
+        }
+    }
+
+}
@@ -25,6 +25,7 @@ import org.ops4j.pax.exam.options.CompositeOption;
 
 /**
  * Utility methods related to {@link Option}s.
+ * To filter the same options by several types use an {@link OptionSet}, that expands them only once.
  *
  * @author Alin Dreghiciu (adreghiciu@gmail.com)
  * @since 0.3.0, December 08, 2008
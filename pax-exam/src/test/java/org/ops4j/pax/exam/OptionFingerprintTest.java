@@ -0,0 +1,205 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static org.ops4j.pax.exam.CoreOptions.*;
+
+/**
+ * Unit Tests for {@link OptionFingerprint}.
+ *
+ * @since 1.2.3
+ */
+public class OptionFingerprintTest
+{
+
+    @Test
+    public void sameOptionsExpanded()
+    {
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of(
+                systemProperty( "foo" ).value( "bar" ),
+                mavenBundle().groupId( "g" ).artifactId( "a" ).version( "1.0" ).startLevel( 5 )
+            ),
+            is( equalTo( OptionFingerprint.of(
+                composite( systemProperty( "foo" ).value( "bar" ) ),
+                composite( mavenBundle().groupId( "g" ).artifactId( "a" ).version( "1.0" ).startLevel( 5 ) )
+            )
+            ) )
+        );
+    }
+
+    @Test
+    public void orderMatters()
+    {
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of( systemProperty( "foo" ).value( "a" ), systemProperty( "foo" ).value( "b" ) ),
+            is( not( equalTo(
+                OptionFingerprint.of( systemProperty( "foo" ).value( "b" ), systemProperty( "foo" ).value( "a" ) )
+            ) ) )
+        );
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of( bundle( "file:a.jar" ), bundle( "file:b.jar" ) ),
+            is( not( equalTo( OptionFingerprint.of( bundle( "file:b.jar" ), bundle( "file:a.jar" ) ) ) ) )
+        );
+    }
+
+    @Test
+    public void anonymousOptionsCapturedValues()
+    {
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of( anonymous( "a" ) ),
+            is( not( equalTo( OptionFingerprint.of( anonymous( "b" ) ) ) ) )
+        );
+        // enclosing instance is not part of the option
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of( anonymous( "a" ) ),
+            is( equalTo( OptionFingerprint.of( new OptionFingerprintTest().anonymous( "a" ) ) ) )
+        );
+    }
+
+    @Test
+    public void mavenUrlDescribedByUrl()
+    {
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of( mavenBundle().groupId( "g" ).artifactId( "a" ).version( "1.0" ) ),
+            is( equalTo( OptionFingerprint.of( mavenBundle( "g", "a", "1.0" ) ) ) )
+        );
+    }
+
+    @Test
+    public void differentValues()
+    {
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of( systemProperty( "foo" ).value( "bar" ) ),
+            is( not( equalTo( OptionFingerprint.of( systemProperty( "foo" ).value( "baz" ) ) ) ) )
+        );
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of( bundle( "file:a.jar" ).startLevel( 5 ) ),
+            is( not( equalTo( OptionFingerprint.of( bundle( "file:a.jar" ).startLevel( 6 ) ) ) ) )
+        );
+    }
+
+    @Test
+    public void fingerprintedOption()
+    {
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of( new TestOption( "x", 1 ) ),
+            is( equalTo( OptionFingerprint.of( new TestOption( "x", 2 ) ) ) )
+        );
+    }
+
+    @Test
+    public void platformValuesDescribedByToString()
+    {
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of( holding( new AtomicInteger( 1 ) ) ),
+            is( equalTo( OptionFingerprint.of( holding( new AtomicInteger( 1 ) ) ) ) )
+        );
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of( holding( new AtomicInteger( 1 ) ) ),
+            is( not( equalTo( OptionFingerprint.of( holding( new AtomicInteger( 2 ) ) ) ) ) )
+        );
+        // no own description, so only equal to itself
+        final Object lock = new Object();
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of( holding( lock ) ),
+            is( equalTo( OptionFingerprint.of( holding( lock ) ) ) )
+        );
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of( holding( lock ) ),
+            is( not( equalTo( OptionFingerprint.of( holding( new Object() ) ) ) ) )
+        );
+        assertThat(
+            "Fingerprint",
+            OptionFingerprint.of( holding( Thread.currentThread() ) ),
+            is( equalTo( OptionFingerprint.of( holding( Thread.currentThread() ) ) ) )
+        );
+    }
+
+    /**
+     * Creates an anonymous option capturing a value.
+     */
+    private Option anonymous( final String value )
+    {
+        return new Option()
+        {
+            @Override
+            public String toString()
+            {
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Creates an anonymous option capturing any value.
+     */
+    private Option holding( final Object value )
+    {
+        return new Option()
+        {
+            @Override
+            public int hashCode()
+            {
+                return value.hashCode();
+            }
+        };
+    }
+
+    /**
+     * Option that describes itself only out of its name.
+     */
+    private static class TestOption
+        implements FingerprintedOption
+    {
+
+        private final String m_name;
+        private final int m_instance;
+
+        TestOption( final String name,
+                    final int instance )
+        {
+            m_name = name;
+            m_instance = instance;
+        }
+
+        public String getFingerprint()
+        {
+            return m_name;
+        }
+
+    }
+
+}
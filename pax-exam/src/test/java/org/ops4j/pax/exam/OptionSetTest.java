@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010 OPS4J.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.exam;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static org.ops4j.pax.exam.CoreOptions.*;
+import org.ops4j.pax.exam.options.ProvisionOption;
+import org.ops4j.pax.exam.options.SystemPropertyOption;
+import org.ops4j.pax.exam.options.UrlProvisionOption;
+
+/**
+ * Unit Tests for {@link OptionSet}.
+ *
+ * @since 1.2.3
+ */
+public class OptionSetTest
+{
+
+    @Test
+    public void flattenNestedComposites()
+    {
+        final Option first = systemProperty( "first" ).value( "1" );
+        final Option second = bundle( "file:second.jar" );
+        final Option third = systemProperty( "third" ).value( "3" );
+        final OptionSet options = new OptionSet(
+            first,
+            null,
+            composite( composite( second ), when( false ).useOptions( bundle( "file:skipped.jar" ) ) ),
+            when( true ).useOptions( composite( third ) )
+        );
+        assertThat( "Options", options.getOptions(), is( equalTo( new Option[]{ first, second, third } ) ) );
+    }
+
+    @Test
+    public void filterByClassAndInterface()
+    {
+        final SystemPropertyOption first = systemProperty( "first" ).value( "1" );
+        final UrlProvisionOption second = bundle( "file:second.jar" );
+        final SystemPropertyOption third = systemProperty( "third" ).value( "3" );
+        final OptionSet options = new OptionSet( first, composite( second, third ) );
+
+        final SystemPropertyOption[] properties = options.filter( SystemPropertyOption.class );
+        assertThat( "Properties", properties, is( equalTo( new SystemPropertyOption[]{ first, third } ) ) );
+        final ProvisionOption[] bundles = options.filter( ProvisionOption.class );
+        assertThat( "Bundles", bundles, is( equalTo( new ProvisionOption[]{ second } ) ) );
+        assertThat( "Missing", options.filter( Customizer.class ).length, is( equalTo( 0 ) ) );
+    }
+
+    @Test
+    public void remove()
+    {
+        final Option first = systemProperty( "first" ).value( "1" );
+        final Option second = bundle( "file:second.jar" );
+        final OptionSet options = new OptionSet( first, second );
+        assertThat( "Remaining", options.remove( ProvisionOption.class ), is( equalTo( new Option[]{ first } ) ) );
+        assertThat( "Contains", options.contains( ProvisionOption.class ), is( true ) );
+        assertThat( "Size", options.size(), is( equalTo( 2 ) ) );
+    }
+
+}